@@ -0,0 +1,13 @@
+package com.cursoteste.libraryapi.reactive;
+
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.autoconfigure.SpringBootApplication;
+
+@SpringBootApplication
+public class ReactiveLibraryApiApplication {
+
+	public static void main(String[] args) {
+		SpringApplication.run(ReactiveLibraryApiApplication.class, args);
+	}
+
+}
@@ -0,0 +1,20 @@
+package com.cursoteste.libraryapi.reactive.api.dto;
+
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class LoanDto {
+
+    private Long id;
+    private String isbn;
+    private String customer;
+    private String email;
+    private BookDTO book;
+}
@@ -0,0 +1,17 @@
+package com.cursoteste.libraryapi.reactive.api.dto;
+
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+@Data
+public class LoanFilterDTO {
+
+    private String isbn;
+    private String customer;
+}
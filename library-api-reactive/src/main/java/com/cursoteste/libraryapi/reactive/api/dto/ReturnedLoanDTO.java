@@ -0,0 +1,16 @@
+package com.cursoteste.libraryapi.reactive.api.dto;
+
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+@Data
+public class ReturnedLoanDTO {
+
+    private Boolean returned;
+}
@@ -0,0 +1,37 @@
+package com.cursoteste.libraryapi.reactive.api.exception;
+
+import org.springframework.validation.BindingResult;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Same error body as the servlet library-api: {@code {"errors": [...]}}.
+ */
+public class ApiErrors {
+
+    private List<String> errors;
+
+    public ApiErrors(BindingResult bindingResult) {
+        this.errors = new ArrayList<>();
+        bindingResult.getAllErrors().forEach(error -> this.errors.add(error.getDefaultMessage()));
+    }
+
+    public ApiErrors(BusinessException ex) {
+        this.errors = Arrays.asList(ex.getMessage());
+    }
+
+    public ApiErrors(ResponseStatusException ex) {
+        this.errors = Arrays.asList(ex.getReason());
+    }
+
+    public List<String> getErrors() {
+        return errors;
+    }
+
+    public void setErrors(List<String> errors) {
+        this.errors = errors;
+    }
+}
@@ -0,0 +1,7 @@
+package com.cursoteste.libraryapi.reactive.api.exception;
+
+public class BusinessException extends RuntimeException {
+    public BusinessException(String s) {
+        super(s);
+    }
+}
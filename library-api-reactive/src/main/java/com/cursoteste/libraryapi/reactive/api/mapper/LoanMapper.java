@@ -0,0 +1,12 @@
+package com.cursoteste.libraryapi.reactive.api.mapper;
+
+import com.cursoteste.libraryapi.reactive.api.dto.LoanDto;
+import com.cursoteste.libraryapi.reactive.api.model.entity.Book;
+import com.cursoteste.libraryapi.reactive.api.model.entity.Loan;
+
+public interface LoanMapper {
+
+    LoanDto toDto(Loan loan);
+
+    Loan toEntity(LoanDto dto, Book book);
+}
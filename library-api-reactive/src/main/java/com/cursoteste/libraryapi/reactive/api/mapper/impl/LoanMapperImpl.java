@@ -0,0 +1,41 @@
+package com.cursoteste.libraryapi.reactive.api.mapper.impl;
+
+import com.cursoteste.libraryapi.reactive.api.dto.LoanDto;
+import com.cursoteste.libraryapi.reactive.api.mapper.BookMapper;
+import com.cursoteste.libraryapi.reactive.api.mapper.LoanMapper;
+import com.cursoteste.libraryapi.reactive.api.model.entity.Book;
+import com.cursoteste.libraryapi.reactive.api.model.entity.Loan;
+import org.springframework.stereotype.Component;
+
+@Component
+public class LoanMapperImpl implements LoanMapper {
+
+    private final BookMapper bookMapper;
+
+    public LoanMapperImpl(BookMapper bookMapper) {
+        this.bookMapper = bookMapper;
+    }
+
+    @Override
+    public LoanDto toDto(Loan loan) {
+        if (loan == null) {
+            return null;
+        }
+        Book book = loan.getBook();
+        return new LoanDto(loan.getId(), book == null ? null : book.getIsbn(), loan.getCustomer(),
+                loan.getCustomerEmail(), bookMapper.toDto(book));
+    }
+
+    @Override
+    public Loan toEntity(LoanDto dto, Book book) {
+        if (dto == null) {
+            return null;
+        }
+        Loan loan = new Loan();
+        loan.setBook(book);
+        loan.setBookId(book == null ? null : book.getId());
+        loan.setCustomer(dto.getCustomer());
+        loan.setCustomerEmail(dto.getEmail());
+        return loan;
+    }
+}
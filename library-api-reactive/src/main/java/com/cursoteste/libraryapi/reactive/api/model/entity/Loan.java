@@ -0,0 +1,47 @@
+package com.cursoteste.libraryapi.reactive.api.model.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.Transient;
+import org.springframework.data.relational.core.mapping.Column;
+import org.springframework.data.relational.core.mapping.Table;
+
+import java.time.LocalDate;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Table("loan")
+public class Loan {
+
+    @Id
+    private Long id;
+
+    private String customer;
+
+    private String customerEmail;
+
+    @Column("id_book")
+    private Long bookId;
+
+    private LocalDate loanDate;
+
+    private Boolean returned;
+
+    /**
+     * Id of the book while the loan is open and null once it is returned. The unique
+     * constraint guarantees at most one open loan per book.
+     */
+    private Long activeBookId;
+
+    /**
+     * Loaded separately by the service when the loan is returned to the client.
+     */
+    @Transient
+    private Book book;
+
+}
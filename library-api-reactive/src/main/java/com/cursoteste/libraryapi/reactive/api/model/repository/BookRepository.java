@@ -0,0 +1,14 @@
+package com.cursoteste.libraryapi.reactive.api.model.repository;
+
+import com.cursoteste.libraryapi.reactive.api.model.entity.Book;
+import org.springframework.data.repository.reactive.ReactiveCrudRepository;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Mono;
+
+@Repository
+public interface BookRepository extends ReactiveCrudRepository<Book, Long>, BookRepositoryCustom {
+
+    Mono<Boolean> existsByIsbn(String isbn);
+
+    Mono<Book> findByIsbn(String isbn);
+}
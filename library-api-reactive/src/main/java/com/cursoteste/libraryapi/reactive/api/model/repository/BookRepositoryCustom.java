@@ -0,0 +1,17 @@
+package com.cursoteste.libraryapi.reactive.api.model.repository;
+
+import com.cursoteste.libraryapi.reactive.api.model.entity.Book;
+import org.springframework.data.domain.Pageable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+public interface BookRepositoryCustom {
+
+    /**
+     * Books whose non-null title, author and isbn of the filter are contained in the book's,
+     * ignoring case, as the example matcher of the servlet api does.
+     */
+    Flux<Book> findByFilter(Book filter, Pageable pageable);
+
+    Mono<Long> countByFilter(Book filter);
+}
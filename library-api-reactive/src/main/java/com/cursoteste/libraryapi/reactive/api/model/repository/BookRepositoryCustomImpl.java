@@ -0,0 +1,42 @@
+package com.cursoteste.libraryapi.reactive.api.model.repository;
+
+import com.cursoteste.libraryapi.reactive.api.model.entity.Book;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.r2dbc.core.R2dbcEntityTemplate;
+import org.springframework.data.relational.core.query.Criteria;
+import org.springframework.data.relational.core.query.Query;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+public class BookRepositoryCustomImpl implements BookRepositoryCustom {
+
+    private final R2dbcEntityTemplate template;
+
+    public BookRepositoryCustomImpl(R2dbcEntityTemplate template) {
+        this.template = template;
+    }
+
+    @Override
+    public Flux<Book> findByFilter(Book filter, Pageable pageable) {
+        return template.select(Book.class).matching(Query.query(criteria(filter)).with(pageable)).all();
+    }
+
+    @Override
+    public Mono<Long> countByFilter(Book filter) {
+        return template.select(Book.class).matching(Query.query(criteria(filter))).count();
+    }
+
+    private static Criteria criteria(Book filter) {
+        Criteria criteria = Criteria.empty();
+        criteria = containing(criteria, "title", filter.getTitle());
+        criteria = containing(criteria, "author", filter.getAuthor());
+        return containing(criteria, "isbn", filter.getIsbn());
+    }
+
+    private static Criteria containing(Criteria criteria, String column, String value) {
+        if (value == null) {
+            return criteria;
+        }
+        return criteria.and(Criteria.where(column).like("%" + value + "%").ignoreCase(true));
+    }
+}
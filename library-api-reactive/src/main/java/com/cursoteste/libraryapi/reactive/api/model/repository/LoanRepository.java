@@ -0,0 +1,48 @@
+package com.cursoteste.libraryapi.reactive.api.model.repository;
+
+import com.cursoteste.libraryapi.reactive.api.model.entity.Loan;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.r2dbc.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.data.repository.reactive.ReactiveCrudRepository;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+@Repository
+public interface LoanRepository extends ReactiveCrudRepository<Loan, Long> {
+
+    Mono<Boolean> existsByActiveBookId(Long bookId);
+
+    Flux<Loan> findAllBy(Pageable pageable);
+
+    Flux<Loan> findByBookId(Long bookId, Pageable pageable);
+
+    Mono<Long> countByBookId(Long bookId);
+
+    Flux<Loan> findByCustomer(String customer, Pageable pageable);
+
+    Mono<Long> countByCustomer(String customer);
+
+    @Query("select l.* from loan l join book b on b.id = l.id_book where b.isbn = :isbn "
+            + "order by l.id limit :limit offset :offset")
+    Flux<Loan> findByBookIsbn(@Param("isbn") String isbn, @Param("limit") int limit, @Param("offset") long offset);
+
+    @Query("select count(*) from loan l join book b on b.id = l.id_book where b.isbn = :isbn")
+    Mono<Long> countByBookIsbn(@Param("isbn") String isbn);
+
+    /**
+     * Loans of a book isbn or of a customer, ordered by id. Each branch of the union is answered
+     * by its own index, where a single {@code or} condition would scan the table.
+     */
+    @Query("select l.* from loan l where l.id in ("
+            + "select l.id from loan l join book b on b.id = l.id_book where b.isbn = :isbn "
+            + "union select l.id from loan l where l.customer = :customer) "
+            + "order by l.id limit :limit offset :offset")
+    Flux<Loan> findByBookIsbnOrCustomer(@Param("isbn") String isbn, @Param("customer") String customer,
+                                        @Param("limit") int limit, @Param("offset") long offset);
+
+    @Query("select count(*) from (select l.id from loan l join book b on b.id = l.id_book where b.isbn = :isbn "
+            + "union select l.id from loan l where l.customer = :customer) u")
+    Mono<Long> countByBookIsbnOrCustomer(@Param("isbn") String isbn, @Param("customer") String customer);
+}
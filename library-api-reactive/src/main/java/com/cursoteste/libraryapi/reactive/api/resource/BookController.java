@@ -0,0 +1,79 @@
+package com.cursoteste.libraryapi.reactive.api.resource;
+
+import com.cursoteste.libraryapi.reactive.api.dto.BookDTO;
+import com.cursoteste.libraryapi.reactive.api.dto.LoanDto;
+import com.cursoteste.libraryapi.reactive.api.mapper.BookMapper;
+import com.cursoteste.libraryapi.reactive.api.mapper.LoanMapper;
+import com.cursoteste.libraryapi.reactive.api.model.entity.Book;
+import com.cursoteste.libraryapi.reactive.api.service.BookService;
+import com.cursoteste.libraryapi.reactive.api.service.LoanService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Mono;
+
+import javax.validation.Valid;
+
+@RestController
+@RequestMapping("/api/books")
+@RequiredArgsConstructor
+public class BookController {
+
+    private final BookService service;
+    private final BookMapper bookMapper;
+    private final LoanService loanService;
+    private final LoanMapper loanMapper;
+
+    @PostMapping
+    @ResponseStatus(HttpStatus.CREATED)
+    public Mono<BookDTO> create(@RequestBody @Valid BookDTO dto){
+        return service.save(bookMapper.toEntity(dto))
+                .map(bookMapper::toDto);
+    }
+
+    @GetMapping("{id}")
+    public Mono<BookDTO> get(@PathVariable Long id){
+        return found(service.getById(id))
+                .map(bookMapper::toDto);
+    }
+
+    @DeleteMapping("{id}")
+    @ResponseStatus(HttpStatus.NO_CONTENT)
+    public Mono<Void> delete(@PathVariable Long id){
+        return found(service.getById(id))
+                .flatMap(service::delete);
+    }
+
+    @PutMapping("{id}")
+    public Mono<BookDTO> update(@PathVariable Long id, @RequestBody BookDTO dto){
+        return found(service.getById(id))
+                .flatMap(book -> {
+                    book.setAuthor(dto.getAuthor());
+                    book.setTitle(dto.getTitle());
+                    return service.update(book);
+                })
+                .map(bookMapper::toDto);
+    }
+
+    @GetMapping
+    public Mono<Page<BookDTO>> find(BookDTO dto, Pageable pageRequest){
+        Book filter = bookMapper.toEntity(dto);
+        return service.find(filter, pageRequest)
+                .map(result -> result.map(bookMapper::toDto));
+    }
+
+    @GetMapping("{id}/loans")
+    public Mono<Page<LoanDto>> loansByBook(@PathVariable Long id, Pageable pageable){
+        return found(service.getById(id))
+                .flatMap(book -> loanService.getLoansByBook(book, pageable))
+                .map(result -> result.map(loanMapper::toDto));
+    }
+
+    private static Mono<Book> found(Mono<Book> book){
+        return book.switchIfEmpty(Mono.error(() -> new ResponseStatusException(HttpStatus.NOT_FOUND)));
+    }
+
+}
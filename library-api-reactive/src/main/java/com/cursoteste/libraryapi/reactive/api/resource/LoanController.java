@@ -0,0 +1,59 @@
+package com.cursoteste.libraryapi.reactive.api.resource;
+
+import com.cursoteste.libraryapi.reactive.api.dto.LoanDto;
+import com.cursoteste.libraryapi.reactive.api.dto.LoanFilterDTO;
+import com.cursoteste.libraryapi.reactive.api.dto.ReturnedLoanDTO;
+import com.cursoteste.libraryapi.reactive.api.mapper.LoanMapper;
+import com.cursoteste.libraryapi.reactive.api.model.entity.Loan;
+import com.cursoteste.libraryapi.reactive.api.service.BookService;
+import com.cursoteste.libraryapi.reactive.api.service.LoanService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Mono;
+
+import java.time.LocalDate;
+
+@RestController
+@RequestMapping("api/loans")
+@RequiredArgsConstructor
+public class LoanController {
+
+    private final LoanService service;
+    private final BookService bookService;
+    private final LoanMapper loanMapper;
+
+    @PostMapping
+    @ResponseStatus(HttpStatus.CREATED)
+    public Mono<Long> create(@RequestBody LoanDto dto){
+        return bookService.getBookByIsbn(dto.getIsbn())
+                .switchIfEmpty(Mono.error(() -> new ResponseStatusException(HttpStatus.BAD_REQUEST, "Book not found for passed isbn")))
+                .flatMap(book -> {
+                    Loan entity = loanMapper.toEntity(dto, book);
+                    entity.setLoanDate(LocalDate.now());
+                    return service.save(entity);
+                })
+                .map(Loan::getId);
+    }
+
+    @PatchMapping("{id}")
+    public Mono<Void> returnBook(@PathVariable Long id, @RequestBody ReturnedLoanDTO dto){
+        return service.getById(id)
+                .switchIfEmpty(Mono.error(() -> new ResponseStatusException(HttpStatus.NOT_FOUND)))
+                .flatMap(loan -> {
+                    loan.setReturned(dto.getReturned());
+                    return service.update(loan);
+                })
+                .then();
+    }
+
+    @GetMapping
+    public Mono<Page<LoanDto>> find(LoanFilterDTO dto, Pageable pageRequest){
+        return service.find(dto, pageRequest)
+                .map(result -> result.map(loanMapper::toDto));
+    }
+
+}
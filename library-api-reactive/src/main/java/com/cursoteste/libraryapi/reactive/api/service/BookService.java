@@ -0,0 +1,24 @@
+package com.cursoteste.libraryapi.reactive.api.service;
+
+import com.cursoteste.libraryapi.reactive.api.model.entity.Book;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import reactor.core.publisher.Mono;
+
+/**
+ * Non-blocking counterpart of the servlet {@code BookService}, with the same business rules.
+ */
+public interface BookService {
+
+    Mono<Book> save(Book book);
+
+    Mono<Book> getById(Long id);
+
+    Mono<Void> delete(Book book);
+
+    Mono<Book> update(Book book);
+
+    Mono<Page<Book>> find(Book filter, Pageable pageRequest);
+
+    Mono<Book> getBookByIsbn(String isbn);
+}
@@ -0,0 +1,27 @@
+package com.cursoteste.libraryapi.reactive.api.service;
+
+import com.cursoteste.libraryapi.reactive.api.dto.LoanFilterDTO;
+import com.cursoteste.libraryapi.reactive.api.model.entity.Book;
+import com.cursoteste.libraryapi.reactive.api.model.entity.Loan;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import reactor.core.publisher.Mono;
+
+/**
+ * Non-blocking counterpart of the servlet {@code LoanService}, with the same business rules.
+ */
+public interface LoanService {
+
+    Mono<Loan> save(Loan loan);
+
+    Mono<Loan> getById(Long id);
+
+    Mono<Loan> update(Loan loan);
+
+    /**
+     * Loans of the isbn or of the customer in the filter, with their books, ordered by id.
+     */
+    Mono<Page<Loan>> find(LoanFilterDTO filter, Pageable pageable);
+
+    Mono<Page<Loan>> getLoansByBook(Book book, Pageable pageable);
+}
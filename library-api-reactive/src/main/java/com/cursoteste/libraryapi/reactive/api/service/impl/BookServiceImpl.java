@@ -0,0 +1,62 @@
+package com.cursoteste.libraryapi.reactive.api.service.impl;
+
+import com.cursoteste.libraryapi.reactive.api.exception.BusinessException;
+import com.cursoteste.libraryapi.reactive.api.model.entity.Book;
+import com.cursoteste.libraryapi.reactive.api.model.repository.BookRepository;
+import com.cursoteste.libraryapi.reactive.api.service.BookService;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+
+@Service
+public class BookServiceImpl implements BookService {
+
+    private final BookRepository repository;
+
+    public BookServiceImpl(BookRepository repository) {
+        this.repository = repository;
+    }
+
+    @Override
+    public Mono<Book> save(Book book) {
+        return repository.existsByIsbn(book.getIsbn())
+                .flatMap(exists -> exists
+                        ? Mono.error(new BusinessException("Isbn já cadastrado."))
+                        : repository.save(book));
+    }
+
+    @Override
+    public Mono<Book> getById(Long id) {
+        return repository.findById(id);
+    }
+
+    @Override
+    public Mono<Void> delete(Book book) {
+        if (book == null || book.getId() == null) {
+            return Mono.error(new IllegalArgumentException("Book id cant be null"));
+        }
+        return repository.delete(book);
+    }
+
+    @Override
+    public Mono<Book> update(Book book) {
+        if (book == null || book.getId() == null) {
+            return Mono.error(new IllegalArgumentException("Book id cant be null"));
+        }
+        return repository.save(book);
+    }
+
+    @Override
+    public Mono<Page<Book>> find(Book filter, Pageable pageRequest) {
+        return repository.findByFilter(filter, pageRequest).collectList()
+                .zipWith(repository.countByFilter(filter))
+                .map(result -> new PageImpl<>(result.getT1(), pageRequest, result.getT2()));
+    }
+
+    @Override
+    public Mono<Book> getBookByIsbn(String isbn) {
+        return repository.findByIsbn(isbn);
+    }
+}
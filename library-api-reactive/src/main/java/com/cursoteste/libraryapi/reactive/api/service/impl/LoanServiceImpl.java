@@ -0,0 +1,124 @@
+package com.cursoteste.libraryapi.reactive.api.service.impl;
+
+import com.cursoteste.libraryapi.reactive.api.dto.LoanFilterDTO;
+import com.cursoteste.libraryapi.reactive.api.exception.BusinessException;
+import com.cursoteste.libraryapi.reactive.api.model.entity.Book;
+import com.cursoteste.libraryapi.reactive.api.model.entity.Loan;
+import com.cursoteste.libraryapi.reactive.api.model.repository.BookRepository;
+import com.cursoteste.libraryapi.reactive.api.model.repository.LoanRepository;
+import com.cursoteste.libraryapi.reactive.api.service.LoanService;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+@Service
+public class LoanServiceImpl implements LoanService {
+
+    private final LoanRepository repository;
+    private final BookRepository bookRepository;
+
+    public LoanServiceImpl(LoanRepository repository, BookRepository bookRepository) {
+        this.repository = repository;
+        this.bookRepository = bookRepository;
+    }
+
+    /**
+     * Availability is a lookup on the unique active_book_id column, which also rejects the
+     * second of two concurrent loans of the same book, so no lock is held while waiting.
+     */
+    @Override
+    public Mono<Loan> save(Loan loan) {
+        Long bookId = loan.getBookId();
+        return repository.existsByActiveBookId(bookId)
+                .flatMap(loaned -> {
+                    if (loaned) {
+                        return Mono.<Loan>error(new BusinessException("Book already loaned"));
+                    }
+                    loan.setActiveBookId(bookId);
+                    return repository.save(loan);
+                })
+                .onErrorMap(DataIntegrityViolationException.class, e -> new BusinessException("Book already loaned"));
+    }
+
+    @Override
+    public Mono<Loan> getById(Long id) {
+        return repository.findById(id);
+    }
+
+    @Override
+    public Mono<Loan> update(Loan loan) {
+        if (Boolean.TRUE.equals(loan.getReturned())) {
+            loan.setActiveBookId(null);
+        }
+        return repository.save(loan);
+    }
+
+    @Override
+    public Mono<Page<Loan>> find(LoanFilterDTO filter, Pageable pageable) {
+        String isbn = emptyToNull(filter.getIsbn());
+        String customer = emptyToNull(filter.getCustomer());
+        int limit = pageable.getPageSize();
+        long offset = pageable.getOffset();
+        if (isbn != null && customer != null) {
+            return page(repository.findByBookIsbnOrCustomer(isbn, customer, limit, offset),
+                    repository.countByBookIsbnOrCustomer(isbn, customer), pageable);
+        }
+        if (isbn != null) {
+            return page(repository.findByBookIsbn(isbn, limit, offset), repository.countByBookIsbn(isbn), pageable);
+        }
+        if (customer != null) {
+            return page(repository.findByCustomer(customer, orderedById(pageable)),
+                    repository.countByCustomer(customer), pageable);
+        }
+        return page(repository.findAllBy(orderedById(pageable)), repository.count(), pageable);
+    }
+
+    @Override
+    public Mono<Page<Loan>> getLoansByBook(Book book, Pageable pageable) {
+        return page(repository.findByBookId(book.getId(), orderedById(pageable)),
+                repository.countByBookId(book.getId()), pageable);
+    }
+
+    /**
+     * Collects a page of loans and loads all of their books with one query.
+     */
+    private Mono<Page<Loan>> page(Flux<Loan> loans, Mono<Long> count, Pageable pageable) {
+        return loans.collectList()
+                .flatMap(content -> {
+                    Set<Long> bookIds = content.stream().map(Loan::getBookId).collect(Collectors.toSet());
+                    return bookRepository.findAllById(bookIds)
+                            .collectMap(Book::getId, Function.identity())
+                            .map(books -> withBooks(content, books));
+                })
+                .zipWith(count)
+                .map(result -> new PageImpl<>(result.getT1(), pageable, result.getT2()));
+    }
+
+    private static List<Loan> withBooks(List<Loan> loans, Map<Long, Book> books) {
+        loans.forEach(loan -> loan.setBook(books.get(loan.getBookId())));
+        return loans;
+    }
+
+    private static Pageable orderedById(Pageable pageable) {
+        if (pageable.getSort().isSorted()) {
+            return pageable;
+        }
+        return PageRequest.of(pageable.getPageNumber(), pageable.getPageSize(), Sort.by("id"));
+    }
+
+    private static String emptyToNull(String value) {
+        return value == null || value.trim().isEmpty() ? null : value;
+    }
+}
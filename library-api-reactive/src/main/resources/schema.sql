@@ -0,0 +1,21 @@
+create table if not exists book (
+    id bigint auto_increment primary key,
+    title varchar(255),
+    author varchar(255),
+    isbn varchar(255)
+);
+
+create index if not exists idx_book_isbn on book (isbn);
+
+create table if not exists loan (
+    id bigint auto_increment primary key,
+    customer varchar(100),
+    customer_email varchar(255),
+    id_book bigint references book (id),
+    loan_date date,
+    returned boolean,
+    active_book_id bigint unique
+);
+
+create index if not exists idx_loan_customer on loan (customer, id);
+create index if not exists idx_loan_book on loan (id_book, id);
@@ -0,0 +1,166 @@
+package com.cursoteste.libraryapi.reactive.benchmark;
+
+import ch.qos.logback.classic.Logger;
+import com.cursoteste.libraryapi.reactive.ReactiveLibraryApiApplication;
+import io.netty.buffer.Unpooled;
+import org.openjdk.jmh.annotations.*;
+import org.slf4j.LoggerFactory;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.netty.ByteBufFlux;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the reactive stack with the servlet library-api under many simultaneous clients.
+ * Each operation opens {@code concurrency} connections at once and fetches one book on each,
+ * so the score is the time for the slowest of them to be served.
+ * <ul>
+ *     <li>{@code reactive} starts this module from the benchmark classpath.</li>
+ *     <li>{@code mvc} starts the packaged servlet application from {@code -Dmvc.jar}
+ *     ({@code mvn -DskipTests package} in library-api first).</li>
+ * </ul>
+ * Both servers run in their own process with an in-memory database seeded over HTTP with
+ * {@value #DATASET_SIZE} books.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 10)
+@Measurement(iterations = 5, time = 10)
+@Fork(1)
+public class ConcurrentClientsBenchmark {
+
+    private static final int DATASET_SIZE = 1000;
+    private static final Duration STARTUP_TIMEOUT = Duration.ofMinutes(2);
+
+    @Param({"reactive", "mvc"})
+    private String stack;
+
+    @Param({"1000", "5000"})
+    private int concurrency;
+
+    private Process server;
+    private ConnectionProvider connections;
+    private HttpClient client;
+    private long firstId;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        ((Logger) LoggerFactory.getLogger(Logger.ROOT_LOGGER_NAME)).setLevel(ch.qos.logback.classic.Level.WARN);
+        int port;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            port = socket.getLocalPort();
+        }
+        server = new ProcessBuilder(command(port))
+                .redirectErrorStream(true)
+                .redirectOutput(ProcessBuilder.Redirect.INHERIT)
+                .start();
+
+        connections = ConnectionProvider.builder("benchmark")
+                .maxConnections(concurrency)
+                .pendingAcquireMaxCount(-1)
+                .build();
+        client = HttpClient.create(connections)
+                .baseUrl("http://localhost:" + port)
+                .responseTimeout(Duration.ofSeconds(60));
+
+        awaitStartup();
+        firstId = seed();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws InterruptedException {
+        connections.dispose();
+        server.destroy();
+        server.waitFor(30, TimeUnit.SECONDS);
+    }
+
+    @Benchmark
+    public long getByIdWave() {
+        return Flux.range(0, concurrency)
+                .flatMap(i -> get("/api/books/" + (firstId + ThreadLocalRandom.current().nextInt(DATASET_SIZE))),
+                        concurrency)
+                .count()
+                .block();
+    }
+
+    private List<String> command(int port) {
+        String java = Paths.get(System.getProperty("java.home"), "bin", "java").toString();
+        List<String> command = new ArrayList<>(Arrays.asList(java, "-Xmx512m"));
+        if ("mvc".equals(stack)) {
+            String jar = System.getProperty("mvc.jar");
+            if (jar == null || !new File(jar).isFile()) {
+                throw new IllegalStateException("Set -Dmvc.jar to the packaged library-api jar, found " + jar);
+            }
+            command.addAll(Arrays.asList("-jar", jar));
+        } else {
+            command.addAll(Arrays.asList("-cp", System.getProperty("java.class.path"),
+                    ReactiveLibraryApiApplication.class.getName()));
+        }
+        command.addAll(Arrays.asList(
+                "--server.port=" + port,
+                "--spring.main.banner-mode=off",
+                "--logging.level.root=WARN",
+                "--server.tomcat.max-connections=" + (concurrency * 2),
+                "--server.tomcat.accept-count=" + concurrency));
+        return command;
+    }
+
+    private void awaitStartup() throws InterruptedException {
+        long deadline = System.nanoTime() + STARTUP_TIMEOUT.toNanos();
+        while (System.nanoTime() < deadline) {
+            if (!server.isAlive()) {
+                throw new IllegalStateException(stack + " server exited with " + server.exitValue());
+            }
+            try {
+                get("/api/books?size=1").block();
+                return;
+            } catch (RuntimeException notYetListening) {
+                Thread.sleep(500);
+            }
+        }
+        throw new IllegalStateException(stack + " server did not start in " + STARTUP_TIMEOUT);
+    }
+
+    private long seed() {
+        List<Long> ids = Flux.range(0, DATASET_SIZE)
+                .concatMap(n -> post("/api/books", String.format(
+                        "{\"title\":\"Livro %d\",\"author\":\"Autor %d\",\"isbn\":\"isbn-%d\"}", n, n % 100, n)))
+                .map(body -> Long.valueOf(body.replaceAll(".*\"id\":(\\d+).*", "$1")))
+                .collectList()
+                .block();
+        return ids.get(0);
+    }
+
+    private Mono<String> get(String uri) {
+        return client.get().uri(uri)
+                .responseSingle((response, body) -> checked(response.status().code(), uri, body.asString()));
+    }
+
+    private Mono<String> post(String uri, String json) {
+        return client.headers(headers -> headers.set("Content-Type", "application/json"))
+                .post().uri(uri)
+                .send(ByteBufFlux.fromInbound(Mono.just(Unpooled.copiedBuffer(json, StandardCharsets.UTF_8))))
+                .responseSingle((response, body) -> checked(response.status().code(), uri, body.asString()));
+    }
+
+    private static Mono<String> checked(int status, String uri, Mono<String> body) {
+        if (status >= 400) {
+            return Mono.error(new IllegalStateException(uri + " returned " + status));
+        }
+        return body;
+    }
+}
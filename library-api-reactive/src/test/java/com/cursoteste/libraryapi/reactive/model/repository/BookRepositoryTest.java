@@ -0,0 +1,56 @@
+package com.cursoteste.libraryapi.reactive.model.repository;
+
+import com.cursoteste.libraryapi.reactive.api.model.entity.Book;
+import com.cursoteste.libraryapi.reactive.api.model.repository.BookRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.data.r2dbc.DataR2dbcTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.test.context.ActiveProfiles;
+import reactor.core.publisher.Flux;
+import reactor.test.StepVerifier;
+
+@ActiveProfiles("test")
+@DataR2dbcTest
+public class BookRepositoryTest {
+
+    @Autowired
+    BookRepository repository;
+
+    @BeforeEach
+    public void setUp() {
+        repository.deleteAll().block();
+    }
+
+    @Test
+    @DisplayName("Deve retornar verdadeiro quando existir um livro na base com o isbn informado")
+    public void returnTrueWhenIsbnExists() {
+        //cenario
+        repository.save(createNewBook("123", "Aventuras")).block();
+
+        //execucao e verificacao
+        StepVerifier.create(repository.existsByIsbn("123")).expectNext(true).verifyComplete();
+        StepVerifier.create(repository.existsByIsbn("321")).expectNext(false).verifyComplete();
+    }
+
+    @Test
+    @DisplayName("Deve filtrar livros pelo titulo ignorando maiusculas e paginando")
+    public void findByFilterTest() {
+        //cenario
+        repository.saveAll(Flux.just(createNewBook("001", "Aventuras"), createNewBook("002", "Mais aventuras"),
+                createNewBook("003", "Outro"))).blockLast();
+        Book filter = Book.builder().title("AVENTURAS").build();
+
+        //execucao e verificacao
+        StepVerifier.create(repository.findByFilter(filter, PageRequest.of(0, 1)).map(Book::getIsbn))
+                .expectNext("001")
+                .verifyComplete();
+        StepVerifier.create(repository.countByFilter(filter)).expectNext(2L).verifyComplete();
+    }
+
+    static Book createNewBook(String isbn, String title) {
+        return Book.builder().title(title).author("Fulano").isbn(isbn).build();
+    }
+}
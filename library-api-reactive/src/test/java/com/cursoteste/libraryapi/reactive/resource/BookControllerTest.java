@@ -0,0 +1,165 @@
+package com.cursoteste.libraryapi.reactive.resource;
+
+import com.cursoteste.libraryapi.reactive.api.config.WebFluxConfig;
+import com.cursoteste.libraryapi.reactive.api.dto.BookDTO;
+import com.cursoteste.libraryapi.reactive.api.exception.BusinessException;
+import com.cursoteste.libraryapi.reactive.api.mapper.impl.BookMapperImpl;
+import com.cursoteste.libraryapi.reactive.api.mapper.impl.LoanMapperImpl;
+import com.cursoteste.libraryapi.reactive.api.model.entity.Book;
+import com.cursoteste.libraryapi.reactive.api.resource.BookController;
+import com.cursoteste.libraryapi.reactive.api.service.BookService;
+import com.cursoteste.libraryapi.reactive.api.service.LoanService;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.BDDMockito;
+import org.mockito.Mockito;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.reactive.WebFluxTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import reactor.core.publisher.Mono;
+
+import java.util.Arrays;
+
+@ActiveProfiles("test")
+@WebFluxTest(controllers = BookController.class)
+@Import({BookMapperImpl.class, LoanMapperImpl.class, WebFluxConfig.class})
+public class BookControllerTest {
+
+    static final String BOOK_API = "/api/books";
+
+    @Autowired
+    WebTestClient client;
+
+    @MockBean
+    BookService service;
+
+    @MockBean
+    LoanService loanService;
+
+    @Test
+    @DisplayName("Deve criar um livro com sucesso")
+    public void createBookTest() {
+        //cenario
+        BDDMockito.given(service.save(Mockito.any(Book.class)))
+                .willReturn(Mono.just(Book.builder().id(10L).author("Artur").title("As aventuras").isbn("001").build()));
+
+        //execucao e verificacao
+        client.post().uri(BOOK_API)
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(createNewBook())
+                .exchange()
+                .expectStatus().isCreated()
+                .expectBody()
+                .jsonPath("id").isEqualTo(10)
+                .jsonPath("title").isEqualTo("As aventuras")
+                .jsonPath("author").isEqualTo("Artur")
+                .jsonPath("isbn").isEqualTo("001");
+    }
+
+    @Test
+    @DisplayName("Deve lançar erro de validação quando não houver dados suficiente para criação do livro")
+    public void createInvalidBookTest() {
+        //execucao e verificacao
+        client.post().uri(BOOK_API)
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(new BookDTO())
+                .exchange()
+                .expectStatus().isBadRequest()
+                .expectBody()
+                .jsonPath("errors.length()").isEqualTo(3);
+    }
+
+    @Test
+    @DisplayName("Deve lançar erro ao tentar cadastrar um livro com isbn já utilizado por outro")
+    public void createBookWithDuplicatedIsbn() {
+        //cenario
+        BDDMockito.given(service.save(Mockito.any(Book.class)))
+                .willReturn(Mono.error(new BusinessException("Isbn já cadastrado.")));
+
+        //execucao e verificacao
+        client.post().uri(BOOK_API)
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(createNewBook())
+                .exchange()
+                .expectStatus().isBadRequest()
+                .expectBody()
+                .jsonPath("errors.length()").isEqualTo(1)
+                .jsonPath("errors[0]").isEqualTo("Isbn já cadastrado.");
+    }
+
+    @Test
+    @DisplayName("Deve retornar resource not found quando o livro procurado não existir")
+    public void bookNotFoundTest() {
+        //cenario
+        BDDMockito.given(service.getById(Mockito.anyLong())).willReturn(Mono.empty());
+
+        //execucao e verificacao
+        client.get().uri(BOOK_API + "/1")
+                .exchange()
+                .expectStatus().isNotFound();
+    }
+
+    @Test
+    @DisplayName("Deve deletar um livro")
+    public void deleteBookTest() {
+        //cenario
+        BDDMockito.given(service.getById(Mockito.anyLong())).willReturn(Mono.just(Book.builder().id(1L).build()));
+        BDDMockito.given(service.delete(Mockito.any(Book.class))).willReturn(Mono.empty());
+
+        //execucao e verificacao
+        client.delete().uri(BOOK_API + "/1")
+                .exchange()
+                .expectStatus().isNoContent();
+    }
+
+    @Test
+    @DisplayName("Deve atualizar um livro")
+    public void updateBookTest() {
+        //cenario
+        Book updatingBook = Book.builder().id(1L).title("some title").author("some author").isbn("321").build();
+        BDDMockito.given(service.getById(1L)).willReturn(Mono.just(updatingBook));
+        BDDMockito.given(service.update(updatingBook)).willAnswer(invocation -> Mono.just(invocation.getArgument(0)));
+
+        //execucao e verificacao
+        client.put().uri(BOOK_API + "/1")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(createNewBook())
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("id").isEqualTo(1)
+                .jsonPath("title").isEqualTo("As aventuras")
+                .jsonPath("author").isEqualTo("Artur")
+                .jsonPath("isbn").isEqualTo("321");
+    }
+
+    @Test
+    @DisplayName("Deve filtrar livros")
+    public void findBookTest() {
+        //cenario
+        Book book = Book.builder().id(1L).title("As aventuras").author("Artur").isbn("001").build();
+        BDDMockito.given(service.find(Mockito.any(Book.class), Mockito.any(Pageable.class)))
+                .willReturn(Mono.just(new PageImpl<>(Arrays.asList(book), PageRequest.of(0, 100), 1)));
+
+        //execucao e verificacao
+        client.get().uri(BOOK_API + "?title=As aventuras&author=Artur&page=0&size=100")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("content.length()").isEqualTo(1)
+                .jsonPath("totalElements").isEqualTo(1)
+                .jsonPath("pageable.pageSize").isEqualTo(100)
+                .jsonPath("pageable.pageNumber").isEqualTo(0);
+    }
+
+    private BookDTO createNewBook() {
+        return BookDTO.builder().author("Artur").title("As aventuras").isbn("001").build();
+    }
+}
@@ -0,0 +1,130 @@
+package com.cursoteste.libraryapi.reactive.resource;
+
+import com.cursoteste.libraryapi.reactive.api.config.WebFluxConfig;
+import com.cursoteste.libraryapi.reactive.api.dto.LoanDto;
+import com.cursoteste.libraryapi.reactive.api.dto.ReturnedLoanDTO;
+import com.cursoteste.libraryapi.reactive.api.exception.BusinessException;
+import com.cursoteste.libraryapi.reactive.api.mapper.impl.BookMapperImpl;
+import com.cursoteste.libraryapi.reactive.api.mapper.impl.LoanMapperImpl;
+import com.cursoteste.libraryapi.reactive.api.model.entity.Book;
+import com.cursoteste.libraryapi.reactive.api.model.entity.Loan;
+import com.cursoteste.libraryapi.reactive.api.resource.LoanController;
+import com.cursoteste.libraryapi.reactive.api.service.BookService;
+import com.cursoteste.libraryapi.reactive.api.service.LoanService;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.BDDMockito;
+import org.mockito.Mockito;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.reactive.WebFluxTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import reactor.core.publisher.Mono;
+
+import java.time.LocalDate;
+
+@ActiveProfiles("test")
+@WebFluxTest(controllers = LoanController.class)
+@Import({LoanMapperImpl.class, BookMapperImpl.class, WebFluxConfig.class})
+public class LoanControllerTest {
+
+    static final String LOAN_API = "/api/loans";
+
+    @Autowired
+    WebTestClient client;
+
+    @MockBean
+    BookService bookService;
+
+    @MockBean
+    LoanService loanService;
+
+    @Test
+    @DisplayName("Deve realizar um emprestimo")
+    public void createLoanTest() {
+        //cenario
+        Book book = Book.builder().id(1L).isbn("123").build();
+        BDDMockito.given(bookService.getBookByIsbn("123")).willReturn(Mono.just(book));
+        BDDMockito.given(loanService.save(Mockito.any(Loan.class)))
+                .willReturn(Mono.just(Loan.builder().id(1L).customer("Fulano").bookId(1L).book(book).loanDate(LocalDate.now()).build()));
+
+        //execucao e verificacao
+        client.post().uri(LOAN_API)
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(LoanDto.builder().isbn("123").customer("Fulano").build())
+                .exchange()
+                .expectStatus().isCreated()
+                .expectBody(Long.class).isEqualTo(1L);
+    }
+
+    @Test
+    @DisplayName("Deve retornar erro ao tentar fazer emprestimo de um livro inexistente")
+    public void invalidIsbnCreateLoanTest() {
+        //cenario
+        BDDMockito.given(bookService.getBookByIsbn("123")).willReturn(Mono.empty());
+
+        //execucao e verificacao
+        client.post().uri(LOAN_API)
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(LoanDto.builder().isbn("123").customer("Fulano").build())
+                .exchange()
+                .expectStatus().isBadRequest()
+                .expectBody()
+                .jsonPath("errors.length()").isEqualTo(1)
+                .jsonPath("errors[0]").isEqualTo("Book not found for passed isbn");
+    }
+
+    @Test
+    @DisplayName("Deve retornar erro ao tentar fazer emprestimo de um livro emprestado")
+    public void loanedBookErrorOnCreateLoanTest() {
+        //cenario
+        BDDMockito.given(bookService.getBookByIsbn("123")).willReturn(Mono.just(Book.builder().id(1L).isbn("123").build()));
+        BDDMockito.given(loanService.save(Mockito.any(Loan.class)))
+                .willReturn(Mono.error(new BusinessException("Book already loaned")));
+
+        //execucao e verificacao
+        client.post().uri(LOAN_API)
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(LoanDto.builder().isbn("123").customer("Fulano").build())
+                .exchange()
+                .expectStatus().isBadRequest()
+                .expectBody()
+                .jsonPath("errors.length()").isEqualTo(1)
+                .jsonPath("errors[0]").isEqualTo("Book already loaned");
+    }
+
+    @Test
+    @DisplayName("Deve retornar um livro")
+    public void returnBookTest() {
+        //cenario
+        Loan loan = Loan.builder().id(1L).bookId(1L).activeBookId(1L).build();
+        BDDMockito.given(loanService.getById(1L)).willReturn(Mono.just(loan));
+        BDDMockito.given(loanService.update(loan)).willReturn(Mono.just(loan));
+
+        //execucao e verificacao
+        client.patch().uri(LOAN_API + "/1")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(ReturnedLoanDTO.builder().returned(true).build())
+                .exchange()
+                .expectStatus().isOk();
+
+        Mockito.verify(loanService, Mockito.times(1)).update(loan);
+    }
+
+    @Test
+    @DisplayName("Deve retornar 404 quando tentar devolver um livro inexistente")
+    public void returnInexistentBookTest() {
+        //cenario
+        BDDMockito.given(loanService.getById(Mockito.anyLong())).willReturn(Mono.empty());
+
+        //execucao e verificacao
+        client.patch().uri(LOAN_API + "/1")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(ReturnedLoanDTO.builder().returned(true).build())
+                .exchange()
+                .expectStatus().isNotFound();
+    }
+}
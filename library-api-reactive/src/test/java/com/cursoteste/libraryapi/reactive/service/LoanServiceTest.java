@@ -0,0 +1,138 @@
+package com.cursoteste.libraryapi.reactive.service;
+
+import com.cursoteste.libraryapi.reactive.api.dto.LoanFilterDTO;
+import com.cursoteste.libraryapi.reactive.api.exception.BusinessException;
+import com.cursoteste.libraryapi.reactive.api.model.entity.Book;
+import com.cursoteste.libraryapi.reactive.api.model.entity.Loan;
+import com.cursoteste.libraryapi.reactive.api.model.repository.BookRepository;
+import com.cursoteste.libraryapi.reactive.api.model.repository.LoanRepository;
+import com.cursoteste.libraryapi.reactive.api.service.BookService;
+import com.cursoteste.libraryapi.reactive.api.service.LoanService;
+import com.cursoteste.libraryapi.reactive.api.service.impl.BookServiceImpl;
+import com.cursoteste.libraryapi.reactive.api.service.impl.LoanServiceImpl;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.data.r2dbc.DataR2dbcTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.test.context.ActiveProfiles;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.LocalDate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@ActiveProfiles("test")
+@DataR2dbcTest
+@Import({BookServiceImpl.class, LoanServiceImpl.class})
+public class LoanServiceTest {
+
+    @Autowired
+    BookService bookService;
+
+    @Autowired
+    LoanService service;
+
+    @Autowired
+    BookRepository bookRepository;
+
+    @Autowired
+    LoanRepository loanRepository;
+
+    @BeforeEach
+    public void setUp() {
+        loanRepository.deleteAll().then(bookRepository.deleteAll()).block();
+    }
+
+    @Test
+    @DisplayName("Deve lançar erro de negocio ao tentar salvar um livro com isbn duplicado")
+    public void shouldNotSaveABookWithDuplicatedISBN() {
+        //cenario
+        bookService.save(createNewBook("123")).block();
+
+        //execucao e verificacao
+        StepVerifier.create(bookService.save(createNewBook("123")))
+                .expectErrorSatisfies(e -> assertThat(e).isInstanceOf(BusinessException.class).hasMessage("Isbn já cadastrado."))
+                .verify();
+    }
+
+    @Test
+    @DisplayName("Deve lançar erro de negocio ao salvar um emprestimo com livro já emprestado")
+    public void loanedBookSaveTest() {
+        //cenario
+        Book book = bookService.save(createNewBook("123")).block();
+        service.save(createLoan(book, "Fulano")).block();
+
+        //execucao e verificacao
+        StepVerifier.create(service.save(createLoan(book, "Ciclano")))
+                .expectErrorSatisfies(e -> assertThat(e).isInstanceOf(BusinessException.class).hasMessage("Book already loaned"))
+                .verify();
+    }
+
+    @Test
+    @DisplayName("Deve aceitar apenas um de dois emprestimos simultaneos do mesmo livro")
+    public void concurrentLoansTest() {
+        //cenario
+        Book book = bookService.save(createNewBook("123")).block();
+
+        //execucao
+        Flux<Boolean> results = Flux.range(0, 2)
+                .flatMap(i -> service.save(createLoan(book, "Cliente " + i))
+                        .map(loan -> true)
+                        .onErrorResume(BusinessException.class, e -> Mono.just(false)));
+
+        //verificacao
+        StepVerifier.create(results.filter(saved -> saved).count())
+                .expectNext(1L)
+                .verifyComplete();
+    }
+
+    @Test
+    @DisplayName("Deve liberar o livro para novo emprestimo após a devolução")
+    public void returnedBookCanBeLoanedAgainTest() {
+        //cenario
+        Book book = bookService.save(createNewBook("123")).block();
+        Loan loan = service.save(createLoan(book, "Fulano")).block();
+        loan.setReturned(true);
+        service.update(loan).block();
+
+        //execucao e verificacao
+        StepVerifier.create(service.save(createLoan(book, "Ciclano")))
+                .assertNext(saved -> assertThat(saved.getId()).isNotNull())
+                .verifyComplete();
+    }
+
+    @Test
+    @DisplayName("Deve filtrar emprestimos pelo isbn ou pelo cliente com seus livros")
+    public void findLoanTest() {
+        //cenario
+        Book first = bookService.save(createNewBook("001")).block();
+        Book second = bookService.save(createNewBook("002")).block();
+        Book third = bookService.save(createNewBook("003")).block();
+        service.save(createLoan(first, "Fulano")).block();
+        service.save(createLoan(second, "Ciclano")).block();
+        service.save(createLoan(third, "Beltrano")).block();
+        LoanFilterDTO filter = LoanFilterDTO.builder().isbn("001").customer("Ciclano").build();
+
+        //execucao e verificacao
+        StepVerifier.create(service.find(filter, PageRequest.of(0, 10)))
+                .assertNext(page -> {
+                    assertThat(page.getTotalElements()).isEqualTo(2);
+                    assertThat(page.getContent()).extracting(loan -> loan.getBook().getIsbn())
+                            .containsExactly("001", "002");
+                })
+                .verifyComplete();
+    }
+
+    private static Book createNewBook(String isbn) {
+        return Book.builder().title("Aventuras").author("Fulano").isbn(isbn).build();
+    }
+
+    private static Loan createLoan(Book book, String customer) {
+        return Loan.builder().bookId(book.getId()).book(book).customer(customer).loanDate(LocalDate.now()).build();
+    }
+}
@@ -1,18 +1,21 @@
 package com.cursoteste.libraryapi;
 
-import org.modelmapper.ModelMapper;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.cache.annotation.EnableCaching;
 import org.springframework.context.annotation.Bean;
-import org.springframework.context.annotation.ComponentScan;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+import java.time.Clock;
 
 @SpringBootApplication
-@ComponentScan(basePackages ="com.cursoteste.*")
+@EnableCaching
+@EnableScheduling
 public class LibraryApiApplication {
 
 	@Bean
-	public ModelMapper modelMapper(){
-		return  new ModelMapper();
+	public Clock clock(){
+		return Clock.systemDefaultZone();
 	}
 
 	public static void main(String[] args) {
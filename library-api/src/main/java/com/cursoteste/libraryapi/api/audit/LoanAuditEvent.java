@@ -0,0 +1,54 @@
+package com.cursoteste.libraryapi.api.audit;
+
+import com.cursoteste.libraryapi.api.model.entity.Loan;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * One line of the loan audit log. The sequence is assigned when the event is written, so it
+ * follows the order of the file.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class LoanAuditEvent {
+
+    public enum Type { CREATED, RETURNED, REOPENED }
+
+    private long sequence;
+
+    private Type type;
+
+    private Long loanId;
+
+    private Long bookId;
+
+    private String isbn;
+
+    private String customer;
+
+    private long timestamp;
+
+    public static LoanAuditEvent created(Loan loan) {
+        LoanAuditEvent event = LoanAuditEvent.builder()
+                .type(Type.CREATED)
+                .loanId(loan.getId())
+                .customer(loan.getCustomer())
+                .build();
+        if (loan.getBook() != null) {
+            event.setBookId(loan.getBook().getId());
+            event.setIsbn(loan.getBook().getIsbn());
+        }
+        return event;
+    }
+
+    public static LoanAuditEvent returned(Long loanId, boolean returned) {
+        return LoanAuditEvent.builder()
+                .type(returned ? Type.RETURNED : Type.REOPENED)
+                .loanId(loanId)
+                .build();
+    }
+}
@@ -0,0 +1,399 @@
+package com.cursoteste.libraryapi.api.audit;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * Append-only NDJSON log of loan events, written behind the requests that produce them.
+ * <p>
+ * {@link #append} puts the event in a bounded lock-free queue and returns. A background writer
+ * wakes every flush interval, or as soon as a batch is pending, and appends the queued events to
+ * the file with one write per batch, numbering them in file order. When the queue is full the
+ * caller writes the pending events and its own, so no event is dropped and overload shows
+ * up as latency instead. On shutdown the queue is drained and the file forced to disk.
+ * <p>
+ * On startup a partial last line, left by a crash during a write, is truncated and numbering
+ * resumes after the last complete event. {@link #replay} reads the events back and
+ * {@link #rebuild} folds them into the state of every loan.
+ * <p>
+ * Every {@value #INDEX_INTERVAL} events the offset of the next line is kept in memory, by the
+ * writer as it appends and by the startup pass over the file, so a replay from a sequence seeks
+ * near it and reads at most that many events it does not return.
+ */
+@Slf4j
+@Component
+public class LoanAuditLog {
+
+    static final String PENDING_GAUGE = "library.audit.pending";
+    static final String CALLER_RUNS = "library.audit.caller.runs";
+    static final int INDEX_INTERVAL = 1024;
+    private static final int RECOVERY_TAIL_BYTES = 64 * 1024;
+    private static final int READ_BUFFER_BYTES = 64 * 1024;
+
+    private final Path path;
+    private final int capacity;
+    private final int batchSize;
+    private final long flushIntervalNanos;
+    private final boolean fsync;
+    private final ObjectMapper mapper;
+    private final Clock clock;
+
+    private final Queue<LoanAuditEvent> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pending = new AtomicInteger();
+    private final LongAdder callerRuns = new LongAdder();
+    private final ReentrantLock writeLock = new ReentrantLock();
+    /** Offset of the first line of the events numbered after each key. */
+    private final ConcurrentSkipListMap<Long, Long> offsets = new ConcurrentSkipListMap<>();
+    private final FileChannel channel;
+    private final Thread writer;
+    private long sequence;
+    private volatile boolean closed;
+
+    public LoanAuditLog(ObjectMapper mapper,
+                        Clock clock,
+                        MeterRegistry registry,
+                        @Value("${library.audit.path}") String path,
+                        @Value("${library.audit.capacity}") int capacity,
+                        @Value("${library.audit.batch-size}") int batchSize,
+                        @Value("${library.audit.flush-interval-ms}") long flushIntervalMillis,
+                        @Value("${library.audit.fsync}") boolean fsync) throws IOException {
+        this.path = Paths.get(path).toAbsolutePath();
+        this.capacity = capacity;
+        this.batchSize = batchSize;
+        this.flushIntervalNanos = TimeUnit.MILLISECONDS.toNanos(flushIntervalMillis);
+        this.fsync = fsync;
+        this.mapper = mapper;
+        this.clock = clock;
+
+        Files.createDirectories(this.path.getParent());
+        this.sequence = recover();
+        this.channel = FileChannel.open(this.path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+
+        Gauge.builder(PENDING_GAUGE, pending, AtomicInteger::get).register(registry);
+        FunctionCounter.builder(CALLER_RUNS, callerRuns, LongAdder::sum).register(registry);
+
+        this.writer = new Thread(this::drainLoop, "loan-audit-writer");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    /**
+     * Queues the event, or writes it in the calling thread when the queue is full or the log is
+     * closing. A failure to write is logged and never reaches the caller.
+     */
+    public void append(LoanAuditEvent event) {
+        event.setTimestamp(clock.millis());
+        if (!closed && reserve()) {
+            queue.offer(event);
+            if (pending.get() >= batchSize) {
+                LockSupport.unpark(writer);
+            }
+            return;
+        }
+        callerRuns.increment();
+        writeLock.lock();
+        try {
+            if (!channel.isOpen()) {
+                log.error("Loan audit log is closed, event of loan {} was lost", event.getLoanId());
+                return;
+            }
+            flush();
+            List<LoanAuditEvent> batch = new ArrayList<>(1);
+            batch.add(event);
+            write(batch);
+        } catch (IOException e) {
+            log.error("Could not write the audit event of loan {}", event.getLoanId(), e);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Writes every queued event.
+     */
+    public void flush() throws IOException {
+        writeLock.lock();
+        try {
+            List<LoanAuditEvent> batch;
+            while (!(batch = drain()).isEmpty()) {
+                write(batch);
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Passes every event numbered after {@code afterSequence} to the consumer, in order. Queued
+     * events are flushed first. Returns how many events were passed.
+     */
+    public long replay(long afterSequence, Consumer<LoanAuditEvent> consumer) throws IOException {
+        return scan(afterSequence, (event, line, from, length) -> consumer.accept(event));
+    }
+
+    /**
+     * Copies the lines of the events numbered after {@code afterSequence} to {@code out}, as
+     * they are in the file.
+     */
+    public long replay(long afterSequence, OutputStream out) throws IOException {
+        return scan(afterSequence, (event, line, from, length) -> {
+            out.write(line, from, length);
+            out.write('\n');
+        });
+    }
+
+    /**
+     * Replays the whole log into the state of every loan it mentions, by loan id.
+     */
+    public Map<Long, LoanAuditState> rebuild() throws IOException {
+        Map<Long, LoanAuditState> states = new LinkedHashMap<>();
+        replay(0, event -> states
+                .computeIfAbsent(event.getLoanId(), id -> LoanAuditState.builder().loanId(id).build())
+                .apply(event));
+        return states;
+    }
+
+    public int getPending() {
+        return pending.get();
+    }
+
+    public long getCallerRuns() {
+        return callerRuns.sum();
+    }
+
+    @PreDestroy
+    public void close() throws IOException, InterruptedException {
+        closed = true;
+        LockSupport.unpark(writer);
+        writer.join(TimeUnit.SECONDS.toMillis(10));
+        writeLock.lock();
+        try {
+            flush();
+            channel.force(true);
+            channel.close();
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    private boolean reserve() {
+        int current;
+        do {
+            current = pending.get();
+            if (current >= capacity) {
+                return false;
+            }
+        } while (!pending.compareAndSet(current, current + 1));
+        return true;
+    }
+
+    private List<LoanAuditEvent> drain() {
+        List<LoanAuditEvent> batch = new ArrayList<>();
+        LoanAuditEvent event;
+        while (batch.size() < batchSize && (event = queue.poll()) != null) {
+            pending.decrementAndGet();
+            batch.add(event);
+        }
+        return batch;
+    }
+
+    private void drainLoop() {
+        while (!closed) {
+            LockSupport.parkNanos(this, flushIntervalNanos);
+            try {
+                flush();
+            } catch (IOException e) {
+                log.error("Could not write the loan audit log", e);
+            }
+        }
+    }
+
+    private void write(List<LoanAuditEvent> batch) throws IOException {
+        long first = sequence;
+        long size = channel.size();
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(batch.size() * 160);
+        Map<Long, Long> indexed = new LinkedHashMap<>();
+        for (LoanAuditEvent event : batch) {
+            event.setSequence(++sequence);
+            if ((sequence - 1) % INDEX_INTERVAL == 0) {
+                indexed.put(sequence - 1, size + buffer.size());
+            }
+            buffer.write(mapper.writeValueAsBytes(event));
+            buffer.write('\n');
+        }
+        try {
+            ByteBuffer bytes = ByteBuffer.wrap(buffer.toByteArray());
+            while (bytes.hasRemaining()) {
+                channel.write(bytes);
+            }
+            if (fsync) {
+                channel.force(false);
+            }
+            offsets.putAll(indexed);
+        } catch (IOException e) {
+            sequence = first;
+            try {
+                channel.truncate(size);
+            } catch (IOException ignored) {
+                // the next recovery truncates the partial line
+            }
+            log.error("{} loan audit events were lost", batch.size());
+            throw e;
+        }
+    }
+
+    /**
+     * Truncates a partial last line, indexes the file and returns the sequence of the last
+     * complete event.
+     */
+    private long recover() throws IOException {
+        offsets.put(0L, 0L);
+        if (!Files.exists(path)) {
+            return 0;
+        }
+        try (FileChannel file = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            long size = file.size();
+            long start = Math.max(0, size - RECOVERY_TAIL_BYTES);
+            ByteBuffer tail = ByteBuffer.allocate((int) (size - start));
+            while (tail.hasRemaining() && file.read(tail, start + tail.position()) >= 0) {
+                // reads the tail of the file
+            }
+            byte[] bytes = tail.array();
+            int end = lastNewLine(bytes, bytes.length - 1);
+            if (end < 0) {
+                if (size > 0) {
+                    log.warn("Truncating a partial line from the loan audit log {}", path);
+                    file.truncate(0);
+                }
+                return 0;
+            }
+            if (end != bytes.length - 1) {
+                log.warn("Truncating a partial line from the loan audit log {}", path);
+                file.truncate(start + end + 1);
+            }
+            index(file, start + end + 1);
+            int begin = lastNewLine(bytes, end - 1) + 1;
+            return mapper.readValue(bytes, begin, end - begin, LoanAuditEvent.class).getSequence();
+        }
+    }
+
+    /**
+     * Keeps the offset of every {@value #INDEX_INTERVAL}th line, parsing only those lines.
+     */
+    private void index(FileChannel file, long limit) throws IOException {
+        long[] lines = {0};
+        readLines(file, 0, limit, (line, from, length, offset) -> {
+            if (lines[0]++ % INDEX_INTERVAL == 0) {
+                long sequence = mapper.readValue(line, from, length, LoanAuditEvent.class).getSequence();
+                offsets.put(sequence - 1, offset);
+            }
+        });
+    }
+
+    private long scan(long afterSequence, LineHandler handler) throws IOException {
+        long limit;
+        writeLock.lock();
+        try {
+            flush();
+            limit = channel.size();
+        } finally {
+            writeLock.unlock();
+        }
+
+        Map.Entry<Long, Long> start = offsets.floorEntry(afterSequence);
+        long[] count = {0};
+        try (FileChannel file = FileChannel.open(path, StandardOpenOption.READ)) {
+            readLines(file, start == null ? 0 : start.getValue(), limit, (line, from, length, offset) -> {
+                LoanAuditEvent event = mapper.readValue(line, from, length, LoanAuditEvent.class);
+                if (event.getSequence() > afterSequence) {
+                    handler.accept(event, line, from, length);
+                    count[0]++;
+                }
+            });
+        }
+        return count[0];
+    }
+
+    /**
+     * Passes each complete line between the offsets to the visitor, without its new line. The
+     * array is reused once the visitor returns.
+     */
+    private static void readLines(FileChannel file, long position, long limit, LineVisitor visitor) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(READ_BUFFER_BYTES);
+        ByteArrayOutputStream partial = new ByteArrayOutputStream(256);
+        long lineOffset = position;
+        while (position < limit) {
+            buffer.clear();
+            buffer.limit((int) Math.min(buffer.capacity(), limit - position));
+            int read = file.read(buffer, position);
+            if (read < 0) {
+                break;
+            }
+            byte[] bytes = buffer.array();
+            int begin = 0;
+            for (int i = 0; i < read; i++) {
+                if (bytes[i] != '\n') {
+                    continue;
+                }
+                if (partial.size() == 0) {
+                    visitor.visit(bytes, begin, i - begin, lineOffset);
+                } else {
+                    partial.write(bytes, begin, i - begin);
+                    visitor.visit(partial.toByteArray(), 0, partial.size(), lineOffset);
+                    partial.reset();
+                }
+                begin = i + 1;
+                lineOffset = position + begin;
+            }
+            partial.write(bytes, begin, read - begin);
+            position += read;
+        }
+    }
+
+    private static int lastNewLine(byte[] bytes, int from) {
+        for (int i = from; i >= 0; i--) {
+            if (bytes[i] == '\n') {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private interface LineHandler {
+        void accept(LoanAuditEvent event, byte[] line, int from, int length) throws IOException;
+    }
+
+    private interface LineVisitor {
+        void visit(byte[] line, int from, int length, long offset) throws IOException;
+    }
+}
@@ -0,0 +1,40 @@
+package com.cursoteste.libraryapi.api.audit;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * State of a loan as rebuilt by replaying the audit log.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class LoanAuditState {
+
+    private Long loanId;
+
+    private Long bookId;
+
+    private String isbn;
+
+    private String customer;
+
+    private boolean returned;
+
+    private long lastSequence;
+
+    void apply(LoanAuditEvent event) {
+        if (event.getType() == LoanAuditEvent.Type.CREATED) {
+            bookId = event.getBookId();
+            isbn = event.getIsbn();
+            customer = event.getCustomer();
+            returned = false;
+        } else {
+            returned = event.getType() == LoanAuditEvent.Type.RETURNED;
+        }
+        lastSequence = event.getSequence();
+    }
+}
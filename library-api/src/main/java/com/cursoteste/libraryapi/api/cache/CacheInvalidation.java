@@ -0,0 +1,25 @@
+package com.cursoteste.libraryapi.api.cache;
+
+import lombok.Value;
+
+/**
+ * Tells the other instances to drop something they may have cached. {@code key} is null when
+ * the whole region has to be dropped.
+ */
+@Value
+public class CacheInvalidation {
+
+    public enum Kind {
+        /** Hibernate second-level cache entry; region is the entity name. */
+        ENTITY,
+        /** Hibernate query cache region. */
+        QUERY,
+        /** Spring cache; region is the cache name. */
+        CACHE
+    }
+
+    String origin;
+    Kind kind;
+    String region;
+    Object key;
+}
@@ -0,0 +1,15 @@
+package com.cursoteste.libraryapi.api.cache;
+
+import java.util.function.Consumer;
+
+/**
+ * Transport of {@link CacheInvalidation}s between the instances of the application. Every
+ * published invalidation is delivered to every subscriber, including the ones of the
+ * publishing instance.
+ */
+public interface CacheInvalidationBus {
+
+    void publish(CacheInvalidation invalidation);
+
+    void subscribe(Consumer<CacheInvalidation> subscriber);
+}
@@ -0,0 +1,84 @@
+package com.cursoteste.libraryapi.api.cache;
+
+import org.hibernate.Cache;
+import org.hibernate.SessionFactory;
+import org.springframework.cache.CacheManager;
+import org.springframework.stereotype.Component;
+
+import javax.persistence.EntityManagerFactory;
+import java.io.Serializable;
+import java.util.UUID;
+
+import static com.cursoteste.libraryapi.api.service.support.AfterCommit.afterCommit;
+
+/**
+ * Keeps the caches of the other instances consistent with the writes of this one. Changes are
+ * published on the {@link CacheInvalidationBus} once the transaction commits, and invalidations
+ * coming from other instances are applied to the local Hibernate and Spring caches. This
+ * instance's own caches are already kept up to date by Hibernate and {@code @CacheEvict}.
+ */
+@Component
+public class CacheInvalidator {
+
+    private final String instanceId = UUID.randomUUID().toString();
+    private final CacheInvalidationBus bus;
+    private final Cache secondLevelCache;
+    private final CacheManager cacheManager;
+
+    public CacheInvalidator(CacheInvalidationBus bus, EntityManagerFactory entityManagerFactory, CacheManager cacheManager) {
+        this.bus = bus;
+        this.secondLevelCache = entityManagerFactory.unwrap(SessionFactory.class).getCache();
+        this.cacheManager = cacheManager;
+        bus.subscribe(this::apply);
+    }
+
+    public void entityChanged(Class<?> entity, Object id) {
+        publishAfterCommit(CacheInvalidation.Kind.ENTITY, entity.getName(), id);
+    }
+
+    public void queriesChanged(String queryRegion) {
+        publishAfterCommit(CacheInvalidation.Kind.QUERY, queryRegion, null);
+    }
+
+    public void cacheChanged(String cacheName, Object key) {
+        publishAfterCommit(CacheInvalidation.Kind.CACHE, cacheName, key);
+    }
+
+    void apply(CacheInvalidation invalidation) {
+        if (instanceId.equals(invalidation.getOrigin())) {
+            return;
+        }
+        switch (invalidation.getKind()) {
+            case ENTITY:
+                if (invalidation.getKey() == null) {
+                    secondLevelCache.evictEntityData(invalidation.getRegion());
+                } else {
+                    secondLevelCache.evictEntityData(invalidation.getRegion(), (Serializable) invalidation.getKey());
+                }
+                break;
+            case QUERY:
+                secondLevelCache.evictQueryRegion(invalidation.getRegion());
+                break;
+            case CACHE:
+                org.springframework.cache.Cache cache = cacheManager.getCache(invalidation.getRegion());
+                if (cache == null) {
+                    return;
+                }
+                if (invalidation.getKey() == null) {
+                    cache.clear();
+                } else {
+                    cache.evict(invalidation.getKey());
+                }
+                break;
+        }
+    }
+
+    public String getInstanceId() {
+        return instanceId;
+    }
+
+    private void publishAfterCommit(CacheInvalidation.Kind kind, String region, Object key) {
+        CacheInvalidation invalidation = new CacheInvalidation(instanceId, kind, region, key);
+        afterCommit(() -> bus.publish(invalidation));
+    }
+}
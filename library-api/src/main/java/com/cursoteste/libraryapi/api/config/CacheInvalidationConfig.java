@@ -0,0 +1,22 @@
+package com.cursoteste.libraryapi.api.config;
+
+import com.cursoteste.libraryapi.api.cache.CacheInvalidationBus;
+import com.cursoteste.libraryapi.api.cache.InMemoryCacheInvalidationBus;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Default {@link CacheInvalidationBus}, for a single instance. A deployment with several
+ * instances sets {@code library.cache.invalidation-bus} to the name of a shared transport and
+ * provides that bus instead.
+ */
+@Configuration
+@ConditionalOnProperty(name = "library.cache.invalidation-bus", havingValue = "in-memory", matchIfMissing = true)
+public class CacheInvalidationConfig {
+
+    @Bean
+    public CacheInvalidationBus inMemoryCacheInvalidationBus() {
+        return new InMemoryCacheInvalidationBus();
+    }
+}
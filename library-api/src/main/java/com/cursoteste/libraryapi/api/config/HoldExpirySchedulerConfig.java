@@ -0,0 +1,36 @@
+package com.cursoteste.libraryapi.api.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.task.TaskSchedulerBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+
+/**
+ * Gives the hold expiry timers their own threads. On the shared scheduler they queued behind the
+ * scheduled jobs, such as the late loan mails, which run for minutes, and a ready hold outlived
+ * its pickup window with its copy locked until they finished.
+ * <p>
+ * Declaring a scheduler makes Boot skip its own, so the one running the {@code @Scheduled} jobs
+ * is declared here too, from Boot's builder and still configured by {@code spring.task.scheduling.*}.
+ */
+@Configuration
+public class HoldExpirySchedulerConfig {
+
+    public static final String HOLD_EXPIRY_SCHEDULER = "holdExpiryScheduler";
+
+    @Bean
+    @Primary
+    public ThreadPoolTaskScheduler taskScheduler(TaskSchedulerBuilder builder) {
+        return builder.build();
+    }
+
+    @Bean(HOLD_EXPIRY_SCHEDULER)
+    public ThreadPoolTaskScheduler holdExpiryScheduler(@Value("${library.holds.expiry-threads}") int threads) {
+        ThreadPoolTaskScheduler scheduler = new ThreadPoolTaskScheduler();
+        scheduler.setPoolSize(threads);
+        scheduler.setThreadNamePrefix("hold-expiry-");
+        return scheduler;
+    }
+}
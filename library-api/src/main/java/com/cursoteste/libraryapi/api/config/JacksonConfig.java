@@ -0,0 +1,18 @@
+package com.cursoteste.libraryapi.api.config;
+
+import com.fasterxml.jackson.module.blackbird.BlackbirdModule;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Registers Blackbird with the {@code ObjectMapper} Spring Boot builds, so the properties of the
+ * DTOs are read and written through generated lambdas instead of reflection.
+ */
+@Configuration
+public class JacksonConfig {
+
+    @Bean
+    public BlackbirdModule blackbirdModule() {
+        return new BlackbirdModule();
+    }
+}
@@ -0,0 +1,85 @@
+package com.cursoteste.libraryapi.api.config;
+
+import com.cursoteste.libraryapi.api.exception.QueryLimitExceededException;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.aspectj.lang.reflect.MethodSignature;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+
+/**
+ * Bounds how many multi-row repository queries (those returning a page, slice, collection or
+ * stream) run at the same time. Single-row lookups such as {@code findById} or
+ * {@code existsByIsbn} are not limited, so a burst of slow searches can hold at most
+ * {@code maxConcurrentQueries} connections and leaves the rest of the pool to cheap requests.
+ * A query that waits longer than the timeout for a permit fails with
+ * {@link QueryLimitExceededException} instead of queueing indefinitely.
+ * <p>
+ * A stream keeps its permit until it is closed, as its rows are fetched while it is consumed.
+ * Queries inside a read-write transaction are not limited: the transaction already holds its
+ * connection, and failing it halfway would only waste the work done so far.
+ */
+@Aspect
+@Order(Ordered.HIGHEST_PRECEDENCE + 1)
+public class JdbcConcurrencyLimitAspect {
+
+    private final Semaphore permits;
+    private final long acquireTimeoutMs;
+    private final ConcurrentMap<Method, Boolean> limited = new ConcurrentHashMap<>();
+
+    public JdbcConcurrencyLimitAspect(int maxConcurrentQueries, long acquireTimeoutMs) {
+        this.permits = new Semaphore(maxConcurrentQueries, true);
+        this.acquireTimeoutMs = acquireTimeoutMs;
+    }
+
+    @Around("execution(* org.springframework.data.repository.Repository+.*(..))")
+    public Object limit(ProceedingJoinPoint joinPoint) throws Throwable {
+        Method method = ((MethodSignature) joinPoint.getSignature()).getMethod();
+        if (!limited.computeIfAbsent(method, JdbcConcurrencyLimitAspect::returnsManyRows) || inWriteTransaction()) {
+            return joinPoint.proceed();
+        }
+        if (!permits.tryAcquire(acquireTimeoutMs, TimeUnit.MILLISECONDS)) {
+            throw new QueryLimitExceededException("Too many concurrent queries, try again later");
+        }
+        Object result;
+        try {
+            result = joinPoint.proceed();
+        } catch (Throwable e) {
+            permits.release();
+            throw e;
+        }
+        if (result instanceof Stream) {
+            AtomicBoolean released = new AtomicBoolean();
+            return ((Stream<?>) result).onClose(() -> {
+                if (released.compareAndSet(false, true)) {
+                    permits.release();
+                }
+            });
+        }
+        permits.release();
+        return result;
+    }
+
+    private static boolean inWriteTransaction() {
+        return TransactionSynchronizationManager.isActualTransactionActive()
+                && !TransactionSynchronizationManager.isCurrentTransactionReadOnly();
+    }
+
+    private static boolean returnsManyRows(Method method) {
+        Class<?> type = method.getReturnType();
+        return Iterable.class.isAssignableFrom(type)
+                || Map.class.isAssignableFrom(type)
+                || Stream.class.isAssignableFrom(type);
+    }
+}
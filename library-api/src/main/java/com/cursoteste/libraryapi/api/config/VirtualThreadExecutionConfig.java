@@ -0,0 +1,32 @@
+package com.cursoteste.libraryapi.api.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.embedded.tomcat.TomcatProtocolHandlerCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.concurrent.Executors;
+
+/**
+ * Opt-in execution mode ({@code library.execution.virtual-threads=true}): Tomcat runs every
+ * request on its own virtual thread instead of the bounded worker pool, so requests blocked on
+ * JDBC no longer hold the threads cheap requests need. Since the number of requests in flight is
+ * then unbounded, the repositories are put behind a {@link JdbcConcurrencyLimitAspect}.
+ */
+@Configuration
+@ConditionalOnProperty(name = "library.execution.virtual-threads", havingValue = "true")
+public class VirtualThreadExecutionConfig {
+
+    @Bean
+    public TomcatProtocolHandlerCustomizer<?> virtualThreadProtocolHandlerCustomizer() {
+        return protocolHandler -> protocolHandler.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+    }
+
+    @Bean
+    public JdbcConcurrencyLimitAspect jdbcConcurrencyLimitAspect(
+            @Value("${library.jdbc.max-concurrent-queries}") int maxConcurrentQueries,
+            @Value("${library.jdbc.acquire-timeout-ms}") long acquireTimeoutMs) {
+        return new JdbcConcurrencyLimitAspect(maxConcurrentQueries, acquireTimeoutMs);
+    }
+}
@@ -0,0 +1,38 @@
+package com.cursoteste.libraryapi.api.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BatchItemResultDTO {
+
+    /**
+     * UNCHANGED is an item that needed no change, such as a loan that was already returned.
+     */
+    public enum Status { SUCCESS, UNCHANGED, FAILURE }
+
+    private int index;
+
+    private Long id;
+
+    private Status status;
+
+    private String error;
+
+    public static BatchItemResultDTO success(Long id) {
+        return BatchItemResultDTO.builder().id(id).status(Status.SUCCESS).build();
+    }
+
+    public static BatchItemResultDTO unchanged(Long id) {
+        return BatchItemResultDTO.builder().id(id).status(Status.UNCHANGED).build();
+    }
+
+    public static BatchItemResultDTO failure(String error) {
+        return BatchItemResultDTO.builder().status(Status.FAILURE).error(error).build();
+    }
+}
@@ -0,0 +1,20 @@
+package com.cursoteste.libraryapi.api.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BookAvailabilityDTO {
+
+    private Long id;
+
+    private Integer copies;
+
+    /** Copies on the shelf, which may lag a few seconds behind loans made by other instances. */
+    private Integer available;
+}
@@ -5,6 +5,7 @@ import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
+import javax.validation.constraints.Min;
 import javax.validation.constraints.NotBlank;
 import javax.validation.constraints.NotEmpty;
 import javax.validation.constraints.NotNull;
@@ -28,6 +29,12 @@ public class BookDTO {
     @NotEmpty
     private String isbn;
 
+    /**
+     * Copies owned by the library, one when not given on creation.
+     */
+    @Min(1)
+    private Integer copies;
+
 }
 
 
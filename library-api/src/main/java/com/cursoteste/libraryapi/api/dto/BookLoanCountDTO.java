@@ -0,0 +1,24 @@
+package com.cursoteste.libraryapi.api.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BookLoanCountDTO {
+
+    private Long bookId;
+
+    private String title;
+
+    private String isbn;
+
+    private long loans;
+
+    /** How much {@code loans} may overestimate the real count. */
+    private long error;
+}
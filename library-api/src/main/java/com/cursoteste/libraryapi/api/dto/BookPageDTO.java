@@ -0,0 +1,69 @@
+package com.cursoteste.libraryapi.api.dto;
+
+import com.cursoteste.libraryapi.api.model.entity.Book;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.Page;
+
+import java.io.IOException;
+
+/**
+ * A page of the book search. Written by {@link Serializer} straight from the entities to the
+ * response, without mapping them to {@link BookDTO}s first, as:
+ * <pre>
+ * {"content":[{"id":1,"title":"...","author":"...","isbn":"...","copies":1}],
+ *  "page":0,"size":20,"totalElements":1,"totalPages":1}
+ * </pre>
+ */
+@Getter
+@RequiredArgsConstructor
+@JsonSerialize(using = BookPageDTO.Serializer.class)
+public class BookPageDTO {
+
+    private final Page<Book> books;
+
+    /**
+     * Writes each book with the fields of {@link BookDTO}, in the same order.
+     */
+    public static class Serializer extends StdSerializer<BookPageDTO> {
+
+        public Serializer() {
+            super(BookPageDTO.class);
+        }
+
+        @Override
+        public void serialize(BookPageDTO value, JsonGenerator gen, SerializerProvider provider) throws IOException {
+            Page<Book> page = value.getBooks();
+            gen.writeStartObject();
+            gen.writeArrayFieldStart("content");
+            for (Book book : page.getContent()) {
+                gen.writeStartObject();
+                writeNumber(gen, "id", book.getId());
+                gen.writeStringField("title", book.getTitle());
+                gen.writeStringField("author", book.getAuthor());
+                gen.writeStringField("isbn", book.getIsbn());
+                writeNumber(gen, "copies", book.getCopies());
+                gen.writeEndObject();
+            }
+            gen.writeEndArray();
+            gen.writeNumberField("page", page.getNumber());
+            gen.writeNumberField("size", page.getSize());
+            gen.writeNumberField("totalElements", page.getTotalElements());
+            gen.writeNumberField("totalPages", page.getTotalPages());
+            gen.writeEndObject();
+        }
+
+        private static void writeNumber(JsonGenerator gen, String name, Number value) throws IOException {
+            gen.writeFieldName(name);
+            if (value == null) {
+                gen.writeNull();
+            } else {
+                gen.writeNumber(value.longValue());
+            }
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package com.cursoteste.libraryapi.api.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class CirculationStatsDTO {
+
+    private long totalLoans;
+
+    private long currentlyOut;
+
+    /** Only filled when the client asks for a book with {@code bookId}. */
+    private Long bookLoans;
+
+    /** Only filled when the client asks for a customer with {@code customer}. */
+    private Long customerLoans;
+
+    private List<BookLoanCountDTO> topBooks;
+}
@@ -0,0 +1,27 @@
+package com.cursoteste.libraryapi.api.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class CursorPageDTO<T> {
+
+    private List<T> content;
+
+    private int size;
+
+    /** Opaque token for the next page, absent on the last page. */
+    private String nextCursor;
+
+    /** Only filled when the client asks for it with {@code count=true}. */
+    private Long totalElements;
+}
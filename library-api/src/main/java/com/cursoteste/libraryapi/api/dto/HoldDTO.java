@@ -0,0 +1,33 @@
+package com.cursoteste.libraryapi.api.dto;
+
+import com.cursoteste.libraryapi.api.model.entity.Hold;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.validation.constraints.NotEmpty;
+import java.time.LocalDateTime;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class HoldDTO {
+
+    private Long id;
+
+    private Long bookId;
+
+    @NotEmpty
+    private String customer;
+
+    private String email;
+
+    private Hold.Status status;
+
+    /** Until when the copy set aside for a ready hold waits to be loaned. */
+    private LocalDateTime expiresAt;
+}
@@ -12,6 +12,9 @@ import lombok.NoArgsConstructor;
 @AllArgsConstructor
 public class LoanDto {
 
+    private Long id;
     private String isbn;
     private String customer;
+    private String email;
+    private BookDTO book;
 }
@@ -0,0 +1,7 @@
+package com.cursoteste.libraryapi.api.exception;
+
+public class QueryLimitExceededException extends RuntimeException {
+    public QueryLimitExceededException(String s) {
+        super(s);
+    }
+}
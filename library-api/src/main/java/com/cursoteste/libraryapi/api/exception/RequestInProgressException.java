@@ -0,0 +1,7 @@
+package com.cursoteste.libraryapi.api.exception;
+
+public class RequestInProgressException extends RuntimeException {
+    public RequestInProgressException(String s) {
+        super(s);
+    }
+}
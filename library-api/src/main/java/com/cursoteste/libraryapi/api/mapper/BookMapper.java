@@ -0,0 +1,11 @@
+package com.cursoteste.libraryapi.api.mapper;
+
+import com.cursoteste.libraryapi.api.dto.BookDTO;
+import com.cursoteste.libraryapi.api.model.entity.Book;
+
+public interface BookMapper {
+
+    BookDTO toDto(Book book);
+
+    Book toEntity(BookDTO dto);
+}
@@ -0,0 +1,12 @@
+package com.cursoteste.libraryapi.api.mapper;
+
+import com.cursoteste.libraryapi.api.dto.LoanDto;
+import com.cursoteste.libraryapi.api.model.entity.Book;
+import com.cursoteste.libraryapi.api.model.entity.Loan;
+
+public interface LoanMapper {
+
+    LoanDto toDto(Loan loan);
+
+    Loan toEntity(LoanDto dto, Book book);
+}
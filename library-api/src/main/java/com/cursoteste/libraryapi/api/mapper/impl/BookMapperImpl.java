@@ -0,0 +1,32 @@
+package com.cursoteste.libraryapi.api.mapper.impl;
+
+import com.cursoteste.libraryapi.api.dto.BookDTO;
+import com.cursoteste.libraryapi.api.mapper.BookMapper;
+import com.cursoteste.libraryapi.api.model.entity.Book;
+import org.springframework.stereotype.Component;
+
+@Component
+public class BookMapperImpl implements BookMapper {
+
+    @Override
+    public BookDTO toDto(Book book) {
+        if (book == null) {
+            return null;
+        }
+        return new BookDTO(book.getId(), book.getTitle(), book.getAuthor(), book.getIsbn(), book.getCopies());
+    }
+
+    @Override
+    public Book toEntity(BookDTO dto) {
+        if (dto == null) {
+            return null;
+        }
+        Book book = new Book();
+        book.setId(dto.getId());
+        book.setTitle(dto.getTitle());
+        book.setAuthor(dto.getAuthor());
+        book.setIsbn(dto.getIsbn());
+        book.setCopies(dto.getCopies());
+        return book;
+    }
+}
@@ -0,0 +1,112 @@
+package com.cursoteste.libraryapi.api.metrics;
+
+import com.cursoteste.libraryapi.api.exception.BusinessException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.aspectj.lang.reflect.MethodSignature;
+import org.springframework.aop.support.AopUtils;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.data.repository.Repository;
+import org.springframework.stereotype.Component;
+
+import java.lang.reflect.Method;
+import java.time.Duration;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Times every public call of the services, repositories and mappers into the
+ * {@value #TIMER} timer, tagged with the layer, the class and the method, and counts the
+ * {@link BusinessException}s thrown by the services into {@value #BUSINESS_ERRORS} by message.
+ * Timers are built once per class and method; a call only pays two map lookups and a clock read.
+ */
+@Aspect
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+public class LayerMetricsAspect {
+
+    static final String TIMER = "library.method";
+    static final String BUSINESS_ERRORS = "library.business.errors";
+
+    private final MeterRegistry registry;
+    private final ConcurrentMap<Class<?>, ConcurrentMap<Method, Timer>> timers = new ConcurrentHashMap<>();
+    private final ConcurrentMap<Class<?>, String> names = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Counter> businessErrors = new ConcurrentHashMap<>();
+
+    public LayerMetricsAspect(MeterRegistry registry) {
+        this.registry = registry;
+    }
+
+    @Around("within(com.cursoteste.libraryapi.api.service.impl..*) && execution(public * *(..))")
+    public Object timeService(ProceedingJoinPoint joinPoint) throws Throwable {
+        Class<?> type = AopUtils.getTargetClass(joinPoint.getTarget());
+        try {
+            return time(joinPoint, "service", type);
+        } catch (BusinessException e) {
+            businessErrors.computeIfAbsent(String.valueOf(e.getMessage()), message -> Counter.builder(BUSINESS_ERRORS)
+                    .tag("reason", message)
+                    .register(registry)).increment();
+            throw e;
+        }
+    }
+
+    @Around("execution(* org.springframework.data.repository.Repository+.*(..))")
+    public Object timeRepository(ProceedingJoinPoint joinPoint) throws Throwable {
+        return time(joinPoint, "repository", joinPoint.getThis().getClass());
+    }
+
+    @Around("within(com.cursoteste.libraryapi.api.mapper.impl..*) && execution(public * *(..))")
+    public Object timeMapper(ProceedingJoinPoint joinPoint) throws Throwable {
+        return time(joinPoint, "mapper", AopUtils.getTargetClass(joinPoint.getTarget()));
+    }
+
+    private Object time(ProceedingJoinPoint joinPoint, String layer, Class<?> type) throws Throwable {
+        Timer timer = timer(layer, type, ((MethodSignature) joinPoint.getSignature()).getMethod());
+        long start = System.nanoTime();
+        try {
+            return joinPoint.proceed();
+        } finally {
+            timer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private Timer timer(String layer, Class<?> type, Method method) {
+        ConcurrentMap<Method, Timer> byMethod = timers.get(type);
+        if (byMethod == null) {
+            byMethod = timers.computeIfAbsent(type, key -> new ConcurrentHashMap<>());
+        }
+        Timer timer = byMethod.get(method);
+        if (timer == null) {
+            timer = byMethod.computeIfAbsent(method, key -> Timer.builder(TIMER)
+                    .tag("layer", layer)
+                    .tag("class", name(type))
+                    .tag("method", key.getName())
+                    .publishPercentileHistogram()
+                    .minimumExpectedValue(Duration.ofNanos(1000))
+                    .maximumExpectedValue(Duration.ofSeconds(30))
+                    .register(registry));
+        }
+        return timer;
+    }
+
+    /**
+     * Simple name of the class, or of the repository interface when the call went through a
+     * Spring Data proxy.
+     */
+    private String name(Class<?> type) {
+        return names.computeIfAbsent(type, key -> {
+            for (Class<?> candidate : key.getInterfaces()) {
+                if (Repository.class.isAssignableFrom(candidate)) {
+                    return candidate.getSimpleName();
+                }
+            }
+            return key.getSimpleName();
+        });
+    }
+}
@@ -4,6 +4,8 @@ import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 
 import javax.persistence.*;
 import javax.validation.constraints.NotEmpty;
@@ -11,14 +13,22 @@ import javax.validation.constraints.NotEmpty;
 @Data
 @AllArgsConstructor
 @NoArgsConstructor
-@Builder
+@Builder(toBuilder = true)
 @Entity
-@Table
+@Table(indexes = @Index(name = "idx_book_isbn", columnList = "isbn"))
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
 public class Book {
 
+    /**
+     * Query cache region of the isbn lookup.
+     */
+    public static final String ISBN_QUERY_REGION = "book.byIsbn";
+
     @Id
     @Column
-    @GeneratedValue(strategy =  GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "book_seq")
+    @SequenceGenerator(name = "book_seq", sequenceName = "book_seq", allocationSize = 50)
     private Long id;
 
     @Column
@@ -30,4 +40,33 @@ public class Book {
     @Column
     private String isbn;
 
+    /**
+     * Incremented on every update of the book, and sent to clients as its ETag.
+     */
+    @Version
+    private Long version;
+
+    /**
+     * Number of copies the library owns. Defaults to one, and is only changed afterwards by
+     * {@code BookRepository.addCopies}.
+     */
+    @Column(updatable = false)
+    private Integer copies;
+
+    /**
+     * Copies on the shelf. Starts at {@link #copies} and is only written by the conditional
+     * updates in {@code BookRepository}, never by a merge of a possibly stale entity. Those updates
+     * bypass the second-level cache, so read it with a query rather than from a loaded entity.
+     */
+    @Column(updatable = false)
+    private Integer available;
+
+    @PrePersist
+    void initCopies() {
+        if (copies == null) {
+            copies = 1;
+        }
+        available = copies;
+    }
+
 }
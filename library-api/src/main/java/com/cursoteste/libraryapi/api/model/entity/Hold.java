@@ -0,0 +1,81 @@
+package com.cursoteste.libraryapi.api.model.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.EnumType;
+import javax.persistence.Enumerated;
+import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
+import javax.persistence.Id;
+import javax.persistence.Index;
+import javax.persistence.JoinColumn;
+import javax.persistence.ManyToOne;
+import javax.persistence.SequenceGenerator;
+import javax.persistence.Table;
+import javax.persistence.UniqueConstraint;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Collection;
+
+/**
+ * Place of a customer in the queue of a book that had no copy on the shelf. Holds of a book are
+ * served in id order: a returned copy is set aside for the first waiting hold, which is then
+ * ready until it is claimed by a loan or expires.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Entity
+@Table(indexes = {
+        @Index(name = "idx_hold_status", columnList = "status, id"),
+        @Index(name = "idx_hold_book_status", columnList = "id_book, status, id")},
+        uniqueConstraints = @UniqueConstraint(name = "uk_hold_active_customer", columnNames = {"id_book", "active_customer"}))
+public class Hold {
+
+    public enum Status {
+        WAITING, READY, FULFILLED, EXPIRED, CANCELLED;
+
+        public static final Collection<Status> ACTIVE = Arrays.asList(WAITING, READY);
+    }
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "hold_seq")
+    @SequenceGenerator(name = "hold_seq", sequenceName = "hold_seq", allocationSize = 50)
+    private Long id;
+
+    @JoinColumn(name = "id_book")
+    @ManyToOne
+    private Book book;
+
+    @Column(length = 100)
+    private String customer;
+
+    @Column(name = "customer_email")
+    private String customerEmail;
+
+    /**
+     * The customer while the hold is active, null once it ended, so the database accepts at most
+     * one active hold per customer and book.
+     */
+    @Column(name = "active_customer", length = 100)
+    private String activeCustomer;
+
+    @Enumerated(EnumType.STRING)
+    @Column(length = 20)
+    private Status status;
+
+    @Column
+    private LocalDateTime createdAt;
+
+    /**
+     * Until when a ready hold keeps its copy set aside.
+     */
+    @Column
+    private LocalDateTime expiresAt;
+}
@@ -0,0 +1,57 @@
+package com.cursoteste.libraryapi.api.model.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.persistence.CollectionTable;
+import javax.persistence.Column;
+import javax.persistence.ElementCollection;
+import javax.persistence.Entity;
+import javax.persistence.FetchType;
+import javax.persistence.Id;
+import javax.persistence.JoinColumn;
+import java.time.LocalDate;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Progress of a scheduled job run, saved after each processed chunk so a restarted
+ * instance resumes after {@code lastKey} instead of starting over.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Entity
+public class JobCheckpoint {
+
+    @Id
+    @Column(length = 100)
+    private String name;
+
+    @Column
+    private LocalDate runDate;
+
+    @Column
+    private String lastKey;
+
+    @Column
+    private Boolean completed;
+
+    /**
+     * Keys whose processing failed in this run, to be retried before it completes.
+     */
+    @ElementCollection(fetch = FetchType.EAGER)
+    @CollectionTable(name = "job_checkpoint_failed_key", joinColumns = @JoinColumn(name = "name"))
+    @Column(name = "failed_key")
+    @Builder.Default
+    private Set<String> failedKeys = new HashSet<>();
+
+    /**
+     * Whether the run sent its closing report, for jobs that send one.
+     */
+    @Column
+    private Boolean reported;
+}
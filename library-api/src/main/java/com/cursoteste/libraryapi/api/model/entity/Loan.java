@@ -7,8 +7,11 @@ import javax.persistence.Entity;
 import javax.persistence.GeneratedValue;
 import javax.persistence.GenerationType;
 import javax.persistence.Id;
+import javax.persistence.Index;
 import javax.persistence.JoinColumn;
 import javax.persistence.ManyToOne;
+import javax.persistence.SequenceGenerator;
+import javax.persistence.Table;
 
 import lombok.AllArgsConstructor;
 import lombok.Builder;
@@ -19,15 +22,24 @@ import lombok.NoArgsConstructor;
 @NoArgsConstructor
 @AllArgsConstructor
 @Entity
+@Table(indexes = {
+        @Index(name = "idx_loan_customer", columnList = "customer, id"),
+        @Index(name = "idx_loan_book", columnList = "id_book, id"),
+        @Index(name = "idx_loan_due_date", columnList = "due_date, id")
+})
 public class Loan {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "loan_seq")
+    @SequenceGenerator(name = "loan_seq", sequenceName = "loan_seq", allocationSize = 50)
     private Long id;
 
     @Column(length = 100)
     private String customer;
 
+    @Column(name = "customer_email")
+    private String customerEmail;
+
     @JoinColumn(name = "id_book")
     @ManyToOne
     private Book book;
@@ -36,7 +48,21 @@ public class Loan {
     @Column
     private LocalDate loanDate;
 
+    /**
+     * Day from which the loan is late if still open. Set when the loan is opened.
+     */
+    @Column(name = "due_date")
+    private LocalDate dueDate;
+
     @Column
     private Boolean  returned;
 
+    /**
+     * Id of the book while the loan holds one of its copies, and null once it is returned. Only
+     * set on insert and cleared by {@code LoanRepository.releaseCopyHold}, so a return processed
+     * twice gives the copy back once.
+     */
+    @Column(name = "active_book_id", updatable = false)
+    private Long activeBookId;
+
 }
@@ -2,14 +2,123 @@ package com.cursoteste.libraryapi.api.model.repository;
 
 import com.cursoteste.libraryapi.api.model.entity.Book;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import javax.persistence.QueryHint;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
+import static org.hibernate.annotations.QueryHints.NATIVE_SPACES;
+import static org.hibernate.jpa.QueryHints.HINT_CACHEABLE;
+import static org.hibernate.jpa.QueryHints.HINT_CACHE_REGION;
+import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
+import static org.hibernate.jpa.QueryHints.HINT_READONLY;
 
-public interface BookRepository  extends JpaRepository<Book,Long> {
+
+public interface BookRepository  extends JpaRepository<Book,Long>, BookRepositoryCustom {
+
+    String AVAILABILITY_SPACE = "book_availability";
 
     boolean existsByIsbn(String isbn);
 
+    @QueryHints({@QueryHint(name = HINT_CACHEABLE, value = "true"), @QueryHint(name = HINT_CACHE_REGION, value = Book.ISBN_QUERY_REGION)})
     Optional<Book> findByIsbn(String isbn);
+
+    @Query("select b.version from Book b where b.id = :id")
+    Optional<Long> findVersionById(@Param("id") Long id);
+
+    List<Book> findFirst1000ByIdGreaterThanOrderByIdAsc(Long id);
+
+    @QueryHints({@QueryHint(name = HINT_FETCH_SIZE, value = "500"), @QueryHint(name = HINT_READONLY, value = "true")})
+    @Query("select b from Book b order by b.id")
+    Stream<Book> streamAll();
+
+    @Query("select b.available from Book b where b.id = :id")
+    Optional<Integer> findAvailableById(@Param("id") Long id);
+
+    /**
+     * Copies on the shelf of the book, locking its row until the end of the transaction. Changes
+     * to the book's hold queue take this lock first, so placing a hold and handing a returned copy
+     * over happen one after the other.
+     */
+    @Query(value = "select available from book where id = :id for update", nativeQuery = true)
+    Optional<Integer> lockAvailableById(@Param("id") Long id);
+
+    @Query("select b.id as id, b.copies as copies, b.available as available from Book b where b.id = :id")
+    Optional<CopyCount> findCopyCountById(@Param("id") Long id);
+
+    @Query("select b.id as id, b.copies as copies, b.available as available from Book b where b.id in :ids")
+    List<CopyCount> findCopyCounts(@Param("ids") Collection<Long> ids);
+
+    /**
+     * Takes a copy off the shelf with a single conditional decrement, so concurrent loans of a
+     * book only hold its row lock for this statement. Native and synchronized on its own query
+     * space, so that taking a loan does not make Hibernate drop the whole Book region from the
+     * second-level cache as a JPQL bulk update would. Returns 0 when no copy is left.
+     */
+    @Modifying(flushAutomatically = true)
+    @QueryHints(@QueryHint(name = NATIVE_SPACES, value = AVAILABILITY_SPACE))
+    @Query(value = "update book set available = available - 1 where id = :bookId and available > 0", nativeQuery = true)
+    int reserveCopy(@Param("bookId") Long bookId);
+
+    @Modifying(flushAutomatically = true)
+    @QueryHints(@QueryHint(name = NATIVE_SPACES, value = AVAILABILITY_SPACE))
+    @Query(value = "update book set available = available + 1 where id = :bookId and available < copies", nativeQuery = true)
+    int releaseCopy(@Param("bookId") Long bookId);
+
+    /**
+     * Takes {@code count} copies of each of the books. Returns less than the number of books when
+     * one of them does not have that many left.
+     */
+    @Modifying(flushAutomatically = true)
+    @QueryHints(@QueryHint(name = NATIVE_SPACES, value = AVAILABILITY_SPACE))
+    @Query(value = "update book set available = available - :count where id in (:bookIds) and available >= :count", nativeQuery = true)
+    int reserveCopies(@Param("bookIds") Collection<Long> bookIds, @Param("count") int count);
+
+    @Modifying(flushAutomatically = true)
+    @QueryHints(@QueryHint(name = NATIVE_SPACES, value = AVAILABILITY_SPACE))
+    @Query(value = "update book set available = available + :count where id in (:bookIds) and available + :count <= copies", nativeQuery = true)
+    int releaseCopies(@Param("bookIds") Collection<Long> bookIds, @Param("count") int count);
+
+    /**
+     * Adds copies to the book, or withdraws them when {@code delta} is negative. Only copies on
+     * the shelf can be withdrawn, so this returns 0 instead of leaving fewer copies than open
+     * loans. Bumps the version, and is synchronized on the book table so the cached book is
+     * evicted.
+     */
+    @Modifying(flushAutomatically = true)
+    @QueryHints(@QueryHint(name = NATIVE_SPACES, value = "book"))
+    @Query(value = "update book set copies = copies + :delta, available = available + :delta, version = version + 1 "
+            + "where id = :id and available + :delta >= 0", nativeQuery = true)
+    int addCopies(@Param("id") Long id, @Param("delta") int delta);
+
+    List<Book> findByIsbnIn(Collection<String> isbns);
+
+    /**
+     * Gives books created before the columns existed a single copy, which is available unless one
+     * of their open loans holds it.
+     */
+    @Modifying
+    @QueryHints(@QueryHint(name = NATIVE_SPACES, value = "book"))
+    @Query(value = "update book b set copies = coalesce(b.copies, 1), available = greatest(0, coalesce(b.copies, 1) "
+            + "- (select count(*) from loan l where l.active_book_id = b.id)) where b.available is null", nativeQuery = true)
+    int backfillAvailability();
+
+    @Query("select b.isbn from Book b where b.isbn in :isbns")
+    List<String> findExistingIsbns(@Param("isbns") Collection<String> isbns);
+
+    interface CopyCount {
+
+        Long getId();
+
+        Integer getCopies();
+
+        Integer getAvailable();
+    }
 }
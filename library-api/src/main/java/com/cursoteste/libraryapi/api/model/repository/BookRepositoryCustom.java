@@ -0,0 +1,15 @@
+package com.cursoteste.libraryapi.api.model.repository;
+
+import com.cursoteste.libraryapi.api.model.entity.Book;
+import org.springframework.data.domain.Example;
+
+import java.util.List;
+
+public interface BookRepositoryCustom {
+
+    /**
+     * Seeks past {@code afterId} instead of using an offset, returning at most {@code limit}
+     * books matching the example ordered by id. No count query is issued.
+     */
+    List<Book> findByExampleAfter(Example<Book> example, Long afterId, int limit);
+}
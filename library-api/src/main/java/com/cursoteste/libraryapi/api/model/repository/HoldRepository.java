@@ -0,0 +1,85 @@
+package com.cursoteste.libraryapi.api.model.repository;
+
+import com.cursoteste.libraryapi.api.model.entity.Hold;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+public interface HoldRepository extends JpaRepository<Hold, Long> {
+
+    boolean existsByBookIdAndCustomerAndStatusIn(Long bookId, String customer, Collection<Hold.Status> statuses);
+
+    /**
+     * Holds in one of the statuses after {@code after}, ordered by id, to load the queues page by
+     * page without fetching the holds and their books.
+     */
+    @Query("select h.id as id, h.book.id as bookId, h.customer as customer, h.status as status, "
+            + "h.expiresAt as expiresAt from Hold h where h.id > :after and h.status in :statuses order by h.id")
+    List<HoldEntry> findByStatus(@Param("after") Long after, @Param("statuses") Collection<Hold.Status> statuses,
+                                 Pageable pageable);
+
+    /**
+     * Holds of the book in the status after {@code after}, in queue order.
+     */
+    @Query("select h.id as id, h.book.id as bookId, h.customer as customer, h.status as status, "
+            + "h.expiresAt as expiresAt from Hold h where h.book.id = :bookId and h.status = :status "
+            + "and h.id > :after order by h.id")
+    List<HoldEntry> findByBookAndStatus(@Param("bookId") Long bookId, @Param("status") Hold.Status status,
+                                        @Param("after") Long after, Pageable pageable);
+
+    @Query("select h.id as id, h.book.id as bookId, h.customer as customer, h.status as status, "
+            + "h.expiresAt as expiresAt from Hold h where h.book.id in :bookIds and h.status = :status")
+    List<HoldEntry> findByBooksAndStatus(@Param("bookIds") Collection<Long> bookIds, @Param("status") Hold.Status status);
+
+    /**
+     * Moves the hold from one active status to another, setting its expiry. Returns 0 when it was
+     * no longer in {@code from}, so only one of concurrent changes takes effect.
+     */
+    @Modifying(flushAutomatically = true)
+    @Query("update Hold h set h.status = :to, h.expiresAt = :expiresAt where h.id = :id and h.status = :from")
+    int transition(@Param("id") Long id, @Param("from") Hold.Status from, @Param("to") Hold.Status to,
+                   @Param("expiresAt") LocalDateTime expiresAt);
+
+    /**
+     * Ends the hold with a final status, freeing the customer to hold the book again. Returns 0
+     * when it was no longer in {@code from}.
+     */
+    @Modifying(flushAutomatically = true)
+    @Query("update Hold h set h.status = :to, h.activeCustomer = null where h.id = :id and h.status = :from")
+    int close(@Param("id") Long id, @Param("from") Hold.Status from, @Param("to") Hold.Status to);
+
+    /**
+     * Fulfils the customer's ready hold for the book. Returns 0 when there is none.
+     */
+    @Modifying(flushAutomatically = true)
+    @Query("update Hold h set h.status = :to, h.activeCustomer = null "
+            + "where h.book.id = :bookId and h.activeCustomer = :customer and h.status = :from")
+    int closeFor(@Param("bookId") Long bookId, @Param("customer") String customer,
+                 @Param("from") Hold.Status from, @Param("to") Hold.Status to);
+
+    /**
+     * Marks the active holds placed before the column existed.
+     */
+    @Modifying
+    @Query("update Hold h set h.activeCustomer = h.customer where h.activeCustomer is null and h.status in :statuses")
+    int backfillActiveCustomers(@Param("statuses") Collection<Hold.Status> statuses);
+
+    interface HoldEntry {
+
+        Long getId();
+
+        Long getBookId();
+
+        String getCustomer();
+
+        Hold.Status getStatus();
+
+        LocalDateTime getExpiresAt();
+    }
+}
@@ -0,0 +1,7 @@
+package com.cursoteste.libraryapi.api.model.repository;
+
+import com.cursoteste.libraryapi.api.model.entity.JobCheckpoint;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+public interface JobCheckpointRepository extends JpaRepository<JobCheckpoint, String> {
+}
@@ -1,6 +1,7 @@
 package com.cursoteste.libraryapi.api.model.repository;
 
 import java.time.LocalDate;
+import java.util.Collection;
 import java.util.List;
 
 import com.cursoteste.libraryapi.api.model.entity.Book;
@@ -8,10 +9,19 @@ import com.cursoteste.libraryapi.api.model.entity.Loan;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import javax.persistence.QueryHint;
+import java.util.stream.Stream;
+
+import static org.hibernate.annotations.QueryHints.NATIVE_SPACES;
+import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
+import static org.hibernate.jpa.QueryHints.HINT_READONLY;
+
 @Repository
 public interface LoanRepository extends JpaRepository<Loan, Long> {
 
@@ -20,12 +30,136 @@ public interface LoanRepository extends JpaRepository<Loan, Long> {
             + "from Loan l where l.book = :book and (l.returned is null or l.returned is false)")
     boolean existsByBookandNotReturned(@Param("book") Book book);
 
-    @Query("select l from Loan as l join l.book as b where b.isbn =:isbn or l.customer =:customer")
-    Page<Loan> findByBookIsbnOrCustomer(@Param("isbn") String isbn, @Param("customer") String customer,
-                                        Pageable pageRequest);
+    @Query(value = "select l from Loan l join fetch l.book",
+            countQuery = "select count(l) from Loan l")
+    Page<Loan> findAllWithBook(Pageable pageable);
+
+    @Query(value = "select l from Loan l join fetch l.book b where b.isbn = :isbn",
+            countQuery = "select count(l) from Loan l join l.book b where b.isbn = :isbn")
+    Page<Loan> findByBookIsbn(@Param("isbn") String isbn, Pageable pageable);
+
+    @Query(value = "select l from Loan l join fetch l.book where l.customer = :customer",
+            countQuery = "select count(l) from Loan l where l.customer = :customer")
+    Page<Loan> findByCustomer(@Param("customer") String customer, Pageable pageable);
+
+    /**
+     * Ids of the loans of a book isbn or of a customer, ordered by id. Each branch of the union is
+     * answered by its own index, where a single {@code or} condition would scan the table. The
+     * numeric type of the ids depends on the database driver.
+     */
+    @Query(value = "select id from (select l.id from loan l join book b on b.id = l.id_book where b.isbn = :isbn "
+            + "union select l.id from loan l where l.customer = :customer) u order by id",
+            countQuery = "select count(*) from (select l.id from loan l join book b on b.id = l.id_book where b.isbn = :isbn "
+                    + "union select l.id from loan l where l.customer = :customer) u",
+            nativeQuery = true)
+    Page<Number> findIdsByBookIsbnOrCustomer(@Param("isbn") String isbn, @Param("customer") String customer,
+                                             Pageable pageable);
+
+    @Query("select l from Loan l join fetch l.book where l.id in :ids order by l.id")
+    List<Loan> findAllWithBookByIdIn(@Param("ids") Collection<Long> ids);
 
     Page<Loan> findByBook(Book book, Pageable pageable);
 
-    @Query("select l from Loan l where l.loanDate <= :threeDaysAgo and (l.returned is null or l.returned is false)")
-    List<Loan> findByLoanDateLessThanAndNotReturned(@Param("threeDaysAgo") LocalDate threeDaysAgo);
+    /**
+     * Ids and due dates of the open loans after {@code after}, ordered by id, to load the overdue
+     * tracker page by page without fetching the loans and their books.
+     */
+    @Query("select l.id as id, l.dueDate as dueDate from Loan l where l.id > :after "
+            + "and (l.returned is null or l.returned = false) order by l.id")
+    List<LoanDueDate> findOpenDueDates(@Param("after") Long after, Pageable pageable);
+
+    /**
+     * Ids and due dates of the open loans due after {@code after} and up to {@code until},
+     * answered by the due date index.
+     */
+    @Query("select l.id as id, l.dueDate as dueDate from Loan l where l.dueDate > :after and l.dueDate <= :until "
+            + "and (l.returned is null or l.returned = false)")
+    List<LoanDueDate> findOpenDueDatesBetween(@Param("after") LocalDate after, @Param("until") LocalDate until);
+
+    /**
+     * Customers and their emails for those of the given loans that are still open.
+     */
+    @Query("select l.id as id, l.customer as customer, l.customerEmail as customerEmail from Loan l where l.id in :ids "
+            + "and (l.returned is null or l.returned = false)")
+    List<LoanEmail> findOpenCustomerEmails(@Param("ids") Collection<Long> ids);
+
+    /**
+     * Loan dates of the loans opened before the due date column existed.
+     */
+    @Query("select distinct l.loanDate from Loan l where l.dueDate is null and l.loanDate is not null")
+    List<LocalDate> findLoanDatesWithoutDueDate();
+
+    /**
+     * Sets the due date of the loans of that date opened before the column existed.
+     */
+    @Modifying
+    @Query("update Loan l set l.dueDate = :dueDate where l.dueDate is null and l.loanDate = :loanDate")
+    int backfillDueDate(@Param("loanDate") LocalDate loanDate, @Param("dueDate") LocalDate dueDate);
+
+    /**
+     * Marks the loan as holding a copy of the book, unless it already holds one. Native so that it
+     * can write the column entity merges leave alone.
+     */
+    @Modifying(flushAutomatically = true)
+    @QueryHints(@QueryHint(name = NATIVE_SPACES, value = "loan"))
+    @Query(value = "update loan set active_book_id = :bookId where id = :id and active_book_id is null", nativeQuery = true)
+    int takeCopyHold(@Param("id") Long id, @Param("bookId") Long bookId);
+
+    /**
+     * Clears the copy held by the loan. Returns 0 when it was already cleared, so the caller only
+     * gives the copy back once.
+     */
+    @Modifying(flushAutomatically = true)
+    @QueryHints(@QueryHint(name = NATIVE_SPACES, value = "loan"))
+    @Query(value = "update loan set active_book_id = null where id = :id and active_book_id is not null", nativeQuery = true)
+    int releaseCopyHold(@Param("id") Long id);
+
+    @Modifying(flushAutomatically = true)
+    @QueryHints(@QueryHint(name = NATIVE_SPACES, value = "loan"))
+    @Query(value = "update loan set active_book_id = null where id in (:ids) and active_book_id is not null", nativeQuery = true)
+    int releaseCopyHolds(@Param("ids") Collection<Long> ids);
+
+    /**
+     * Points open loans created before the column existed to the copy they hold.
+     */
+    @Modifying
+    @QueryHints(@QueryHint(name = NATIVE_SPACES, value = "loan"))
+    @Query(value = "update loan set active_book_id = id_book where active_book_id is null "
+            + "and (returned is null or returned = false)", nativeQuery = true)
+    int backfillCopyHolds();
+
+    @QueryHints({@QueryHint(name = HINT_FETCH_SIZE, value = "500"), @QueryHint(name = HINT_READONLY, value = "true")})
+    @Query("select l from Loan l join fetch l.book order by l.id")
+    Stream<Loan> streamAll();
+
+    @Query("select count(l) from Loan l where l.returned is null or l.returned = false")
+    long countOpen();
+
+    @Query("select l.book.id as bookId, count(l) as loans from Loan l group by l.book.id")
+    List<BookLoanCount> countByBook();
+
+    long countByCustomer(String customer);
+
+    interface LoanDueDate {
+
+        Long getId();
+
+        LocalDate getDueDate();
+    }
+
+    interface LoanEmail {
+
+        Long getId();
+
+        String getCustomer();
+
+        String getCustomerEmail();
+    }
+
+    interface BookLoanCount {
+
+        Long getBookId();
+
+        Long getLoans();
+    }
 }
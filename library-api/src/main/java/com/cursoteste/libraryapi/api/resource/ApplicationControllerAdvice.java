@@ -2,6 +2,9 @@ package com.cursoteste.libraryapi.api.resource;
 
 import com.cursoteste.libraryapi.api.exception.ApiErrors;
 import com.cursoteste.libraryapi.api.exception.BusinessException;
+import com.cursoteste.libraryapi.api.exception.QueryLimitExceededException;
+import com.cursoteste.libraryapi.api.exception.RequestInProgressException;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.BindingResult;
@@ -28,6 +31,24 @@ public class ApplicationControllerAdvice {
         return new ApiErrors(ex);
     }
 
+    @ExceptionHandler(QueryLimitExceededException.class)
+    @ResponseStatus(HttpStatus.SERVICE_UNAVAILABLE)
+    public ApiErrors handleQueryLimitExceededException(QueryLimitExceededException ex){
+        return new ApiErrors(ex);
+    }
+
+    @ExceptionHandler(RequestInProgressException.class)
+    @ResponseStatus(HttpStatus.CONFLICT)
+    public ApiErrors handleRequestInProgressException(RequestInProgressException ex){
+        return new ApiErrors(ex.getMessage());
+    }
+
+    @ExceptionHandler(OptimisticLockingFailureException.class)
+    @ResponseStatus(HttpStatus.PRECONDITION_FAILED)
+    public ApiErrors handleOptimisticLockingFailureException(OptimisticLockingFailureException ex){
+        return new ApiErrors("Resource was modified by another request");
+    }
+
     @ExceptionHandler(ResponseStatusException.class)
     public ResponseEntity handleResponseStatusException(ResponseStatusException ex){
         return  new ResponseEntity(new ApiErrors(ex),ex.getStatus());
@@ -1,25 +1,53 @@
 package com.cursoteste.libraryapi.api.resource;
 
+import com.cursoteste.libraryapi.api.dto.BatchItemResultDTO;
+import com.cursoteste.libraryapi.api.dto.BookAvailabilityDTO;
 import com.cursoteste.libraryapi.api.dto.BookDTO;
+import com.cursoteste.libraryapi.api.dto.BookPageDTO;
+import com.cursoteste.libraryapi.api.dto.CursorPageDTO;
+import com.cursoteste.libraryapi.api.dto.LoanDto;
 import com.cursoteste.libraryapi.api.exception.ApiErrors;
 import com.cursoteste.libraryapi.api.exception.BusinessException;
+import com.cursoteste.libraryapi.api.mapper.BookMapper;
+import com.cursoteste.libraryapi.api.mapper.LoanMapper;
 import com.cursoteste.libraryapi.api.model.entity.Book;
+import com.cursoteste.libraryapi.api.model.entity.Loan;
+import com.cursoteste.libraryapi.api.model.repository.BookRepository.CopyCount;
 import com.cursoteste.libraryapi.api.service.BookService;
+import com.cursoteste.libraryapi.api.service.ExportFormat;
+import com.cursoteste.libraryapi.api.service.ExportService;
+import com.cursoteste.libraryapi.api.service.LoanService;
+import com.cursoteste.libraryapi.api.service.support.IdempotencyStore;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
-import org.modelmapper.ModelMapper;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.util.DigestUtils;
 import org.springframework.validation.BindingResult;
 import org.springframework.web.bind.MethodArgumentNotValidException;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.server.ResponseStatusException;
 
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.validation.ConstraintViolation;
 import javax.validation.Valid;
+import javax.validation.Validator;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
 import java.util.List;
+import java.util.Optional;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 @RestController
@@ -27,64 +55,288 @@ import java.util.stream.Collectors;
 @RequiredArgsConstructor
 public class BookController {
 
+    static final String NDJSON_VALUE = "application/x-ndjson";
+    static final int BATCH_CHUNK_SIZE = 500;
+    static final int MAX_CURSOR_PAGE_SIZE = 1000;
+    static final String IDEMPOTENCY_KEY = "Idempotency-Key";
 
-    private BookService service;
-    private ModelMapper modelMapper;
+    private final BookService service;
+    private final BookMapper bookMapper;
+    private final ObjectMapper objectMapper;
+    private final Validator validator;
+    private final ExportService exportService;
+    private final LoanService loanService;
+    private final LoanMapper loanMapper;
+    private final IdempotencyStore idempotency;
 
+    /**
+     * A retry sent with the same {@code Idempotency-Key} gets the book created by the first
+     * attempt instead of a duplicated isbn error.
+     */
+    @PostMapping
+    @ResponseStatus(HttpStatus.CREATED)
+    public BookDTO create(@RequestBody  @Valid  BookDTO dto,
+                          @RequestHeader(value = IDEMPOTENCY_KEY, required = false) String idempotencyKey){
 
-    public BookController(BookService service,ModelMapper modelMapper) {
-        this.service = service;
-        this.modelMapper = modelMapper;
+        return idempotency.execute("books.create", idempotencyKey, dto, () -> {
+            Book entity = bookMapper.toEntity(dto);
+            entity = service.save(entity);
+            return bookMapper.toDto(entity);
+        });
 
     }
 
-    @PostMapping
-    @ResponseStatus(HttpStatus.CREATED)
-    public BookDTO create(@RequestBody  @Valid  BookDTO dto){
+    /**
+     * Imports a JSON array or NDJSON stream of books. The body is read incrementally and saved
+     * in chunks, so one invalid or duplicated row does not abort the rest of the import.
+     */
+    @PostMapping(value = "batch", consumes = {MediaType.APPLICATION_JSON_VALUE, NDJSON_VALUE})
+    public List<BatchItemResultDTO> createBatch(HttpServletRequest request) throws IOException {
+        List<BatchItemResultDTO> results = new ArrayList<>();
+        List<Book> chunk = new ArrayList<>(BATCH_CHUNK_SIZE);
+        List<Integer> positions = new ArrayList<>(BATCH_CHUNK_SIZE);
 
-        Book entity = modelMapper.map(dto, Book.class);
-         entity = service.save(entity);
-        return  modelMapper.map(entity, BookDTO.class);
+        try (MappingIterator<BookDTO> rows = objectMapper.readerFor(BookDTO.class).readValues(request.getInputStream())) {
+            int index = 0;
+            while (true) {
+                BookDTO dto;
+                try {
+                    if (!rows.hasNextValue()) {
+                        break;
+                    }
+                    dto = rows.nextValue();
+                } catch (IOException e) {
+                    results.add(indexed(index, BatchItemResultDTO.failure("Invalid book at index " + index)));
+                    break;
+                }
 
+                Set<ConstraintViolation<BookDTO>> violations = validator.validate(dto);
+                if (violations.isEmpty()) {
+                    chunk.add(bookMapper.toEntity(dto));
+                    positions.add(index);
+                    if (chunk.size() == BATCH_CHUNK_SIZE) {
+                        saveChunk(chunk, positions, results);
+                    }
+                } else {
+                    String error = violations.stream()
+                            .map(v -> v.getPropertyPath() + " " + v.getMessage())
+                            .sorted()
+                            .collect(Collectors.joining(", "));
+                    results.add(indexed(index, BatchItemResultDTO.failure(error)));
+                }
+                index++;
+            }
+        }
+        saveChunk(chunk, positions, results);
+        results.sort((a, b) -> Integer.compare(a.getIndex(), b.getIndex()));
+        return results;
     }
 
+    private void saveChunk(List<Book> chunk, List<Integer> positions, List<BatchItemResultDTO> results) {
+        if (chunk.isEmpty()) {
+            return;
+        }
+        List<BatchItemResultDTO> saved = service.saveAll(chunk);
+        for (int i = 0; i < saved.size(); i++) {
+            results.add(indexed(positions.get(i), saved.get(i)));
+        }
+        chunk.clear();
+        positions.clear();
+    }
+
+    private static BatchItemResultDTO indexed(int index, BatchItemResultDTO result) {
+        result.setIndex(index);
+        return result;
+    }
+
+    /**
+     * The book's version is its ETag. A request whose {@code If-None-Match} holds the current
+     * version is answered with 304 from the cached version, without loading the book.
+     */
     @GetMapping("{id}")
-    public  BookDTO get(@PathVariable Long id){
-        return  service.getById(id)
-                .map(book -> modelMapper.map(book,BookDTO.class) )
+    public  ResponseEntity<BookDTO> get(@PathVariable Long id,
+                                        @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch){
+        if (ifNoneMatch != null) {
+            Optional<Long> version = service.getVersion(id);
+            if (version.isPresent() && etagMatches(ifNoneMatch, etag(version.get()), true)) {
+                return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag(version.get())).build();
+            }
+        }
+        Book book = service.getById(id)
                 .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND));
+        return withEtag(ResponseEntity.ok(), book).body(bookMapper.toDto(book));
     }
 
+    /**
+     * With {@code If-Match}, the book is only deleted if it is still at that version.
+     */
     @DeleteMapping("{id}")
     @ResponseStatus(HttpStatus.NO_CONTENT)
-    public  void delete(@PathVariable Long id){
+    public  void delete(@PathVariable Long id,
+                        @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch){
         Book  book = service.getById(id)
                 .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND));
+        checkIfMatch(ifMatch, book);
         service.delete(book);
     }
 
+    /**
+     * With {@code If-Match}, the book is only updated if it is still at that version, so a client
+     * cannot overwrite a change it has not seen.
+     */
     @PutMapping("{id}")
-    public BookDTO update(@PathVariable Long id,BookDTO dto){
-        return service.getById(id).map( book -> {
+    public ResponseEntity<BookDTO> update(@PathVariable Long id, BookDTO dto,
+                                          @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch){
+        Book book = service.getById(id)
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND));
+        checkIfMatch(ifMatch, book);
+        book.setAuthor(dto.getAuthor());
+        book.setTitle(dto.getTitle());
+        book = service.update(book);
+        return withEtag(ResponseEntity.ok(), book).body(bookMapper.toDto(book));
+    }
+
+    /**
+     * The ETag of a page is a digest of the ids and versions of its books, so an unchanged page
+     * is answered with 304 before it is serialized. Otherwise the books are written straight to
+     * the response by {@link BookPageDTO.Serializer}.
+     */
+    @GetMapping
+    public ResponseEntity<BookPageDTO> find(BookDTO dto, Pageable pageRequest,
+                                              @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch){
+        Book filter = bookMapper.toEntity(dto);
+        Page<Book> result = service.find(filter, pageRequest);
+        String etag = pageEtag(result);
+        if (ifNoneMatch != null && etagMatches(ifNoneMatch, etag, true)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).build();
+        }
+        return ResponseEntity.ok().eTag(etag).body(new BookPageDTO(result));
+    }
 
-            book.setAuthor(dto.getAuthor());
-            book.setTitle(dto.getTitle());
-            book = service.update(book);
-            return  modelMapper.map(book, BookDTO.class);
 
-        })  .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND));
+    /**
+     * Cursor mode of the search: pass an empty {@code cursor} for the first page and the returned
+     * {@code nextCursor} afterwards. Seeks on id instead of using an offset, and only counts the
+     * matches when {@code count=true}.
+     */
+    @GetMapping(params = "cursor")
+    public CursorPageDTO<BookDTO> findByCursor(BookDTO dto,
+                                               @RequestParam String cursor,
+                                               @RequestParam(defaultValue = "20") int size,
+                                               @RequestParam(defaultValue = "false") boolean count){
+        if (size < 1 || size > MAX_CURSOR_PAGE_SIZE){
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Size must be between 1 and " + MAX_CURSOR_PAGE_SIZE);
+        }
+        Book filter = bookMapper.toEntity(dto);
+        Slice<Book> result = service.findAfter(filter, decodeCursor(cursor), size);
+        List<Book> books = result.getContent();
 
+        return CursorPageDTO.<BookDTO>builder()
+                .content(books.stream().map(bookMapper::toDto).collect(Collectors.toList()))
+                .size(size)
+                .nextCursor(result.hasNext() ? encodeCursor(books.get(books.size() - 1).getId()) : null)
+                .totalElements(count ? service.count(filter) : null)
+                .build();
     }
 
-    @GetMapping
-    public Page<BookDTO> find(BookDTO dto, Pageable pageRequest){
-        Book filter = modelMapper.map(dto,Book.class);
-        Page<Book> result = service.find(filter, pageRequest);
-        List<BookDTO> list = result.getContent()
+    @GetMapping("{id}/loans")
+    public Page<LoanDto> loansByBook(@PathVariable Long id, Pageable pageable){
+        Book book = service.getById(id).orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND));
+        Page<Loan> result = loanService.getLoansByBook(book, pageable);
+        List<LoanDto> list = result.getContent()
                 .stream()
-                .map(entity ->  modelMapper.map(entity,BookDTO.class) )
+                .map(loanMapper::toDto)
                 .collect(Collectors.toList());
-        return  new PageImpl<BookDTO>(list,pageRequest,result.getTotalElements());
+        return new PageImpl<LoanDto>(list, pageable, result.getTotalElements());
+    }
+
+    /**
+     * Copies of the book and how many of them are on the shelf, answered from memory.
+     */
+    @GetMapping("{id}/availability")
+    public BookAvailabilityDTO availability(@PathVariable Long id){
+        Book book = service.getById(id).orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND));
+        Integer available = service.getAvailable(id).orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND));
+        return BookAvailabilityDTO.builder().id(id).copies(book.getCopies()).available(available).build();
+    }
+
+    /**
+     * Adds {@code delta} copies of the book, or withdraws copies on the shelf when negative.
+     */
+    @PatchMapping("{id}/copies")
+    public BookAvailabilityDTO addCopies(@PathVariable Long id, @RequestParam int delta){
+        Book book = service.getById(id).orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND));
+        CopyCount count = service.addCopies(book, delta);
+        return BookAvailabilityDTO.builder().id(id).copies(count.getCopies()).available(count.getAvailable()).build();
+    }
+
+    /**
+     * Streams the whole catalog as NDJSON (default) or CSV, writing rows as they are read.
+     */
+    @GetMapping("export")
+    public void export(@RequestParam(defaultValue = "ndjson") String format, HttpServletResponse response) throws IOException {
+        ExportFormat exportFormat = ExportFormat.of(format)
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.BAD_REQUEST, "Unsupported export format"));
+        response.setContentType(exportFormat.getContentType());
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"books." + exportFormat.getExtension() + "\"");
+        exportService.exportBooks(exportFormat, response.getOutputStream());
+    }
+
+    static String etag(Long version){
+        return "\"" + version + "\"";
+    }
+
+    /**
+     * Whether {@code header} lists {@code etag} or is {@code *}. Weak tags only match when
+     * {@code weak} comparison is allowed, as for {@code If-None-Match}.
+     */
+    static boolean etagMatches(String header, String etag, boolean weak){
+        for (String candidate : header.split(",")) {
+            candidate = candidate.trim();
+            if (weak && candidate.startsWith("W/")) {
+                candidate = candidate.substring(2);
+            }
+            if (candidate.equals("*") || candidate.equals(etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static void checkIfMatch(String ifMatch, Book book){
+        if (ifMatch != null && (book.getVersion() == null || !etagMatches(ifMatch, etag(book.getVersion()), false))) {
+            throw new ResponseStatusException(HttpStatus.PRECONDITION_FAILED, "Resource was modified by another request");
+        }
+    }
+
+    private static ResponseEntity.BodyBuilder withEtag(ResponseEntity.BodyBuilder response, Book book){
+        return book.getVersion() == null ? response : response.eTag(etag(book.getVersion()));
+    }
+
+    private static String pageEtag(Page<Book> page){
+        StringBuilder state = new StringBuilder()
+                .append(page.getTotalElements()).append('|').append(page.getPageable());
+        for (Book book : page.getContent()) {
+            state.append('|').append(book.getId()).append(':').append(book.getVersion());
+        }
+        return "\"" + DigestUtils.md5DigestAsHex(state.toString().getBytes(StandardCharsets.UTF_8)) + "\"";
+    }
+
+    static String encodeCursor(Long id){
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString(id.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    static Long decodeCursor(String cursor){
+        if (cursor == null || cursor.isEmpty()){
+            return null;
+        }
+        try {
+            return Long.valueOf(new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8));
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid cursor");
+        }
     }
 
 
@@ -0,0 +1,63 @@
+package com.cursoteste.libraryapi.api.resource;
+
+import com.cursoteste.libraryapi.api.dto.HoldDTO;
+import com.cursoteste.libraryapi.api.model.entity.Book;
+import com.cursoteste.libraryapi.api.model.entity.Hold;
+import com.cursoteste.libraryapi.api.service.BookService;
+import com.cursoteste.libraryapi.api.service.HoldService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+
+import javax.validation.Valid;
+
+@RestController
+@RequestMapping("/api/books/{bookId}/holds")
+@RequiredArgsConstructor
+public class HoldController {
+
+    private final HoldService service;
+    private final BookService bookService;
+
+    /**
+     * Joins the queue of a book with no copy on the shelf. When a copy is returned it is set
+     * aside for the first hold in the queue, and the customer's next loan of the book takes it.
+     */
+    @PostMapping
+    @ResponseStatus(HttpStatus.CREATED)
+    public HoldDTO create(@PathVariable Long bookId, @RequestBody @Valid HoldDTO dto){
+        Book book = bookService.getById(bookId)
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND));
+        Hold hold = Hold.builder().book(book).customer(dto.getCustomer()).customerEmail(dto.getEmail()).build();
+        return toDto(service.place(hold));
+    }
+
+    @GetMapping("{id}")
+    public HoldDTO get(@PathVariable Long bookId, @PathVariable Long id){
+        return toDto(find(bookId, id));
+    }
+
+    @DeleteMapping("{id}")
+    @ResponseStatus(HttpStatus.NO_CONTENT)
+    public void cancel(@PathVariable Long bookId, @PathVariable Long id){
+        service.cancel(find(bookId, id));
+    }
+
+    private Hold find(Long bookId, Long id){
+        return service.getById(id)
+                .filter(hold -> hold.getBook() != null && bookId.equals(hold.getBook().getId()))
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND));
+    }
+
+    private static HoldDTO toDto(Hold hold){
+        return HoldDTO.builder()
+                .id(hold.getId())
+                .bookId(hold.getBook().getId())
+                .customer(hold.getCustomer())
+                .email(hold.getCustomerEmail())
+                .status(hold.getStatus())
+                .expiresAt(hold.getExpiresAt())
+                .build();
+    }
+}
@@ -1,18 +1,40 @@
 package com.cursoteste.libraryapi.api.resource;
 
 
+import com.cursoteste.libraryapi.api.audit.LoanAuditEvent;
+import com.cursoteste.libraryapi.api.audit.LoanAuditLog;
+import com.cursoteste.libraryapi.api.dto.BatchItemResultDTO;
 import com.cursoteste.libraryapi.api.dto.LoanDto;
+import com.cursoteste.libraryapi.api.dto.LoanFilterDTO;
 import com.cursoteste.libraryapi.api.dto.ReturnedLoanDTO;
+import com.cursoteste.libraryapi.api.mapper.LoanMapper;
 import com.cursoteste.libraryapi.api.model.entity.Book;
 import com.cursoteste.libraryapi.api.model.entity.Loan;
 import com.cursoteste.libraryapi.api.service.BookService;
+import com.cursoteste.libraryapi.api.service.ExportFormat;
+import com.cursoteste.libraryapi.api.service.ExportService;
 import com.cursoteste.libraryapi.api.service.LoanService;
+import com.cursoteste.libraryapi.api.service.support.IdempotencyStore;
 import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.server.ResponseStatusException;
 
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 @RestController
 @RequestMapping("api/loans")
@@ -21,22 +43,86 @@ public class LoanController {
 
     private final LoanService service;
     private final BookService bookService;
+    private final LoanMapper loanMapper;
+    private final ExportService exportService;
+    private final LoanAuditLog auditLog;
+    private final IdempotencyStore idempotency;
 
+    /**
+     * A retry sent with the same {@code Idempotency-Key} gets the id of the loan opened by the
+     * first attempt instead of opening another one.
+     */
     @PostMapping
     @ResponseStatus(HttpStatus.CREATED)
-    public Long create(@RequestBody LoanDto dto){
+    public Long create(@RequestBody LoanDto dto,
+                       @RequestHeader(value = BookController.IDEMPOTENCY_KEY, required = false) String idempotencyKey){
 
-        Book book = bookService.getBookByIsbn(dto.getIsbn())
-                .orElseThrow(() -> new ResponseStatusException( HttpStatus.BAD_REQUEST,"Book not found for passed isbn"));
+        return idempotency.execute("loans.create", idempotencyKey, dto, () -> {
+            Book book = bookService.getBookByIsbn(dto.getIsbn())
+                    .orElseThrow(() -> new ResponseStatusException( HttpStatus.BAD_REQUEST,"Book not found for passed isbn"));
 
-        Loan entity = Loan.builder()
-                .book(book)
-                .customer(dto.getCustomer())
-                .loanDate(LocalDate.now())
-                .build();
-        entity = service.save(entity);
+            Loan entity = loanMapper.toEntity(dto, book);
+            entity.setLoanDate(LocalDate.now());
+            entity = service.save(entity);
+            auditLog.append(LoanAuditEvent.created(entity));
 
-        return entity.getId();
+            return entity.getId();
+        });
+    }
+
+    /**
+     * Opens many loans at once. All books are looked up with one query and results are returned
+     * per item, in the order of the request.
+     */
+    @PostMapping("batch")
+    public List<BatchItemResultDTO> createBatch(@RequestBody List<LoanDto> dtos){
+        Set<String> isbns = dtos.stream().map(LoanDto::getIsbn).filter(Objects::nonNull).collect(Collectors.toSet());
+        Map<String, Book> books = bookService.getBooksByIsbn(isbns).stream()
+                .collect(Collectors.toMap(Book::getIsbn, Function.identity(), (first, second) -> first));
+
+        List<BatchItemResultDTO> results = new ArrayList<>(dtos.size());
+        List<Loan> loans = new ArrayList<>(dtos.size());
+        List<Integer> positions = new ArrayList<>(dtos.size());
+        LocalDate today = LocalDate.now();
+        for (int i = 0; i < dtos.size(); i++) {
+            Book book = books.get(dtos.get(i).getIsbn());
+            if (book == null) {
+                results.add(indexed(i, BatchItemResultDTO.failure("Book not found for passed isbn")));
+                continue;
+            }
+            Loan loan = loanMapper.toEntity(dtos.get(i), book);
+            loan.setLoanDate(today);
+            loans.add(loan);
+            positions.add(i);
+        }
+
+        List<BatchItemResultDTO> saved = loans.isEmpty() ? new ArrayList<>() : service.saveAll(loans);
+        for (int i = 0; i < saved.size(); i++) {
+            results.add(indexed(positions.get(i), saved.get(i)));
+            if (saved.get(i).getStatus() == BatchItemResultDTO.Status.SUCCESS) {
+                LoanAuditEvent event = LoanAuditEvent.created(loans.get(i));
+                event.setLoanId(saved.get(i).getId());
+                auditLog.append(event);
+            }
+        }
+        results.sort((a, b) -> Integer.compare(a.getIndex(), b.getIndex()));
+        return results;
+    }
+
+    /**
+     * Returns many loans at once, given their ids. Results are returned per item, in the order
+     * of the request; only the loans this request returned are audited.
+     */
+    @PatchMapping("returns")
+    public List<BatchItemResultDTO> returnBooks(@RequestBody List<Long> ids){
+        List<BatchItemResultDTO> results = service.returnAll(ids);
+        for (int i = 0; i < results.size(); i++) {
+            indexed(i, results.get(i));
+            if (results.get(i).getStatus() == BatchItemResultDTO.Status.SUCCESS) {
+                auditLog.append(LoanAuditEvent.returned(results.get(i).getId(), true));
+            }
+        }
+        return results;
     }
 
     @PatchMapping("{id}")
@@ -45,11 +131,47 @@ public class LoanController {
             @RequestBody ReturnedLoanDTO dto){
         Loan loan= service.getById(id).orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND));
         loan.setReturned(dto.getReturned());
-        service.update(loan);
+        if (service.updateReturned(loan)) {
+            auditLog.append(LoanAuditEvent.returned(id, Boolean.TRUE.equals(dto.getReturned())));
+        }
 
     }
 
+    @GetMapping
+    public Page<LoanDto> find(LoanFilterDTO dto, Pageable pageRequest){
+        Page<Loan> result = service.find(dto, pageRequest);
+        List<LoanDto> loans = result.getContent()
+                .stream()
+                .map(loanMapper::toDto)
+                .collect(Collectors.toList());
+        return new PageImpl<LoanDto>(loans, pageRequest, result.getTotalElements());
+    }
 
+    /**
+     * Streams the loan history as NDJSON (default) or CSV, writing rows as they are read.
+     */
+    @GetMapping("export")
+    public void export(@RequestParam(defaultValue = "ndjson") String format, HttpServletResponse response) throws IOException {
+        ExportFormat exportFormat = ExportFormat.of(format)
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.BAD_REQUEST, "Unsupported export format"));
+        response.setContentType(exportFormat.getContentType());
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"loans." + exportFormat.getExtension() + "\"");
+        exportService.exportLoans(exportFormat, response.getOutputStream());
+    }
 
+    /**
+     * Streams the loan audit log as NDJSON, from the first event numbered after {@code after}.
+     */
+    @GetMapping("audit")
+    public void audit(@RequestParam(defaultValue = "0") long after, HttpServletResponse response) throws IOException {
+        response.setContentType(ExportFormat.NDJSON.getContentType());
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        auditLog.replay(after, response.getOutputStream());
+    }
 
-}
\ No newline at end of file
+    private static BatchItemResultDTO indexed(int index, BatchItemResultDTO result) {
+        result.setIndex(index);
+        return result;
+    }
+}
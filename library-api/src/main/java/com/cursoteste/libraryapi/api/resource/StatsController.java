@@ -0,0 +1,55 @@
+package com.cursoteste.libraryapi.api.resource;
+
+import com.cursoteste.libraryapi.api.dto.BookLoanCountDTO;
+import com.cursoteste.libraryapi.api.dto.CirculationStatsDTO;
+import com.cursoteste.libraryapi.api.model.entity.Book;
+import com.cursoteste.libraryapi.api.service.BookService;
+import com.cursoteste.libraryapi.api.service.support.CirculationStats;
+import lombok.RequiredArgsConstructor;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+@RestController
+@RequestMapping("api/stats")
+@RequiredArgsConstructor
+public class StatsController {
+
+    private final CirculationStats stats;
+    private final BookService bookService;
+
+    /**
+     * Circulation statistics read from in-memory counters, so the cost does not depend on the
+     * number of loans. The most borrowed books are estimates; see {@link BookLoanCountDTO#getError()}.
+     */
+    @GetMapping
+    public CirculationStatsDTO get(@RequestParam(defaultValue = "10") int top,
+                                   @RequestParam(required = false) Long bookId,
+                                   @RequestParam(required = false) String customer){
+        int n = Math.max(0, Math.min(top, stats.getTopBooksCapacity()));
+        List<BookLoanCountDTO> topBooks = stats.getTopBooks(n).stream()
+                .map(entry -> {
+                    BookLoanCountDTO dto = BookLoanCountDTO.builder()
+                            .bookId(entry.getKey()).loans(entry.getCount()).error(entry.getError()).build();
+                    bookService.getById(entry.getKey()).ifPresent(book -> describe(dto, book));
+                    return dto;
+                })
+                .collect(Collectors.toList());
+        return CirculationStatsDTO.builder()
+                .totalLoans(stats.getTotalLoans())
+                .currentlyOut(stats.getOpenLoans())
+                .bookLoans(bookId == null ? null : stats.getLoansOfBook(bookId))
+                .customerLoans(customer == null ? null : stats.getLoansOfCustomer(customer))
+                .topBooks(topBooks)
+                .build();
+    }
+
+    private static void describe(BookLoanCountDTO dto, Book book){
+        dto.setTitle(book.getTitle());
+        dto.setIsbn(book.getIsbn());
+    }
+}
@@ -0,0 +1,44 @@
+package com.cursoteste.libraryapi.api.schedule;
+
+import com.cursoteste.libraryapi.api.model.repository.LoanRepository;
+import com.cursoteste.libraryapi.api.model.repository.LoanRepository.BookLoanCount;
+import com.cursoteste.libraryapi.api.service.support.CirculationStats;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Loads the {@link CirculationStats} from the loan table on startup and checks them against it
+ * periodically, correcting any drift. This is the only place where the statistics scan the table.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class CirculationStatsReconciliationJob {
+
+    private final LoanRepository loanRepository;
+    private final CirculationStats stats;
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(cron = "${library.stats.reconcile-cron}")
+    public void run() {
+        long start = System.currentTimeMillis();
+        long total = loanRepository.count();
+        long open = loanRepository.countOpen();
+        Map<Long, Long> perBook = loanRepository.countByBook().stream()
+                .collect(Collectors.toMap(BookLoanCount::getBookId, BookLoanCount::getLoans));
+
+        int drifted = stats.reconcile(total, open, perBook);
+        if (drifted > 0) {
+            log.warn("Circulation statistics reconciled, {} counters corrected in {} ms", drifted, System.currentTimeMillis() - start);
+        } else {
+            log.info("Circulation statistics reconciled in {} ms", System.currentTimeMillis() - start);
+        }
+    }
+}
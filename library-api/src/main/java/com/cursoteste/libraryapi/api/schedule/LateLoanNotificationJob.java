@@ -0,0 +1,251 @@
+package com.cursoteste.libraryapi.api.schedule;
+
+import com.cursoteste.libraryapi.api.model.entity.JobCheckpoint;
+import com.cursoteste.libraryapi.api.model.entity.Loan;
+import com.cursoteste.libraryapi.api.model.repository.JobCheckpointRepository;
+import com.cursoteste.libraryapi.api.model.repository.LoanRepository;
+import com.cursoteste.libraryapi.api.model.repository.LoanRepository.LoanEmail;
+import com.cursoteste.libraryapi.api.service.EmailService;
+import com.cursoteste.libraryapi.api.service.support.OverdueLoanTracker;
+import com.cursoteste.libraryapi.api.service.support.RateLimiter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.time.Clock;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.*;
+import java.util.stream.Collectors;
+
+/**
+ * Mails every customer with late loans once a day.
+ * <p>
+ * The late loans come from the {@link OverdueLoanTracker}, so the run costs time proportional to
+ * the number of late loans rather than to the loan table. Their ids are resolved to customer
+ * emails in chunks, and customers are then processed in pages ordered by email: the loans of a
+ * page are loaded by id with their books in one query, so only the ids and emails are kept for
+ * the whole run. Loans found returned are dropped from the tracker. Mails go through a bounded
+ * executor (the caller runs the task when the queue is full), are rate limited and retried with a
+ * linear backoff. After each page the last email is saved in a {@link JobCheckpoint}, and a run
+ * interrupted by a crash resumes from there on the same day.
+ * <p>
+ * Customers whose mail still failed after the last attempt are kept in the checkpoint and are
+ * retried first by the next run of the day. Late loans without a customer email are listed in
+ * one report mailed to the library. A day's run only completes once every mail and the report
+ * went out; the job is scheduled several times a day, and runs after that do nothing.
+ */
+@Slf4j
+@Component
+public class LateLoanNotificationJob {
+
+    static final String JOB_NAME = "late-loan-notification";
+    static final String SUBJECT = "Empréstimo atrasado";
+    static final String REPORT_SUBJECT = "Empréstimos atrasados sem email do cliente";
+    private static final int ID_CHUNK_SIZE = 500;
+
+    private final LoanRepository loanRepository;
+    private final JobCheckpointRepository checkpointRepository;
+    private final OverdueLoanTracker overdueLoans;
+    private final EmailService emailService;
+    private final Clock clock;
+    private final String reportTo;
+    private final int pageSize;
+    private final int maxAttempts;
+    private final long backoffMillis;
+    private final RateLimiter rateLimiter;
+    private final ExecutorService executor;
+
+    public LateLoanNotificationJob(LoanRepository loanRepository,
+                                   JobCheckpointRepository checkpointRepository,
+                                   OverdueLoanTracker overdueLoans,
+                                   EmailService emailService,
+                                   Clock clock,
+                                   @Value("${library.late-loans.report-to}") String reportTo,
+                                   @Value("${library.late-loans.page-size}") int pageSize,
+                                   @Value("${library.late-loans.threads}") int threads,
+                                   @Value("${library.late-loans.max-attempts}") int maxAttempts,
+                                   @Value("${library.late-loans.backoff-ms}") long backoffMillis,
+                                   @Value("${library.late-loans.mails-per-second}") double mailsPerSecond) {
+        this.loanRepository = loanRepository;
+        this.checkpointRepository = checkpointRepository;
+        this.overdueLoans = overdueLoans;
+        this.emailService = emailService;
+        this.clock = clock;
+        this.reportTo = reportTo;
+        this.pageSize = pageSize;
+        this.maxAttempts = maxAttempts;
+        this.backoffMillis = backoffMillis;
+        this.rateLimiter = new RateLimiter(mailsPerSecond);
+        this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(pageSize), new ThreadPoolExecutor.CallerRunsPolicy());
+    }
+
+    @Scheduled(cron = "${library.late-loans.cron}")
+    public void run() {
+        LocalDate today = LocalDate.now(clock);
+        JobCheckpoint checkpoint = checkpointRepository.findById(JOB_NAME)
+                .filter(c -> today.equals(c.getRunDate()))
+                .orElseGet(() -> JobCheckpoint.builder().name(JOB_NAME).runDate(today).lastKey("").completed(false).build());
+        if (Boolean.TRUE.equals(checkpoint.getCompleted())) {
+            return;
+        }
+        if (checkpoint.getFailedKeys() == null) {
+            checkpoint.setFailedKeys(new HashSet<>());
+        }
+
+        overdueLoans.sync();
+        LateLoans late = lateLoans();
+        int customers = 0;
+
+        List<String> retries = new ArrayList<>(checkpoint.getFailedKeys());
+        Collections.sort(retries);
+        for (int from = 0; from < retries.size(); from += pageSize) {
+            List<String> page = retries.subList(from, Math.min(from + pageSize, retries.size()));
+            Set<String> failed = notifyPage(page, late.byCustomer);
+            page.stream().filter(email -> !failed.contains(email)).forEach(checkpoint.getFailedKeys()::remove);
+            customers += page.size() - failed.size();
+            checkpointRepository.save(checkpoint);
+        }
+
+        List<String> emails = new ArrayList<>(late.byCustomer.tailMap(checkpoint.getLastKey(), false).keySet());
+        for (int from = 0; from < emails.size(); from += pageSize) {
+            List<String> page = emails.subList(from, Math.min(from + pageSize, emails.size()));
+            Set<String> failed = notifyPage(page, late.byCustomer);
+            checkpoint.getFailedKeys().addAll(failed);
+            customers += page.size() - failed.size();
+            checkpoint.setLastKey(page.get(page.size() - 1));
+            checkpointRepository.save(checkpoint);
+        }
+
+        if (!Boolean.TRUE.equals(checkpoint.getReported())) {
+            checkpoint.setReported(late.withoutEmail.isEmpty() || report(late.withoutEmail));
+        }
+        checkpoint.setCompleted(checkpoint.getFailedKeys().isEmpty() && checkpoint.getReported());
+        checkpointRepository.save(checkpoint);
+        log.info("Late loan notification finished, {} customers notified, {} failed, {} loans without email",
+                customers, checkpoint.getFailedKeys().size(), late.withoutEmail.size());
+    }
+
+    /**
+     * Ids of the late loans per customer email, and the late loans without one. Tracked loans
+     * that are no longer open are untracked.
+     */
+    private LateLoans lateLoans() {
+        List<Long> ids = overdueLoans.overdue();
+        LateLoans late = new LateLoans();
+        for (int from = 0; from < ids.size(); from += ID_CHUNK_SIZE) {
+            List<Long> chunk = ids.subList(from, Math.min(from + ID_CHUNK_SIZE, ids.size()));
+            Set<Long> open = new HashSet<>();
+            for (LoanEmail loan : loanRepository.findOpenCustomerEmails(chunk)) {
+                open.add(loan.getId());
+                if (loan.getCustomerEmail() == null) {
+                    late.withoutEmail.add(loan);
+                } else {
+                    late.byCustomer.computeIfAbsent(loan.getCustomerEmail(), email -> new ArrayList<>()).add(loan.getId());
+                }
+            }
+            chunk.stream().filter(id -> !open.contains(id)).forEach(overdueLoans::untrack);
+        }
+        return late;
+    }
+
+    /**
+     * Mails the customers of the page and returns those whose mail failed.
+     */
+    private Set<String> notifyPage(List<String> page, Map<String, List<Long>> byCustomer) {
+        List<Long> ids = page.stream()
+                .filter(byCustomer::containsKey)
+                .flatMap(email -> byCustomer.get(email).stream())
+                .collect(Collectors.toList());
+        Map<String, List<Loan>> loansOfPage = ids.isEmpty() ? new TreeMap<>() : loanRepository.findAllWithBookByIdIn(ids)
+                .stream()
+                .filter(loan -> !Boolean.TRUE.equals(loan.getReturned()) && loan.getCustomerEmail() != null)
+                .collect(Collectors.groupingBy(Loan::getCustomerEmail, TreeMap::new, Collectors.toList()));
+
+        Map<String, Future<Boolean>> sends = new TreeMap<>();
+        loansOfPage.forEach((email, loans) -> sends.put(email, executor.submit(() -> notifyCustomer(email, loans))));
+        Set<String> failed = new HashSet<>();
+        sends.forEach((email, send) -> {
+            if (!await(send)) {
+                failed.add(email);
+            }
+        });
+        return failed;
+    }
+
+    private boolean notifyCustomer(String email, List<Loan> loans) {
+        String text = "Atenção! Você tem empréstimos atrasados. Favor devolver o quanto antes:\n"
+                + loans.stream()
+                    .map(loan -> "- " + loan.getBook().getTitle() + " (isbn " + loan.getBook().getIsbn()
+                            + "), emprestado em " + loan.getLoanDate())
+                    .collect(Collectors.joining("\n"));
+        return send(email, SUBJECT, text);
+    }
+
+    private boolean report(List<LoanEmail> loans) {
+        String text = "Empréstimos atrasados de clientes sem email cadastrado:\n"
+                + loans.stream()
+                    .map(loan -> "- empréstimo " + loan.getId() + " de " + loan.getCustomer())
+                    .collect(Collectors.joining("\n"));
+        return send(reportTo, REPORT_SUBJECT, text);
+    }
+
+    /**
+     * Sends the mail, retrying with a linear backoff. Returns false when every attempt failed.
+     */
+    private boolean send(String to, String subject, String text) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                rateLimiter.acquire();
+                emailService.send(to, subject, text);
+                return true;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            } catch (RuntimeException e) {
+                if (attempt >= maxAttempts) {
+                    log.warn("Giving up on late loan mail to {} after {} attempts", to, attempt, e);
+                    return false;
+                }
+                try {
+                    Thread.sleep(backoffMillis * attempt);
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    return false;
+                }
+            }
+        }
+    }
+
+    private static boolean await(Future<Boolean> send) {
+        try {
+            return send.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while sending late loan mails", e);
+        } catch (ExecutionException e) {
+            log.warn("Late loan mail task failed", e.getCause());
+            return false;
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    private static final class LateLoans {
+        private final NavigableMap<String, List<Long>> byCustomer = new TreeMap<>();
+        private final List<LoanEmail> withoutEmail = new ArrayList<>();
+    }
+}
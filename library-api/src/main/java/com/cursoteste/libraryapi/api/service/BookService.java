@@ -1,21 +1,63 @@
 package com.cursoteste.libraryapi.api.service;
 
+import com.cursoteste.libraryapi.api.dto.BatchItemResultDTO;
 import com.cursoteste.libraryapi.api.model.entity.Book;
+import com.cursoteste.libraryapi.api.model.repository.BookRepository.CopyCount;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 public interface BookService {
     Book save(Book any);
 
+    /**
+     * Saves a chunk of books in a single transaction, checking duplicated isbns with one query.
+     * The returned list has one result per book, in the same order as the input.
+     */
+    List<BatchItemResultDTO> saveAll(List<Book> books);
+
     Optional<Book> getById(Long id);
 
+    /**
+     * Current version of the book, read without loading it and cached until it changes.
+     */
+    Optional<Long> getVersion(Long id);
+
     void delete(Book book);
 
     Book update(Book book);
 
+    /**
+     * Adds copies of the book, or withdraws copies on the shelf when {@code delta} is negative,
+     * and returns the new counts. Added copies go to the waiting holds first, one each, and only
+     * the rest to the shelf.
+     */
+    CopyCount addCopies(Book book, int delta);
+
+    /**
+     * Copies of the book on the shelf, read from memory and possibly a few seconds behind
+     * changes made by other instances.
+     */
+    Optional<Integer> getAvailable(Long id);
+
     Page<Book> find(Book filter, Pageable pageRequest);
 
+    /**
+     * Keyset page of books matching the filter with id greater than {@code afterId}
+     * (or from the start when null), ordered by id. Does not run a count query.
+     */
+    Slice<Book> findAfter(Book filter, Long afterId, int size);
+
+    long count(Book filter);
+
     Optional<Book> getBookByIsbn(String isbn);
+
+    /**
+     * Books with any of the isbns, read with a single query.
+     */
+    List<Book> getBooksByIsbn(Collection<String> isbns);
 }
@@ -0,0 +1,6 @@
+package com.cursoteste.libraryapi.api.service;
+
+public interface EmailService {
+
+    void send(String to, String subject, String text);
+}
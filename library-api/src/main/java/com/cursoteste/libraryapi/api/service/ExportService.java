@@ -0,0 +1,14 @@
+package com.cursoteste.libraryapi.api.service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Writes whole tables to a stream, one row at a time, without loading them in memory.
+ */
+public interface ExportService {
+
+    long exportBooks(ExportFormat format, OutputStream out) throws IOException;
+
+    long exportLoans(ExportFormat format, OutputStream out) throws IOException;
+}
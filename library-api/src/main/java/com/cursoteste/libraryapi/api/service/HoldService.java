@@ -0,0 +1,43 @@
+package com.cursoteste.libraryapi.api.service;
+
+import com.cursoteste.libraryapi.api.model.entity.Hold;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+public interface HoldService {
+
+    /**
+     * Puts the customer at the end of the queue of the book, which must have no copy on the
+     * shelf. A customer holds a book at most once at a time.
+     */
+    Hold place(Hold hold);
+
+    Optional<Hold> getById(Long id);
+
+    /**
+     * Leaves the queue. The copy set aside for a ready hold goes to the next holder.
+     */
+    void cancel(Hold hold);
+
+    /**
+     * Sets a returned copy of the book aside for its first waiting holder, as part of the
+     * caller's transaction. Returns false when nobody is waiting, and the copy goes back to the
+     * shelf.
+     */
+    boolean handOver(Long bookId);
+
+    /**
+     * Fulfils the customer's ready hold for the book, as part of the caller's transaction, so
+     * that the loan takes the copy set aside for it. Returns false when the customer has no
+     * ready hold.
+     */
+    boolean claim(Long bookId, String customer);
+
+    /**
+     * Customers with a ready hold, per book, among the given books.
+     */
+    Map<Long, Set<String>> readyCustomers(Collection<Long> bookIds);
+}
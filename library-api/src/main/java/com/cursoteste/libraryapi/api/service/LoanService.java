@@ -1,8 +1,15 @@
 package com.cursoteste.libraryapi.api.service;
 
+import com.cursoteste.libraryapi.api.dto.BatchItemResultDTO;
+import com.cursoteste.libraryapi.api.dto.LoanFilterDTO;
+import com.cursoteste.libraryapi.api.model.entity.Book;
 import com.cursoteste.libraryapi.api.model.entity.Loan;
 import com.cursoteste.libraryapi.api.resource.BookController;
 
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+
+import java.util.List;
 import java.util.Optional;
 
 public interface LoanService {
@@ -11,4 +18,31 @@ public interface LoanService {
     Optional<Loan> getById(Long id);
 
     Loan update(Loan loan);
+
+    /**
+     * Saves the loan like {@link #update(Loan)} and tells whether this call returned or reopened
+     * it, so a repeated request that changes nothing can be told apart.
+     */
+    boolean updateReturned(Loan loan);
+
+    /**
+     * Loans of the isbn or of the customer in the filter, with their books. Pages are ordered by
+     * id unless a sort is given; when both isbn and customer are set they are always ordered by id.
+     */
+    Page<Loan> find(LoanFilterDTO filter, Pageable pageable);
+
+    Page<Loan> getLoansByBook(Book book, Pageable pageable);
+
+    /**
+     * Opens all the loans, whose books are already resolved. Results follow the order of the
+     * loans, and a loan of an unavailable book fails without affecting the others.
+     */
+    List<BatchItemResultDTO> saveAll(List<Loan> loans);
+
+    /**
+     * Returns the loans with the given ids. Results follow the order of the ids; an unknown id
+     * fails without affecting the others, and an already returned loan or an id repeated in the
+     * list is reported as unchanged.
+     */
+    List<BatchItemResultDTO> returnAll(List<Long> ids);
 }
@@ -1,27 +1,78 @@
 package com.cursoteste.libraryapi.api.service.impl;
 
+import com.cursoteste.libraryapi.api.cache.CacheInvalidator;
+import com.cursoteste.libraryapi.api.dto.BatchItemResultDTO;
 import com.cursoteste.libraryapi.api.exception.BusinessException;
 import com.cursoteste.libraryapi.api.model.entity.Book;
 import com.cursoteste.libraryapi.api.model.repository.BookRepository;
+import com.cursoteste.libraryapi.api.model.repository.BookRepository.CopyCount;
 import com.cursoteste.libraryapi.api.service.BookService;
+import com.cursoteste.libraryapi.api.service.HoldService;
+import com.cursoteste.libraryapi.api.service.search.BookSearchIndex;
+import com.cursoteste.libraryapi.api.service.support.BookAvailability;
+import com.cursoteste.libraryapi.api.service.support.SingleFlight;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.cache.annotation.Caching;
 import org.springframework.data.domain.Example;
 import org.springframework.data.domain.ExampleMatcher;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static com.cursoteste.libraryapi.api.service.support.AfterCommit.afterCommit;
 
 @Service
 public class BookServiceImpl implements BookService {
 
+    public static final String BOOKS_BY_ISBN_CACHE = "booksByIsbn";
+    public static final String BOOK_VERSIONS_CACHE = "bookVersions";
+
     private BookRepository repository;
+    private BookSearchIndex searchIndex;
+    private CacheInvalidator cacheInvalidator;
+    private BookAvailability availability;
+    private HoldService holds;
+
+    /**
+     * Concurrent lookups of the same book share one query. Callers waiting on another's query get
+     * their own copy of the book, since some of them modify it before saving.
+     */
+    private final SingleFlight<Long, Optional<Book>> byIdFlight;
+    private final SingleFlight<String, Optional<Book>> byIsbnFlight;
 
 
-    public BookServiceImpl(BookRepository repository) {
+    public BookServiceImpl(BookRepository repository, BookSearchIndex searchIndex, CacheInvalidator cacheInvalidator,
+                           BookAvailability availability, HoldService holds, MeterRegistry registry,
+                           @Value("${library.books.lookup-wait-ms}") long lookupWaitMillis) {
 
         this.repository = repository;
+        this.searchIndex = searchIndex;
+        this.cacheInvalidator = cacheInvalidator;
+        this.availability = availability;
+        this.holds = holds;
+        this.byIdFlight = new SingleFlight<>("book.byId", registry, BookServiceImpl::copy, lookupWaitMillis);
+        this.byIsbnFlight = new SingleFlight<>("book.byIsbn", registry, BookServiceImpl::copy, lookupWaitMillis);
     }
 
     @Override
@@ -29,44 +80,189 @@ public class BookServiceImpl implements BookService {
         if (repository.existsByIsbn(book.getIsbn())){
             throw new BusinessException("Isbn já cadastrado.");
         }
-        return repository.save(book);
+        Book saved = repository.save(book);
+        searchIndex.index(saved);
+        return saved;
+    }
+
+    @Override
+    @Transactional
+    public List<BatchItemResultDTO> saveAll(List<Book> books) {
+        Set<String> isbns = books.stream().map(Book::getIsbn).collect(Collectors.toSet());
+        Set<String> taken = isbns.isEmpty() ? new HashSet<>() : new HashSet<>(repository.findExistingIsbns(isbns));
+
+        boolean[] duplicated = new boolean[books.size()];
+        List<Book> accepted = new ArrayList<>(books.size());
+        for (int i = 0; i < books.size(); i++) {
+            Book book = books.get(i);
+            if (taken.add(book.getIsbn())) {
+                accepted.add(book);
+            } else {
+                duplicated[i] = true;
+            }
+        }
+        repository.saveAll(accepted);
+        afterCommit(() -> accepted.forEach(searchIndex::index));
+
+        List<BatchItemResultDTO> results = new ArrayList<>(books.size());
+        for (int i = 0; i < books.size(); i++) {
+            results.add(duplicated[i]
+                    ? BatchItemResultDTO.failure("Isbn já cadastrado.")
+                    : BatchItemResultDTO.success(books.get(i).getId()));
+        }
+        return results;
     }
 
     @Override
     public Optional<Book> getById(Long id) {
-        return this.repository.findById(id);
+        return byIdFlight.load(id, this.repository::findById);
+    }
+
+    @Override
+    @Cacheable(cacheNames = BOOK_VERSIONS_CACHE, unless = "#result == null")
+    public Optional<Long> getVersion(Long id) {
+        return repository.findVersionById(id);
     }
 
     @Override
+    @Caching(evict = {
+            @CacheEvict(cacheNames = BOOKS_BY_ISBN_CACHE, key = "#book.isbn", condition = "#book != null && #book.isbn != null"),
+            @CacheEvict(cacheNames = BOOK_VERSIONS_CACHE, key = "#book.id", condition = "#book != null && #book.id != null")
+    })
     public void delete(Book book) {
         if (book == null ||book.getId() == null   ){
             throw  new IllegalArgumentException("Book id cant be null");
         }
         this.repository.delete(book);
+        searchIndex.remove(book.getId());
+        invalidateOtherInstances(book);
 
     }
 
     @Override
+    @Caching(evict = {
+            @CacheEvict(cacheNames = BOOKS_BY_ISBN_CACHE, key = "#book.isbn", condition = "#book != null && #book.isbn != null"),
+            @CacheEvict(cacheNames = BOOK_VERSIONS_CACHE, key = "#book.id", condition = "#book != null && #book.id != null")
+    })
     public Book update(Book book) {
         if (book == null ||book.getId() == null   ){
             throw  new IllegalArgumentException("Book id cant be null");
         }
-        return  this.repository.save(book);
+        Book updated = this.repository.save(book);
+        searchIndex.index(updated);
+        invalidateOtherInstances(book);
+        return updated;
+    }
+
+    @Override
+    @Transactional
+    @Caching(evict = {
+            @CacheEvict(cacheNames = BOOKS_BY_ISBN_CACHE, key = "#book.isbn", condition = "#book != null && #book.isbn != null"),
+            @CacheEvict(cacheNames = BOOK_VERSIONS_CACHE, key = "#book.id", condition = "#book != null && #book.id != null")
+    })
+    public CopyCount addCopies(Book book, int delta) {
+        if (book == null ||book.getId() == null   ){
+            throw  new IllegalArgumentException("Book id cant be null");
+        }
+        if (repository.addCopies(book.getId(), delta) == 0) {
+            throw new BusinessException("Not enough copies on the shelf.");
+        }
+        int handedOver = 0;
+        while (handedOver < delta && holds.handOver(book.getId())) {
+            handedOver++;
+        }
+        if (handedOver > 0) {
+            repository.reserveCopies(Collections.singletonList(book.getId()), handedOver);
+        }
+        availability.invalidate(book.getId());
+        invalidateOtherInstances(book);
+        return repository.findCopyCountById(book.getId())
+                .orElseThrow(() -> new IllegalStateException("Book not found after update"));
+    }
+
+    @Override
+    public Optional<Integer> getAvailable(Long id) {
+        return availability.get(id);
+    }
+
+    private void invalidateOtherInstances(Book book) {
+        cacheInvalidator.entityChanged(Book.class, book.getId());
+        cacheInvalidator.queriesChanged(Book.ISBN_QUERY_REGION);
+        cacheInvalidator.cacheChanged(BOOK_VERSIONS_CACHE, book.getId());
+        if (book.getIsbn() != null) {
+            cacheInvalidator.cacheChanged(BOOKS_BY_ISBN_CACHE, book.getIsbn());
+        }
     }
 
     @Override
     public Page<Book> find(Book filter, Pageable pageRequest) {
-        Example<Book> example = Example.of(filter,
+        if (searchIndex.isReady() && pageRequest.getSort().isUnsorted() && BookSearchIndex.hasCriteria(filter)) {
+            return findIndexed(filter, pageRequest);
+        }
+        return repository.findAll(example(filter),pageRequest);
+    }
+
+    private Page<Book> findIndexed(Book filter, Pageable pageRequest) {
+        List<Long> ids = searchIndex.search(filter.getTitle(), filter.getAuthor(), filter.getIsbn());
+        int from = (int) Math.min(pageRequest.getOffset(), ids.size());
+        int to = Math.min(from + pageRequest.getPageSize(), ids.size());
+        List<Long> pageIds = ids.subList(from, to);
+
+        Map<Long, Book> byId = repository.findAllById(pageIds).stream()
+                .collect(Collectors.toMap(Book::getId, Function.identity()));
+        List<Book> content = new ArrayList<>(pageIds.size());
+        int missing = 0;
+        for (Long id : pageIds) {
+            Book book = byId.get(id);
+            if (book != null) {
+                content.add(book);
+            } else {
+                searchIndex.remove(id);
+                missing++;
+            }
+        }
+        return new PageImpl<>(content, pageRequest, ids.size() - missing);
+    }
+
+    @Override
+    public Slice<Book> findAfter(Book filter, Long afterId, int size) {
+        List<Book> books = repository.findByExampleAfter(example(filter), afterId, size + 1);
+        boolean hasNext = books.size() > size;
+        if (hasNext) {
+            books = books.subList(0, size);
+        }
+        return new SliceImpl<>(books, PageRequest.of(0, size, Sort.by("id")), hasNext);
+    }
+
+    @Override
+    public long count(Book filter) {
+        return repository.count(example(filter));
+    }
+
+    private Example<Book> example(Book filter) {
+        return Example.of(filter,
                 ExampleMatcher
                 .matching()
                 .withIgnoreCase()
                 .withIgnoreNullValues()
                 .withStringMatcher(ExampleMatcher.StringMatcher.CONTAINING));
-        return repository.findAll(example,pageRequest);
     }
 
     @Override
+    @Cacheable(cacheNames = BOOKS_BY_ISBN_CACHE, unless = "#result == null")
     public Optional<Book> getBookByIsbn(String isbn) {
-        return repository.findByIsbn(isbn);
+        return byIsbnFlight.load(isbn, repository::findByIsbn);
+    }
+
+    @Override
+    public List<Book> getBooksByIsbn(Collection<String> isbns) {
+        if (isbns.isEmpty()) {
+            return new ArrayList<>();
+        }
+        return repository.findByIsbnIn(isbns);
+    }
+
+    private static Optional<Book> copy(Optional<Book> book) {
+        return book.map(found -> found.toBuilder().build());
     }
 }
@@ -0,0 +1,29 @@
+package com.cursoteste.libraryapi.api.service.impl;
+
+import com.cursoteste.libraryapi.api.service.EmailService;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.mail.SimpleMailMessage;
+import org.springframework.mail.javamail.JavaMailSender;
+import org.springframework.stereotype.Service;
+
+@Service
+public class EmailServiceImpl implements EmailService {
+
+    private final JavaMailSender mailSender;
+    private final String sender;
+
+    public EmailServiceImpl(JavaMailSender mailSender, @Value("${library.mail.from}") String sender) {
+        this.mailSender = mailSender;
+        this.sender = sender;
+    }
+
+    @Override
+    public void send(String to, String subject, String text) {
+        SimpleMailMessage message = new SimpleMailMessage();
+        message.setFrom(sender);
+        message.setTo(to);
+        message.setSubject(subject);
+        message.setText(text);
+        mailSender.send(message);
+    }
+}
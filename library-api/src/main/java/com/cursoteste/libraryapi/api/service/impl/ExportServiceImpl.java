@@ -0,0 +1,149 @@
+package com.cursoteste.libraryapi.api.service.impl;
+
+import com.cursoteste.libraryapi.api.model.entity.Book;
+import com.cursoteste.libraryapi.api.model.entity.Loan;
+import com.cursoteste.libraryapi.api.model.repository.BookRepository;
+import com.cursoteste.libraryapi.api.model.repository.LoanRepository;
+import com.cursoteste.libraryapi.api.service.ExportFormat;
+import com.cursoteste.libraryapi.api.service.ExportService;
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.util.MinimalPrettyPrinter;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+/**
+ * Reads rows through a scrolling cursor with a fixed fetch size and writes them straight to the
+ * output. The persistence context is cleared every {@link #CLEAR_EVERY} rows, so memory stays
+ * constant however large the table is.
+ */
+@Service
+public class ExportServiceImpl implements ExportService {
+
+    static final int CLEAR_EVERY = 500;
+
+    private static final String[] BOOK_COLUMNS = {"id", "title", "author", "isbn"};
+    private static final String[] LOAN_COLUMNS = {"id", "customer", "email", "isbn", "loanDate", "returned"};
+
+    private final BookRepository bookRepository;
+    private final LoanRepository loanRepository;
+    private final JsonFactory jsonFactory = new JsonFactory();
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    public ExportServiceImpl(BookRepository bookRepository, LoanRepository loanRepository) {
+        this.bookRepository = bookRepository;
+        this.loanRepository = loanRepository;
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public long exportBooks(ExportFormat format, OutputStream out) throws IOException {
+        try (Stream<Book> books = bookRepository.streamAll()) {
+            return write(format, out, BOOK_COLUMNS, books.iterator(), book -> new Object[]{
+                    book.getId(), book.getTitle(), book.getAuthor(), book.getIsbn()});
+        }
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public long exportLoans(ExportFormat format, OutputStream out) throws IOException {
+        try (Stream<Loan> loans = loanRepository.streamAll()) {
+            return write(format, out, LOAN_COLUMNS, loans.iterator(), loan -> new Object[]{
+                    loan.getId(), loan.getCustomer(), loan.getCustomerEmail(), loan.getBook().getIsbn(),
+                    loan.getLoanDate(), loan.getReturned()});
+        }
+    }
+
+    private <T> long write(ExportFormat format, OutputStream out, String[] columns, Iterator<T> rows,
+                           Function<T, Object[]> values) throws IOException {
+        return format == ExportFormat.CSV
+                ? writeCsv(out, columns, rows, values)
+                : writeNdjson(out, columns, rows, values);
+    }
+
+    private <T> long writeNdjson(OutputStream out, String[] columns, Iterator<T> rows,
+                                 Function<T, Object[]> values) throws IOException {
+        JsonGenerator generator = jsonFactory.createGenerator(out, JsonEncoding.UTF8);
+        generator.setPrettyPrinter(new MinimalPrettyPrinter("\n"));
+        long count = 0;
+        while (rows.hasNext()) {
+            Object[] row = values.apply(rows.next());
+            generator.writeStartObject();
+            for (int i = 0; i < columns.length; i++) {
+                writeJsonField(generator, columns[i], row[i]);
+            }
+            generator.writeEndObject();
+            count = next(count);
+        }
+        generator.writeRaw('\n');
+        generator.flush();
+        return count;
+    }
+
+    private <T> long writeCsv(OutputStream out, String[] columns, Iterator<T> rows,
+                              Function<T, Object[]> values) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        writer.write(String.join(",", columns));
+        writer.write("\r\n");
+        long count = 0;
+        while (rows.hasNext()) {
+            Object[] row = values.apply(rows.next());
+            for (int i = 0; i < row.length; i++) {
+                if (i > 0) {
+                    writer.write(',');
+                }
+                writer.write(csv(row[i]));
+            }
+            writer.write("\r\n");
+            count = next(count);
+        }
+        writer.flush();
+        return count;
+    }
+
+    private long next(long count) {
+        count++;
+        if (count % CLEAR_EVERY == 0) {
+            entityManager.clear();
+        }
+        return count;
+    }
+
+    private static void writeJsonField(JsonGenerator generator, String name, Object value) throws IOException {
+        if (value == null) {
+            generator.writeNullField(name);
+        } else if (value instanceof Long) {
+            generator.writeNumberField(name, (Long) value);
+        } else if (value instanceof Boolean) {
+            generator.writeBooleanField(name, (Boolean) value);
+        } else {
+            generator.writeStringField(name, value.toString());
+        }
+    }
+
+    private static String csv(Object value) {
+        if (value == null) {
+            return "";
+        }
+        String text = value.toString();
+        if (text.indexOf(',') < 0 && text.indexOf('"') < 0 && text.indexOf('\n') < 0 && text.indexOf('\r') < 0) {
+            return text;
+        }
+        return '"' + text.replace("\"", "\"\"") + '"';
+    }
+}
@@ -0,0 +1,215 @@
+package com.cursoteste.libraryapi.api.service.impl;
+
+import com.cursoteste.libraryapi.api.exception.BusinessException;
+import com.cursoteste.libraryapi.api.model.entity.Hold;
+import com.cursoteste.libraryapi.api.model.repository.BookRepository;
+import com.cursoteste.libraryapi.api.model.repository.HoldRepository;
+import com.cursoteste.libraryapi.api.model.repository.HoldRepository.HoldEntry;
+import com.cursoteste.libraryapi.api.service.HoldService;
+import com.cursoteste.libraryapi.api.service.support.BookAvailability;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionOperations;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+import static com.cursoteste.libraryapi.api.config.HoldExpirySchedulerConfig.HOLD_EXPIRY_SCHEDULER;
+import static com.cursoteste.libraryapi.api.service.support.AfterCommit.afterCommit;
+
+/**
+ * Holds live in the database, which every instance shares: the head of a book's queue is read
+ * through the book and status index, and a customer's ready hold through the unique index on
+ * its active customer, so both cost one indexed lookup however long the queue is. Every change
+ * is applied with a conditional update of the hold's status.
+ * <p>
+ * Placing a hold and handing a returned copy over both lock the book row first, so a hold is
+ * never left waiting while a copy returned at the same time goes back to the shelf. A customer
+ * holds a book at most once at a time, which the database enforces too.
+ * <p>
+ * A ready hold expires through a timer set for its expiry when it becomes ready, rather than by
+ * scanning for expired holds. A hold claimed or cancelled in the meantime is left alone. The
+ * timers run on their own scheduler, so the scheduled jobs cannot delay them.
+ */
+@Slf4j
+@Service
+public class HoldServiceImpl implements HoldService {
+
+    private static final int LOAD_PAGE_SIZE = 1000;
+    private static final Duration EXPIRY_RETRY = Duration.ofMinutes(1);
+
+    private final HoldRepository repository;
+    private final BookRepository bookRepository;
+    private final BookAvailability availability;
+    private final TransactionOperations transactions;
+    private final TaskScheduler scheduler;
+    private final Clock clock;
+    private final int pickupHours;
+
+    public HoldServiceImpl(HoldRepository repository,
+                           BookRepository bookRepository,
+                           BookAvailability availability,
+                           TransactionOperations transactions,
+                           @Qualifier(HOLD_EXPIRY_SCHEDULER) TaskScheduler scheduler,
+                           Clock clock,
+                           @Value("${library.holds.pickup-hours}") int pickupHours) {
+        this.repository = repository;
+        this.bookRepository = bookRepository;
+        this.availability = availability;
+        this.transactions = transactions;
+        this.scheduler = scheduler;
+        this.clock = clock;
+        this.pickupHours = pickupHours;
+    }
+
+    /**
+     * Sets the expiry timers of the ready holds, which do not survive a restart.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        long start = System.currentTimeMillis();
+        transactions.execute(status -> repository.backfillActiveCustomers(Hold.Status.ACTIVE));
+        int loaded = 0;
+        Long lastId = 0L;
+        List<HoldEntry> page;
+        do {
+            page = repository.findByStatus(lastId, Collections.singletonList(Hold.Status.READY), PageRequest.of(0, LOAD_PAGE_SIZE));
+            for (HoldEntry hold : page) {
+                scheduleExpiry(hold.getBookId(), hold.getId(), hold.getExpiresAt());
+                lastId = hold.getId();
+                loaded++;
+            }
+        } while (page.size() == LOAD_PAGE_SIZE);
+        log.info("Expiry of {} ready holds scheduled in {} ms", loaded, System.currentTimeMillis() - start);
+    }
+
+    @Override
+    public Hold place(Hold hold) {
+        Long bookId = hold.getBook().getId();
+        try {
+            return transactions.execute(status -> {
+                if (bookRepository.lockAvailableById(bookId).orElse(0) > 0) {
+                    throw new BusinessException("Book is available");
+                }
+                if (repository.existsByBookIdAndCustomerAndStatusIn(bookId, hold.getCustomer(), Hold.Status.ACTIVE)) {
+                    throw new BusinessException("Hold already placed");
+                }
+                hold.setStatus(Hold.Status.WAITING);
+                hold.setActiveCustomer(hold.getCustomer());
+                hold.setCreatedAt(LocalDateTime.now(clock));
+                return repository.saveAndFlush(hold);
+            });
+        } catch (DataIntegrityViolationException e) {
+            throw new BusinessException("Hold already placed");
+        }
+    }
+
+    @Override
+    public Optional<Hold> getById(Long id) {
+        return repository.findById(id);
+    }
+
+    @Override
+    public void cancel(Hold hold) {
+        Long bookId = hold.getBook().getId();
+        Boolean cancelled = transactions.execute(status -> {
+            if (repository.close(hold.getId(), Hold.Status.WAITING, Hold.Status.CANCELLED) == 1) {
+                return true;
+            }
+            if (repository.close(hold.getId(), Hold.Status.READY, Hold.Status.CANCELLED) == 1) {
+                passOn(bookId);
+                return true;
+            }
+            return false;
+        });
+        if (!Boolean.TRUE.equals(cancelled)) {
+            throw new BusinessException("Hold is no longer active");
+        }
+        hold.setStatus(Hold.Status.CANCELLED);
+        hold.setActiveCustomer(null);
+    }
+
+    /**
+     * Promotes the first waiting hold. With the book row locked no hold can join the queue
+     * meanwhile; a hold cancelled concurrently fails its conditional update and the next one is
+     * tried.
+     */
+    @Override
+    public boolean handOver(Long bookId) {
+        LocalDateTime expiresAt = LocalDateTime.now(clock).plusHours(pickupHours);
+        bookRepository.lockAvailableById(bookId);
+        Long after = 0L;
+        List<HoldEntry> first;
+        while (!(first = repository.findByBookAndStatus(bookId, Hold.Status.WAITING, after, PageRequest.of(0, 1))).isEmpty()) {
+            Long holdId = first.get(0).getId();
+            if (repository.transition(holdId, Hold.Status.WAITING, Hold.Status.READY, expiresAt) == 1) {
+                afterCommit(() -> scheduleExpiry(bookId, holdId, expiresAt));
+                return true;
+            }
+            after = holdId;
+        }
+        return false;
+    }
+
+    @Override
+    public boolean claim(Long bookId, String customer) {
+        return customer != null && repository.closeFor(bookId, customer, Hold.Status.READY, Hold.Status.FULFILLED) == 1;
+    }
+
+    @Override
+    public Map<Long, Set<String>> readyCustomers(Collection<Long> bookIds) {
+        Map<Long, Set<String>> customers = new HashMap<>();
+        if (bookIds.isEmpty()) {
+            return customers;
+        }
+        for (HoldEntry hold : repository.findByBooksAndStatus(bookIds, Hold.Status.READY)) {
+            customers.computeIfAbsent(hold.getBookId(), id -> new HashSet<>()).add(hold.getCustomer());
+        }
+        return customers;
+    }
+
+    void expire(Long bookId, Long holdId) {
+        try {
+            Boolean expired = transactions.execute(status -> {
+                if (repository.close(holdId, Hold.Status.READY, Hold.Status.EXPIRED) == 0) {
+                    return false;
+                }
+                passOn(bookId);
+                return true;
+            });
+            if (Boolean.TRUE.equals(expired)) {
+                log.info("Hold {} of book {} expired", holdId, bookId);
+            }
+        } catch (RuntimeException e) {
+            log.warn("Could not expire hold {}, retrying in {}", holdId, EXPIRY_RETRY, e);
+            scheduler.schedule(() -> expire(bookId, holdId), clock.instant().plus(EXPIRY_RETRY));
+        }
+    }
+
+    private void passOn(Long bookId) {
+        if (!handOver(bookId)) {
+            bookRepository.releaseCopy(bookId);
+            availability.invalidate(bookId);
+        }
+    }
+
+    private void scheduleExpiry(Long bookId, Long holdId, LocalDateTime expiresAt) {
+        scheduler.schedule(() -> expire(bookId, holdId), expiresAt.atZone(clock.getZone()).toInstant());
+    }
+}
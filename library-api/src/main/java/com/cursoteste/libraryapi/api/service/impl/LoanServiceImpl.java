@@ -1,31 +1,92 @@
 package com.cursoteste.libraryapi.api.service.impl;
 
+import com.cursoteste.libraryapi.api.dto.BatchItemResultDTO;
+import com.cursoteste.libraryapi.api.dto.LoanFilterDTO;
 import com.cursoteste.libraryapi.api.exception.BusinessException;
+import com.cursoteste.libraryapi.api.model.entity.Book;
 import com.cursoteste.libraryapi.api.model.entity.Loan;
+import com.cursoteste.libraryapi.api.model.repository.BookRepository;
+import com.cursoteste.libraryapi.api.model.repository.BookRepository.CopyCount;
 import com.cursoteste.libraryapi.api.model.repository.LoanRepository;
+import com.cursoteste.libraryapi.api.service.HoldService;
 import com.cursoteste.libraryapi.api.service.LoanService;
+import com.cursoteste.libraryapi.api.service.support.BookAvailability;
+import com.cursoteste.libraryapi.api.service.support.CirculationStats;
+import com.cursoteste.libraryapi.api.service.support.OverdueLoanTracker;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionOperations;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
 
 @Service
 public class LoanServiceImpl implements LoanService {
 
+     static final int BATCH_CHUNK_SIZE = 500;
+
      private LoanRepository repository;
+     private BookRepository bookRepository;
+     private TransactionOperations transactions;
+     private OverdueLoanTracker overdueLoans;
+     private CirculationStats stats;
+     private BookAvailability availability;
+     private HoldService holds;
 
-    public LoanServiceImpl(LoanRepository repository){
+    public LoanServiceImpl(LoanRepository repository, BookRepository bookRepository, TransactionOperations transactions,
+                           OverdueLoanTracker overdueLoans, CirculationStats stats, BookAvailability availability,
+                           HoldService holds){
         this.repository= repository;
+        this.bookRepository = bookRepository;
+        this.transactions = transactions;
+        this.overdueLoans = overdueLoans;
+        this.stats = stats;
+        this.availability = availability;
+        this.holds = holds;
     }
 
 
+    /**
+     * A copy is taken with one conditional decrement of the book's available count, issued after
+     * the loan is inserted. The book row is then only locked by that statement and the commit, so
+     * loans of the same book do not wait on each other for longer, and a book whose copies are all
+     * out is rejected by the database whichever instance took them. A customer whose hold on the
+     * book is ready takes the copy set aside for it instead.
+     */
     @Override
     public Loan save(Loan loan) {
-        if (repository.existsByBookandNotReturned(loan.getBook())){
-            throw  new BusinessException("Book already loaned");
-        }
-
-        return repository.save(loan);
+        Long bookId = loan.getBook().getId();
+        loan.setActiveBookId(bookId);
+        setDueDate(loan);
+        Loan opened = transactions.execute(status -> {
+            Loan saved = repository.save(loan);
+            if (!holds.claim(bookId, loan.getCustomer())) {
+                if (bookRepository.reserveCopy(bookId) == 0) {
+                    throw new BusinessException("Book already loaned");
+                }
+                availability.invalidate(bookId);
+            }
+            stats.loansOpened(Collections.singletonList(saved));
+            return saved;
+        });
+        overdueLoans.track(opened.getId(), opened.getDueDate());
+        return opened;
     }
 
     @Override
@@ -33,8 +94,285 @@ public class LoanServiceImpl implements LoanService {
         return repository.findById(id);
     }
 
+    /**
+     * A returned loan gives its copy to the next holder of the book, or back to the shelf when
+     * nobody is waiting, and a reopened one takes a copy again. Both go through
+     * the conditional updates of the loan's copy hold, so applying the same change twice does not
+     * count the copy twice.
+     */
     @Override
     public Loan update(Loan loan) {
-        return repository.save(loan);
+        return update(loan, new AtomicBoolean());
+    }
+
+    @Override
+    public boolean updateReturned(Loan loan) {
+        AtomicBoolean changed = new AtomicBoolean();
+        update(loan, changed);
+        return changed.get();
+    }
+
+    private Loan update(Loan loan, AtomicBoolean changed) {
+        if (!Boolean.TRUE.equals(loan.getReturned())) {
+            Loan saved = transactions.execute(status -> {
+                Loan reopened = repository.save(loan);
+                if (loan.getBook() != null && repository.takeCopyHold(loan.getId(), loan.getBook().getId()) == 1) {
+                    if (bookRepository.reserveCopy(loan.getBook().getId()) == 0) {
+                        throw new BusinessException("Book already loaned");
+                    }
+                    availability.invalidate(loan.getBook().getId());
+                    stats.loanReopened();
+                    changed.set(true);
+                    reopened.setActiveBookId(loan.getBook().getId());
+                }
+                return reopened;
+            });
+            overdueLoans.track(saved.getId(), saved.getDueDate());
+            return saved;
+        }
+        Loan returned = transactions.execute(status -> {
+            Loan saved = repository.save(loan);
+            if (loan.getBook() != null && repository.releaseCopyHold(loan.getId()) == 1) {
+                if (!holds.handOver(loan.getBook().getId())) {
+                    bookRepository.releaseCopy(loan.getBook().getId());
+                    availability.invalidate(loan.getBook().getId());
+                }
+                stats.loansReturned(1);
+                changed.set(true);
+            }
+            saved.setActiveBookId(null);
+            return saved;
+        });
+        overdueLoans.untrack(loan.getId());
+        return returned;
+    }
+
+    /**
+     * With both isbn and customer the two indexed queries are combined in a union that only
+     * returns the page ids, and the loans of the page are fetched with their books in a second
+     * query. With one of them a single indexed query is enough.
+     */
+    @Override
+    public Page<Loan> find(LoanFilterDTO filter, Pageable pageable) {
+        String isbn = emptyToNull(filter.getIsbn());
+        String customer = emptyToNull(filter.getCustomer());
+        if (isbn != null && customer != null) {
+            Page<Number> ids = repository.findIdsByBookIsbnOrCustomer(isbn, customer,
+                    PageRequest.of(pageable.getPageNumber(), pageable.getPageSize()));
+            List<Loan> loans = ids.isEmpty() ? Collections.emptyList()
+                    : repository.findAllWithBookByIdIn(ids.map(Number::longValue).getContent());
+            return new PageImpl<>(loans, pageable, ids.getTotalElements());
+        }
+        if (isbn != null) {
+            return repository.findByBookIsbn(isbn, orderedById(pageable));
+        }
+        if (customer != null) {
+            return repository.findByCustomer(customer, orderedById(pageable));
+        }
+        return repository.findAllWithBook(orderedById(pageable));
+    }
+
+    @Override
+    public Page<Loan> getLoansByBook(Book book, Pageable pageable) {
+        return repository.findByBook(book, orderedById(pageable));
+    }
+
+    /**
+     * Available copies of all the books are read with one query. Each chunk is then inserted and
+     * its copies taken with one conditional update per number of copies taken of a book, in a
+     * single transaction; if any book of the chunk ran out meanwhile, the chunk is rolled back and
+     * its loans are saved one by one to find out which of them fail. As in {@link #save(Loan)}, a
+     * customer whose hold on the book is ready claims the copy set aside for it instead of one
+     * from the shelf.
+     */
+    @Override
+    public List<BatchItemResultDTO> saveAll(List<Loan> loans) {
+        BatchItemResultDTO[] results = new BatchItemResultDTO[loans.size()];
+        Set<Long> bookIds = loans.stream().map(loan -> loan.getBook().getId()).collect(Collectors.toSet());
+        Map<Long, Integer> onShelf = bookIds.isEmpty() ? new HashMap<>() : bookRepository.findCopyCounts(bookIds)
+                .stream()
+                .filter(count -> count.getAvailable() != null)
+                .collect(Collectors.toMap(CopyCount::getId, CopyCount::getAvailable));
+
+        Map<Long, Set<String>> ready = holds.readyCustomers(bookIds);
+
+        List<Integer> accepted = new ArrayList<>(loans.size());
+        for (int i = 0; i < loans.size(); i++) {
+            Long bookId = loans.get(i).getBook().getId();
+            Set<String> readyCustomers = ready.get(bookId);
+            if (readyCustomers != null && readyCustomers.remove(loans.get(i).getCustomer())) {
+                accepted.add(i);
+                continue;
+            }
+            int left = onShelf.getOrDefault(bookId, 0);
+            if (left > 0) {
+                onShelf.put(bookId, left - 1);
+                accepted.add(i);
+            } else {
+                results[i] = BatchItemResultDTO.failure("Book already loaned");
+            }
+        }
+
+        for (int from = 0; from < accepted.size(); from += BATCH_CHUNK_SIZE) {
+            List<Loan> chunk = accepted.subList(from, Math.min(from + BATCH_CHUNK_SIZE, accepted.size()))
+                    .stream().map(loans::get).collect(Collectors.toList());
+            List<BatchItemResultDTO> chunkResults;
+            try {
+                chunkResults = transactions.execute(status -> openLoans(chunk));
+                chunk.forEach(loan -> overdueLoans.track(loan.getId(), loan.getDueDate()));
+            } catch (BusinessException | DataIntegrityViolationException e) {
+                chunkResults = chunk.stream().map(this::saveOne).collect(Collectors.toList());
+            }
+            for (int i = 0; i < chunk.size(); i++) {
+                results[accepted.get(from + i)] = chunkResults.get(i);
+            }
+        }
+        return Arrays.asList(results);
+    }
+
+    private List<BatchItemResultDTO> openLoans(List<Loan> chunk) {
+        chunk.forEach(loan -> {
+            loan.setActiveBookId(loan.getBook().getId());
+            setDueDate(loan);
+        });
+        List<Loan> saved = repository.saveAll(chunk);
+        List<Loan> fromShelf = chunk.stream()
+                .filter(loan -> !holds.claim(loan.getBook().getId(), loan.getCustomer()))
+                .collect(Collectors.toList());
+        Map<Long, Integer> copies = copiesPerBook(fromShelf);
+        for (Map.Entry<Integer, List<Long>> group : booksByCopies(copies).entrySet()) {
+            if (bookRepository.reserveCopies(group.getValue(), group.getKey()) != group.getValue().size()) {
+                throw new BusinessException("Book already loaned");
+            }
+        }
+        copies.keySet().forEach(availability::invalidate);
+        stats.loansOpened(saved);
+        return saved.stream().map(loan -> BatchItemResultDTO.success(loan.getId())).collect(Collectors.toList());
+    }
+
+    private BatchItemResultDTO saveOne(Loan loan) {
+        loan.setId(null);
+        try {
+            return BatchItemResultDTO.success(save(loan).getId());
+        } catch (BusinessException e) {
+            return BatchItemResultDTO.failure(e.getMessage());
+        }
+    }
+
+    /**
+     * Each chunk is read with one query and written in one transaction, with the copy holds of
+     * its loans cleared by a single update. Returned copies go to the holders of their books first,
+     * and the rest back to the shelf with one update per number of copies returned of a book.
+     */
+    @Override
+    public List<BatchItemResultDTO> returnAll(List<Long> ids) {
+        List<Long> distinct = new ArrayList<>(new LinkedHashSet<>(ids));
+        Map<Long, BatchItemResultDTO> byId = new HashMap<>();
+        for (int from = 0; from < distinct.size(); from += BATCH_CHUNK_SIZE) {
+            List<Long> chunk = distinct.subList(from, Math.min(from + BATCH_CHUNK_SIZE, distinct.size()));
+            try {
+                byId.putAll(transactions.execute(status -> returnLoans(chunk)));
+                overdueLoans.untrackAll(chunk);
+            } catch (BusinessException | DataIntegrityViolationException e) {
+                chunk.forEach(id -> byId.put(id, returnOne(id)));
+            }
+        }
+        Set<Long> reported = new HashSet<>();
+        return ids.stream()
+                .map(id -> {
+                    BatchItemResultDTO result = byId.get(id);
+                    if (result == null) {
+                        return BatchItemResultDTO.failure("Loan not found");
+                    }
+                    if (!reported.add(id) && result.getStatus() == BatchItemResultDTO.Status.SUCCESS) {
+                        return BatchItemResultDTO.unchanged(id);
+                    }
+                    return BatchItemResultDTO.builder().id(result.getId()).status(result.getStatus()).error(result.getError()).build();
+                })
+                .collect(Collectors.toList());
+    }
+
+    private Map<Long, BatchItemResultDTO> returnLoans(List<Long> ids) {
+        List<Loan> found = repository.findAllWithBookByIdIn(ids);
+        List<Loan> open = found.stream()
+                .filter(loan -> !Boolean.TRUE.equals(loan.getReturned()))
+                .collect(Collectors.toList());
+        if (!open.isEmpty()) {
+            open.forEach(loan -> loan.setReturned(true));
+            repository.saveAll(open);
+            List<Loan> holding = open.stream().filter(loan -> loan.getActiveBookId() != null).collect(Collectors.toList());
+            if (!holding.isEmpty()) {
+                if (repository.releaseCopyHolds(holding.stream().map(Loan::getId).collect(Collectors.toList())) != holding.size()) {
+                    throw new BusinessException("Loan already returned");
+                }
+                Map<Long, Integer> shelved = handOver(copiesPerBook(holding));
+                booksByCopies(shelved).forEach((count, bookIds) -> bookRepository.releaseCopies(bookIds, count));
+                shelved.keySet().forEach(availability::invalidate);
+                stats.loansReturned(holding.size());
+                holding.forEach(loan -> loan.setActiveBookId(null));
+            }
+        }
+        Map<Long, BatchItemResultDTO> results = new HashMap<>();
+        found.forEach(loan -> results.put(loan.getId(), BatchItemResultDTO.unchanged(loan.getId())));
+        open.forEach(loan -> results.put(loan.getId(), BatchItemResultDTO.success(loan.getId())));
+        return results;
+    }
+
+    private BatchItemResultDTO returnOne(Long id) {
+        Optional<Loan> loan = repository.findById(id);
+        if (!loan.isPresent()) {
+            return BatchItemResultDTO.failure("Loan not found");
+        }
+        if (Boolean.TRUE.equals(loan.get().getReturned())) {
+            return BatchItemResultDTO.unchanged(id);
+        }
+        loan.get().setReturned(true);
+        return updateReturned(loan.get()) ? BatchItemResultDTO.success(id) : BatchItemResultDTO.unchanged(id);
+    }
+
+    private static Map<Long, Integer> copiesPerBook(List<Loan> loans) {
+        Map<Long, Integer> copies = new HashMap<>();
+        loans.forEach(loan -> copies.merge(loan.getActiveBookId(), 1, Integer::sum));
+        return copies;
+    }
+
+    /**
+     * Hands the copies to the holders of their books and returns the copies left per book.
+     */
+    private Map<Long, Integer> handOver(Map<Long, Integer> copies) {
+        Map<Long, Integer> left = new HashMap<>();
+        copies.forEach((bookId, count) -> {
+            int remaining = count;
+            while (remaining > 0 && holds.handOver(bookId)) {
+                remaining--;
+            }
+            if (remaining > 0) {
+                left.put(bookId, remaining);
+            }
+        });
+        return left;
+    }
+
+    private static Map<Integer, List<Long>> booksByCopies(Map<Long, Integer> copies) {
+        Map<Integer, List<Long>> books = new HashMap<>();
+        copies.forEach((bookId, count) -> books.computeIfAbsent(count, key -> new ArrayList<>()).add(bookId));
+        return books;
+    }
+
+    private void setDueDate(Loan loan) {
+        if (loan.getDueDate() == null && loan.getLoanDate() != null) {
+            loan.setDueDate(overdueLoans.dueDateFor(loan.getLoanDate()));
+        }
+    }
+
+    private static Pageable orderedById(Pageable pageable) {
+        if (pageable.getSort().isSorted()) {
+            return pageable;
+        }
+        return PageRequest.of(pageable.getPageNumber(), pageable.getPageSize(), Sort.by("id"));
+    }
+
+    private static String emptyToNull(String value) {
+        return value == null || value.trim().isEmpty() ? null : value;
     }
 }
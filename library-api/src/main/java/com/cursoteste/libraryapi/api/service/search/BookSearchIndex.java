@@ -0,0 +1,258 @@
+package com.cursoteste.libraryapi.api.service.search;
+
+import com.cursoteste.libraryapi.api.model.entity.Book;
+import com.cursoteste.libraryapi.api.model.repository.BookRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.text.Normalizer;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.regex.Pattern;
+
+/**
+ * In-memory inverted index over book title and author terms, plus an exact isbn lookup.
+ * <p>
+ * Terms are case and accent folded. A query term matches an indexed term exactly or as a
+ * prefix (terms of one character only match exactly), and every query term must match.
+ * Results are ranked by how many query terms matched exactly, then by id.
+ * <p>
+ * Reads are lock-free; writes are serialized. The index is rebuilt in the background on
+ * startup and {@link #isReady()} stays false until that finishes. Books indexed or removed while
+ * the rebuild runs are skipped by it, so a page it read before the change does not bring the
+ * old version back.
+ */
+@Slf4j
+@Component
+public class BookSearchIndex {
+
+    private static final int REBUILD_PAGE_SIZE = 1000;
+    private static final Pattern SEPARATORS = Pattern.compile("[^\\p{L}\\p{N}]+");
+    private static final Pattern DIACRITICS = Pattern.compile("\\p{M}+");
+
+    private final BookRepository repository;
+
+    private final ConcurrentSkipListMap<String, Set<Long>> titleTerms = new ConcurrentSkipListMap<>();
+    private final ConcurrentSkipListMap<String, Set<Long>> authorTerms = new ConcurrentSkipListMap<>();
+    private final ConcurrentHashMap<String, Long> isbns = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Long, Document> documents = new ConcurrentHashMap<>();
+
+    private volatile boolean ready;
+
+    /**
+     * Ids indexed or removed since the running rebuild started; null when no rebuild runs.
+     */
+    private Set<Long> touched;
+
+    public BookSearchIndex(BookRepository repository) {
+        this.repository = repository;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuildInBackground() {
+        Thread thread = new Thread(this::rebuild, "book-search-index-rebuild");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    public void rebuild() {
+        long start = System.currentTimeMillis();
+        synchronized (this) {
+            touched = new HashSet<>();
+        }
+        try {
+            Long lastId = 0L;
+            List<Book> page;
+            do {
+                page = repository.findFirst1000ByIdGreaterThanOrderByIdAsc(lastId);
+                reindex(page);
+                if (!page.isEmpty()) {
+                    lastId = page.get(page.size() - 1).getId();
+                }
+            } while (page.size() == REBUILD_PAGE_SIZE);
+        } finally {
+            synchronized (this) {
+                touched = null;
+            }
+        }
+        ready = true;
+        log.info("Book search index built with {} books in {} ms", documents.size(), System.currentTimeMillis() - start);
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    public int size() {
+        return documents.size();
+    }
+
+    public synchronized void index(Book book) {
+        if (book == null || book.getId() == null) {
+            return;
+        }
+        if (touched != null) {
+            touched.add(book.getId());
+        }
+        indexDocument(book);
+    }
+
+    public synchronized void remove(Long id) {
+        if (touched != null) {
+            touched.add(id);
+        }
+        removeDocument(id);
+    }
+
+    private synchronized void reindex(List<Book> page) {
+        for (Book book : page) {
+            if (book.getId() != null && !touched.contains(book.getId())) {
+                indexDocument(book);
+            }
+        }
+    }
+
+    private void indexDocument(Book book) {
+        removeDocument(book.getId());
+        Document document = new Document(tokenize(book.getTitle()), tokenize(book.getAuthor()), fold(book.getIsbn()));
+        document.titleTerms.forEach(term -> post(titleTerms, term, book.getId()));
+        document.authorTerms.forEach(term -> post(authorTerms, term, book.getId()));
+        if (document.isbn != null) {
+            isbns.put(document.isbn, book.getId());
+        }
+        documents.put(book.getId(), document);
+    }
+
+    private void removeDocument(Long id) {
+        Document document = documents.remove(id);
+        if (document == null) {
+            return;
+        }
+        document.titleTerms.forEach(term -> unpost(titleTerms, term, id));
+        document.authorTerms.forEach(term -> unpost(authorTerms, term, id));
+        if (document.isbn != null) {
+            isbns.remove(document.isbn, id);
+        }
+    }
+
+    /**
+     * Ids of the books matching every given criterion (null criteria are ignored), best match first.
+     */
+    public List<Long> search(String title, String author, String isbn) {
+        Map<Long, Integer> scores = null;
+
+        String foldedIsbn = fold(isbn);
+        if (foldedIsbn != null) {
+            Long id = isbns.get(foldedIsbn);
+            if (id == null) {
+                return Collections.emptyList();
+            }
+            scores = new HashMap<>();
+            scores.put(id, 0);
+        }
+        for (String term : tokenize(title)) {
+            scores = intersect(scores, match(titleTerms, term));
+        }
+        for (String term : tokenize(author)) {
+            scores = intersect(scores, match(authorTerms, term));
+        }
+        if (scores == null) {
+            return Collections.emptyList();
+        }
+
+        final Map<Long, Integer> ranked = scores;
+        List<Long> ids = new ArrayList<>(ranked.keySet());
+        ids.sort((a, b) -> {
+            int byScore = Integer.compare(ranked.get(b), ranked.get(a));
+            return byScore != 0 ? byScore : Long.compare(a, b);
+        });
+        return ids;
+    }
+
+    /**
+     * Whether the filter has anything this index can answer.
+     */
+    public static boolean hasCriteria(Book filter) {
+        return filter != null && (!tokenize(filter.getTitle()).isEmpty()
+                || !tokenize(filter.getAuthor()).isEmpty()
+                || fold(filter.getIsbn()) != null);
+    }
+
+    private static Map<Long, Integer> match(ConcurrentSkipListMap<String, Set<Long>> terms, String term) {
+        Map<Long, Integer> matches = new HashMap<>();
+        Set<Long> exact = terms.get(term);
+        if (exact != null) {
+            exact.forEach(id -> matches.put(id, 2));
+        }
+        if (term.length() > 1) {
+            ConcurrentNavigableMap<String, Set<Long>> prefixed = terms.subMap(term, false, term + Character.MAX_VALUE, true);
+            prefixed.values().forEach(ids -> ids.forEach(id -> matches.putIfAbsent(id, 1)));
+        }
+        return matches;
+    }
+
+    private static Map<Long, Integer> intersect(Map<Long, Integer> current, Map<Long, Integer> matches) {
+        if (current == null) {
+            return matches;
+        }
+        Map<Long, Integer> smaller = current.size() <= matches.size() ? current : matches;
+        Map<Long, Integer> larger = smaller == current ? matches : current;
+        Map<Long, Integer> result = new HashMap<>();
+        smaller.forEach((id, score) -> {
+            Integer other = larger.get(id);
+            if (other != null) {
+                result.put(id, score + other);
+            }
+        });
+        return result;
+    }
+
+    private static void post(ConcurrentSkipListMap<String, Set<Long>> terms, String term, Long id) {
+        terms.computeIfAbsent(term, t -> ConcurrentHashMap.newKeySet()).add(id);
+    }
+
+    private static void unpost(ConcurrentSkipListMap<String, Set<Long>> terms, String term, Long id) {
+        terms.computeIfPresent(term, (t, ids) -> {
+            ids.remove(id);
+            return ids.isEmpty() ? null : ids;
+        });
+    }
+
+    static Set<String> tokenize(String text) {
+        String folded = fold(text);
+        if (folded == null) {
+            return Collections.emptySet();
+        }
+        Set<String> tokens = new LinkedHashSet<>();
+        for (String token : SEPARATORS.split(folded)) {
+            if (!token.isEmpty()) {
+                tokens.add(token);
+            }
+        }
+        return tokens;
+    }
+
+    static String fold(String text) {
+        if (text == null || text.trim().isEmpty()) {
+            return null;
+        }
+        String decomposed = Normalizer.normalize(text.trim(), Normalizer.Form.NFD);
+        return DIACRITICS.matcher(decomposed).replaceAll("").toLowerCase(Locale.ROOT);
+    }
+
+    private static final class Document {
+        private final Set<String> titleTerms;
+        private final Set<String> authorTerms;
+        private final String isbn;
+
+        private Document(Set<String> titleTerms, Set<String> authorTerms, String isbn) {
+            this.titleTerms = titleTerms;
+            this.authorTerms = authorTerms;
+            this.isbn = isbn;
+        }
+    }
+}
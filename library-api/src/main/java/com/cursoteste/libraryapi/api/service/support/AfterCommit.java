@@ -0,0 +1,31 @@
+package com.cursoteste.libraryapi.api.service.support;
+
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Defers an action until the current transaction commits, so in-memory state and messages to
+ * other instances never reflect a write that is rolled back. Outside a transaction the action
+ * runs right away.
+ */
+public final class AfterCommit implements TransactionSynchronization {
+
+    private final Runnable action;
+
+    private AfterCommit(Runnable action) {
+        this.action = action;
+    }
+
+    public static void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new AfterCommit(action));
+    }
+
+    @Override
+    public void afterCommit() {
+        action.run();
+    }
+}
@@ -0,0 +1,31 @@
+package com.cursoteste.libraryapi.api.service.support;
+
+import com.cursoteste.libraryapi.api.model.repository.BookRepository;
+import com.cursoteste.libraryapi.api.model.repository.LoanRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Fills {@code Loan.activeBookId} and the copy counts of books for rows created before those
+ * columns existed. Only touches rows without a value, so running it on every startup is harmless.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class AvailabilityBackfill {
+
+    private final LoanRepository loanRepository;
+    private final BookRepository bookRepository;
+
+    @Transactional
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfill() {
+        int holds = loanRepository.backfillCopyHolds();
+        int books = bookRepository.backfillAvailability();
+        log.info("Availability backfilled for {} books and {} open loans", books, holds);
+    }
+}
@@ -0,0 +1,54 @@
+package com.cursoteste.libraryapi.api.service.support;
+
+import com.cursoteste.libraryapi.api.model.repository.BookRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Optional;
+
+import static com.cursoteste.libraryapi.api.service.support.AfterCommit.afterCommit;
+
+/**
+ * In-memory mirror of the copies on the shelf of each book, so availability is read without a
+ * query. A book is loaded from the database on its first read and kept for a short time. When
+ * this instance takes or gives back copies the book is dropped once the transaction commits, and
+ * read again on its next use. Applying the change to the count instead would count it twice when
+ * a read loads the committed row before the change is applied. Changes made by other instances
+ * are only seen once the entry expires.
+ * <p>
+ * The mirror is only a hint: loans are admitted by the conditional updates in
+ * {@link BookRepository}, never by reading it.
+ */
+@Component
+public class BookAvailability {
+
+    private static final int MAX_BOOKS = 100_000;
+
+    private final BookRepository repository;
+    private final Cache<Long, Integer> available;
+
+    public BookAvailability(BookRepository repository, @Value("${library.availability.ttl-ms}") long ttlMillis) {
+        this.repository = repository;
+        this.available = Caffeine.newBuilder()
+                .maximumSize(MAX_BOOKS)
+                .expireAfterWrite(Duration.ofMillis(ttlMillis))
+                .build();
+    }
+
+    /**
+     * Copies of the book on the shelf, or empty when the book does not exist.
+     */
+    public Optional<Integer> get(Long bookId) {
+        return Optional.ofNullable(available.get(bookId, id -> repository.findAvailableById(id).orElse(null)));
+    }
+
+    /**
+     * Drops the book once the transaction commits, so its next read goes to the database.
+     */
+    public void invalidate(Long bookId) {
+        afterCommit(() -> available.invalidate(bookId));
+    }
+}
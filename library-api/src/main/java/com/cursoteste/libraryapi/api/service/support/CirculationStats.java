@@ -0,0 +1,144 @@
+package com.cursoteste.libraryapi.api.service.support;
+
+import com.cursoteste.libraryapi.api.model.entity.Loan;
+import com.cursoteste.libraryapi.api.model.repository.LoanRepository;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+
+import static com.cursoteste.libraryapi.api.service.support.AfterCommit.afterCommit;
+
+/**
+ * Circulation counters kept up to date by the loan service, so statistics are read without
+ * touching the loan table: total loans, open loans, loans per book, and a {@link TopKSketch} of
+ * the most borrowed books.
+ * <p>
+ * Counters are {@link LongAdder}s, which spread concurrent increments over cells. Changes made
+ * inside a transaction are applied when it commits. The reconciliation job periodically
+ * replaces the counters with the values in the database.
+ * <p>
+ * Loans per customer are counted by the customer index on first read and kept for up to the
+ * configured number of customers, the least used being dropped first. A customer's count is
+ * dropped when their loans are committed and read again on next use, since a count read while
+ * the transaction commits could otherwise include the loan and then be incremented for it.
+ */
+@Component
+public class CirculationStats {
+
+    private final LongAdder totalLoans = new LongAdder();
+    private final LongAdder openLoans = new LongAdder();
+    private final ConcurrentHashMap<Long, LongAdder> loansPerBook = new ConcurrentHashMap<>();
+    private final LoadingCache<String, Long> loansPerCustomer;
+    private final TopKSketch<Long> topBooks;
+
+    public CirculationStats(LoanRepository repository,
+                            @Value("${library.stats.top-books-capacity}") int topBooksCapacity,
+                            @Value("${library.stats.customers-capacity}") int customersCapacity) {
+        this.topBooks = new TopKSketch<>(topBooksCapacity);
+        this.loansPerCustomer = Caffeine.newBuilder()
+                .maximumSize(customersCapacity)
+                .build(repository::countByCustomer);
+    }
+
+    public void loansOpened(Collection<Loan> loans) {
+        afterCommit(() -> {
+            loans.forEach(this::count);
+            loansPerCustomer.invalidateAll(loans.stream()
+                    .map(Loan::getCustomer)
+                    .filter(Objects::nonNull)
+                    .collect(Collectors.toSet()));
+        });
+    }
+
+    public void loansReturned(int count) {
+        if (count > 0) {
+            afterCommit(() -> openLoans.add(-count));
+        }
+    }
+
+    /**
+     * A returned loan opened again counts as open, but not as a new loan.
+     */
+    public void loanReopened() {
+        afterCommit(openLoans::increment);
+    }
+
+    public long getTotalLoans() {
+        return totalLoans.sum();
+    }
+
+    public long getOpenLoans() {
+        return openLoans.sum();
+    }
+
+    public long getLoansOfBook(Long bookId) {
+        LongAdder adder = loansPerBook.get(bookId);
+        return adder == null ? 0 : adder.sum();
+    }
+
+    public long getLoansOfCustomer(String customer) {
+        return loansPerCustomer.get(customer);
+    }
+
+    public List<TopKSketch.Entry<Long>> getTopBooks(int n) {
+        return topBooks.top(n);
+    }
+
+    public int getTopBooksCapacity() {
+        return topBooks.getCapacity();
+    }
+
+    /**
+     * Sets every counter to the value read from the database and returns how many were off.
+     * Loans opened while the database was being read may be counted twice or missed until the
+     * next reconciliation.
+     */
+    public int reconcile(long total, long open, Map<Long, Long> perBook) {
+        int drifted = set(totalLoans, total) + set(openLoans, open) + reconcile(loansPerBook, perBook);
+        topBooks.reset(perBook.entrySet().stream()
+                .map(entry -> new TopKSketch.Entry<>(entry.getKey(), entry.getValue(), 0))
+                .collect(Collectors.toList()));
+        return drifted;
+    }
+
+    private void count(Loan loan) {
+        totalLoans.increment();
+        openLoans.increment();
+        if (loan.getBook() != null && loan.getBook().getId() != null) {
+            loansPerBook.computeIfAbsent(loan.getBook().getId(), id -> new LongAdder()).increment();
+            topBooks.add(loan.getBook().getId());
+        }
+    }
+
+    private static <K> int reconcile(ConcurrentHashMap<K, LongAdder> counters, Map<K, Long> actual) {
+        int drifted = 0;
+        for (Map.Entry<K, Long> entry : actual.entrySet()) {
+            drifted += set(counters.computeIfAbsent(entry.getKey(), key -> new LongAdder()), entry.getValue());
+        }
+        for (K key : counters.keySet()) {
+            if (!actual.containsKey(key)) {
+                counters.remove(key);
+                drifted++;
+            }
+        }
+        return drifted;
+    }
+
+    private static int set(LongAdder adder, long value) {
+        long delta = value - adder.sum();
+        if (delta == 0) {
+            return 0;
+        }
+        adder.add(delta);
+        return 1;
+    }
+}
@@ -0,0 +1,86 @@
+package com.cursoteste.libraryapi.api.service.support;
+
+import com.cursoteste.libraryapi.api.exception.BusinessException;
+import com.cursoteste.libraryapi.api.exception.RequestInProgressException;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+/**
+ * Responses of the requests sent with an {@code Idempotency-Key}, so a client retrying a create
+ * gets the response of its first attempt instead of a duplicate or an error. A retry arriving
+ * while the first attempt is still running waits for it up to the configured time, then gets a
+ * conflict telling it to retry later.
+ * <p>
+ * Only successful responses are kept, for the configured time and up to the configured number of
+ * keys. A failed attempt is forgotten, so its retry runs again. Keys are per instance; a retry
+ * landing on another instance runs again.
+ */
+@Component
+public class IdempotencyStore {
+
+    private final Cache<Key, Attempt> attempts;
+    private final long waitMillis;
+
+    public IdempotencyStore(@Value("${library.idempotency.max-keys}") long maxKeys,
+                            @Value("${library.idempotency.ttl-ms}") long ttlMillis,
+                            @Value("${library.idempotency.wait-ms}") long waitMillis) {
+        this.waitMillis = waitMillis;
+        this.attempts = Caffeine.newBuilder()
+                .maximumSize(maxKeys)
+                .expireAfterWrite(Duration.ofMillis(ttlMillis))
+                .build();
+    }
+
+    /**
+     * Runs the action, or returns the response of the earlier attempt with the same key. Without a
+     * key the action always runs. Reusing a key for a different request is a business error.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T execute(String operation, String key, Object request, Supplier<T> action) {
+        if (key == null) {
+            return action.get();
+        }
+        Key id = new Key(operation, key);
+        Attempt attempt = new Attempt(request, new CompletableFuture<>());
+        Attempt first = attempts.asMap().putIfAbsent(id, attempt);
+        if (first != null) {
+            if (!Objects.equals(first.getRequest(), request)) {
+                throw new BusinessException("Idempotency key already used for another request");
+            }
+            try {
+                return (T) Futures.get(first.getResponse(), waitMillis);
+            } catch (TimeoutException e) {
+                throw new RequestInProgressException("Request with this idempotency key still in progress");
+            }
+        }
+        try {
+            T response = action.get();
+            attempt.getResponse().complete(response);
+            return response;
+        } catch (RuntimeException | Error e) {
+            attempts.asMap().remove(id, attempt);
+            attempt.getResponse().completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    @lombok.Value
+    private static class Key {
+        String operation;
+        String key;
+    }
+
+    @lombok.Value
+    private static class Attempt {
+        Object request;
+        CompletableFuture<Object> response;
+    }
+}
@@ -0,0 +1,146 @@
+package com.cursoteste.libraryapi.api.service.support;
+
+import com.cursoteste.libraryapi.api.model.repository.LoanRepository;
+import com.cursoteste.libraryapi.api.model.repository.LoanRepository.LoanDueDate;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionOperations;
+
+import java.time.Clock;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Open loans bucketed by due date, kept in memory so late loans are found without scanning the
+ * loan table.
+ * <p>
+ * The buckets are loaded from the database on startup and kept up to date by the loan service
+ * as loans are opened and returned. Each {@link #sync()} also reads the loans that fell due since
+ * the previous one through the due date index, which picks up loans opened by other instances.
+ * {@link #overdue()} only visits the buckets it returns, so it costs time proportional to the
+ * answer. A loan is late from its due date on. Writes are serialized and
+ * reads are lock-free. Since the buckets are updated after the transactions, and loans returned
+ * on other instances stay tracked, a caller must still check the loans it reads back.
+ */
+@Slf4j
+@Component
+public class OverdueLoanTracker {
+
+    private static final int LOAD_PAGE_SIZE = 1000;
+
+    private final LoanRepository repository;
+    private final TransactionOperations transactions;
+    private final Clock clock;
+    private final int loanPeriodDays;
+
+    private final ConcurrentSkipListMap<LocalDate, Set<Long>> byDueDate = new ConcurrentSkipListMap<>();
+    private final ConcurrentHashMap<Long, LocalDate> dueDates = new ConcurrentHashMap<>();
+    private LocalDate synced;
+
+    public OverdueLoanTracker(LoanRepository repository,
+                              TransactionOperations transactions,
+                              Clock clock,
+                              @Value("${library.loan.period-days}") int loanPeriodDays) {
+        this.repository = repository;
+        this.transactions = transactions;
+        this.clock = clock;
+        this.loanPeriodDays = loanPeriodDays;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        long start = System.currentTimeMillis();
+        LocalDate today = LocalDate.now(clock);
+        Integer backfilled = transactions.execute(status -> repository.findLoanDatesWithoutDueDate().stream()
+                .mapToInt(loanDate -> repository.backfillDueDate(loanDate, dueDateFor(loanDate)))
+                .sum());
+        Long lastId = 0L;
+        List<LoanDueDate> page;
+        do {
+            page = repository.findOpenDueDates(lastId, PageRequest.of(0, LOAD_PAGE_SIZE));
+            for (LoanDueDate loan : page) {
+                track(loan.getId(), loan.getDueDate());
+                lastId = loan.getId();
+            }
+        } while (page.size() == LOAD_PAGE_SIZE);
+        synchronized (this) {
+            synced = today;
+        }
+        log.info("Overdue loan tracker loaded {} open loans in {} ms ({} due dates backfilled)",
+                dueDates.size(), System.currentTimeMillis() - start, backfilled);
+    }
+
+    public LocalDate dueDateFor(LocalDate loanDate) {
+        return loanDate.plusDays(loanPeriodDays);
+    }
+
+    public synchronized void track(Long loanId, LocalDate dueDate) {
+        if (loanId == null || dueDate == null) {
+            return;
+        }
+        LocalDate previous = dueDates.put(loanId, dueDate);
+        if (previous != null && !previous.equals(dueDate)) {
+            removeFromBucket(previous, loanId);
+        }
+        byDueDate.computeIfAbsent(dueDate, day -> ConcurrentHashMap.newKeySet()).add(loanId);
+    }
+
+    public synchronized void untrack(Long loanId) {
+        if (loanId == null) {
+            return;
+        }
+        LocalDate dueDate = dueDates.remove(loanId);
+        if (dueDate != null) {
+            removeFromBucket(dueDate, loanId);
+        }
+    }
+
+    public void untrackAll(Collection<Long> loanIds) {
+        loanIds.forEach(this::untrack);
+    }
+
+    /**
+     * Ids of every open loan that is late today.
+     */
+    public List<Long> overdue() {
+        return collect(byDueDate.headMap(LocalDate.now(clock), true).values());
+    }
+
+    /**
+     * Tracks the open loans that fell due since the previous sync, including those opened by
+     * other instances. Does nothing before the tracker is loaded or twice on the same day.
+     */
+    public synchronized void sync() {
+        LocalDate today = LocalDate.now(clock);
+        if (synced != null && today.isAfter(synced)) {
+            repository.findOpenDueDatesBetween(synced, today).forEach(loan -> track(loan.getId(), loan.getDueDate()));
+            synced = today;
+        }
+    }
+
+    public int size() {
+        return dueDates.size();
+    }
+
+    private void removeFromBucket(LocalDate dueDate, Long loanId) {
+        Set<Long> ids = byDueDate.get(dueDate);
+        if (ids != null && ids.remove(loanId) && ids.isEmpty()) {
+            byDueDate.remove(dueDate);
+        }
+    }
+
+    private static List<Long> collect(Collection<Set<Long>> buckets) {
+        List<Long> ids = new ArrayList<>();
+        buckets.forEach(ids::addAll);
+        return ids;
+    }
+}
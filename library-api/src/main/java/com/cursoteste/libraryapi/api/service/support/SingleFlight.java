@@ -0,0 +1,77 @@
+package com.cursoteste.libraryapi.api.service.support;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.UnaryOperator;
+
+/**
+ * Coalesces concurrent loads of the same key: the first caller runs the load and the callers
+ * arriving while it is in flight wait for its result instead of running their own. Nothing is
+ * kept once the load finishes, so a later call loads again; caching is left to the caller.
+ * <p>
+ * The result is published as a snapshot taken with {@code share} before the leader returns it, and
+ * each follower receives its own copy of that snapshot, so changes the leader's caller makes to
+ * what it got are never seen by the others. A failed load is rethrown to every caller waiting on
+ * it. A follower that waits longer than the configured time gives up and loads on its own.
+ * <p>
+ * Counts every call and the calls served by another caller's load as
+ * {@value #CALLS} and {@value #COALESCED}, tagged with the name of the flight; their ratio is
+ * the share of queries saved.
+ */
+public class SingleFlight<K, V> {
+
+    public static final String CALLS = "library.singleflight.calls";
+    public static final String COALESCED = "library.singleflight.coalesced";
+
+    private final ConcurrentHashMap<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+    private final UnaryOperator<V> share;
+    private final long waitMillis;
+    private final LongAdder calls = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+
+    public SingleFlight(String name, MeterRegistry registry, UnaryOperator<V> share, long waitMillis) {
+        this.share = share;
+        this.waitMillis = waitMillis;
+        FunctionCounter.builder(CALLS, calls, LongAdder::sum).tag("name", name).register(registry);
+        FunctionCounter.builder(COALESCED, coalesced, LongAdder::sum).tag("name", name).register(registry);
+    }
+
+    public V load(K key, Function<K, V> loader) {
+        calls.increment();
+        CompletableFuture<V> flight = new CompletableFuture<>();
+        CompletableFuture<V> leader = inFlight.putIfAbsent(key, flight);
+        if (leader != null) {
+            coalesced.increment();
+            try {
+                return share.apply(Futures.get(leader, waitMillis));
+            } catch (TimeoutException e) {
+                coalesced.decrement();
+                return loader.apply(key);
+            }
+        }
+        try {
+            V value = loader.apply(key);
+            flight.complete(share.apply(value));
+            return value;
+        } catch (RuntimeException | Error e) {
+            flight.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, flight);
+        }
+    }
+
+    public long getCalls() {
+        return calls.sum();
+    }
+
+    public long getCoalesced() {
+        return coalesced.sum();
+    }
+}
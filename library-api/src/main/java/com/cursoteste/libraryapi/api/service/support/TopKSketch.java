@@ -0,0 +1,88 @@
+package com.cursoteste.libraryapi.api.service.support;
+
+import lombok.Value;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Space-Saving sketch of the most frequent keys, with a fixed number of counters.
+ * <p>
+ * A key that is not counted yet takes over the smallest counter when all are in use, inheriting
+ * its count as the error of the estimate. Counts are never underestimated, are overestimated by
+ * at most the reported error, and every key seen more than {@code total / capacity} times is
+ * kept. Updates are synchronized and cost at most one pass over the counters.
+ */
+public class TopKSketch<K> {
+
+    @Value
+    public static class Entry<K> {
+        K key;
+        long count;
+        long error;
+    }
+
+    private final int capacity;
+    private final Map<K, long[]> counters;
+
+    public TopKSketch(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive");
+        }
+        this.capacity = capacity;
+        this.counters = new HashMap<>(capacity * 2);
+    }
+
+    public synchronized void add(K key) {
+        long[] counter = counters.get(key);
+        if (counter != null) {
+            counter[0]++;
+            return;
+        }
+        if (counters.size() < capacity) {
+            counters.put(key, new long[]{1, 0});
+            return;
+        }
+        K smallest = null;
+        long min = Long.MAX_VALUE;
+        for (Map.Entry<K, long[]> entry : counters.entrySet()) {
+            if (entry.getValue()[0] < min) {
+                min = entry.getValue()[0];
+                smallest = entry.getKey();
+            }
+        }
+        counters.remove(smallest);
+        counters.put(key, new long[]{min + 1, min});
+    }
+
+    /**
+     * The {@code n} keys with the highest estimated counts, highest first.
+     */
+    public synchronized List<Entry<K>> top(int n) {
+        return counters.entrySet().stream()
+                .map(entry -> new Entry<>(entry.getKey(), entry.getValue()[0], entry.getValue()[1]))
+                .sorted(Comparator.comparingLong((Entry<K> entry) -> entry.getCount()).reversed())
+                .limit(n)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Replaces the counters with exact counts, keeping the highest ones that fit.
+     */
+    public synchronized void reset(List<Entry<K>> exact) {
+        counters.clear();
+        List<Entry<K>> sorted = new ArrayList<>(exact);
+        sorted.sort(Comparator.comparingLong((Entry<K> entry) -> entry.getCount()).reversed());
+        for (Entry<K> entry : sorted.subList(0, Math.min(capacity, sorted.size()))) {
+            counters.put(entry.getKey(), new long[]{entry.getCount(), entry.getError()});
+        }
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+}
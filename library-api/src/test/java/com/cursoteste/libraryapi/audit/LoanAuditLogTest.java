@@ -0,0 +1,181 @@
+package com.cursoteste.libraryapi.audit;
+
+import com.cursoteste.libraryapi.api.audit.LoanAuditEvent;
+import com.cursoteste.libraryapi.api.audit.LoanAuditLog;
+import com.cursoteste.libraryapi.api.audit.LoanAuditState;
+import com.cursoteste.libraryapi.api.model.entity.Book;
+import com.cursoteste.libraryapi.api.model.entity.Loan;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class LoanAuditLogTest {
+
+    private static final Clock CLOCK = Clock.fixed(Instant.parse("2020-10-01T10:00:00Z"), ZoneOffset.UTC);
+
+    @TempDir
+    Path dir;
+
+    private LoanAuditLog open(int capacity, long flushIntervalMillis) throws Exception {
+        return new LoanAuditLog(new ObjectMapper(), CLOCK, new SimpleMeterRegistry(),
+                dir.resolve("loan-audit.ndjson").toString(), capacity, 100, flushIntervalMillis, false);
+    }
+
+    private static Loan loan(Long id, Long bookId) {
+        return Loan.builder().id(id).customer("Fulano").book(Book.builder().id(bookId).isbn("isbn-" + bookId).build()).build();
+    }
+
+    @Test
+    @DisplayName("Deve reconstruir o estado dos empréstimos a partir do log")
+    public void rebuildTest() throws Exception {
+        //cenario
+        LoanAuditLog log = open(100, 60_000);
+        log.append(LoanAuditEvent.created(loan(1l, 10l)));
+        log.append(LoanAuditEvent.created(loan(2l, 20l)));
+        log.append(LoanAuditEvent.returned(1l, true));
+
+        //execucao
+        Map<Long, LoanAuditState> states = log.rebuild();
+
+        //verificacao
+        assertThat(states).containsOnlyKeys(1l, 2l);
+        assertThat(states.get(1l).isReturned()).isTrue();
+        assertThat(states.get(1l).getLastSequence()).isEqualTo(3);
+        assertThat(states.get(2l).isReturned()).isFalse();
+        assertThat(states.get(2l).getIsbn()).isEqualTo("isbn-20");
+        log.close();
+    }
+
+    @Test
+    @DisplayName("Deve gravar os eventos pendentes ao fechar o log e continuar a numeração ao reabrir")
+    public void closeAndReopenTest() throws Exception {
+        //cenario
+        LoanAuditLog log = open(100, 60_000);
+        log.append(LoanAuditEvent.created(loan(1l, 10l)));
+        log.append(LoanAuditEvent.created(loan(2l, 20l)));
+        assertThat(log.getPending()).isEqualTo(2);
+
+        //execucao
+        log.close();
+        LoanAuditLog reopened = open(100, 60_000);
+        reopened.append(LoanAuditEvent.returned(2l, true));
+        List<LoanAuditEvent> events = new ArrayList<>();
+        reopened.replay(0, events::add);
+
+        //verificacao
+        assertThat(events).extracting(LoanAuditEvent::getSequence).containsExactly(1l, 2l, 3l);
+        assertThat(events.get(0).getTimestamp()).isEqualTo(CLOCK.millis());
+        reopened.close();
+    }
+
+    @Test
+    @DisplayName("Deve descartar uma linha incompleta deixada por uma queda durante a escrita")
+    public void partialLineRecoveryTest() throws Exception {
+        //cenario
+        LoanAuditLog log = open(100, 60_000);
+        log.append(LoanAuditEvent.created(loan(1l, 10l)));
+        log.close();
+        Files.write(dir.resolve("loan-audit.ndjson"), "{\"sequence\":2,\"ty".getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+
+        //execucao
+        LoanAuditLog reopened = open(100, 60_000);
+        reopened.append(LoanAuditEvent.returned(1l, true));
+        List<LoanAuditEvent> events = new ArrayList<>();
+        reopened.replay(0, events::add);
+
+        //verificacao
+        assertThat(events).extracting(LoanAuditEvent::getType)
+                .containsExactly(LoanAuditEvent.Type.CREATED, LoanAuditEvent.Type.RETURNED);
+        assertThat(events.get(1).getSequence()).isEqualTo(2);
+        reopened.close();
+    }
+
+    @Test
+    @DisplayName("Deve gravar na thread chamadora quando a fila estiver cheia, mantendo a ordem")
+    public void callerRunsWhenFullTest() throws Exception {
+        //cenario
+        LoanAuditLog log = open(2, 60_000);
+
+        //execucao
+        for (long id = 1; id <= 5; id++) {
+            log.append(LoanAuditEvent.created(loan(id, id)));
+        }
+
+        //verificacao
+        assertThat(log.getCallerRuns()).isEqualTo(1);
+        List<LoanAuditEvent> events = new ArrayList<>();
+        log.replay(0, events::add);
+        assertThat(events).extracting(LoanAuditEvent::getLoanId).containsExactly(1l, 2l, 3l, 4l, 5l);
+        log.close();
+    }
+
+    @Test
+    @DisplayName("Deve copiar as linhas posteriores à sequência informada")
+    public void replayAfterSequenceTest() throws Exception {
+        //cenario
+        LoanAuditLog log = open(100, 60_000);
+        log.append(LoanAuditEvent.created(loan(1l, 10l)));
+        log.append(LoanAuditEvent.returned(1l, true));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        //execucao
+        long count = log.replay(1, out);
+
+        //verificacao
+        assertThat(count).isEqualTo(1);
+        String[] lines = out.toString(StandardCharsets.UTF_8.name()).split("\n");
+        assertThat(lines).hasSize(1);
+        assertThat(new ObjectMapper().readValue(lines[0], LoanAuditEvent.class).getType())
+                .isEqualTo(LoanAuditEvent.Type.RETURNED);
+        log.close();
+    }
+
+    @Test
+    @DisplayName("Deve ler a partir do trecho indexado sem reler o início do log")
+    public void replayFromIndexTest() throws Exception {
+        //cenario
+        LoanAuditLog log = open(100, 60_000);
+        for (long id = 1; id <= 3000; id++) {
+            log.append(LoanAuditEvent.created(loan(id, id)));
+        }
+        log.flush();
+        Path file = dir.resolve("loan-audit.ndjson");
+        byte[] content = Files.readAllBytes(file);
+        int secondLine = new String(content, StandardCharsets.UTF_8).indexOf('\n') + 1;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap("x".getBytes(StandardCharsets.UTF_8)), secondLine);
+        }
+
+        //execucao
+        List<LoanAuditEvent> events = new ArrayList<>();
+        long count = log.replay(2500, events::add);
+        log.close();
+        LoanAuditLog reopened = open(100, 60_000);
+        long reopenedCount = reopened.replay(2500, event -> { });
+
+        //verificacao
+        assertThat(count).isEqualTo(500);
+        assertThat(events.get(0).getSequence()).isEqualTo(2501);
+        assertThat(events.get(499).getSequence()).isEqualTo(3000);
+        assertThat(reopenedCount).isEqualTo(500);
+        reopened.close();
+    }
+}
@@ -0,0 +1,113 @@
+package com.cursoteste.libraryapi.benchmark;
+
+import com.cursoteste.libraryapi.LibraryApiApplication;
+import com.cursoteste.libraryapi.api.model.entity.Book;
+import com.cursoteste.libraryapi.api.service.BookService;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Starts the application without the web layer on a private in-memory H2 database,
+ * so each benchmark trial works against a clean schema.
+ */
+final class BenchmarkContext {
+
+    private static final String[] WORDS = {"aventuras", "viagem", "historia", "mar", "cidade", "noite", "tempo", "jardim"};
+    private static final int SEED_CHUNK = 500;
+
+    private BenchmarkContext() {
+    }
+
+    static ConfigurableApplicationContext start(String name) {
+        return start(name, WebApplicationType.NONE);
+    }
+
+    /**
+     * Same as {@link #start(String)}, but with the embedded server listening on a random port
+     * when {@code type} is {@link WebApplicationType#SERVLET}, and with extra command line
+     * properties.
+     */
+    static ConfigurableApplicationContext start(String name, WebApplicationType type, String... properties) {
+        System.setProperty("spring.devtools.restart.enabled", "false");
+        SpringApplication application = new SpringApplication(LibraryApiApplication.class);
+        application.setWebApplicationType(type);
+        List<String> args = new ArrayList<>(Arrays.asList(
+                "--spring.datasource.url=jdbc:h2:mem:" + name + ";DB_CLOSE_DELAY=-1",
+                "--server.port=0",
+                "--spring.main.banner-mode=off",
+                "--logging.level.root=WARN"));
+        args.addAll(Arrays.asList(properties));
+        return application.run(args.toArray(new String[0]));
+    }
+
+    static String baseUrl(ConfigurableApplicationContext context) {
+        return "http://localhost:" + context.getEnvironment().getProperty("local.server.port");
+    }
+
+    /**
+     * Sends a JSON request and returns the response body, failing on any error status.
+     */
+    static byte[] http(String method, String url, String body) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) URI.create(url).toURL().openConnection();
+        connection.setRequestMethod(method);
+        connection.setRequestProperty("Accept", "application/json");
+        if (body != null) {
+            connection.setDoOutput(true);
+            connection.setRequestProperty("Content-Type", "application/json");
+            try (OutputStream out = connection.getOutputStream()) {
+                out.write(body.getBytes(StandardCharsets.UTF_8));
+            }
+        }
+        if (connection.getResponseCode() >= 400) {
+            throw new IllegalStateException(method + " " + url + " returned " + connection.getResponseCode());
+        }
+        try (InputStream in = connection.getInputStream()) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            for (int read; (read = in.read(buffer)) != -1; ) {
+                out.write(buffer, 0, read);
+            }
+            return out.toByteArray();
+        }
+    }
+
+    /**
+     * Inserts {@code size} books with isbns {@code isbn-0 .. isbn-(size-1)} and titles and authors
+     * drawn from a small vocabulary, so searches match a realistic share of the rows.
+     */
+    static void seedBooks(ConfigurableApplicationContext context, int size) {
+        BookService service = context.getBean(BookService.class);
+        List<Book> chunk = new ArrayList<>(SEED_CHUNK);
+        for (int i = 0; i < size; i++) {
+            chunk.add(book(i));
+            if (chunk.size() == SEED_CHUNK) {
+                service.saveAll(chunk);
+                chunk = new ArrayList<>(SEED_CHUNK);
+            }
+        }
+        if (!chunk.isEmpty()) {
+            service.saveAll(chunk);
+        }
+    }
+
+    static String isbn(int n) {
+        return "isbn-" + n;
+    }
+
+    static Book book(int n) {
+        String title = WORDS[n % WORDS.length] + " " + WORDS[(n / WORDS.length) % WORDS.length] + " " + n;
+        return Book.builder().title(title).author("Autor " + (n % 1000)).isbn(isbn(n)).build();
+    }
+}
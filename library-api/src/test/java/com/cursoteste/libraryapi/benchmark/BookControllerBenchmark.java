@@ -0,0 +1,63 @@
+package com.cursoteste.libraryapi.benchmark;
+
+import com.cursoteste.libraryapi.api.model.repository.BookRepository;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Full HTTP round trips against the embedded server, covering the controller, JSON and
+ * service layers together on catalogs of several sizes.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class BookControllerBenchmark {
+
+    @Param({"1000", "10000", "100000"})
+    private int datasetSize;
+
+    private ConfigurableApplicationContext context;
+    private String baseUrl;
+    private long firstId;
+    private int sequence;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkContext.start("http" + datasetSize, WebApplicationType.SERVLET);
+        BenchmarkContext.seedBooks(context, datasetSize);
+        baseUrl = BenchmarkContext.baseUrl(context) + "/api/books";
+        firstId = context.getBean(BookRepository.class).findFirst1000ByIdGreaterThanOrderByIdAsc(0l).get(0).getId();
+        sequence = datasetSize;
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public byte[] getById() throws IOException {
+        return BenchmarkContext.http("GET", baseUrl + "/" + (firstId + ThreadLocalRandom.current().nextInt(datasetSize)), null);
+    }
+
+    @Benchmark
+    public byte[] find() throws IOException {
+        String title = BenchmarkContext.book(ThreadLocalRandom.current().nextInt(datasetSize)).getTitle();
+        return BenchmarkContext.http("GET", baseUrl + "?page=0&size=10&title=" + title.substring(0, title.indexOf(' ')), null);
+    }
+
+    @Benchmark
+    public byte[] create() throws IOException {
+        int n = sequence++;
+        String json = "{\"title\":\"Titulo " + n + "\",\"author\":\"Autor\",\"isbn\":\"" + BenchmarkContext.isbn(n) + "\"}";
+        return BenchmarkContext.http("POST", baseUrl, json);
+    }
+}
@@ -0,0 +1,66 @@
+package com.cursoteste.libraryapi.benchmark;
+
+import com.cursoteste.libraryapi.api.dto.BatchItemResultDTO;
+import com.cursoteste.libraryapi.api.model.entity.Book;
+import com.cursoteste.libraryapi.api.service.BookService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Rows per second of the one-at-a-time path ({@link BookService#save}) against the
+ * chunked path ({@link BookService#saveAll}) used by {@code POST /api/books/batch}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class BookImportBenchmark {
+
+    private static final int ROWS = 500;
+
+    private ConfigurableApplicationContext context;
+    private BookService service;
+    private long sequence;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkContext.start("import");
+        service = context.getBean(BookService.class);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public Book oneAtATime() {
+        Book last = null;
+        for (int i = 0; i < ROWS; i++) {
+            last = service.save(newBook());
+        }
+        return last;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public List<BatchItemResultDTO> batched() {
+        List<Book> books = new ArrayList<>(ROWS);
+        for (int i = 0; i < ROWS; i++) {
+            books.add(newBook());
+        }
+        return service.saveAll(books);
+    }
+
+    private Book newBook() {
+        long n = sequence++;
+        return Book.builder().title("Title " + n).author("Author " + n).isbn("isbn-" + n).build();
+    }
+}
@@ -0,0 +1,89 @@
+package com.cursoteste.libraryapi.benchmark;
+
+import com.cursoteste.libraryapi.api.model.entity.Book;
+import com.cursoteste.libraryapi.api.model.repository.BookRepository;
+import com.cursoteste.libraryapi.api.service.BookService;
+import com.cursoteste.libraryapi.api.service.search.BookSearchIndex;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link BookService} operations against catalogs of several sizes. Lookups pick a random
+ * seeded isbn; searches run once through the in-memory index and once through the database
+ * (a sorted request skips the index).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class BookServiceBenchmark {
+
+    @Param({"1000", "10000", "100000"})
+    private int datasetSize;
+
+    private ConfigurableApplicationContext context;
+    private BookService service;
+    private BookRepository repository;
+    private int sequence;
+
+    @Setup(Level.Trial)
+    public void setUp() throws InterruptedException {
+        context = BenchmarkContext.start("books" + datasetSize);
+        BenchmarkContext.seedBooks(context, datasetSize);
+        service = context.getBean(BookService.class);
+        repository = context.getBean(BookRepository.class);
+        sequence = datasetSize;
+        BookSearchIndex index = context.getBean(BookSearchIndex.class);
+        while (!index.isReady()) {
+            Thread.sleep(10);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public Book save() {
+        return service.save(BenchmarkContext.book(sequence++));
+    }
+
+    @Benchmark
+    public Optional<Book> getBookByIsbn() {
+        return service.getBookByIsbn(randomIsbn());
+    }
+
+    @Benchmark
+    public Optional<Book> findByIsbnUncached() {
+        return repository.findByIsbn(randomIsbn());
+    }
+
+    @Benchmark
+    public Page<Book> findIndexed() {
+        return service.find(filter(), PageRequest.of(0, 10));
+    }
+
+    @Benchmark
+    public Page<Book> findDatabase() {
+        return service.find(filter(), PageRequest.of(0, 10, Sort.by("id")));
+    }
+
+    private String randomIsbn() {
+        return BenchmarkContext.isbn(ThreadLocalRandom.current().nextInt(datasetSize));
+    }
+
+    private Book filter() {
+        Book sample = BenchmarkContext.book(ThreadLocalRandom.current().nextInt(datasetSize));
+        return Book.builder().title(sample.getTitle().substring(0, sample.getTitle().lastIndexOf(' '))).build();
+    }
+}
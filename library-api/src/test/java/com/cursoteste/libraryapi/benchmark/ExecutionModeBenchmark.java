@@ -0,0 +1,80 @@
+package com.cursoteste.libraryapi.benchmark;
+
+import com.cursoteste.libraryapi.api.model.repository.BookRepository;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Load test of the two request execution modes against a slow database (searches wait
+ * {@value #SLOW_QUERY_MS} ms in the database, see {@link SlowQueries}). In each mode, a group of
+ * clients keeps the server busy with searches while a smaller group fetches single books. The
+ * sampled latency percentiles of {@code getById} show whether the cheap requests are starved.
+ * <ul>
+ *     <li>{@code platform} runs on a Tomcat pool of {@value #TOMCAT_THREADS} threads.</li>
+ *     <li>{@code virtual} runs each request on a virtual thread, with multi-row queries limited
+ *     to {@value #MAX_CONCURRENT_QUERIES} at a time.</li>
+ * </ul>
+ * Searches rejected by the query limit are counted as completed operations.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 10)
+@Measurement(iterations = 3, time = 10)
+@Fork(value = 1, jvmArgs = "-Dhttp.maxConnections=64")
+public class ExecutionModeBenchmark {
+
+    private static final int DATASET_SIZE = 10000;
+    private static final int SLOW_QUERY_MS = 200;
+    private static final int TOMCAT_THREADS = 16;
+    private static final int MAX_CONCURRENT_QUERIES = 6;
+
+    @Param({"platform", "virtual"})
+    private String mode;
+
+    private ConfigurableApplicationContext context;
+    private String baseUrl;
+    private long firstId;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkContext.start("mode" + mode, WebApplicationType.SERVLET,
+                "--server.tomcat.threads.max=" + TOMCAT_THREADS,
+                "--library.execution.virtual-threads=" + "virtual".equals(mode),
+                "--library.jdbc.max-concurrent-queries=" + MAX_CONCURRENT_QUERIES,
+                "--spring.main.sources=" + SlowQueries.class.getName(),
+                "--benchmark.slow-query-ms=" + SLOW_QUERY_MS);
+        BenchmarkContext.seedBooks(context, DATASET_SIZE);
+        baseUrl = BenchmarkContext.baseUrl(context) + "/api/books";
+        firstId = context.getBean(BookRepository.class).findFirst1000ByIdGreaterThanOrderByIdAsc(0l).get(0).getId();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    @Group("mixed")
+    @GroupThreads(24)
+    public byte[] search() throws IOException {
+        int page = ThreadLocalRandom.current().nextInt(100);
+        try {
+            return BenchmarkContext.http("GET", baseUrl + "?title=a&sort=title&size=20&page=" + page, null);
+        } catch (IllegalStateException rejected) {
+            return null;
+        }
+    }
+
+    @Benchmark
+    @Group("mixed")
+    @GroupThreads(8)
+    public byte[] getById() throws IOException {
+        return BenchmarkContext.http("GET", baseUrl + "/" + (firstId + ThreadLocalRandom.current().nextInt(DATASET_SIZE)), null);
+    }
+}
@@ -0,0 +1,169 @@
+package com.cursoteste.libraryapi.benchmark;
+
+import com.cursoteste.libraryapi.api.dto.BookDTO;
+import com.cursoteste.libraryapi.api.dto.BookPageDTO;
+import com.cursoteste.libraryapi.api.dto.LoanDto;
+import com.cursoteste.libraryapi.api.mapper.impl.BookMapperImpl;
+import com.cursoteste.libraryapi.api.model.entity.Book;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.module.blackbird.BlackbirdModule;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * JSON encoding and decoding of the request and response bodies, with an {@link ObjectMapper}
+ * configured the way Spring Boot configures the one used by the controllers, with and without
+ * Blackbird. The book page benchmarks compare the search response as a {@link PageImpl} of
+ * {@link BookDTO}s with the {@link BookPageDTO} written from the entities; run with the gc
+ * profiler to compare their allocation rates.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JsonBenchmark {
+
+    private ObjectMapper mapper;
+    private ObjectWriter bookWriter;
+    private ObjectReader bookReader;
+    private ObjectWriter bookListWriter;
+    private ObjectReader bookListReader;
+    private ObjectWriter loanWriter;
+    private ObjectReader loanReader;
+    private ObjectWriter blackbirdBookListWriter;
+    private ObjectWriter blackbirdLoanWriter;
+
+    private BookDTO book;
+    private LoanDto loan;
+    private byte[] bookJson;
+    private byte[] loanJson;
+
+    /**
+     * A page worth of books, for the list benchmarks only.
+     */
+    @State(Scope.Benchmark)
+    public static class BookList {
+
+        @Param({"10", "100", "1000"})
+        private int listSize;
+
+        private List<BookDTO> books;
+        private byte[] json;
+
+        @Setup
+        public void setUp(JsonBenchmark benchmark) throws IOException {
+            books = new ArrayList<>(listSize);
+            for (int i = 0; i < listSize; i++) {
+                books.add(BookDTO.builder().id((long) i).title("As aventuras " + i).author("Fulano").isbn("isbn-" + i).build());
+            }
+            json = benchmark.bookListWriter.writeValueAsBytes(books);
+        }
+    }
+
+    /**
+     * A page of books as the search returns them.
+     */
+    @State(Scope.Benchmark)
+    public static class BookPage {
+
+        @Param({"100"})
+        private int pageSize;
+
+        private Page<Book> books;
+
+        @Setup
+        public void setUp() {
+            List<Book> content = new ArrayList<>(pageSize);
+            for (int i = 0; i < pageSize; i++) {
+                content.add(Book.builder().id((long) i).title("As aventuras " + i).author("Fulano").isbn("isbn-" + i)
+                        .copies(1).build());
+            }
+            books = new PageImpl<>(content, PageRequest.of(0, pageSize), pageSize * 10L);
+        }
+    }
+
+    @Setup
+    public void setUp() throws IOException {
+        mapper = Jackson2ObjectMapperBuilder.json().build();
+        ObjectMapper blackbird = Jackson2ObjectMapperBuilder.json().modulesToInstall(new BlackbirdModule()).build();
+        bookWriter = mapper.writerFor(BookDTO.class);
+        bookReader = mapper.readerFor(BookDTO.class);
+        bookListWriter = mapper.writerFor(mapper.getTypeFactory().constructCollectionType(List.class, BookDTO.class));
+        bookListReader = mapper.readerFor(mapper.getTypeFactory().constructCollectionType(List.class, BookDTO.class));
+        loanWriter = mapper.writerFor(LoanDto.class);
+        loanReader = mapper.readerFor(LoanDto.class);
+        blackbirdBookListWriter = blackbird.writerFor(blackbird.getTypeFactory().constructCollectionType(List.class, BookDTO.class));
+        blackbirdLoanWriter = blackbird.writerFor(LoanDto.class);
+
+        book = BookDTO.builder().id(1l).title("As aventuras").author("Fulano").isbn("123").build();
+        loan = LoanDto.builder().isbn("123").customer("Fulano").email("fulano@email.com").build();
+
+        bookJson = bookWriter.writeValueAsBytes(book);
+        loanJson = loanWriter.writeValueAsBytes(loan);
+    }
+
+    @Benchmark
+    public byte[] encodeBook() throws IOException {
+        return bookWriter.writeValueAsBytes(book);
+    }
+
+    @Benchmark
+    public BookDTO decodeBook() throws IOException {
+        return bookReader.readValue(bookJson);
+    }
+
+    @Benchmark
+    public byte[] encodeBookList(BookList list) throws IOException {
+        return bookListWriter.writeValueAsBytes(list.books);
+    }
+
+    @Benchmark
+    public List<BookDTO> decodeBookList(BookList list) throws IOException {
+        return bookListReader.readValue(list.json);
+    }
+
+    @Benchmark
+    public byte[] encodeLoan() throws IOException {
+        return loanWriter.writeValueAsBytes(loan);
+    }
+
+    @Benchmark
+    public LoanDto decodeLoan() throws IOException {
+        return loanReader.readValue(loanJson);
+    }
+
+    @Benchmark
+    public byte[] encodeBookListBlackbird(BookList list) throws IOException {
+        return blackbirdBookListWriter.writeValueAsBytes(list.books);
+    }
+
+    @Benchmark
+    public byte[] encodeLoanBlackbird() throws IOException {
+        return blackbirdLoanWriter.writeValueAsBytes(loan);
+    }
+
+    @Benchmark
+    public byte[] encodeBookPageOfDtos(BookPage page) throws IOException {
+        BookMapperImpl bookMapper = new BookMapperImpl();
+        List<BookDTO> list = page.books.getContent().stream().map(bookMapper::toDto).collect(Collectors.toList());
+        return mapper.writeValueAsBytes(new PageImpl<>(list, page.books.getPageable(), page.books.getTotalElements()));
+    }
+
+    @Benchmark
+    public byte[] encodeBookPageStreamed(BookPage page) throws IOException {
+        return mapper.writeValueAsBytes(new BookPageDTO(page.books));
+    }
+}
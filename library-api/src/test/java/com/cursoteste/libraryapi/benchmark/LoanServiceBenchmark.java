@@ -0,0 +1,87 @@
+package com.cursoteste.libraryapi.benchmark;
+
+import com.cursoteste.libraryapi.api.exception.BusinessException;
+import com.cursoteste.libraryapi.api.model.entity.Book;
+import com.cursoteste.libraryapi.api.model.entity.Loan;
+import com.cursoteste.libraryapi.api.model.repository.BookRepository;
+import com.cursoteste.libraryapi.api.service.LoanService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link LoanService#save} against catalogs of several sizes. Every accepted loan is returned
+ * right away so the books can be cycled through indefinitely; the first book stays loaned to
+ * measure the rejection path.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class LoanServiceBenchmark {
+
+    @Param({"1000", "10000", "100000"})
+    private int datasetSize;
+
+    private ConfigurableApplicationContext context;
+    private LoanService service;
+    private long[] bookIds;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkContext.start("loans" + datasetSize);
+        BenchmarkContext.seedBooks(context, datasetSize);
+        service = context.getBean(LoanService.class);
+        bookIds = loadIds(context.getBean(BookRepository.class));
+        service.save(newLoan(bookIds[0]));
+        next = 1;
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public Loan saveAndReturn() {
+        Loan loan = service.save(newLoan(bookIds[next]));
+        next = next + 1 == bookIds.length ? 1 : next + 1;
+        loan.setReturned(true);
+        return service.update(loan);
+    }
+
+    @Benchmark
+    public BusinessException saveRejected() {
+        try {
+            service.save(newLoan(bookIds[0]));
+            throw new IllegalStateException("loan of an unavailable book was accepted");
+        } catch (BusinessException e) {
+            return e;
+        }
+    }
+
+    private static Loan newLoan(long bookId) {
+        return Loan.builder().book(Book.builder().id(bookId).build())
+                .customer("Fulano").customerEmail("fulano@email.com").loanDate(LocalDate.now()).build();
+    }
+
+    private static long[] loadIds(BookRepository repository) {
+        long[] ids = new long[(int) repository.count()];
+        int size = 0;
+        long last = 0;
+        List<Book> page;
+        while (!(page = repository.findFirst1000ByIdGreaterThanOrderByIdAsc(last)).isEmpty()) {
+            for (Book book : page) {
+                ids[size++] = book.getId();
+            }
+            last = ids[size - 1];
+        }
+        return ids;
+    }
+}
@@ -0,0 +1,75 @@
+package com.cursoteste.libraryapi.benchmark;
+
+import com.cursoteste.libraryapi.api.dto.BookDTO;
+import com.cursoteste.libraryapi.api.dto.LoanDto;
+import com.cursoteste.libraryapi.api.mapper.BookMapper;
+import com.cursoteste.libraryapi.api.mapper.LoanMapper;
+import com.cursoteste.libraryapi.api.mapper.impl.BookMapperImpl;
+import com.cursoteste.libraryapi.api.mapper.impl.LoanMapperImpl;
+import com.cursoteste.libraryapi.api.model.entity.Book;
+import com.cursoteste.libraryapi.api.model.entity.Loan;
+import org.modelmapper.ModelMapper;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.LocalDate;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Hand-written mappers against the reflective {@link ModelMapper} they replaced.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MappingBenchmark {
+
+    private final ModelMapper modelMapper = new ModelMapper();
+    private final BookMapper bookMapper = new BookMapperImpl();
+    private final LoanMapper loanMapper = new LoanMapperImpl(bookMapper);
+
+    private Book book;
+    private BookDTO bookDto;
+    private Loan loan;
+
+    @Setup
+    public void setUp() {
+        book = Book.builder().id(1l).title("As aventuras").author("Fulano").isbn("123").build();
+        bookDto = BookDTO.builder().title("As aventuras").author("Fulano").isbn("123").build();
+        loan = Loan.builder().id(1l).book(book).customer("Fulano").loanDate(LocalDate.now()).build();
+        modelMapper.map(book, BookDTO.class);
+        modelMapper.map(bookDto, Book.class);
+        modelMapper.map(loan, LoanDto.class);
+    }
+
+    @Benchmark
+    public BookDTO modelMapperBookToDto() {
+        return modelMapper.map(book, BookDTO.class);
+    }
+
+    @Benchmark
+    public BookDTO bookMapperToDto() {
+        return bookMapper.toDto(book);
+    }
+
+    @Benchmark
+    public Book modelMapperDtoToBook() {
+        return modelMapper.map(bookDto, Book.class);
+    }
+
+    @Benchmark
+    public Book bookMapperToEntity() {
+        return bookMapper.toEntity(bookDto);
+    }
+
+    @Benchmark
+    public LoanDto modelMapperLoanToDto() {
+        return modelMapper.map(loan, LoanDto.class);
+    }
+
+    @Benchmark
+    public LoanDto loanMapperToDto() {
+        return loanMapper.toDto(loan);
+    }
+}
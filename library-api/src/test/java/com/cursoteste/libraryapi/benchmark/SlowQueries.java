@@ -0,0 +1,68 @@
+package com.cursoteste.libraryapi.benchmark;
+
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.core.env.Environment;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+/**
+ * Simulates a slow database for the load tests: every {@code like} query (the book searches)
+ * waits {@code benchmark.slow-query-ms} before executing, holding its connection and thread
+ * without using CPU, the way a query waiting on a remote database would. Registered through
+ * {@code --spring.main.sources}.
+ */
+public class SlowQueries implements BeanPostProcessor {
+
+    private final long latencyMs;
+
+    public SlowQueries(Environment environment) {
+        this.latencyMs = environment.getProperty("benchmark.slow-query-ms", Long.class, 0l);
+    }
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+        if (!(bean instanceof DataSource) || latencyMs == 0) {
+            return bean;
+        }
+        return new DelegatingDataSource((DataSource) bean) {
+            @Override
+            public Connection getConnection() throws SQLException {
+                return proxy(Connection.class, super.getConnection(), (target, method, args) -> {
+                    Object result = method.invoke(target, args);
+                    if (method.getName().equals("prepareStatement") && ((String) args[0]).contains(" like ")) {
+                        return proxy(PreparedStatement.class, result, (statement, call, callArgs) -> {
+                            if (call.getName().startsWith("execute")) {
+                                Thread.sleep(latencyMs);
+                            }
+                            return call.invoke(statement, callArgs);
+                        });
+                    }
+                    return result;
+                });
+            }
+        };
+    }
+
+    private interface Handler {
+        Object invoke(Object target, Method method, Object[] args) throws Throwable;
+    }
+
+    private static <T> T proxy(Class<T> type, Object target, Handler handler) {
+        InvocationHandler invocationHandler = (proxy, method, args) -> {
+            try {
+                return handler.invoke(target, method, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        };
+        return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, invocationHandler));
+    }
+}
@@ -0,0 +1,149 @@
+package com.cursoteste.libraryapi.cache;
+
+import com.cursoteste.libraryapi.api.cache.CacheInvalidation;
+import com.cursoteste.libraryapi.api.cache.CacheInvalidationBus;
+import com.cursoteste.libraryapi.api.cache.CacheInvalidator;
+import com.cursoteste.libraryapi.api.config.CacheInvalidationConfig;
+import com.cursoteste.libraryapi.api.model.entity.Book;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.test.context.transaction.TestTransaction;
+
+import javax.persistence.EntityManagerFactory;
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.cursoteste.libraryapi.model.repository.BookRepositoryTest.createNewBook;
+import static org.assertj.core.api.Assertions.assertThat;
+
+@ExtendWith(SpringExtension.class)
+@ActiveProfiles("test")
+@DataJpaTest
+@Import({CacheInvalidator.class, CacheInvalidationConfig.class, CacheInvalidatorTest.Caches.class})
+public class CacheInvalidatorTest {
+
+    @TestConfiguration
+    static class Caches {
+
+        @Bean
+        public CacheManager cacheManager() {
+            return new ConcurrentMapCacheManager("booksByIsbn");
+        }
+    }
+
+    @Autowired
+    CacheInvalidator invalidator;
+
+    @Autowired
+    CacheInvalidationBus bus;
+
+    @Autowired
+    CacheManager cacheManager;
+
+    @Autowired
+    EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    TestEntityManager entityManager;
+
+    @Test
+    @DisplayName("Deve servir o livro do cache de segundo nível sem consultar a base")
+    public void secondLevelCacheHitTest() {
+        //cenario
+        Long id = cachedBook("001");
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        long hits = statistics.getSecondLevelCacheHitCount();
+        entityManager.clear();
+
+        //execucao
+        Book book = entityManager.find(Book.class, id);
+
+        //verificacao
+        assertThat(book.getIsbn()).isEqualTo("001");
+        assertThat(statistics.getSecondLevelCacheHitCount()).isEqualTo(hits + 1);
+    }
+
+    @Test
+    @DisplayName("Deve remover do cache o livro alterado por outra instância")
+    public void remoteEntityInvalidationTest() {
+        //cenario
+        Long id = cachedBook("001");
+
+        //execucao
+        bus.publish(new CacheInvalidation("outra-instancia", CacheInvalidation.Kind.ENTITY, Book.class.getName(), id));
+
+        //verificacao
+        assertThat(entityManagerFactory.getCache().contains(Book.class, id)).isFalse();
+    }
+
+    @Test
+    @DisplayName("Deve ignorar as invalidações publicadas pela própria instância")
+    public void ownInvalidationIgnoredTest() {
+        //cenario
+        Long id = cachedBook("001");
+
+        //execucao
+        bus.publish(new CacheInvalidation(invalidator.getInstanceId(), CacheInvalidation.Kind.ENTITY, Book.class.getName(), id));
+
+        //verificacao
+        assertThat(entityManagerFactory.getCache().contains(Book.class, id)).isTrue();
+    }
+
+    @Test
+    @DisplayName("Deve remover a chave do cache do Spring invalidada por outra instância")
+    public void remoteSpringCacheInvalidationTest() {
+        //cenario
+        cacheManager.getCache("booksByIsbn").put("001", "livro");
+        cacheManager.getCache("booksByIsbn").put("002", "livro");
+
+        //execucao
+        bus.publish(new CacheInvalidation("outra-instancia", CacheInvalidation.Kind.CACHE, "booksByIsbn", "001"));
+
+        //verificacao
+        assertThat(cacheManager.getCache("booksByIsbn").get("001")).isNull();
+        assertThat(cacheManager.getCache("booksByIsbn").get("002")).isNotNull();
+    }
+
+    @Test
+    @DisplayName("Deve publicar a invalidação apenas após o commit da transação")
+    public void publishAfterCommitTest() {
+        //cenario
+        List<CacheInvalidation> published = new ArrayList<>();
+        bus.subscribe(published::add);
+
+        //execucao
+        invalidator.entityChanged(Book.class, 1l);
+        List<CacheInvalidation> beforeCommit = new ArrayList<>(published);
+        TestTransaction.flagForCommit();
+        TestTransaction.end();
+
+        //verificacao
+        assertThat(beforeCommit).isEmpty();
+        assertThat(published).containsExactly(new CacheInvalidation(invalidator.getInstanceId(),
+                CacheInvalidation.Kind.ENTITY, Book.class.getName(), 1l));
+    }
+
+    private Long cachedBook(String isbn) {
+        Long id = entityManager.persistAndFlush(createNewBook(isbn)).getId();
+        TestTransaction.flagForCommit();
+        TestTransaction.end();
+        TestTransaction.start();
+        entityManager.clear();
+        entityManager.find(Book.class, id);
+        assertThat(entityManagerFactory.getCache().contains(Book.class, id)).isTrue();
+        return id;
+    }
+}
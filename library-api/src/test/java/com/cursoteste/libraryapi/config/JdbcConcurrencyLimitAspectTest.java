@@ -0,0 +1,119 @@
+package com.cursoteste.libraryapi.config;
+
+import com.cursoteste.libraryapi.api.config.JdbcConcurrencyLimitAspect;
+import com.cursoteste.libraryapi.api.exception.QueryLimitExceededException;
+import com.cursoteste.libraryapi.api.model.entity.Book;
+import com.cursoteste.libraryapi.api.model.repository.BookRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.aop.aspectj.annotation.AspectJProxyFactory;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Collections;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+
+public class JdbcConcurrencyLimitAspectTest {
+
+    BookRepository target;
+    BookRepository repository;
+    CountDownLatch running;
+    CountDownLatch release;
+    ExecutorService executor;
+
+    @BeforeEach
+    public void setUp(){
+        running = new CountDownLatch(1);
+        release = new CountDownLatch(1);
+        executor = Executors.newSingleThreadExecutor();
+        target = Mockito.mock(BookRepository.class);
+        Mockito.when(target.findAll()).thenAnswer(invocation -> {
+            running.countDown();
+            release.await();
+            return Collections.emptyList();
+        });
+        Mockito.when(target.findById(1l)).thenReturn(Optional.of(Book.builder().id(1l).build()));
+
+        AspectJProxyFactory factory = new AspectJProxyFactory(target);
+        factory.addAspect(new JdbcConcurrencyLimitAspect(1, 50));
+        repository = factory.getProxy();
+    }
+
+    @AfterEach
+    public void tearDown(){
+        release.countDown();
+        executor.shutdownNow();
+    }
+
+    @Test
+    @DisplayName("Deve rejeitar consultas acima do limite sem bloquear buscas por id")
+    public void limitConcurrentQueriesTest() throws Exception {
+        //cenario
+        Future<?> slowQuery = executor.submit(() -> repository.findAll());
+        assertThat(running.await(5, TimeUnit.SECONDS)).isTrue();
+
+        //execucao
+        Throwable rejected = catchThrowable(() -> repository.findAll());
+        Optional<Book> lookup = repository.findById(1l);
+
+        //verificacao
+        assertThat(rejected).isInstanceOf(QueryLimitExceededException.class);
+        assertThat(lookup).isPresent();
+
+        release.countDown();
+        slowQuery.get(5, TimeUnit.SECONDS);
+        assertThat(repository.findAll()).isEmpty();
+    }
+
+    @Test
+    @DisplayName("Deve manter a permissão de um stream até ele ser fechado")
+    public void streamHoldsPermitUntilClosedTest(){
+        //cenario
+        Mockito.when(target.streamAll()).thenReturn(Stream.of(Book.builder().id(1l).build()));
+        Mockito.doReturn(Collections.emptyList()).when(target).findAll();
+
+        //execucao
+        Stream<Book> books = repository.streamAll();
+        Throwable rejected = catchThrowable(() -> repository.findAll());
+        books.close();
+
+        //verificacao
+        assertThat(rejected).isInstanceOf(QueryLimitExceededException.class);
+        assertThat(repository.findAll()).isEmpty();
+    }
+
+    @Test
+    @DisplayName("Não deve limitar consultas dentro de uma transação de escrita")
+    public void writeTransactionNotLimitedTest() throws Exception {
+        //cenario
+        Future<?> slowQuery = executor.submit(() -> repository.findAll());
+        assertThat(running.await(5, TimeUnit.SECONDS)).isTrue();
+        Mockito.when(target.findAllById(Collections.singletonList(1l))).thenReturn(Collections.emptyList());
+
+        //execucao
+        TransactionSynchronizationManager.setActualTransactionActive(true);
+        try {
+            assertThat(repository.findAllById(Collections.singletonList(1l))).isEmpty();
+            TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+            Throwable rejected = catchThrowable(() -> repository.findAllById(Collections.singletonList(1l)));
+
+            //verificacao
+            assertThat(rejected).isInstanceOf(QueryLimitExceededException.class);
+        } finally {
+            TransactionSynchronizationManager.clear();
+        }
+        release.countDown();
+        slowQuery.get(5, TimeUnit.SECONDS);
+    }
+}
@@ -0,0 +1,54 @@
+package com.cursoteste.libraryapi.mapper;
+
+import com.cursoteste.libraryapi.api.dto.BookDTO;
+import com.cursoteste.libraryapi.api.mapper.BookMapper;
+import com.cursoteste.libraryapi.api.mapper.impl.BookMapperImpl;
+import com.cursoteste.libraryapi.api.model.entity.Book;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class BookMapperTest {
+
+    BookMapper mapper = new BookMapperImpl();
+
+    @Test
+    @DisplayName("Deve converter um livro em dto")
+    public void toDtoTest(){
+        //cenario
+        Book book = Book.builder().id(1l).title("As aventuras").author("Fulano").isbn("123").build();
+
+        //execucao
+        BookDTO dto = mapper.toDto(book);
+
+        //verificacao
+        assertThat(dto.getId()).isEqualTo(1l);
+        assertThat(dto.getTitle()).isEqualTo("As aventuras");
+        assertThat(dto.getAuthor()).isEqualTo("Fulano");
+        assertThat(dto.getIsbn()).isEqualTo("123");
+    }
+
+    @Test
+    @DisplayName("Deve converter um dto em livro")
+    public void toEntityTest(){
+        //cenario
+        BookDTO dto = BookDTO.builder().title("As aventuras").author("Fulano").isbn("123").build();
+
+        //execucao
+        Book book = mapper.toEntity(dto);
+
+        //verificacao
+        assertThat(book.getId()).isNull();
+        assertThat(book.getTitle()).isEqualTo("As aventuras");
+        assertThat(book.getAuthor()).isEqualTo("Fulano");
+        assertThat(book.getIsbn()).isEqualTo("123");
+    }
+
+    @Test
+    @DisplayName("Deve retornar nulo ao converter nulo")
+    public void nullTest(){
+        assertThat(mapper.toDto(null)).isNull();
+        assertThat(mapper.toEntity(null)).isNull();
+    }
+}
@@ -0,0 +1,53 @@
+package com.cursoteste.libraryapi.mapper;
+
+import com.cursoteste.libraryapi.api.dto.LoanDto;
+import com.cursoteste.libraryapi.api.mapper.LoanMapper;
+import com.cursoteste.libraryapi.api.mapper.impl.BookMapperImpl;
+import com.cursoteste.libraryapi.api.mapper.impl.LoanMapperImpl;
+import com.cursoteste.libraryapi.api.model.entity.Book;
+import com.cursoteste.libraryapi.api.model.entity.Loan;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class LoanMapperTest {
+
+    LoanMapper mapper = new LoanMapperImpl(new BookMapperImpl());
+
+    @Test
+    @DisplayName("Deve converter um empréstimo em dto")
+    public void toDtoTest(){
+        //cenario
+        Book book = Book.builder().id(1l).isbn("123").build();
+        Loan loan = Loan.builder().id(1l).book(book).customer("Fulano").loanDate(LocalDate.now()).build();
+
+        //execucao
+        LoanDto dto = mapper.toDto(loan);
+
+        //verificacao
+        assertThat(dto.getId()).isEqualTo(1l);
+        assertThat(dto.getIsbn()).isEqualTo("123");
+        assertThat(dto.getCustomer()).isEqualTo("Fulano");
+        assertThat(dto.getBook().getId()).isEqualTo(1l);
+    }
+
+    @Test
+    @DisplayName("Deve converter um dto em empréstimo do livro informado")
+    public void toEntityTest(){
+        //cenario
+        Book book = Book.builder().id(1l).isbn("123").build();
+        LoanDto dto = LoanDto.builder().isbn("123").customer("Fulano").email("fulano@email.com").build();
+
+        //execucao
+        Loan loan = mapper.toEntity(dto, book);
+
+        //verificacao
+        assertThat(loan.getId()).isNull();
+        assertThat(loan.getBook()).isSameAs(book);
+        assertThat(loan.getCustomer()).isEqualTo("Fulano");
+        assertThat(loan.getCustomerEmail()).isEqualTo("fulano@email.com");
+    }
+}
@@ -0,0 +1,94 @@
+package com.cursoteste.libraryapi.metrics;
+
+import com.cursoteste.libraryapi.api.cache.CacheInvalidator;
+import com.cursoteste.libraryapi.api.exception.BusinessException;
+import com.cursoteste.libraryapi.api.mapper.BookMapper;
+import com.cursoteste.libraryapi.api.mapper.impl.BookMapperImpl;
+import com.cursoteste.libraryapi.api.metrics.LayerMetricsAspect;
+import com.cursoteste.libraryapi.api.model.entity.Book;
+import com.cursoteste.libraryapi.api.model.repository.BookRepository;
+import com.cursoteste.libraryapi.api.service.BookService;
+import com.cursoteste.libraryapi.api.service.HoldService;
+import com.cursoteste.libraryapi.api.service.impl.BookServiceImpl;
+import com.cursoteste.libraryapi.api.service.search.BookSearchIndex;
+import com.cursoteste.libraryapi.api.service.support.BookAvailability;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.aop.aspectj.annotation.AspectJProxyFactory;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+
+public class LayerMetricsAspectTest {
+
+    SimpleMeterRegistry registry;
+    LayerMetricsAspect aspect;
+    BookRepository repository;
+    BookService service;
+
+    @BeforeEach
+    public void setUp(){
+        registry = new SimpleMeterRegistry();
+        aspect = new LayerMetricsAspect(registry);
+        repository = proxy(Mockito.mock(BookRepository.class));
+        service = proxy(new BookServiceImpl(repository, Mockito.mock(BookSearchIndex.class), Mockito.mock(CacheInvalidator.class),
+                Mockito.mock(BookAvailability.class), Mockito.mock(HoldService.class), registry, 5_000));
+    }
+
+    @Test
+    @DisplayName("Deve medir as chamadas do serviço e do repositório")
+    public void timeServiceAndRepositoryTest(){
+        //execucao
+        service.getById(1l);
+        service.getById(2l);
+
+        //verificacao
+        assertThat(registry.get("library.method")
+                .tags("layer", "service", "class", "BookServiceImpl", "method", "getById")
+                .timer().count()).isEqualTo(2);
+        assertThat(registry.get("library.method")
+                .tags("layer", "repository", "class", "BookRepository", "method", "findById")
+                .timer().count()).isEqualTo(2);
+    }
+
+    @Test
+    @DisplayName("Deve medir as conversões do mapper")
+    public void timeMapperTest(){
+        //cenario
+        BookMapper mapper = proxy(new BookMapperImpl());
+
+        //execucao
+        mapper.toDto(Book.builder().id(1l).build());
+
+        //verificacao
+        assertThat(registry.get("library.method")
+                .tags("layer", "mapper", "class", "BookMapperImpl", "method", "toDto")
+                .timer().count()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Deve contar as exceções de negócio por motivo")
+    public void countBusinessExceptionTest(){
+        //cenario
+        Mockito.when(repository.existsByIsbn("123")).thenReturn(true);
+
+        //execucao
+        Throwable exception = catchThrowable(() -> service.save(Book.builder().isbn("123").build()));
+
+        //verificacao
+        assertThat(exception).isInstanceOf(BusinessException.class);
+        assertThat(registry.get("library.business.errors").tag("reason", "Isbn já cadastrado.")
+                .counter().count()).isEqualTo(1);
+        assertThat(registry.get("library.method").tag("method", "save").timer().count()).isEqualTo(1);
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> T proxy(T target){
+        AspectJProxyFactory factory = new AspectJProxyFactory(target);
+        factory.addAspect(aspect);
+        return (T) factory.getProxy();
+    }
+}
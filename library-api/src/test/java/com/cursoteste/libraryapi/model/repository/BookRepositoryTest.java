@@ -1,19 +1,25 @@
 package com.cursoteste.libraryapi.model.repository;
 
 import com.cursoteste.libraryapi.api.model.entity.Book;
+import com.cursoteste.libraryapi.api.model.entity.Loan;
 import com.cursoteste.libraryapi.api.model.repository.BookRepository;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Example;
 import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
 import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
 
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Optional;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
 
 @ExtendWith(SpringExtension.class)
 @ActiveProfiles("test")
@@ -102,10 +108,146 @@ public class BookRepositoryTest {
 
     }
 
+    @Test
+    @DisplayName("Deve retornar apenas os isbns já cadastrados")
+    public void findExistingIsbnsTest(){
+        //cenario
+        entityManager.persist(createNewBook("123"));
+        entityManager.persist(createNewBook("456"));
+
+        //execucao
+        List<String> existing = repository.findExistingIsbns(Arrays.asList("123", "456", "789"));
+
+        //verificacao
+        assertThat(existing).containsExactlyInAnyOrder("123", "456");
+    }
+
+    @Test
+    @DisplayName("Deve buscar livros a partir do último id informado")
+    public void findByExampleAfterTest(){
+        //cenario
+        Book first = createNewBook("1");
+        Book second = createNewBook("2");
+        Book third = createNewBook("3");
+        entityManager.persist(first);
+        entityManager.persist(second);
+        entityManager.persist(third);
+        entityManager.persist(Book.builder().title("Outro").author("Ciclano").isbn("4").build());
+
+        //execucao
+        List<Book> page = repository.findByExampleAfter(
+                Example.of(Book.builder().author("Fulano").build()), first.getId(), 10);
+
+        //verificacao
+        assertThat(page).extracting(Book::getId).containsExactly(second.getId(), third.getId());
+    }
+
+    @Test
+    @DisplayName("Deve reservar cópias apenas enquanto houver alguma na estante")
+    public void reserveCopyTest(){
+        //cenario
+        Book book = createNewBook("123");
+        book.setCopies(2);
+        entityManager.persist(book);
+
+        //execucao
+        int first = repository.reserveCopy(book.getId());
+        int second = repository.reserveCopy(book.getId());
+        int third = repository.reserveCopy(book.getId());
+        Optional<Integer> available = repository.findAvailableById(book.getId());
+        int release = repository.releaseCopy(book.getId());
+        repository.releaseCopy(book.getId());
+        int extraRelease = repository.releaseCopy(book.getId());
+
+        //verificacao
+        assertThat(first).isEqualTo(1);
+        assertThat(second).isEqualTo(1);
+        assertThat(third).isEqualTo(0);
+        assertThat(available).contains(0);
+        assertThat(release).isEqualTo(1);
+        assertThat(extraRelease).isEqualTo(0);
+        assertThat(repository.findAvailableById(book.getId())).contains(2);
+    }
+
+    @Test
+    @DisplayName("Deve preencher as cópias dos livros a partir dos empréstimos abertos")
+    public void backfillAvailabilityTest(){
+        //cenario
+        Book loaned = entityManager.persist(createNewBook("123"));
+        Book returned = entityManager.persist(createNewBook("456"));
+        entityManager.persist(Loan.builder().book(loaned).activeBookId(loaned.getId()).customer("Fulano").loanDate(LocalDate.now()).build());
+        entityManager.persist(Loan.builder().book(returned).customer("Fulano").loanDate(LocalDate.now()).returned(true).build());
+        entityManager.flush();
+        entityManager.getEntityManager().createNativeQuery("update book set copies = null, available = null").executeUpdate();
+
+        //execucao
+        int updated = repository.backfillAvailability();
+        entityManager.clear();
+
+        //verificacao
+        assertThat(updated).isEqualTo(2);
+        assertThat(repository.findCopyCountById(loaned.getId()).get().getAvailable()).isEqualTo(0);
+        assertThat(repository.findCopyCountById(returned.getId()).get().getAvailable()).isEqualTo(1);
+        assertThat(repository.findCopyCountById(returned.getId()).get().getCopies()).isEqualTo(1);
+    }
+
     public static   Book createNewBook(String isbn){
         return  Book.builder().title("Aventuras").author("Fulano").isbn(isbn).build();
     }
 
+    @Test
+    @DisplayName("Deve reservar e devolver cópias de vários livros de uma vez")
+    public void reserveAndReleaseCopiesTest(){
+        //cenario
+        Book available = createNewBook("123");
+        available.setCopies(3);
+        entityManager.persist(available);
+        Book scarce = entityManager.persist(createNewBook("456"));
+
+        //execucao
+        int reserved = repository.reserveCopies(Arrays.asList(available.getId(), scarce.getId()), 2);
+        List<BookRepository.CopyCount> counts = repository.findCopyCounts(Arrays.asList(available.getId(), scarce.getId()));
+        int released = repository.releaseCopies(Arrays.asList(available.getId(), scarce.getId()), 2);
 
+        //verificacao
+        assertThat(reserved).isEqualTo(1);
+        assertThat(counts).extracting(BookRepository.CopyCount::getId, BookRepository.CopyCount::getAvailable)
+                .containsExactlyInAnyOrder(tuple(available.getId(), 1), tuple(scarce.getId(), 1));
+        assertThat(released).isEqualTo(1);
+    }
 
+    @Test
+    @DisplayName("Deve acrescentar cópias e retirar apenas as que estão na estante")
+    public void addCopiesTest(){
+        //cenario
+        Book book = entityManager.persist(createNewBook("123"));
+        repository.reserveCopy(book.getId());
+
+        //execucao
+        int added = repository.addCopies(book.getId(), 2);
+        int withdrawn = repository.addCopies(book.getId(), -3);
+        BookRepository.CopyCount count = repository.findCopyCountById(book.getId()).get();
+
+        //verificacao
+        assertThat(added).isEqualTo(1);
+        assertThat(withdrawn).isEqualTo(0);
+        assertThat(count.getCopies()).isEqualTo(3);
+        assertThat(count.getAvailable()).isEqualTo(2);
+        assertThat(repository.findVersionById(book.getId())).contains(book.getVersion() + 1);
+    }
+
+    @Test
+    @DisplayName("Deve buscar vários livros pelo isbn")
+    public void findByIsbnInTest(){
+        //cenario
+        entityManager.persist(createNewBook("123"));
+        entityManager.persist(createNewBook("456"));
+        entityManager.persist(createNewBook("789"));
+
+        //execucao
+        List<Book> books = repository.findByIsbnIn(Arrays.asList("123", "789", "000"));
+
+        //verificacao
+        assertThat(books).extracting(Book::getIsbn).containsExactlyInAnyOrder("123", "789");
+    }
 }
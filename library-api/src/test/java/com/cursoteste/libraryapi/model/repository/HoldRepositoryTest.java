@@ -0,0 +1,116 @@
+package com.cursoteste.libraryapi.model.repository;
+
+import com.cursoteste.libraryapi.api.model.entity.Book;
+import com.cursoteste.libraryapi.api.model.entity.Hold;
+import com.cursoteste.libraryapi.api.model.repository.HoldRepository;
+import com.cursoteste.libraryapi.api.model.repository.HoldRepository.HoldEntry;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static com.cursoteste.libraryapi.model.repository.BookRepositoryTest.createNewBook;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+
+@ExtendWith(SpringExtension.class)
+@ActiveProfiles("test")
+@DataJpaTest
+public class HoldRepositoryTest {
+
+    @Autowired
+    TestEntityManager entityManager;
+
+    @Autowired
+    HoldRepository repository;
+
+    private Hold hold(Book book, String customer, Hold.Status status) {
+        String activeCustomer = Hold.Status.ACTIVE.contains(status) ? customer : null;
+        return entityManager.persist(Hold.builder().book(book).customer(customer).status(status)
+                .activeCustomer(activeCustomer).createdAt(LocalDateTime.now()).build());
+    }
+
+    @Test
+    @DisplayName("Deve mudar o status da reserva apenas a partir do status esperado")
+    public void transitionTest() {
+        //cenario
+        Book book = entityManager.persist(createNewBook("123"));
+        Hold hold = hold(book, "Fulano", Hold.Status.WAITING);
+        LocalDateTime expiresAt = LocalDateTime.of(2020, 10, 3, 10, 0);
+
+        //execucao
+        int promoted = repository.transition(hold.getId(), Hold.Status.WAITING, Hold.Status.READY, expiresAt);
+        int promotedAgain = repository.transition(hold.getId(), Hold.Status.WAITING, Hold.Status.READY, expiresAt);
+        int fulfilled = repository.closeFor(book.getId(), "Fulano", Hold.Status.READY, Hold.Status.FULFILLED);
+        entityManager.clear();
+
+        //verificacao
+        assertThat(promoted).isEqualTo(1);
+        assertThat(promotedAgain).isEqualTo(0);
+        assertThat(fulfilled).isEqualTo(1);
+        Hold found = entityManager.find(Hold.class, hold.getId());
+        assertThat(found.getStatus()).isEqualTo(Hold.Status.FULFILLED);
+        assertThat(found.getExpiresAt()).isEqualTo(expiresAt);
+    }
+
+    @Test
+    @DisplayName("Deve liberar o cliente para reservar de novo ao encerrar a reserva")
+    public void closeTest() {
+        //cenario
+        Book book = entityManager.persist(createNewBook("123"));
+        Hold hold = hold(book, "Fulano", Hold.Status.WAITING);
+
+        //execucao
+        int cancelled = repository.close(hold.getId(), Hold.Status.WAITING, Hold.Status.CANCELLED);
+        Hold again = hold(book, "Fulano", Hold.Status.WAITING);
+        entityManager.flush();
+
+        //verificacao
+        assertThat(cancelled).isEqualTo(1);
+        assertThat(repository.findByBookAndStatus(book.getId(), Hold.Status.WAITING, 0l, PageRequest.of(0, 1)))
+                .extracting(HoldEntry::getId).containsExactly(again.getId());
+    }
+
+    @Test
+    @DisplayName("Deve impedir duas reservas ativas do mesmo cliente para o mesmo livro")
+    public void duplicateActiveHoldTest() {
+        //cenario
+        Book book = entityManager.persist(createNewBook("123"));
+        hold(book, "Fulano", Hold.Status.WAITING);
+
+        //execucao
+        Throwable exception = catchThrowable(() -> repository.saveAndFlush(Hold.builder().book(book).customer("Fulano")
+                .status(Hold.Status.WAITING).activeCustomer("Fulano").createdAt(LocalDateTime.now()).build()));
+
+        //verificacao
+        assertThat(exception).isInstanceOf(DataIntegrityViolationException.class);
+    }
+
+    @Test
+    @DisplayName("Deve buscar as reservas ativas em ordem de chegada")
+    public void findByStatusTest() {
+        //cenario
+        Book book = entityManager.persist(createNewBook("123"));
+        Hold first = hold(book, "Fulano", Hold.Status.WAITING);
+        hold(book, "Ciclano", Hold.Status.CANCELLED);
+        Hold third = hold(book, "Beltrano", Hold.Status.READY);
+
+        //execucao
+        List<HoldEntry> active = repository.findByStatus(0l, Hold.Status.ACTIVE, PageRequest.of(0, 10));
+
+        //verificacao
+        assertThat(active).extracting(HoldEntry::getId).containsExactly(first.getId(), third.getId());
+        assertThat(active).extracting(HoldEntry::getBookId).containsOnly(book.getId());
+        assertThat(repository.existsByBookIdAndCustomerAndStatusIn(book.getId(), "Ciclano", Hold.Status.ACTIVE)).isFalse();
+        assertThat(repository.existsByBookIdAndCustomerAndStatusIn(book.getId(), "Fulano", Hold.Status.ACTIVE)).isTrue();
+    }
+}
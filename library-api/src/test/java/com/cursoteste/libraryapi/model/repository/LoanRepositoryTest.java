@@ -13,10 +13,15 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
 import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
 
 import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.List;
 
 import static com.cursoteste.libraryapi.model.repository.BookRepositoryTest.createNewBook;
 import static org.assertj.core.api.Assertions.assertThat;
@@ -53,4 +58,112 @@ public class LoanRepositoryTest {
 
 
 
+    @Test
+    @DisplayName("deve liberar a cópia de um empréstimo apenas uma vez")
+    public void releaseCopyHoldTest(){
+        //cenario
+        Book book = createNewBook("123");
+        entityManager.persist(book);
+        Loan first = entityManager.persistAndFlush(Loan.builder().book(book).customer("Fulano")
+                .loanDate(LocalDate.now()).activeBookId(book.getId()).build());
+        Loan second = entityManager.persistAndFlush(Loan.builder().book(book).customer("Ciclano")
+                .loanDate(LocalDate.now()).activeBookId(book.getId()).build());
+
+        //execução
+        int released = repository.releaseCopyHold(first.getId());
+        int releasedAgain = repository.releaseCopyHold(first.getId());
+        int releasedBoth = repository.releaseCopyHolds(Arrays.asList(first.getId(), second.getId()));
+        int taken = repository.takeCopyHold(first.getId(), book.getId());
+
+        //verificacao
+        assertThat(released).isEqualTo(1);
+        assertThat(releasedAgain).isEqualTo(0);
+        assertThat(releasedBoth).isEqualTo(1);
+        assertThat(taken).isEqualTo(1);
+        assertThat(repository.takeCopyHold(first.getId(), book.getId())).isEqualTo(0);
+    }
+
+    @Test
+    @DisplayName("deve paginar os ids dos empréstimos de um isbn ou de um cliente sem repetir")
+    public void findIdsByBookIsbnOrCustomerTest(){
+        //cenario
+        Book book = entityManager.persist(createNewBook("123"));
+        Book other = entityManager.persist(createNewBook("456"));
+        Loan first = entityManager.persist(Loan.builder().book(book).customer("Fulano").loanDate(LocalDate.now()).build());
+        Loan second = entityManager.persist(Loan.builder().book(other).customer("Fulano").loanDate(LocalDate.now()).build());
+        Loan third = entityManager.persist(Loan.builder().book(book).customer("Ciclano").loanDate(LocalDate.now()).build());
+        entityManager.persist(Loan.builder().book(other).customer("Beltrano").loanDate(LocalDate.now()).build());
+
+        //execucao
+        Page<Number> result = repository.findIdsByBookIsbnOrCustomer("123", "Fulano", PageRequest.of(0, 2));
+        Page<Number> next = repository.findIdsByBookIsbnOrCustomer("123", "Fulano", PageRequest.of(1, 2));
+
+        //verificacao
+        assertThat(result.getTotalElements()).isEqualTo(3);
+        assertThat(result.map(Number::longValue).getContent()).containsExactly(first.getId(), second.getId());
+        assertThat(next.map(Number::longValue).getContent()).containsExactly(third.getId());
+    }
+
+    @Test
+    @DisplayName("deve buscar os empréstimos de um cliente com seus livros")
+    public void findByCustomerTest(){
+        //cenario
+        Book book = entityManager.persist(createNewBook("123"));
+        entityManager.persist(Loan.builder().book(book).customer("Fulano").loanDate(LocalDate.now()).build());
+        entityManager.persist(Loan.builder().book(book).customer("Ciclano").loanDate(LocalDate.now()).build());
+
+        //execucao
+        Page<Loan> result = repository.findByCustomer("Fulano", PageRequest.of(0, 10, Sort.by("id")));
+
+        //verificacao
+        assertThat(result.getTotalElements()).isEqualTo(1);
+        assertThat(result.getContent().get(0).getBook().getIsbn()).isEqualTo("123");
+    }
+
+    @Test
+    @DisplayName("deve preencher o vencimento dos empréstimos antigos e listar os abertos por id")
+    public void findOpenDueDatesTest(){
+        //cenario
+        Book book = entityManager.persist(createNewBook("123"));
+        Book other = entityManager.persist(createNewBook("456"));
+        Loan old = entityManager.persist(Loan.builder().book(book).customer("Fulano").loanDate(LocalDate.of(2020, 10, 1)).build());
+        Loan open = entityManager.persist(Loan.builder().book(other).customer("Fulano")
+                .loanDate(LocalDate.of(2020, 10, 5)).dueDate(LocalDate.of(2020, 10, 8)).build());
+        entityManager.persist(Loan.builder().book(other).customer("Ciclano").loanDate(LocalDate.of(2020, 9, 1)).returned(true).build());
+        entityManager.flush();
+
+        //execucao
+        List<LocalDate> loanDates = repository.findLoanDatesWithoutDueDate();
+        int backfilled = loanDates.stream().mapToInt(loanDate -> repository.backfillDueDate(loanDate, loanDate.plusDays(3))).sum();
+        entityManager.clear();
+        List<LoanRepository.LoanDueDate> result = repository.findOpenDueDates(0l, PageRequest.of(0, 10));
+
+        //verificacao
+        assertThat(loanDates).containsExactlyInAnyOrder(LocalDate.of(2020, 10, 1), LocalDate.of(2020, 9, 1));
+        assertThat(backfilled).isEqualTo(2);
+        assertThat(result).extracting(LoanRepository.LoanDueDate::getId).containsExactly(old.getId(), open.getId());
+        assertThat(result).extracting(LoanRepository.LoanDueDate::getDueDate)
+                .containsExactly(LocalDate.of(2020, 10, 4), LocalDate.of(2020, 10, 8));
+    }
+
+    @Test
+    @DisplayName("Deve buscar os empréstimos abertos que vencem no intervalo e o email dos clientes")
+    public void findOpenDueDatesBetweenTest(){
+        //cenario
+        Book book = entityManager.persist(createNewBook("123"));
+        Loan due = entityManager.persist(Loan.builder().book(book).customer("Fulano").customerEmail("fulano@email.com")
+                .loanDate(LocalDate.of(2020, 10, 5)).dueDate(LocalDate.of(2020, 10, 8)).build());
+        entityManager.persist(Loan.builder().book(book).customer("Fulano")
+                .loanDate(LocalDate.of(2020, 10, 4)).dueDate(LocalDate.of(2020, 10, 7)).build());
+        Loan returned = entityManager.persist(Loan.builder().book(book).customer("Ciclano").customerEmail("ciclano@email.com")
+                .loanDate(LocalDate.of(2020, 10, 5)).dueDate(LocalDate.of(2020, 10, 8)).returned(true).build());
+
+        //execucao
+        List<LoanRepository.LoanDueDate> result = repository.findOpenDueDatesBetween(LocalDate.of(2020, 10, 7), LocalDate.of(2020, 10, 8));
+        List<LoanRepository.LoanEmail> emails = repository.findOpenCustomerEmails(Arrays.asList(due.getId(), returned.getId()));
+
+        //verificacao
+        assertThat(result).extracting(LoanRepository.LoanDueDate::getId).containsExactly(due.getId());
+        assertThat(emails).extracting(LoanRepository.LoanEmail::getCustomerEmail).containsExactly("fulano@email.com");
+    }
 }
@@ -1,11 +1,20 @@
 package com.cursoteste.libraryapi.resource;
 
 
+import com.cursoteste.libraryapi.api.dto.BatchItemResultDTO;
 import com.cursoteste.libraryapi.api.dto.BookDTO;
 import com.cursoteste.libraryapi.api.exception.BusinessException;
+import com.cursoteste.libraryapi.api.mapper.impl.BookMapperImpl;
+import com.cursoteste.libraryapi.api.mapper.impl.LoanMapperImpl;
 import com.cursoteste.libraryapi.api.model.entity.Book;
+import com.cursoteste.libraryapi.api.model.entity.Loan;
+import com.cursoteste.libraryapi.api.model.repository.BookRepository;
 import com.cursoteste.libraryapi.api.resource.BookController;
 import com.cursoteste.libraryapi.api.service.BookService;
+import com.cursoteste.libraryapi.api.service.ExportFormat;
+import com.cursoteste.libraryapi.api.service.ExportService;
+import com.cursoteste.libraryapi.api.service.LoanService;
+import com.cursoteste.libraryapi.api.service.support.IdempotencyStore;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.hamcrest.Matchers;
 import org.junit.jupiter.api.DisplayName;
@@ -17,10 +26,14 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
 import org.springframework.test.web.servlet.MockMvc;
@@ -33,12 +46,15 @@ import java.util.Optional;
 
 import static org.hamcrest.Matchers.hasSize;
 import static org.mockito.ArgumentMatchers.anyLong;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @ExtendWith(SpringExtension.class)
 @ActiveProfiles("test")
 @WebMvcTest (controllers = BookController.class)
+@Import({BookMapperImpl.class, LoanMapperImpl.class, IdempotencyStore.class})
 @AutoConfigureMockMvc
 public class BookControllerTest {
 
@@ -47,6 +63,12 @@ public class BookControllerTest {
     @MockBean
     BookService service;
 
+    @MockBean
+    LoanService loanService;
+
+    @MockBean
+    ExportService exportService;
+
     @Autowired
     MockMvc mvc;
 
@@ -77,6 +99,33 @@ public class BookControllerTest {
 
     }
 
+    @Test
+    @DisplayName("Deve recusar a chave de idempotência reutilizada para outro livro")
+    public void reusedIdempotencyKeyTest() throws Exception {
+        //cenario
+        BookDTO dto = createNewBook();
+        BDDMockito.given(service.save(Mockito.any(Book.class)))
+                .willReturn(Book.builder().id(10l).author("Artur").title("As aventuras").isbn("001").build());
+        mvc.perform(MockMvcRequestBuilders.post(BOOK_API)
+                        .header("Idempotency-Key", "retry-1")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(new ObjectMapper().writeValueAsString(dto)))
+                .andExpect(status().isCreated());
+        dto.setIsbn("002");
+
+        //execucao
+        MockHttpServletRequestBuilder request = MockMvcRequestBuilders.post(BOOK_API)
+                .header("Idempotency-Key", "retry-1")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(new ObjectMapper().writeValueAsString(dto));
+
+        //verificacao
+        mvc.perform(request)
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("errors[0]").value("Idempotency key already used for another request"));
+        Mockito.verify(service, Mockito.times(1)).save(Mockito.any(Book.class));
+    }
+
 
     @Test
     @DisplayName("Deve lnaçar erro de validacao quando não houver dados suficiente para criação do livro.")
@@ -286,17 +335,383 @@ public class BookControllerTest {
             .perform(request)
             .andExpect(status().isOk())
             .andExpect(jsonPath("content",Matchers.hasSize(1)))
+                .andExpect(jsonPath("content[0].id").value(id))
+                .andExpect(jsonPath("content[0].title").value(book.getTitle()))
+                .andExpect(jsonPath("content[0].isbn").value(book.getIsbn()))
                 .andExpect(jsonPath("totalElements").value(1))
-                .andExpect(jsonPath("pageable.pageSize").value(100))
-                .andExpect(jsonPath("pageable.pageNumber").value(0));
+                .andExpect(jsonPath("totalPages").value(1))
+                .andExpect(jsonPath("size").value(100))
+                .andExpect(jsonPath("page").value(0))
+                .andExpect(jsonPath("pageable").doesNotExist());
+
+
+
+
+    }
+    @Test
+    @DisplayName("Deve importar livros em lote reportando as falhas por linha")
+    public void createBatchTest() throws Exception {
+        //cenario
+        BDDMockito.given(service.saveAll(Mockito.anyList()))
+                .willReturn(Arrays.asList(
+                        BatchItemResultDTO.success(1l),
+                        BatchItemResultDTO.failure("Isbn já cadastrado.")));
+
+        String ndjson = "{\"title\":\"As aventuras\",\"author\":\"Artur\",\"isbn\":\"001\"}\n"
+                + "{\"title\":\"Sem autor\",\"isbn\":\"002\"}\n"
+                + "{\"title\":\"Repetido\",\"author\":\"Artur\",\"isbn\":\"001\"}\n";
+
+        MockHttpServletRequestBuilder request = MockMvcRequestBuilders
+                .post(BOOK_API.concat("/batch"))
+                .contentType("application/x-ndjson")
+                .accept(MediaType.APPLICATION_JSON)
+                .content(ndjson);
+
+        //execucao
+        mvc
+                .perform(request)
+                //verificacao
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(3)))
+                .andExpect(jsonPath("[0].index").value(0))
+                .andExpect(jsonPath("[0].status").value("SUCCESS"))
+                .andExpect(jsonPath("[0].id").value(1))
+                .andExpect(jsonPath("[1].index").value(1))
+                .andExpect(jsonPath("[1].status").value("FAILURE"))
+                .andExpect(jsonPath("[2].index").value(2))
+                .andExpect(jsonPath("[2].error").value("Isbn já cadastrado."));
+
+        Mockito.verify(service, Mockito.times(1)).saveAll(Mockito.anyList());
+    }
+
+    @Test
+    @DisplayName("Deve importar livros em lote a partir de um array json")
+    public void createBatchFromJsonArrayTest() throws Exception {
+        //cenario
+        BDDMockito.given(service.saveAll(Mockito.anyList()))
+                .willReturn(Arrays.asList(BatchItemResultDTO.success(1l), BatchItemResultDTO.success(2l)));
+
+        String json = new ObjectMapper().writeValueAsString(Arrays.asList(createNewBook(), createNewBook()));
+
+        MockHttpServletRequestBuilder request = MockMvcRequestBuilders
+                .post(BOOK_API.concat("/batch"))
+                .contentType(MediaType.APPLICATION_JSON)
+                .accept(MediaType.APPLICATION_JSON)
+                .content(json);
+
+        //execucao
+        mvc
+                .perform(request)
+                //verificacao
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(2)))
+                .andExpect(jsonPath("[1].index").value(1))
+                .andExpect(jsonPath("[1].id").value(2));
+    }
+
+    @Test
+    @DisplayName("Deve filtrar livros por cursor sem contar o total")
+    public void findBookByCursorTest() throws Exception {
+        //cenario
+        Book first = Book.builder().id(1l).title("As aventuras").author("Artur").isbn("001").build();
+        Book second = Book.builder().id(2l).title("As aventuras 2").author("Artur").isbn("002").build();
+
+        BDDMockito.given(service.findAfter(Mockito.any(Book.class), Mockito.isNull(), Mockito.eq(2)))
+                .willReturn(new SliceImpl<Book>(Arrays.asList(first, second), PageRequest.of(0, 2), true));
+
+        //execução
+        MockHttpServletRequestBuilder request = MockMvcRequestBuilders
+                .get(BOOK_API.concat("?title=aventuras&cursor=&size=2"))
+                .accept(MediaType.APPLICATION_JSON);
+
+        mvc
+                .perform(request)
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("content", hasSize(2)))
+                .andExpect(jsonPath("size").value(2))
+                .andExpect(jsonPath("nextCursor").value("Mg"))
+                .andExpect(jsonPath("totalElements").doesNotExist());
+
+        Mockito.verify(service, Mockito.never()).count(Mockito.any(Book.class));
+    }
+
+    @Test
+    @DisplayName("Deve continuar a partir do cursor e contar o total quando solicitado")
+    public void findBookByCursorWithCountTest() throws Exception {
+        //cenario
+        Book third = Book.builder().id(3l).title("As aventuras 3").author("Artur").isbn("003").build();
+
+        BDDMockito.given(service.findAfter(Mockito.any(Book.class), Mockito.eq(2l), Mockito.eq(2)))
+                .willReturn(new SliceImpl<Book>(Arrays.asList(third), PageRequest.of(0, 2), false));
+        BDDMockito.given(service.count(Mockito.any(Book.class))).willReturn(3l);
+
+        //execução
+        MockHttpServletRequestBuilder request = MockMvcRequestBuilders
+                .get(BOOK_API.concat("?cursor=Mg&size=2&count=true"))
+                .accept(MediaType.APPLICATION_JSON);
+
+        mvc
+                .perform(request)
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("content", hasSize(1)))
+                .andExpect(jsonPath("nextCursor").doesNotExist())
+                .andExpect(jsonPath("totalElements").value(3));
+    }
+
+    @Test
+    @DisplayName("Deve retornar bad request para um cursor inválido")
+    public void findBookByInvalidCursorTest() throws Exception {
+        MockHttpServletRequestBuilder request = MockMvcRequestBuilders
+                .get(BOOK_API.concat("?cursor=@@"))
+                .accept(MediaType.APPLICATION_JSON);
+
+        mvc
+                .perform(request)
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("errors[0]").value("Invalid cursor"));
+    }
+
+    @Test
+    @DisplayName("Deve exportar o catálogo em CSV")
+    public void exportBooksTest() throws Exception {
+        MockHttpServletRequestBuilder request = MockMvcRequestBuilders
+                .get(BOOK_API.concat("/export?format=csv"));
+
+        mvc
+                .perform(request)
+                .andExpect(status().isOk())
+                .andExpect(header().string("Content-Type", "text/csv;charset=UTF-8"))
+                .andExpect(header().string("Content-Disposition", "attachment; filename=\"books.csv\""));
+
+        Mockito.verify(exportService).exportBooks(Mockito.eq(ExportFormat.CSV), Mockito.any());
+    }
+
+    @Test
+    @DisplayName("Deve retornar bad request para um formato de exportação inválido")
+    public void exportBooksInvalidFormatTest() throws Exception {
+        MockHttpServletRequestBuilder request = MockMvcRequestBuilders
+                .get(BOOK_API.concat("/export?format=xml"))
+                .accept(MediaType.APPLICATION_JSON);
+
+        mvc
+                .perform(request)
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("errors[0]").value("Unsupported export format"));
+
+        Mockito.verifyNoInteractions(exportService);
+    }
+
+    @Test
+    @DisplayName("Deve listar os empréstimos de um livro")
+    public void loansByBookTest() throws Exception {
+        //cenario
+        Book book = Book.builder().id(1l).isbn("001").build();
+        Loan loan = Loan.builder().id(2l).book(book).customer("Fulano").build();
+        BDDMockito.given(service.getById(1l)).willReturn(Optional.of(book));
+        BDDMockito.given(loanService.getLoansByBook(Mockito.eq(book), Mockito.any(Pageable.class)))
+                .willReturn(new PageImpl<Loan>(Arrays.asList(loan), PageRequest.of(0, 10), 1));
+
+        //execução
+        MockHttpServletRequestBuilder request = MockMvcRequestBuilders
+                .get(BOOK_API.concat("/1/loans?page=0&size=10"))
+                .accept(MediaType.APPLICATION_JSON);
 
+        //verificacao
+        mvc
+                .perform(request)
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("content", hasSize(1)))
+                .andExpect(jsonPath("content[0].id").value(2))
+                .andExpect(jsonPath("content[0].customer").value("Fulano"))
+                .andExpect(jsonPath("totalElements").value(1));
+    }
 
+    @Test
+    @DisplayName("Deve retornar not found ao listar os empréstimos de um livro inexistente")
+    public void loansByInexistentBookTest() throws Exception {
+        BDDMockito.given(service.getById(anyLong())).willReturn(Optional.empty());
 
+        mvc
+                .perform(MockMvcRequestBuilders.get(BOOK_API.concat("/1/loans")).accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isNotFound());
 
+        Mockito.verifyNoInteractions(loanService);
     }
+
     private  BookDTO createNewBook(){
         return  BookDTO.builder().author("Artur").title("As aventuras").isbn("001").build();
     }
 
+    @Test
+    @DisplayName("Deve retornar o livro com a sua versão como ETag")
+    public void getBookEtagTest() throws Exception {
+        //cenario
+        BDDMockito.given(service.getById(1l)).willReturn(Optional.of(
+                Book.builder().id(1l).title("As aventuras").author("Artur").isbn("001").version(3l).build()));
+
+        //execucao
+        mvc.perform(MockMvcRequestBuilders.get(BOOK_API.concat("/1")).accept(MediaType.APPLICATION_JSON))
+                //verificacao
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, "\"3\""))
+                .andExpect(jsonPath("id").value(1));
+    }
+
+    @Test
+    @DisplayName("Deve retornar 304 sem carregar o livro quando a versão não mudou")
+    public void notModifiedBookTest() throws Exception {
+        //cenario
+        BDDMockito.given(service.getVersion(1l)).willReturn(Optional.of(3l));
+
+        //execucao
+        mvc.perform(MockMvcRequestBuilders.get(BOOK_API.concat("/1"))
+                .header(HttpHeaders.IF_NONE_MATCH, "\"3\"")
+                .accept(MediaType.APPLICATION_JSON))
+                //verificacao
+                .andExpect(status().isNotModified())
+                .andExpect(header().string(HttpHeaders.ETAG, "\"3\""))
+                .andExpect(content().string(""));
+
+        Mockito.verify(service, Mockito.never()).getById(anyLong());
+    }
+
+    @Test
+    @DisplayName("Deve retornar o livro quando a versão informada estiver desatualizada")
+    public void modifiedBookTest() throws Exception {
+        //cenario
+        BDDMockito.given(service.getVersion(1l)).willReturn(Optional.of(4l));
+        BDDMockito.given(service.getById(1l)).willReturn(Optional.of(Book.builder().id(1l).version(4l).build()));
+
+        //execucao
+        mvc.perform(MockMvcRequestBuilders.get(BOOK_API.concat("/1"))
+                .header(HttpHeaders.IF_NONE_MATCH, "\"3\"")
+                .accept(MediaType.APPLICATION_JSON))
+                //verificacao
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, "\"4\""));
+    }
+
+    @Test
+    @DisplayName("Deve retornar 412 ao atualizar um livro com versão desatualizada")
+    public void updateWithStaleIfMatchTest() throws Exception {
+        //cenario
+        BDDMockito.given(service.getById(1l)).willReturn(Optional.of(Book.builder().id(1l).version(4l).build()));
+
+        //execucao
+        mvc.perform(MockMvcRequestBuilders.put(BOOK_API.concat("/1"))
+                .header(HttpHeaders.IF_MATCH, "\"3\"")
+                .contentType(MediaType.APPLICATION_JSON)
+                .accept(MediaType.APPLICATION_JSON)
+                .content(new ObjectMapper().writeValueAsString(createNewBook())))
+                //verificacao
+                .andExpect(status().isPreconditionFailed())
+                .andExpect(jsonPath("errors[0]").value("Resource was modified by another request"));
+
+        Mockito.verify(service, Mockito.never()).update(Mockito.any(Book.class));
+    }
+
+    @Test
+    @DisplayName("Deve atualizar um livro quando a versão informada for a atual")
+    public void updateWithIfMatchTest() throws Exception {
+        //cenario
+        Book book = Book.builder().id(1l).version(3l).build();
+        BDDMockito.given(service.getById(1l)).willReturn(Optional.of(book));
+        BDDMockito.given(service.update(book)).willReturn(Book.builder().id(1l).version(4l).build());
+
+        //execucao
+        mvc.perform(MockMvcRequestBuilders.put(BOOK_API.concat("/1"))
+                .header(HttpHeaders.IF_MATCH, "\"3\"")
+                .contentType(MediaType.APPLICATION_JSON)
+                .accept(MediaType.APPLICATION_JSON)
+                .content(new ObjectMapper().writeValueAsString(createNewBook())))
+                //verificacao
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, "\"4\""));
+    }
+
+    @Test
+    @DisplayName("Deve retornar 412 quando o livro for alterado durante a atualização")
+    public void updateOptimisticLockTest() throws Exception {
+        //cenario
+        Book book = Book.builder().id(1l).version(3l).build();
+        BDDMockito.given(service.getById(1l)).willReturn(Optional.of(book));
+        BDDMockito.given(service.update(book)).willThrow(new ObjectOptimisticLockingFailureException(Book.class, 1l));
+
+        //execucao
+        mvc.perform(MockMvcRequestBuilders.put(BOOK_API.concat("/1"))
+                .contentType(MediaType.APPLICATION_JSON)
+                .accept(MediaType.APPLICATION_JSON)
+                .content(new ObjectMapper().writeValueAsString(createNewBook())))
+                //verificacao
+                .andExpect(status().isPreconditionFailed());
+    }
 
+    @Test
+    @DisplayName("Deve retornar 412 ao deletar um livro com versão desatualizada")
+    public void deleteWithStaleIfMatchTest() throws Exception {
+        //cenario
+        BDDMockito.given(service.getById(1l)).willReturn(Optional.of(Book.builder().id(1l).version(4l).build()));
+
+        //execucao
+        mvc.perform(MockMvcRequestBuilders.delete(BOOK_API.concat("/1")).header(HttpHeaders.IF_MATCH, "W/\"4\""))
+                //verificacao
+                .andExpect(status().isPreconditionFailed());
+
+        Mockito.verify(service, Mockito.never()).delete(Mockito.any(Book.class));
+    }
+
+    @Test
+    @DisplayName("Deve retornar 304 quando a página de livros não mudou")
+    public void notModifiedPageTest() throws Exception {
+        //cenario
+        Book book = Book.builder().id(1l).title("As aventuras").version(3l).build();
+        BDDMockito.given(service.find(Mockito.any(Book.class), Mockito.any(Pageable.class)))
+                .willReturn(new PageImpl<Book>(Arrays.asList(book), PageRequest.of(0, 100), 1));
+        String etag = mvc.perform(MockMvcRequestBuilders.get(BOOK_API.concat("?page=0&size=100")))
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+        //execucao
+        mvc.perform(MockMvcRequestBuilders.get(BOOK_API.concat("?page=0&size=100")).header(HttpHeaders.IF_NONE_MATCH, etag))
+                //verificacao
+                .andExpect(status().isNotModified());
+
+        book.setVersion(4l);
+        mvc.perform(MockMvcRequestBuilders.get(BOOK_API.concat("?page=0&size=100")).header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("content", Matchers.hasSize(1)));
+    }
+
+    @Test
+    @DisplayName("Deve informar as cópias do livro e quantas estão na estante")
+    public void availabilityTest() throws Exception {
+        //cenario
+        BDDMockito.given(service.getById(1l)).willReturn(Optional.of(Book.builder().id(1l).copies(5).build()));
+        BDDMockito.given(service.getAvailable(1l)).willReturn(Optional.of(2));
+
+        //execucao / verificacao
+        mvc.perform(MockMvcRequestBuilders.get(BOOK_API.concat("/1/availability")).accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("id").value(1))
+                .andExpect(jsonPath("copies").value(5))
+                .andExpect(jsonPath("available").value(2));
+    }
+
+    @Test
+    @DisplayName("Deve acrescentar cópias ao livro")
+    public void addCopiesTest() throws Exception {
+        //cenario
+        Book book = Book.builder().id(1l).copies(5).build();
+        BDDMockito.given(service.getById(1l)).willReturn(Optional.of(book));
+        BookRepository.CopyCount count = Mockito.mock(BookRepository.CopyCount.class);
+        BDDMockito.given(count.getCopies()).willReturn(8);
+        BDDMockito.given(count.getAvailable()).willReturn(6);
+        BDDMockito.given(service.addCopies(book, 3)).willReturn(count);
+
+        //execucao / verificacao
+        mvc.perform(MockMvcRequestBuilders.patch(BOOK_API.concat("/1/copies")).param("delta", "3")
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("copies").value(8))
+                .andExpect(jsonPath("available").value(6));
+    }
 }
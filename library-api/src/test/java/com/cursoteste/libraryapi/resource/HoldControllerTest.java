@@ -0,0 +1,102 @@
+package com.cursoteste.libraryapi.resource;
+
+import com.cursoteste.libraryapi.api.dto.HoldDTO;
+import com.cursoteste.libraryapi.api.exception.BusinessException;
+import com.cursoteste.libraryapi.api.model.entity.Book;
+import com.cursoteste.libraryapi.api.model.entity.Hold;
+import com.cursoteste.libraryapi.api.resource.HoldController;
+import com.cursoteste.libraryapi.api.service.BookService;
+import com.cursoteste.libraryapi.api.service.HoldService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.BDDMockito;
+import org.mockito.Mockito;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
+
+import java.util.Optional;
+
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@ExtendWith(SpringExtension.class)
+@ActiveProfiles("test")
+@WebMvcTest(controllers = HoldController.class)
+@AutoConfigureMockMvc
+public class HoldControllerTest {
+
+    static final String HOLD_API = "/api/books/1/holds";
+
+    @Autowired
+    MockMvc mvc;
+
+    @MockBean
+    HoldService service;
+
+    @MockBean
+    BookService bookService;
+
+    @Test
+    @DisplayName("Deve entrar na fila de reservas do livro")
+    public void createHoldTest() throws Exception {
+        //cenario
+        Book book = Book.builder().id(1l).build();
+        BDDMockito.given(bookService.getById(1l)).willReturn(Optional.of(book));
+        BDDMockito.given(service.place(Mockito.any(Hold.class))).willReturn(
+                Hold.builder().id(5l).book(book).customer("Fulano").status(Hold.Status.WAITING).build());
+        String json = new ObjectMapper().writeValueAsString(HoldDTO.builder().customer("Fulano").build());
+
+        //execucao
+        mvc.perform(MockMvcRequestBuilders.post(HOLD_API)
+                .contentType(MediaType.APPLICATION_JSON)
+                .accept(MediaType.APPLICATION_JSON)
+                .content(json))
+                //verificacao
+                .andExpect(status().isCreated())
+                .andExpect(jsonPath("id").value(5))
+                .andExpect(jsonPath("bookId").value(1))
+                .andExpect(jsonPath("status").value("WAITING"))
+                .andExpect(jsonPath("expiresAt").doesNotExist());
+    }
+
+    @Test
+    @DisplayName("Deve recusar reserva de livro disponível")
+    public void availableBookHoldTest() throws Exception {
+        //cenario
+        BDDMockito.given(bookService.getById(1l)).willReturn(Optional.of(Book.builder().id(1l).build()));
+        BDDMockito.given(service.place(Mockito.any(Hold.class))).willThrow(new BusinessException("Book is available"));
+        String json = new ObjectMapper().writeValueAsString(HoldDTO.builder().customer("Fulano").build());
+
+        //execucao
+        mvc.perform(MockMvcRequestBuilders.post(HOLD_API)
+                .contentType(MediaType.APPLICATION_JSON)
+                .accept(MediaType.APPLICATION_JSON)
+                .content(json))
+                //verificacao
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("errors[0]").value("Book is available"));
+    }
+
+    @Test
+    @DisplayName("Deve retornar 404 ao cancelar reserva de outro livro")
+    public void cancelHoldOfOtherBookTest() throws Exception {
+        //cenario
+        BDDMockito.given(service.getById(5l)).willReturn(Optional.of(
+                Hold.builder().id(5l).book(Book.builder().id(2l).build()).status(Hold.Status.WAITING).build()));
+
+        //execucao
+        mvc.perform(MockMvcRequestBuilders.delete(HOLD_API.concat("/5")))
+                //verificacao
+                .andExpect(status().isNotFound());
+        Mockito.verify(service, Mockito.never()).cancel(Mockito.any(Hold.class));
+    }
+}
@@ -1,26 +1,40 @@
 package com.cursoteste.libraryapi.resource;
 
 
+import com.cursoteste.libraryapi.api.audit.LoanAuditEvent;
+import com.cursoteste.libraryapi.api.audit.LoanAuditLog;
+import com.cursoteste.libraryapi.api.dto.BatchItemResultDTO;
 import com.cursoteste.libraryapi.api.dto.LoanDto;
+import com.cursoteste.libraryapi.api.dto.LoanFilterDTO;
 import com.cursoteste.libraryapi.api.dto.ReturnedLoanDTO;
 import com.cursoteste.libraryapi.api.exception.BusinessException;
+import com.cursoteste.libraryapi.api.mapper.impl.BookMapperImpl;
+import com.cursoteste.libraryapi.api.mapper.impl.LoanMapperImpl;
 import com.cursoteste.libraryapi.api.model.entity.Book;
 import com.cursoteste.libraryapi.api.resource.LoanController;
 import com.cursoteste.libraryapi.api.service.BookService;
+import com.cursoteste.libraryapi.api.service.ExportService;
 import com.cursoteste.libraryapi.api.model.entity.Loan;
 import com.cursoteste.libraryapi.api.service.LoanService;
+import com.cursoteste.libraryapi.api.service.support.IdempotencyStore;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import org.assertj.core.api.Assertions;
 import org.hamcrest.Matchers;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.BDDMockito;
 import org.mockito.Mockito;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
 import org.springframework.http.MediaType;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
@@ -28,7 +42,11 @@ import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
 import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
 
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Optional;
 
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.patch;
@@ -37,6 +55,7 @@ import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.
 @ExtendWith(SpringExtension.class)
 @ActiveProfiles("test")
 @WebMvcTest(controllers = LoanController.class)
+@Import({LoanMapperImpl.class, BookMapperImpl.class, IdempotencyStore.class})
 @AutoConfigureMockMvc
 public class LoanControllerTest {
     static final String LOAN_API = "/api/loans";
@@ -50,6 +69,12 @@ public class LoanControllerTest {
     @MockBean
     private LoanService loanService;
 
+    @MockBean
+    private ExportService exportService;
+
+    @MockBean
+    private LoanAuditLog auditLog;
+
     @Test
     @DisplayName("Deve realizar um emprestimo")
     public void createLoanTest()throws Exception{
@@ -74,6 +99,36 @@ public class LoanControllerTest {
         mvc.perform(request)
                 .andExpect(status().isCreated() )
                 .andExpect(content().string("1"));
+
+        ArgumentCaptor<LoanAuditEvent> event = ArgumentCaptor.forClass(LoanAuditEvent.class);
+        Mockito.verify(auditLog).append(event.capture());
+        Assertions.assertThat(event.getValue().getType()).isEqualTo(LoanAuditEvent.Type.CREATED);
+        Assertions.assertThat(event.getValue().getLoanId()).isEqualTo(1l);
+        Assertions.assertThat(event.getValue().getIsbn()).isEqualTo("123");
+    }
+
+    @Test
+    @DisplayName("Deve devolver o mesmo emprestimo ao repetir a requisição com a mesma chave de idempotência")
+    public void retryLoanWithIdempotencyKeyTest() throws Exception {
+        //cenario
+        LoanDto dto = LoanDto.builder().isbn("123").customer("fulano").build();
+        String json = new ObjectMapper().writeValueAsString(dto);
+        Book book = Book.builder().id(1l).isbn("123").build();
+        BDDMockito.given(bookService.getBookByIsbn("123")).willReturn(Optional.of(book));
+        BDDMockito.given(loanService.save(Mockito.any(Loan.class)))
+                .willReturn(Loan.builder().id(1l).customer("fulano").book(book).loanDate(LocalDate.now()).build());
+
+        //execucao
+        MockHttpServletRequestBuilder request = MockMvcRequestBuilders.post(LOAN_API)
+                .header("Idempotency-Key", "retry-1")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(json);
+        mvc.perform(request).andExpect(status().isCreated()).andExpect(content().string("1"));
+
+        //verificacao
+        mvc.perform(request).andExpect(status().isCreated()).andExpect(content().string("1"));
+        Mockito.verify(loanService, Mockito.times(1)).save(Mockito.any(Loan.class));
+        Mockito.verify(auditLog, Mockito.times(1)).append(Mockito.any(LoanAuditEvent.class));
     }
 
     @Test
@@ -141,6 +196,7 @@ public class LoanControllerTest {
 
         BDDMockito.given(loanService.getById(Mockito.anyLong()))
                 .willReturn(Optional.of(loan));
+        BDDMockito.given(loanService.updateReturned(loan)).willReturn(true);
 
         String json  = new ObjectMapper().writeValueAsString(dto);
 
@@ -151,8 +207,30 @@ public class LoanControllerTest {
                 .content(json)
         ).andExpect(status().isOk());
 
-        Mockito.verify(loanService, Mockito.times(1)).update(loan);
+        Mockito.verify(loanService, Mockito.times(1)).updateReturned(loan);
+        Mockito.verify(auditLog).append(LoanAuditEvent.returned(1l, true));
+
+    }
+
+    @Test
+    @DisplayName("Não deve auditar a devolução repetida de um empréstimo já devolvido")
+    public void repeatedReturnNotAuditedTest() throws Exception {
+        //cenario
+        ReturnedLoanDTO dto = ReturnedLoanDTO.builder().returned(true).build();
+        Loan loan = Loan.builder().id(1l).returned(true).build();
+        BDDMockito.given(loanService.getById(1l)).willReturn(Optional.of(loan));
+        BDDMockito.given(loanService.updateReturned(loan)).willReturn(false);
+
+        //execucao
+        mvc.perform(
+                patch(LOAN_API.concat("/1"))
+                .accept(MediaType.APPLICATION_JSON)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(new ObjectMapper().writeValueAsString(dto))
+        ).andExpect(status().isOk());
 
+        //verificacao
+        Mockito.verify(auditLog, Mockito.never()).append(Mockito.any(LoanAuditEvent.class));
     }
 
     @Test
@@ -176,6 +254,100 @@ public class LoanControllerTest {
 
     }
 
+    @Test
+    @DisplayName("Deve filtrar empréstimos por isbn e cliente")
+    public void findLoansTest() throws Exception {
+        //cenario
+        Book book = Book.builder().id(1l).isbn("123").build();
+        Loan loan = Loan.builder().id(1l).book(book).customer("Fulano").loanDate(LocalDate.now()).build();
+
+        BDDMockito.given(loanService.find(Mockito.any(LoanFilterDTO.class), Mockito.any(Pageable.class)))
+                .willReturn(new PageImpl<Loan>(Arrays.asList(loan), PageRequest.of(0, 10), 1));
+
+        //execucao
+        mvc.perform(MockMvcRequestBuilders.get(LOAN_API.concat("?isbn=123&customer=Fulano&page=0&size=10"))
+                .accept(MediaType.APPLICATION_JSON))
+                //verificacao
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("content", Matchers.hasSize(1)))
+                .andExpect(jsonPath("content[0].id").value(1))
+                .andExpect(jsonPath("content[0].book.isbn").value("123"))
+                .andExpect(jsonPath("totalElements").value(1));
+    }
+
+    @Test
+    @DisplayName("Deve realizar vários empréstimos informando o resultado de cada um")
+    public void createBatchTest() throws Exception {
+        //cenario
+        List<LoanDto> dtos = Arrays.asList(
+                LoanDto.builder().isbn("123").customer("Fulano").build(),
+                LoanDto.builder().isbn("000").customer("Ciclano").build(),
+                LoanDto.builder().isbn("456").customer("Beltrano").build());
+        BDDMockito.given(bookService.getBooksByIsbn(Mockito.anyCollection())).willReturn(Arrays.asList(
+                Book.builder().id(1l).isbn("123").build(), Book.builder().id(2l).isbn("456").build()));
+        BDDMockito.given(loanService.saveAll(Mockito.anyList())).willReturn(Arrays.asList(
+                BatchItemResultDTO.success(10l), BatchItemResultDTO.failure("Book already loaned")));
+
+        //execucao
+        mvc.perform(MockMvcRequestBuilders.post(LOAN_API.concat("/batch"))
+                .accept(MediaType.APPLICATION_JSON)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(new ObjectMapper().writeValueAsString(dtos)))
+                //verificacao
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", Matchers.hasSize(3)))
+                .andExpect(jsonPath("[0].index").value(0))
+                .andExpect(jsonPath("[0].id").value(10))
+                .andExpect(jsonPath("[1].index").value(1))
+                .andExpect(jsonPath("[1].error").value("Book not found for passed isbn"))
+                .andExpect(jsonPath("[2].index").value(2))
+                .andExpect(jsonPath("[2].error").value("Book already loaned"));
+
+        ArgumentCaptor<LoanAuditEvent> event = ArgumentCaptor.forClass(LoanAuditEvent.class);
+        Mockito.verify(auditLog).append(event.capture());
+        Assertions.assertThat(event.getValue().getLoanId()).isEqualTo(10l);
+        Assertions.assertThat(event.getValue().getCustomer()).isEqualTo("Fulano");
+    }
+
+    @Test
+    @DisplayName("Deve devolver vários empréstimos informando o resultado de cada um")
+    public void returnBatchTest() throws Exception {
+        //cenario
+        BDDMockito.given(loanService.returnAll(Arrays.asList(1l, 2l, 3l))).willReturn(Arrays.asList(
+                BatchItemResultDTO.success(1l), BatchItemResultDTO.failure("Loan not found"), BatchItemResultDTO.unchanged(3l)));
 
+        //execucao
+        mvc.perform(patch(LOAN_API.concat("/returns"))
+                .accept(MediaType.APPLICATION_JSON)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("[1,2,3]"))
+                //verificacao
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("[0].index").value(0))
+                .andExpect(jsonPath("[0].status").value("SUCCESS"))
+                .andExpect(jsonPath("[1].index").value(1))
+                .andExpect(jsonPath("[1].error").value("Loan not found"))
+                .andExpect(jsonPath("[2].status").value("UNCHANGED"));
+
+        Mockito.verify(auditLog).append(LoanAuditEvent.returned(1l, true));
+        Mockito.verifyNoMoreInteractions(auditLog);
+    }
 
-}
\ No newline at end of file
+    @Test
+    @DisplayName("Deve transmitir o log de auditoria a partir da sequência informada")
+    public void auditTest() throws Exception {
+        //cenario
+        BDDMockito.given(auditLog.replay(Mockito.eq(5l), Mockito.any(OutputStream.class))).willAnswer(invocation -> {
+            OutputStream out = invocation.getArgument(1);
+            out.write("{\"sequence\":6}\n".getBytes(StandardCharsets.UTF_8));
+            return 1l;
+        });
+
+        //execucao
+        mvc.perform(MockMvcRequestBuilders.get(LOAN_API.concat("/audit?after=5")))
+                //verificacao
+                .andExpect(status().isOk())
+                .andExpect(content().contentType("application/x-ndjson;charset=UTF-8"))
+                .andExpect(content().string("{\"sequence\":6}\n"));
+    }
+}
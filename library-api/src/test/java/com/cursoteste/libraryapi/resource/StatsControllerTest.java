@@ -0,0 +1,74 @@
+package com.cursoteste.libraryapi.resource;
+
+import com.cursoteste.libraryapi.api.model.entity.Book;
+import com.cursoteste.libraryapi.api.resource.StatsController;
+import com.cursoteste.libraryapi.api.service.BookService;
+import com.cursoteste.libraryapi.api.service.support.CirculationStats;
+import com.cursoteste.libraryapi.api.service.support.TopKSketch;
+import org.hamcrest.Matchers;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.BDDMockito;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
+
+import java.util.Arrays;
+import java.util.Optional;
+
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@ExtendWith(SpringExtension.class)
+@ActiveProfiles("test")
+@WebMvcTest(controllers = StatsController.class)
+@AutoConfigureMockMvc
+public class StatsControllerTest {
+
+    static final String STATS_API = "/api/stats";
+
+    @Autowired
+    MockMvc mvc;
+
+    @MockBean
+    CirculationStats stats;
+
+    @MockBean
+    BookService bookService;
+
+    @Test
+    @DisplayName("Deve retornar as estatísticas de circulação com os livros mais emprestados")
+    public void getStatsTest() throws Exception {
+        //cenario
+        BDDMockito.given(stats.getTotalLoans()).willReturn(12l);
+        BDDMockito.given(stats.getOpenLoans()).willReturn(3l);
+        BDDMockito.given(stats.getLoansOfBook(1l)).willReturn(7l);
+        BDDMockito.given(stats.getTopBooksCapacity()).willReturn(100);
+        BDDMockito.given(stats.getTopBooks(2)).willReturn(Arrays.asList(
+                new TopKSketch.Entry<>(1l, 7l, 0l), new TopKSketch.Entry<>(2l, 5l, 1l)));
+        BDDMockito.given(bookService.getById(1l))
+                .willReturn(Optional.of(Book.builder().id(1l).title("Aventuras").isbn("123").build()));
+        BDDMockito.given(bookService.getById(2l)).willReturn(Optional.empty());
+
+        //execucao
+        mvc.perform(MockMvcRequestBuilders.get(STATS_API.concat("?top=2&bookId=1"))
+                .accept(MediaType.APPLICATION_JSON))
+                //verificacao
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("totalLoans").value(12))
+                .andExpect(jsonPath("currentlyOut").value(3))
+                .andExpect(jsonPath("bookLoans").value(7))
+                .andExpect(jsonPath("customerLoans").doesNotExist())
+                .andExpect(jsonPath("topBooks", Matchers.hasSize(2)))
+                .andExpect(jsonPath("topBooks[0].title").value("Aventuras"))
+                .andExpect(jsonPath("topBooks[1].loans").value(5))
+                .andExpect(jsonPath("topBooks[1].error").value(1));
+    }
+}
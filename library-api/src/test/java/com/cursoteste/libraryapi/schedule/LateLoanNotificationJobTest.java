@@ -0,0 +1,238 @@
+package com.cursoteste.libraryapi.schedule;
+
+import com.cursoteste.libraryapi.api.model.entity.Book;
+import com.cursoteste.libraryapi.api.model.entity.JobCheckpoint;
+import com.cursoteste.libraryapi.api.model.entity.Loan;
+import com.cursoteste.libraryapi.api.model.repository.JobCheckpointRepository;
+import com.cursoteste.libraryapi.api.model.repository.LoanRepository;
+import com.cursoteste.libraryapi.api.schedule.LateLoanNotificationJob;
+import com.cursoteste.libraryapi.api.service.EmailService;
+import com.cursoteste.libraryapi.api.service.impl.EmailServiceImpl;
+import com.cursoteste.libraryapi.api.service.support.OverdueLoanTracker;
+import com.icegreen.greenmail.junit5.GreenMailExtension;
+import com.icegreen.greenmail.util.GreenMailUtil;
+import com.icegreen.greenmail.util.ServerSetupTest;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.mockito.Mockito;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.mail.MailSendException;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.transaction.support.TransactionOperations;
+
+import javax.mail.MessagingException;
+import javax.mail.internet.MimeMessage;
+import java.time.Clock;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static com.cursoteste.libraryapi.model.repository.BookRepositoryTest.createNewBook;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyString;
+
+@ExtendWith(SpringExtension.class)
+@ActiveProfiles("test")
+@DataJpaTest
+public class LateLoanNotificationJobTest {
+
+    @RegisterExtension
+    static GreenMailExtension greenMail = new GreenMailExtension(ServerSetupTest.SMTP);
+
+    static final LocalDate TODAY = LocalDate.of(2020, 10, 20);
+
+    @Autowired
+    TestEntityManager entityManager;
+
+    @Autowired
+    LoanRepository loanRepository;
+
+    @Autowired
+    JobCheckpointRepository checkpointRepository;
+
+    EmailService emailService;
+
+    OverdueLoanTracker overdueLoans;
+
+    Loan returnedLoan;
+
+    @BeforeEach
+    public void setUp(){
+        JavaMailSenderImpl mailSender = new JavaMailSenderImpl();
+        mailSender.setHost("localhost");
+        mailSender.setPort(ServerSetupTest.SMTP.getPort());
+        emailService = new EmailServiceImpl(mailSender, "library-api@cursoteste.com");
+
+        Book first = createNewBook("123");
+        Book second = createNewBook("456");
+        Book third = createNewBook("789");
+        entityManager.persist(first);
+        entityManager.persist(second);
+        entityManager.persist(third);
+
+        entityManager.persist(loan(first, "ana@email.com", TODAY.minusDays(5), null));
+        entityManager.persist(loan(second, "ana@email.com", TODAY.minusDays(4), false));
+        entityManager.persist(loan(third, "bia@email.com", TODAY.minusDays(3), null));
+        entityManager.persist(loan(first, "caio@email.com", TODAY.minusDays(1), null));
+        returnedLoan = entityManager.persist(loan(second, "duda@email.com", TODAY.minusDays(10), true));
+    }
+
+    @Test
+    @DisplayName("Deve enviar um email por cliente com todos os empréstimos atrasados")
+    public void notifyLateCustomersTest() throws Exception {
+        //execucao
+        newJob(emailService, 1).run();
+
+        //verificacao
+        MimeMessage[] messages = greenMail.getReceivedMessages();
+        assertThat(recipients(messages)).containsExactlyInAnyOrder("ana@email.com", "bia@email.com");
+
+        MimeMessage toAna = Arrays.stream(messages)
+                .filter(m -> recipient(m).equals("ana@email.com"))
+                .findFirst().get();
+        assertThat(GreenMailUtil.getBody(toAna)).contains("isbn 123").contains("isbn 456");
+
+        JobCheckpoint checkpoint = checkpointRepository.findById("late-loan-notification").get();
+        assertThat(checkpoint.getCompleted()).isTrue();
+        assertThat(checkpoint.getLastKey()).isEqualTo("bia@email.com");
+    }
+
+    @Test
+    @DisplayName("Deve retomar a execução do dia a partir do último cliente processado")
+    public void resumeFromCheckpointTest() throws Exception {
+        //cenario
+        checkpointRepository.save(JobCheckpoint.builder()
+                .name("late-loan-notification").runDate(TODAY).lastKey("ana@email.com").completed(false).build());
+
+        //execucao
+        newJob(emailService, 10).run();
+
+        //verificacao
+        assertThat(recipients(greenMail.getReceivedMessages())).containsExactly("bia@email.com");
+    }
+
+    @Test
+    @DisplayName("Não deve reenviar emails quando a execução do dia já terminou")
+    public void completedRunTest(){
+        //cenario
+        checkpointRepository.save(JobCheckpoint.builder()
+                .name("late-loan-notification").runDate(TODAY).lastKey("bia@email.com").completed(true).build());
+
+        //execucao
+        newJob(emailService, 10).run();
+
+        //verificacao
+        assertThat(greenMail.getReceivedMessages()).isEmpty();
+    }
+
+    @Test
+    @DisplayName("Deve tentar novamente quando o envio falhar")
+    public void retryFailedMailTest(){
+        //cenario
+        EmailService flaky = Mockito.mock(EmailService.class);
+        Mockito.doThrow(new MailSendException("indisponível"))
+                .doNothing()
+                .when(flaky).send(Mockito.eq("bia@email.com"), anyString(), anyString());
+
+        //execucao
+        newJob(flaky, 10).run();
+
+        //verificacao
+        Mockito.verify(flaky, Mockito.times(1)).send(Mockito.eq("ana@email.com"), anyString(), anyString());
+        Mockito.verify(flaky, Mockito.times(2)).send(Mockito.eq("bia@email.com"), anyString(), anyString());
+    }
+
+    @Test
+    @DisplayName("Deve guardar os envios que falharam e repeti-los na próxima execução do dia")
+    public void requeueFailedMailTest(){
+        //cenario
+        EmailService failing = Mockito.mock(EmailService.class);
+        Mockito.doThrow(new MailSendException("indisponível"))
+                .when(failing).send(Mockito.eq("bia@email.com"), anyString(), anyString());
+
+        //execucao
+        newJob(failing, 1).run();
+        JobCheckpoint failed = checkpointRepository.findById("late-loan-notification").get();
+        assertThat(failed.getCompleted()).isFalse();
+        assertThat(failed.getFailedKeys()).containsExactly("bia@email.com");
+        assertThat(failed.getLastKey()).isEqualTo("bia@email.com");
+        newJob(emailService, 1).run();
+
+        //verificacao
+        assertThat(recipients(greenMail.getReceivedMessages())).containsExactly("bia@email.com");
+        JobCheckpoint checkpoint = checkpointRepository.findById("late-loan-notification").get();
+        assertThat(checkpoint.getCompleted()).isTrue();
+        assertThat(checkpoint.getFailedKeys()).isEmpty();
+    }
+
+    @Test
+    @DisplayName("Deve enviar à biblioteca um relatório dos empréstimos atrasados sem email do cliente")
+    public void reportLoansWithoutEmailTest() throws Exception {
+        //cenario
+        Loan withoutEmail = entityManager.persist(Loan.builder().book(returnedLoan.getBook()).customer("Eva")
+                .loanDate(TODAY.minusDays(6)).dueDate(TODAY.minusDays(3)).build());
+
+        //execucao
+        newJob(emailService, 10).run();
+
+        //verificacao
+        MimeMessage report = Arrays.stream(greenMail.getReceivedMessages())
+                .filter(m -> recipient(m).equals("biblioteca@email.com"))
+                .findFirst().get();
+        assertThat(GreenMailUtil.getBody(report)).contains(withoutEmail.getId() + " de Eva");
+        JobCheckpoint checkpoint = checkpointRepository.findById("late-loan-notification").get();
+        assertThat(checkpoint.getReported()).isTrue();
+        assertThat(checkpoint.getCompleted()).isTrue();
+    }
+
+    @Test
+    @DisplayName("Deve deixar de acompanhar empréstimos devolvidos em outra instância")
+    public void untrackReturnedLoansTest(){
+        //cenario
+        LateLoanNotificationJob job = newJob(emailService, 10);
+        overdueLoans.track(returnedLoan.getId(), returnedLoan.getDueDate());
+
+        //execucao
+        job.run();
+
+        //verificacao
+        assertThat(recipients(greenMail.getReceivedMessages())).containsExactlyInAnyOrder("ana@email.com", "bia@email.com");
+        assertThat(overdueLoans.overdue()).hasSize(3).doesNotContain(returnedLoan.getId());
+    }
+
+    private LateLoanNotificationJob newJob(EmailService emailService, int pageSize){
+        Clock clock = Clock.fixed(TODAY.atStartOfDay().toInstant(ZoneOffset.UTC), ZoneOffset.UTC);
+        overdueLoans = new OverdueLoanTracker(loanRepository, TransactionOperations.withoutTransaction(), clock, 3);
+        overdueLoans.load();
+        return new LateLoanNotificationJob(loanRepository, checkpointRepository, overdueLoans, emailService, clock,
+                "biblioteca@email.com", pageSize, 2, 3, 0, 1000);
+    }
+
+    private static Loan loan(Book book, String email, LocalDate loanDate, Boolean returned){
+        return Loan.builder().book(book).customer(email).customerEmail(email).loanDate(loanDate)
+                .dueDate(loanDate.plusDays(3)).returned(returned).build();
+    }
+
+    private static List<String> recipients(MimeMessage[] messages) {
+        return Arrays.stream(messages)
+                .map(LateLoanNotificationJobTest::recipient)
+                .collect(Collectors.toList());
+    }
+
+    private static String recipient(MimeMessage message) {
+        try {
+            return GreenMailUtil.getAddressList(message.getAllRecipients());
+        } catch (MessagingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
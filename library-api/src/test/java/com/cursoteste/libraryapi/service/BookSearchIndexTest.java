@@ -0,0 +1,107 @@
+package com.cursoteste.libraryapi.service;
+
+import com.cursoteste.libraryapi.api.model.entity.Book;
+import com.cursoteste.libraryapi.api.model.repository.BookRepository;
+import com.cursoteste.libraryapi.api.service.search.BookSearchIndex;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.when;
+
+public class BookSearchIndexTest {
+
+    BookRepository repository = Mockito.mock(BookRepository.class);
+
+    BookSearchIndex index;
+
+    @BeforeEach
+    public void setUp(){
+        index = new BookSearchIndex(repository);
+        index.index(Book.builder().id(1l).title("As Aventuras de Pinóquio").author("Carlo Collodi").isbn("978-1").build());
+        index.index(Book.builder().id(2l).title("Aventura no Mar").author("Fulano").isbn("978-2").build());
+        index.index(Book.builder().id(3l).title("Manual de Java").author("Fulano de Tal").isbn("978-3").build());
+    }
+
+    @Test
+    @DisplayName("Deve ignorar caixa e acentos na busca")
+    public void caseAndAccentFoldingTest(){
+        assertThat(index.search("PINOQUIO", null, null)).containsExactly(1l);
+    }
+
+    @Test
+    @DisplayName("Deve ranquear correspondências exatas antes das por prefixo")
+    public void rankingTest(){
+        assertThat(index.search("aventura", null, null)).containsExactly(2l, 1l);
+    }
+
+    @Test
+    @DisplayName("Deve exigir todos os termos e critérios informados")
+    public void allTermsRequiredTest(){
+        assertThat(index.search("aventura mar", null, null)).containsExactly(2l);
+        assertThat(index.search(null, "fulano", null)).containsExactly(2l, 3l);
+        assertThat(index.search("java", "fulano", null)).containsExactly(3l);
+        assertThat(index.search("java", "collodi", null)).isEmpty();
+    }
+
+    @Test
+    @DisplayName("Deve buscar o isbn de forma exata")
+    public void exactIsbnTest(){
+        assertThat(index.search(null, null, "978-2")).containsExactly(2l);
+        assertThat(index.search(null, null, "978")).isEmpty();
+    }
+
+    @Test
+    @DisplayName("Deve reindexar um livro atualizado e remover um livro deletado")
+    public void updateAndRemoveTest(){
+        index.index(Book.builder().id(2l).title("Viagem ao Centro da Terra").author("Julio Verne").isbn("978-2").build());
+        index.remove(3l);
+
+        assertThat(index.search("aventura", null, null)).containsExactly(1l);
+        assertThat(index.search("viagem", null, null)).containsExactly(2l);
+        assertThat(index.search(null, "fulano", null)).isEmpty();
+        assertThat(index.size()).isEqualTo(2);
+    }
+
+    @Test
+    @DisplayName("Deve ficar pronto após reconstruir a partir da base")
+    public void rebuildTest(){
+        BookSearchIndex rebuilt = new BookSearchIndex(repository);
+        when(repository.findFirst1000ByIdGreaterThanOrderByIdAsc(0l))
+                .thenReturn(Arrays.asList(Book.builder().id(7l).title("Dom Casmurro").build()));
+        when(repository.findFirst1000ByIdGreaterThanOrderByIdAsc(7l)).thenReturn(Collections.emptyList());
+
+        assertThat(rebuilt.isReady()).isFalse();
+        rebuilt.rebuild();
+
+        assertThat(rebuilt.isReady()).isTrue();
+        assertThat(rebuilt.search("casmurro", null, null)).containsExactly(7l);
+    }
+
+    @Test
+    @DisplayName("Não deve reindexar livros alterados ou deletados durante a reconstrução")
+    public void rebuildSkipsConcurrentChangesTest(){
+        BookSearchIndex rebuilt = new BookSearchIndex(repository);
+        when(repository.findFirst1000ByIdGreaterThanOrderByIdAsc(0l)).thenAnswer(invocation -> {
+            rebuilt.index(Book.builder().id(7l).title("Memórias Póstumas").build());
+            rebuilt.remove(8l);
+            return Arrays.asList(Book.builder().id(7l).title("Dom Casmurro").build(),
+                    Book.builder().id(8l).title("Quincas Borba").build(),
+                    Book.builder().id(9l).title("Helena").build());
+        });
+        when(repository.findFirst1000ByIdGreaterThanOrderByIdAsc(9l)).thenReturn(Collections.emptyList());
+
+        rebuilt.rebuild();
+
+        assertThat(rebuilt.search("casmurro", null, null)).isEmpty();
+        assertThat(rebuilt.search("memorias", null, null)).containsExactly(7l);
+        assertThat(rebuilt.search("borba", null, null)).isEmpty();
+        assertThat(rebuilt.search("helena", null, null)).containsExactly(9l);
+        assertThat(rebuilt.size()).isEqualTo(2);
+    }
+}
@@ -0,0 +1,171 @@
+package com.cursoteste.libraryapi.service;
+
+import com.cursoteste.libraryapi.api.cache.CacheInvalidator;
+import com.cursoteste.libraryapi.api.model.entity.Book;
+import com.cursoteste.libraryapi.api.model.repository.BookRepository;
+import com.cursoteste.libraryapi.api.service.BookService;
+import com.cursoteste.libraryapi.api.service.HoldService;
+import com.cursoteste.libraryapi.api.service.impl.BookServiceImpl;
+import com.cursoteste.libraryapi.api.service.search.BookSearchIndex;
+import com.cursoteste.libraryapi.api.service.support.BookAvailability;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mockito;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.cache.caffeine.CaffeineCacheManager;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(SpringExtension.class)
+@ActiveProfiles("test")
+@TestPropertySource(properties = "library.books.lookup-wait-ms=5000")
+public class BookServiceCacheTest {
+
+    @Configuration
+    @EnableCaching
+    @Import({BookServiceImpl.class, BookSearchIndex.class})
+    static class CacheConfig {
+
+        @Bean
+        public CacheManager cacheManager() {
+            return new CaffeineCacheManager(BookServiceImpl.BOOKS_BY_ISBN_CACHE, BookServiceImpl.BOOK_VERSIONS_CACHE);
+        }
+
+        @Bean
+        public MeterRegistry meterRegistry() {
+            return new SimpleMeterRegistry();
+        }
+    }
+
+    @Autowired
+    BookService service;
+
+    @Autowired
+    CacheManager cacheManager;
+
+    @MockBean
+    BookRepository repository;
+
+    @MockBean
+    CacheInvalidator cacheInvalidator;
+
+    @MockBean
+    BookAvailability availability;
+
+    @MockBean
+    HoldService holds;
+
+    @BeforeEach
+    public void setUp(){
+        cacheManager.getCache(BookServiceImpl.BOOKS_BY_ISBN_CACHE).clear();
+        cacheManager.getCache(BookServiceImpl.BOOK_VERSIONS_CACHE).clear();
+    }
+
+    @Test
+    @DisplayName("Deve consultar a base apenas uma vez para o mesmo isbn")
+    public void cachedIsbnLookupTest(){
+        //cenario
+        Book book = Book.builder().id(1l).isbn("123").build();
+        when(repository.findByIsbn("123")).thenReturn(Optional.of(book));
+
+        //execucao
+        Optional<Book> first = service.getBookByIsbn("123");
+        Optional<Book> second = service.getBookByIsbn("123");
+
+        //verificacao
+        assertThat(first).contains(book);
+        assertThat(second).contains(book);
+        verify(repository, times(1)).findByIsbn("123");
+    }
+
+    @Test
+    @DisplayName("Não deve guardar em cache um isbn inexistente")
+    public void missingIsbnNotCachedTest(){
+        //cenario
+        when(repository.findByIsbn("123")).thenReturn(Optional.empty());
+
+        //execucao
+        service.getBookByIsbn("123");
+        Optional<Book> result = service.getBookByIsbn("123");
+
+        //verificacao
+        assertThat(result).isEmpty();
+        verify(repository, times(2)).findByIsbn("123");
+    }
+
+    @Test
+    @DisplayName("Deve invalidar o cache ao deletar um livro")
+    public void evictOnDeleteTest(){
+        //cenario
+        Book book = Book.builder().id(1l).isbn("123").build();
+        when(repository.findByIsbn("123")).thenReturn(Optional.of(book));
+        service.getBookByIsbn("123");
+
+        //execucao
+        service.delete(book);
+        when(repository.findByIsbn("123")).thenReturn(Optional.empty());
+        Optional<Book> result = service.getBookByIsbn("123");
+
+        //verificacao
+        assertThat(result).isEmpty();
+        verify(repository, times(2)).findByIsbn("123");
+    }
+
+    @Test
+    @DisplayName("Deve invalidar o cache ao atualizar um livro")
+    public void evictOnUpdateTest(){
+        //cenario
+        Book book = Book.builder().id(1l).isbn("123").title("Antigo").build();
+        Book updated = Book.builder().id(1l).isbn("123").title("Novo").build();
+        when(repository.findByIsbn("123")).thenReturn(Optional.of(book));
+        service.getBookByIsbn("123");
+
+        //execucao
+        when(repository.save(updated)).thenReturn(updated);
+        service.update(updated);
+        when(repository.findByIsbn("123")).thenReturn(Optional.of(updated));
+        Optional<Book> result = service.getBookByIsbn("123");
+
+        //verificacao
+        assertThat(result.get().getTitle()).isEqualTo("Novo");
+        verify(repository, times(2)).findByIsbn("123");
+    }
+
+    @Test
+    @DisplayName("Deve guardar em cache a versão do livro até ele ser atualizado")
+    public void cachedVersionTest(){
+        //cenario
+        Book book = Book.builder().id(1l).isbn("123").version(3l).build();
+        when(repository.findVersionById(1l)).thenReturn(Optional.of(3l));
+
+        //execucao
+        Optional<Long> first = service.getVersion(1l);
+        Optional<Long> second = service.getVersion(1l);
+        when(repository.save(book)).thenReturn(book);
+        service.update(book);
+        when(repository.findVersionById(1l)).thenReturn(Optional.of(4l));
+        Optional<Long> afterUpdate = service.getVersion(1l);
+
+        //verificacao
+        assertThat(first).contains(3l);
+        assertThat(second).contains(3l);
+        assertThat(afterUpdate).contains(4l);
+        verify(repository, times(2)).findVersionById(1l);
+    }
+}
@@ -1,11 +1,19 @@
 package com.cursoteste.libraryapi.service;
 
 
+import com.cursoteste.libraryapi.api.cache.CacheInvalidator;
+import com.cursoteste.libraryapi.api.dto.BatchItemResultDTO;
 import com.cursoteste.libraryapi.api.exception.BusinessException;
 import com.cursoteste.libraryapi.api.model.entity.Book;
 import com.cursoteste.libraryapi.api.model.repository.BookRepository;
+import com.cursoteste.libraryapi.api.model.repository.BookRepository.CopyCount;
 import com.cursoteste.libraryapi.api.service.BookService;
+import com.cursoteste.libraryapi.api.service.HoldService;
 import com.cursoteste.libraryapi.api.service.impl.BookServiceImpl;
+import com.cursoteste.libraryapi.api.service.search.BookSearchIndex;
+import com.cursoteste.libraryapi.api.service.support.BookAvailability;
+import com.cursoteste.libraryapi.api.service.support.SingleFlight;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.assertj.core.api.Assertions;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
@@ -18,14 +26,22 @@ import org.springframework.data.domain.Example;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
 import static org.assertj.core.api.InstanceOfAssertFactories.LIST;
 import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.Mockito.*;
@@ -36,12 +52,21 @@ public class BookServiceTest {
 
     BookService service;
 
+    BookSearchIndex searchIndex;
+
+    SimpleMeterRegistry registry;
+
+    HoldService holds = Mockito.mock(HoldService.class);
+
     @MockBean
     BookRepository repository;
 
     @BeforeEach
     public  void setUp(){
-        this.service = new BookServiceImpl(repository);
+        this.searchIndex = new BookSearchIndex(repository);
+        this.registry = new SimpleMeterRegistry();
+        this.service = new BookServiceImpl(repository, searchIndex, Mockito.mock(CacheInvalidator.class),
+                new BookAvailability(repository, 60_000), holds, registry, 5_000);
     }
 
     @Test
@@ -69,6 +94,37 @@ public class BookServiceTest {
 
     }
 
+    @Test
+    @DisplayName("Deve salvar livros em lote rejeitando isbns duplicados")
+    public void saveAllBooksTest(){
+        //cenario
+        Book novo = Book.builder().isbn("123").author("Fulano").title("As aventuras").build();
+        Book existente = Book.builder().isbn("456").author("Fulano").title("Outro").build();
+        Book repetido = Book.builder().isbn("123").author("Fulano").title("Repetido").build();
+
+        when(repository.findExistingIsbns(Mockito.anyCollection())).thenReturn(Arrays.asList("456"));
+        when(repository.saveAll(Mockito.anyList())).thenAnswer(invocation -> {
+            List<Book> books = invocation.getArgument(0);
+            books.forEach(b -> b.setId(1l));
+            return books;
+        });
+
+        //execução
+        List<BatchItemResultDTO> results = service.saveAll(Arrays.asList(novo, existente, repetido));
+
+        //verificação
+        assertThat(results).hasSize(3);
+        assertThat(results.get(0).getStatus()).isEqualTo(BatchItemResultDTO.Status.SUCCESS);
+        assertThat(results.get(0).getId()).isEqualTo(1l);
+        assertThat(results.get(1).getStatus()).isEqualTo(BatchItemResultDTO.Status.FAILURE);
+        assertThat(results.get(1).getError()).isEqualTo("Isbn já cadastrado.");
+        assertThat(results.get(2).getStatus()).isEqualTo(BatchItemResultDTO.Status.FAILURE);
+
+        verify(repository, times(1)).findExistingIsbns(Mockito.anyCollection());
+        verify(repository, times(1)).saveAll(Arrays.asList(novo));
+        verify(repository, never()).existsByIsbn(Mockito.anyString());
+    }
+
     private Book createValidBook() {
         return Book.builder().isbn("123").author("Fulano").title("As aventuras").build();
     }
@@ -236,6 +292,87 @@ public class BookServiceTest {
 
     }
 
+    @Test
+    @DisplayName("Deve filtrar livros pelo índice quando ele estiver pronto")
+    public void findBookIndexedTest(){
+        //cenario
+        Book aventuras = Book.builder().id(1l).isbn("123").author("Fulano").title("As aventuras").build();
+        Book outras = Book.builder().id(2l).isbn("456").author("Fulano").title("Outras aventuras de ontem").build();
+        Book manual = Book.builder().id(3l).isbn("789").author("Ciclano").title("Manual").build();
+        when(repository.findFirst1000ByIdGreaterThanOrderByIdAsc(0l)).thenReturn(Arrays.asList(aventuras, outras, manual));
+        searchIndex.rebuild();
+
+        when(repository.findAllById(Arrays.asList(2l))).thenReturn(Arrays.asList(outras));
+
+        //execução
+        Page<Book> result = service.find(Book.builder().title("aventura").build(), PageRequest.of(1,1));
+
+        //verificações
+        assertThat(result.getTotalElements()).isEqualTo(2);
+        assertThat(result.getContent()).containsExactly(outras);
+        verify(repository, never()).findAll(Mockito.any(Example.class), Mockito.any(PageRequest.class));
+    }
+
+    @Test
+    @DisplayName("Deve remover do índice e do total os livros que não existem mais")
+    public void findBookIndexedDeletedTest(){
+        //cenario
+        Book aventuras = Book.builder().id(1l).isbn("123").author("Fulano").title("As aventuras").build();
+        Book outras = Book.builder().id(2l).isbn("456").author("Fulano").title("Outras aventuras de ontem").build();
+        when(repository.findFirst1000ByIdGreaterThanOrderByIdAsc(0l)).thenReturn(Arrays.asList(aventuras, outras));
+        searchIndex.rebuild();
+
+        when(repository.findAllById(Arrays.asList(1l, 2l))).thenReturn(Arrays.asList(outras));
+
+        //execução
+        Page<Book> result = service.find(Book.builder().title("aventuras").build(), PageRequest.of(0,10));
+
+        //verificações
+        assertThat(result.getTotalElements()).isEqualTo(1);
+        assertThat(result.getContent()).containsExactly(outras);
+        assertThat(searchIndex.search("aventuras", null, null)).containsExactly(2l);
+    }
+
+    @Test
+    @DisplayName("Deve manter o índice atualizado ao salvar e deletar")
+    public void indexKeptInSyncTest(){
+        //cenario
+        Book book = createValidBook();
+        Book saved = Book.builder().id(1l).isbn("123").author("Fulano").title("As aventuras").build();
+        when(repository.save(book)).thenReturn(saved);
+
+        //execução
+        service.save(book);
+        List<Long> afterSave = searchIndex.search("aventuras", null, null);
+        service.delete(saved);
+        List<Long> afterDelete = searchIndex.search("aventuras", null, null);
+
+        //verificações
+        assertThat(afterSave).containsExactly(1l);
+        assertThat(afterDelete).isEmpty();
+    }
+
+    @Test
+    @DisplayName("Deve buscar uma página por cursor consultando um item a mais")
+    public void findAfterTest(){
+        //cenario
+        Book book = createValidBook();
+        List<Book> lista = Arrays.asList(
+                Book.builder().id(3l).build(),
+                Book.builder().id(4l).build(),
+                Book.builder().id(5l).build());
+        when(repository.findByExampleAfter(Mockito.any(Example.class), Mockito.eq(2l), Mockito.eq(3)))
+                .thenReturn(lista);
+
+        //execução
+        Slice<Book> result = service.findAfter(book, 2l, 2);
+
+        //verificações
+        assertThat(result.getContent()).extracting(Book::getId).containsExactly(3l, 4l);
+        assertThat(result.hasNext()).isTrue();
+        verify(repository, never()).count(Mockito.any(Example.class));
+    }
+
     @Test
     @DisplayName("deve obter um livro pelo isbn")
     public void getBookByIsbnTest(){
@@ -257,7 +394,87 @@ public class BookServiceTest {
         verify(repository,times(1)).findByIsbn(isbn);
     }
 
+    @Test
+    @DisplayName("Deve consultar uma única vez o livro buscado ao mesmo tempo por várias requisições")
+    public void coalesceConcurrentLookupsTest() throws Exception {
+        //cenario
+        int requests = 20;
+        CountDownLatch release = new CountDownLatch(1);
+        when(repository.findById(1l)).thenAnswer(invocation -> {
+            release.await(5, TimeUnit.SECONDS);
+            return Optional.of(Book.builder().id(1l).isbn("123").build());
+        });
+        ExecutorService executor = Executors.newFixedThreadPool(requests);
+        List<Future<Optional<Book>>> lookups = new ArrayList<>();
+
+        //execucao
+        for (int i = 0; i < requests; i++) {
+            lookups.add(executor.submit(() -> service.getById(1l)));
+        }
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (coalesced("book.byId") < requests - 1) {
+            if (System.nanoTime() > deadline) {
+                release.countDown();
+                executor.shutdownNow();
+                fail("Lookups were not coalesced within 5 seconds");
+            }
+            Thread.sleep(1);
+        }
+        release.countDown();
 
+        //verificacao
+        for (Future<Optional<Book>> lookup : lookups) {
+            assertThat(lookup.get(5, TimeUnit.SECONDS)).hasValueSatisfying(book -> assertThat(book.getId()).isEqualTo(1l));
+        }
+        executor.shutdown();
+        verify(repository, times(1)).findById(1l);
+        assertThat(lookups.get(0).get().get()).isNotSameAs(lookups.get(1).get().get());
+
+        service.getById(1l);
+        verify(repository, times(2)).findById(1l);
+        assertThat(registry.get(SingleFlight.CALLS).tag("name", "book.byId").functionCounter().count())
+                .isEqualTo(requests + 1);
+    }
+
+    private double coalesced(String flight) {
+        return registry.get(SingleFlight.COALESCED).tag("name", flight).functionCounter().count();
+    }
 
 
+
+
+
+    @Test
+    @DisplayName("Deve lançar erro de negócio ao retirar mais cópias do que as que estão na estante")
+    public void withdrawLoanedCopiesTest(){
+        //cenario
+        Book book = Book.builder().id(1l).isbn("123").build();
+        when(repository.addCopies(1l, -2)).thenReturn(0);
+
+        //execucao
+        Throwable exception = Assertions.catchThrowable(() -> service.addCopies(book, -2));
+
+        //verificacao
+        assertThat(exception)
+                .isInstanceOf(BusinessException.class)
+                .hasMessage("Not enough copies on the shelf.");
+        verify(repository, never()).findCopyCountById(1l);
+    }
+
+    @Test
+    @DisplayName("Deve entregar as cópias adicionadas às reservas em espera antes de guardá-las na estante")
+    public void addCopiesToWaitingHoldsTest(){
+        //cenario
+        Book book = Book.builder().id(1l).isbn("123").build();
+        when(repository.addCopies(1l, 3)).thenReturn(1);
+        when(holds.handOver(1l)).thenReturn(true, true, false);
+        when(repository.findCopyCountById(1l)).thenReturn(Optional.of(Mockito.mock(CopyCount.class)));
+
+        //execucao
+        service.addCopies(book, 3);
+
+        //verificacao
+        verify(holds, times(3)).handOver(1l);
+        verify(repository).reserveCopies(Arrays.asList(1l), 2);
+    }
 }
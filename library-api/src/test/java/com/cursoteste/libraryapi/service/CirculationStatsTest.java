@@ -0,0 +1,118 @@
+package com.cursoteste.libraryapi.service;
+
+import com.cursoteste.libraryapi.api.model.entity.Book;
+import com.cursoteste.libraryapi.api.model.entity.Loan;
+import com.cursoteste.libraryapi.api.model.repository.LoanRepository;
+import com.cursoteste.libraryapi.api.service.support.CirculationStats;
+import com.cursoteste.libraryapi.api.service.support.TopKSketch;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class CirculationStatsTest {
+
+    LoanRepository repository = Mockito.mock(LoanRepository.class);
+
+    private static Loan loan(Long bookId, String customer) {
+        return Loan.builder().book(Book.builder().id(bookId).build()).customer(customer).build();
+    }
+
+    @Test
+    @DisplayName("Deve manter os livros mais emprestados com um número fixo de contadores")
+    public void topKSketchTest() {
+        //cenario
+        TopKSketch<String> sketch = new TopKSketch<>(3);
+        List<String> keys = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            keys.add("a");
+        }
+        for (int i = 0; i < 30; i++) {
+            keys.add("b");
+        }
+        for (int i = 0; i < 20; i++) {
+            keys.add("c" + i);
+        }
+
+        //execucao
+        keys.forEach(sketch::add);
+        List<TopKSketch.Entry<String>> top = sketch.top(2);
+
+        //verificacao
+        assertThat(top).extracting(TopKSketch.Entry::getKey).containsExactly("a", "b");
+        assertThat(top.get(0).getCount()).isEqualTo(50);
+        assertThat(top.get(1).getCount()).isEqualTo(30);
+        assertThat(sketch.top(10)).hasSize(3);
+        TopKSketch.Entry<String> last = sketch.top(3).get(2);
+        assertThat(last.getCount() - last.getError()).isLessThanOrEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Deve contar empréstimos abertos, devolvidos e por livro")
+    public void countTest() {
+        //cenario
+        CirculationStats stats = new CirculationStats(repository, 10, 100);
+
+        //execucao
+        stats.loansOpened(Arrays.asList(loan(1l, "Fulano"), loan(1l, "Ciclano"), loan(2l, "Fulano")));
+        stats.loansReturned(2);
+
+        //verificacao
+        assertThat(stats.getTotalLoans()).isEqualTo(3);
+        assertThat(stats.getOpenLoans()).isEqualTo(1);
+        assertThat(stats.getLoansOfBook(1l)).isEqualTo(2);
+        assertThat(stats.getTopBooks(1).get(0).getKey()).isEqualTo(1l);
+    }
+
+    @Test
+    @DisplayName("Deve contar os empréstimos do cliente pela base e reler a contagem quando ele emprestar")
+    public void loansOfCustomerTest() {
+        //cenario
+        CirculationStats stats = new CirculationStats(repository, 10, 100);
+        when(repository.countByCustomer("Fulano")).thenReturn(2l, 3l);
+
+        //execucao
+        long before = stats.getLoansOfCustomer("Fulano");
+        long cached = stats.getLoansOfCustomer("Fulano");
+        stats.loansOpened(Arrays.asList(loan(1l, "Fulano")));
+
+        //verificacao
+        assertThat(before).isEqualTo(2);
+        assertThat(cached).isEqualTo(2);
+        assertThat(stats.getLoansOfCustomer("Fulano")).isEqualTo(3);
+        assertThat(stats.getLoansOfCustomer("Beltrano")).isZero();
+        verify(repository, times(2)).countByCustomer("Fulano");
+    }
+
+    @Test
+    @DisplayName("Deve corrigir os contadores que divergirem da base")
+    public void reconcileTest() {
+        //cenario
+        CirculationStats stats = new CirculationStats(repository, 10, 100);
+        stats.loansOpened(Arrays.asList(loan(1l, "Fulano"), loan(2l, "Ciclano")));
+        Map<Long, Long> perBook = new HashMap<>();
+        perBook.put(1l, 1l);
+        perBook.put(3l, 4l);
+
+        //execucao
+        int drifted = stats.reconcile(5, 2, perBook);
+
+        //verificacao
+        assertThat(drifted).isEqualTo(3);
+        assertThat(stats.getTotalLoans()).isEqualTo(5);
+        assertThat(stats.getOpenLoans()).isEqualTo(2);
+        assertThat(stats.getLoansOfBook(2l)).isZero();
+        assertThat(stats.getLoansOfBook(3l)).isEqualTo(4);
+        assertThat(stats.getTopBooks(2)).extracting(TopKSketch.Entry::getKey).containsExactly(3l, 1l);
+    }
+}
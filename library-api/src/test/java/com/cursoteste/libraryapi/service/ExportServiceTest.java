@@ -0,0 +1,76 @@
+package com.cursoteste.libraryapi.service;
+
+import com.cursoteste.libraryapi.api.model.entity.Book;
+import com.cursoteste.libraryapi.api.model.entity.Loan;
+import com.cursoteste.libraryapi.api.service.ExportFormat;
+import com.cursoteste.libraryapi.api.service.ExportService;
+import com.cursoteste.libraryapi.api.service.impl.ExportServiceImpl;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+
+import static com.cursoteste.libraryapi.model.repository.BookRepositoryTest.createNewBook;
+import static org.assertj.core.api.Assertions.assertThat;
+
+@ExtendWith(SpringExtension.class)
+@ActiveProfiles("test")
+@DataJpaTest
+@Import(ExportServiceImpl.class)
+public class ExportServiceTest {
+
+    @Autowired
+    ExportService service;
+
+    @Autowired
+    TestEntityManager entityManager;
+
+    @Test
+    @DisplayName("Deve exportar os livros em NDJSON, um por linha")
+    public void exportBooksNdjsonTest() throws Exception {
+        //cenario
+        Book first = entityManager.persist(createNewBook("001"));
+        Book second = entityManager.persist(createNewBook("002"));
+        entityManager.flush();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        //execucao
+        long count = service.exportBooks(ExportFormat.NDJSON, out);
+
+        //verificacao
+        String[] lines = out.toString(StandardCharsets.UTF_8.name()).split("\n");
+        assertThat(count).isEqualTo(2);
+        assertThat(lines).containsExactly(
+                "{\"id\":" + first.getId() + ",\"title\":\"Aventuras\",\"author\":\"Fulano\",\"isbn\":\"001\"}",
+                "{\"id\":" + second.getId() + ",\"title\":\"Aventuras\",\"author\":\"Fulano\",\"isbn\":\"002\"}");
+    }
+
+    @Test
+    @DisplayName("Deve exportar os empréstimos em CSV escapando os campos")
+    public void exportLoansCsvTest() throws Exception {
+        //cenario
+        Book book = entityManager.persist(createNewBook("123"));
+        Loan loan = entityManager.persist(Loan.builder().book(book).customer("Silva, \"Fulano\"")
+                .customerEmail("fulano@email.com").loanDate(LocalDate.of(2020, 10, 1)).build());
+        entityManager.flush();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        //execucao
+        long count = service.exportLoans(ExportFormat.CSV, out);
+
+        //verificacao
+        assertThat(count).isEqualTo(1);
+        assertThat(out.toString(StandardCharsets.UTF_8.name())).isEqualTo(
+                "id,customer,email,isbn,loanDate,returned\r\n"
+                        + loan.getId() + ",\"Silva, \"\"Fulano\"\"\",fulano@email.com,123,2020-10-01,\r\n");
+    }
+}
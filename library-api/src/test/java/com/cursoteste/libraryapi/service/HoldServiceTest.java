@@ -0,0 +1,246 @@
+package com.cursoteste.libraryapi.service;
+
+import com.cursoteste.libraryapi.api.exception.BusinessException;
+import com.cursoteste.libraryapi.api.model.entity.Book;
+import com.cursoteste.libraryapi.api.model.entity.Hold;
+import com.cursoteste.libraryapi.api.model.repository.BookRepository;
+import com.cursoteste.libraryapi.api.model.repository.HoldRepository;
+import com.cursoteste.libraryapi.api.model.repository.HoldRepository.HoldEntry;
+import com.cursoteste.libraryapi.api.service.impl.HoldServiceImpl;
+import com.cursoteste.libraryapi.api.service.support.BookAvailability;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Pageable;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.transaction.support.TransactionOperations;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class HoldServiceTest {
+
+    private static final Clock CLOCK = Clock.fixed(Instant.parse("2020-10-01T10:00:00Z"), ZoneOffset.UTC);
+    private static final LocalDateTime EXPIRY = LocalDateTime.of(2020, 10, 3, 10, 0);
+
+    HoldRepository repository = Mockito.mock(HoldRepository.class);
+    BookRepository bookRepository = Mockito.mock(BookRepository.class);
+    TaskScheduler scheduler = Mockito.mock(TaskScheduler.class);
+    HoldServiceImpl service;
+    long ids;
+
+    @BeforeEach
+    public void setUp() {
+        service = new HoldServiceImpl(repository, bookRepository, new BookAvailability(bookRepository, 60_000),
+                TransactionOperations.withoutTransaction(), scheduler, CLOCK, 48);
+        when(repository.saveAndFlush(any(Hold.class))).thenAnswer(invocation -> {
+            Hold hold = invocation.getArgument(0);
+            hold.setId(++ids);
+            return hold;
+        });
+    }
+
+    private Hold place(String customer) {
+        return service.place(Hold.builder().book(Book.builder().id(1l).build()).customer(customer).build());
+    }
+
+    private void waiting(Long after, HoldEntry... holds) {
+        when(repository.findByBookAndStatus(eq(1l), eq(Hold.Status.WAITING), eq(after), any(Pageable.class)))
+                .thenReturn(Arrays.asList(holds));
+    }
+
+    private Runnable scheduledExpiry() {
+        ArgumentCaptor<Runnable> task = ArgumentCaptor.forClass(Runnable.class);
+        verify(scheduler).schedule(task.capture(), eq(EXPIRY.toInstant(ZoneOffset.UTC)));
+        return task.getValue();
+    }
+
+    @Test
+    @DisplayName("Deve entrar na fila como reserva ativa do cliente")
+    public void placeTest() {
+        //execucao
+        Hold hold = place("Fulano");
+
+        //verificacao
+        assertThat(hold.getStatus()).isEqualTo(Hold.Status.WAITING);
+        assertThat(hold.getActiveCustomer()).isEqualTo("Fulano");
+        verify(bookRepository).lockAvailableById(1l);
+    }
+
+    @Test
+    @DisplayName("Deve entregar a cópia devolvida à primeira reserva da fila")
+    public void handOverInOrderTest() {
+        //cenario
+        waiting(0l, entry(1l, "Fulano", Hold.Status.WAITING, null));
+        when(repository.transition(1l, Hold.Status.WAITING, Hold.Status.READY, EXPIRY)).thenReturn(1);
+
+        //execucao
+        boolean handedOver = service.handOver(1l);
+
+        //verificacao
+        assertThat(handedOver).isTrue();
+        verify(bookRepository).lockAvailableById(1l);
+        scheduledExpiry();
+    }
+
+    @Test
+    @DisplayName("Deve pular a reserva cancelada enquanto era promovida")
+    public void skipCancelledHoldTest() {
+        //cenario
+        waiting(0l, entry(1l, "Fulano", Hold.Status.WAITING, null));
+        waiting(1l, entry(2l, "Ciclano", Hold.Status.WAITING, null));
+        when(repository.transition(1l, Hold.Status.WAITING, Hold.Status.READY, EXPIRY)).thenReturn(0);
+        when(repository.transition(2l, Hold.Status.WAITING, Hold.Status.READY, EXPIRY)).thenReturn(1);
+
+        //execucao
+        boolean handedOver = service.handOver(1l);
+
+        //verificacao
+        assertThat(handedOver).isTrue();
+        assertThat(service.handOver(2l)).isFalse();
+    }
+
+    @Test
+    @DisplayName("Deve emprestar a cópia separada apenas ao cliente da reserva pronta")
+    public void claimTest() {
+        //cenario
+        when(repository.closeFor(1l, "Fulano", Hold.Status.READY, Hold.Status.FULFILLED)).thenReturn(1);
+
+        //execucao
+        boolean other = service.claim(1l, "Ciclano");
+        boolean claimed = service.claim(1l, "Fulano");
+
+        //verificacao
+        assertThat(other).isFalse();
+        assertThat(claimed).isTrue();
+        assertThat(service.claim(1l, null)).isFalse();
+    }
+
+    @Test
+    @DisplayName("Deve passar a cópia da reserva expirada ao próximo da fila ou devolvê-la à estante")
+    public void expiryTest() {
+        //cenario
+        when(repository.findByBookAndStatus(eq(1l), eq(Hold.Status.WAITING), eq(0l), any(Pageable.class)))
+                .thenReturn(Arrays.asList(entry(1l, "Fulano", Hold.Status.WAITING, null)), Collections.emptyList());
+        when(repository.transition(anyLong(), eq(Hold.Status.WAITING), eq(Hold.Status.READY), any(LocalDateTime.class))).thenReturn(1);
+        when(repository.close(1l, Hold.Status.READY, Hold.Status.EXPIRED)).thenReturn(1);
+        service.handOver(1l);
+
+        //execucao
+        scheduledExpiry().run();
+
+        //verificacao
+        verify(bookRepository).releaseCopy(1l);
+    }
+
+    @Test
+    @DisplayName("Deve recusar reserva de livro com cópia na estante")
+    public void availableBookHoldTest() {
+        //cenario
+        when(bookRepository.lockAvailableById(1l)).thenReturn(Optional.of(1));
+
+        //execucao
+        Throwable exception = catchThrowable(() -> place("Fulano"));
+
+        //verificacao
+        assertThat(exception).isInstanceOf(BusinessException.class).hasMessage("Book is available");
+        verify(repository, never()).saveAndFlush(any(Hold.class));
+    }
+
+    @Test
+    @DisplayName("Deve recusar uma segunda reserva ativa do mesmo cliente")
+    public void duplicateHoldTest() {
+        //cenario
+        when(repository.existsByBookIdAndCustomerAndStatusIn(1l, "Fulano", Hold.Status.ACTIVE)).thenReturn(true);
+        when(repository.saveAndFlush(any(Hold.class))).thenThrow(new DataIntegrityViolationException("uk_hold_active_customer"));
+
+        //execucao
+        Throwable placed = catchThrowable(() -> place("Fulano"));
+        Throwable raced = catchThrowable(() -> place("Ciclano"));
+
+        //verificacao
+        assertThat(placed).isInstanceOf(BusinessException.class).hasMessage("Hold already placed");
+        assertThat(raced).isInstanceOf(BusinessException.class).hasMessage("Hold already placed");
+    }
+
+    @Test
+    @DisplayName("Deve informar os clientes com reserva pronta de cada livro")
+    public void readyCustomersTest() {
+        //cenario
+        when(repository.findByBooksAndStatus(Arrays.asList(1l, 2l), Hold.Status.READY))
+                .thenReturn(Arrays.asList(entry(1l, "Fulano", Hold.Status.READY, EXPIRY)));
+
+        //execucao
+        Map<Long, Set<String>> ready = service.readyCustomers(Arrays.asList(1l, 2l));
+
+        //verificacao
+        assertThat(ready).containsOnlyKeys(1l);
+        assertThat(ready.get(1l)).containsExactly("Fulano");
+    }
+
+    @Test
+    @DisplayName("Deve reagendar o vencimento das reservas prontas ao iniciar")
+    public void loadTest() {
+        //cenario
+        when(repository.findByStatus(eq(0l), anyCollection(), any(Pageable.class))).thenReturn(Arrays.asList(
+                entry(1l, "Fulano", Hold.Status.READY, EXPIRY)));
+        when(repository.close(1l, Hold.Status.READY, Hold.Status.EXPIRED)).thenReturn(1);
+
+        //execucao
+        service.load();
+
+        //verificacao
+        verify(repository).backfillActiveCustomers(Hold.Status.ACTIVE);
+        scheduledExpiry().run();
+        verify(bookRepository).releaseCopy(1l);
+    }
+
+    private static HoldEntry entry(Long id, String customer, Hold.Status status, LocalDateTime expiresAt) {
+        return new HoldEntry() {
+            @Override
+            public Long getId() {
+                return id;
+            }
+
+            @Override
+            public Long getBookId() {
+                return 1l;
+            }
+
+            @Override
+            public String getCustomer() {
+                return customer;
+            }
+
+            @Override
+            public Hold.Status getStatus() {
+                return status;
+            }
+
+            @Override
+            public LocalDateTime getExpiresAt() {
+                return expiresAt;
+            }
+        };
+    }
+}
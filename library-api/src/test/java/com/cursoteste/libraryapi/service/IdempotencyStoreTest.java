@@ -0,0 +1,109 @@
+package com.cursoteste.libraryapi.service;
+
+import com.cursoteste.libraryapi.api.exception.RequestInProgressException;
+import com.cursoteste.libraryapi.api.service.support.IdempotencyStore;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+
+public class IdempotencyStoreTest {
+
+    @Test
+    @DisplayName("Deve fazer as repetições simultâneas esperarem pela primeira tentativa")
+    public void concurrentRetriesWaitForFirstAttemptTest() throws Exception {
+        //cenario
+        IdempotencyStore store = new IdempotencyStore(100, 60_000, 5_000);
+        int retries = 10;
+        AtomicInteger runs = new AtomicInteger();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(retries + 1);
+
+        //execucao
+        Future<Long> first = executor.submit(() -> store.execute("loans.create", "key", "request", () -> {
+            runs.incrementAndGet();
+            started.countDown();
+            await(release);
+            return 1l;
+        }));
+        started.await(5, TimeUnit.SECONDS);
+        List<Future<Long>> others = new ArrayList<>();
+        for (int i = 0; i < retries; i++) {
+            others.add(executor.submit(() -> store.execute("loans.create", "key", "request", () -> (long) runs.incrementAndGet())));
+        }
+        Thread.sleep(50);
+        release.countDown();
+
+        //verificacao
+        assertThat(first.get(5, TimeUnit.SECONDS)).isEqualTo(1l);
+        for (Future<Long> other : others) {
+            assertThat(other.get(5, TimeUnit.SECONDS)).isEqualTo(1l);
+        }
+        assertThat(runs.get()).isEqualTo(1);
+        executor.shutdown();
+    }
+
+    @Test
+    @DisplayName("Deve executar novamente a repetição de uma tentativa que falhou")
+    public void retryFailedAttemptTest() {
+        //cenario
+        IdempotencyStore store = new IdempotencyStore(100, 60_000, 5_000);
+
+        //execucao
+        Throwable failure = catchThrowable(() -> store.execute("books.create", "key", "request", () -> {
+            throw new IllegalStateException("timeout");
+        }));
+        String retried = store.execute("books.create", "key", "request", () -> "created");
+
+        //verificacao
+        assertThat(failure).isInstanceOf(IllegalStateException.class);
+        assertThat(retried).isEqualTo("created");
+        assertThat(store.execute("books.create", "key", "request", () -> "again")).isEqualTo("created");
+        assertThat(store.execute("books.create", null, "request", () -> "again")).isEqualTo("again");
+    }
+
+    @Test
+    @DisplayName("Deve responder conflito à repetição que esperar demais pela primeira tentativa")
+    public void retryWaitTimeoutTest() throws Exception {
+        //cenario
+        IdempotencyStore store = new IdempotencyStore(100, 60_000, 50);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        Future<String> first = executor.submit(() -> store.execute("loans.create", "key", "request", () -> {
+            started.countDown();
+            await(release);
+            return "created";
+        }));
+        started.await(5, TimeUnit.SECONDS);
+
+        //execucao
+        Throwable retry = catchThrowable(() -> store.execute("loans.create", "key", "request", () -> "again"));
+        release.countDown();
+
+        //verificacao
+        assertThat(retry).isInstanceOf(RequestInProgressException.class);
+        assertThat(first.get(5, TimeUnit.SECONDS)).isEqualTo("created");
+        assertThat(store.execute("loans.create", "key", "request", () -> "again")).isEqualTo("created");
+        executor.shutdown();
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
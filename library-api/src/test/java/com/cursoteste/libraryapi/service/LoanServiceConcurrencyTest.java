@@ -0,0 +1,115 @@
+package com.cursoteste.libraryapi.service;
+
+import com.cursoteste.libraryapi.api.exception.BusinessException;
+import com.cursoteste.libraryapi.api.model.entity.Book;
+import com.cursoteste.libraryapi.api.model.entity.Loan;
+import com.cursoteste.libraryapi.api.model.repository.BookRepository;
+import com.cursoteste.libraryapi.api.model.repository.LoanRepository;
+import com.cursoteste.libraryapi.api.service.HoldService;
+import com.cursoteste.libraryapi.api.service.LoanService;
+import com.cursoteste.libraryapi.api.service.impl.LoanServiceImpl;
+import com.cursoteste.libraryapi.api.service.support.BookAvailability;
+import com.cursoteste.libraryapi.api.service.support.CirculationStats;
+import com.cursoteste.libraryapi.api.service.support.OverdueLoanTracker;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.transaction.support.TransactionOperations;
+
+import java.time.Clock;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+
+public class LoanServiceConcurrencyTest {
+
+    private static final int BOOKS = 5;
+    private static final int COPIES = 3;
+    private static final int CUSTOMERS_PER_BOOK = 20;
+
+    @Test
+    @DisplayName("Deve admitir exatamente um empréstimo por cópia sem serializar os empréstimos do mesmo livro")
+    public void exactlyOneWinnerPerCopyTest() throws Exception {
+        //cenario
+        Map<Long, AtomicInteger> available = new ConcurrentHashMap<>();
+        for (long bookId = 1; bookId <= BOOKS; bookId++) {
+            available.put(bookId, new AtomicInteger(COPIES));
+        }
+        AtomicInteger inFlight = new AtomicInteger();
+        AtomicInteger maxInFlight = new AtomicInteger();
+
+        AtomicLong loanIds = new AtomicLong();
+
+        LoanRepository repository = Mockito.mock(LoanRepository.class);
+        BookRepository bookRepository = Mockito.mock(BookRepository.class);
+        Mockito.when(repository.save(any(Loan.class))).thenAnswer(invocation -> {
+            int current = inFlight.incrementAndGet();
+            maxInFlight.accumulateAndGet(current, Math::max);
+            Thread.sleep(5);
+            inFlight.decrementAndGet();
+            Loan loan = invocation.getArgument(0);
+            loan.setId(loanIds.incrementAndGet());
+            return loan;
+        });
+        Mockito.when(bookRepository.reserveCopy(anyLong())).thenAnswer(invocation -> {
+            AtomicInteger copies = available.get(invocation.<Long>getArgument(0));
+            int left = copies.get();
+            while (left > 0) {
+                if (copies.compareAndSet(left, left - 1)) {
+                    return 1;
+                }
+                left = copies.get();
+            }
+            return 0;
+        });
+
+        LoanService service = new LoanServiceImpl(repository, bookRepository, TransactionOperations.withoutTransaction(),
+                new OverdueLoanTracker(repository, TransactionOperations.withoutTransaction(), Clock.systemDefaultZone(), 3),
+                new CirculationStats(repository, 10, 100), new BookAvailability(bookRepository, 60_000), Mockito.mock(HoldService.class));
+
+        ExecutorService executor = Executors.newFixedThreadPool(BOOKS * 4);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Boolean>> attempts = new ArrayList<>();
+        for (int c = 0; c < CUSTOMERS_PER_BOOK; c++) {
+            for (long bookId = 1; bookId <= BOOKS; bookId++) {
+                Loan loan = Loan.builder()
+                        .book(Book.builder().id(bookId).build())
+                        .customer("Cliente " + c)
+                        .loanDate(LocalDate.now())
+                        .build();
+                attempts.add(executor.submit(() -> {
+                    start.await();
+                    try {
+                        service.save(loan);
+                        return true;
+                    } catch (BusinessException e) {
+                        return false;
+                    }
+                }));
+            }
+        }
+
+        //execucao
+        start.countDown();
+        int winners = 0;
+        for (Future<Boolean> attempt : attempts) {
+            if (attempt.get(30, TimeUnit.SECONDS)) {
+                winners++;
+            }
+        }
+        executor.shutdown();
+
+        //verificacao
+        assertThat(winners).isEqualTo(BOOKS * COPIES);
+        assertThat(available.values()).allMatch(copies -> copies.get() == 0);
+        assertThat(maxInFlight.get()).isGreaterThan(BOOKS);
+    }
+}
@@ -1,21 +1,39 @@
 package com.cursoteste.libraryapi.service;
 
+import com.cursoteste.libraryapi.api.dto.BatchItemResultDTO;
+import com.cursoteste.libraryapi.api.dto.LoanFilterDTO;
 import com.cursoteste.libraryapi.api.exception.BusinessException;
 import com.cursoteste.libraryapi.api.model.entity.Book;
 import com.cursoteste.libraryapi.api.model.entity.Loan;
+import com.cursoteste.libraryapi.api.model.repository.BookRepository;
 import com.cursoteste.libraryapi.api.model.repository.LoanRepository;
+import com.cursoteste.libraryapi.api.service.HoldService;
 import com.cursoteste.libraryapi.api.service.LoanService;
 import com.cursoteste.libraryapi.api.service.impl.LoanServiceImpl;
+import com.cursoteste.libraryapi.api.service.support.BookAvailability;
+import com.cursoteste.libraryapi.api.service.support.CirculationStats;
+import com.cursoteste.libraryapi.api.service.support.OverdueLoanTracker;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.Mockito;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.transaction.support.TransactionOperations;
 
+import java.time.Clock;
 import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Optional;
 
 import static org.assertj.core.api.Assertions.assertThat;
@@ -29,12 +47,28 @@ public class LoanServiceTest {
 
     LoanService service;
 
+    OverdueLoanTracker overdueLoans;
+
+    CirculationStats stats;
+
+    BookAvailability availability;
+
     @MockBean
     LoanRepository repository;
 
+    @MockBean
+    BookRepository bookRepository;
+
+    @MockBean
+    HoldService holds;
+
     @BeforeEach
     public void setUp(){
-        this.service = new LoanServiceImpl(repository);
+        this.overdueLoans = new OverdueLoanTracker(repository, TransactionOperations.withoutTransaction(), Clock.systemDefaultZone(), 3);
+        this.stats = new CirculationStats(repository, 10, 100);
+        this.availability = new BookAvailability(bookRepository, 60_000);
+        this.service = new LoanServiceImpl(repository, bookRepository, TransactionOperations.withoutTransaction(), overdueLoans,
+                stats, availability, holds);
     }
 
     @Test
@@ -57,8 +91,8 @@ public class LoanServiceTest {
                 .customer(customer)
                 .book(book).build();
 
-        when(repository.existsByBookandNotReturned(book)).thenReturn(false);
         when(repository.save(savingLoan)).thenReturn(savedLoan) ;
+        when(bookRepository.reserveCopy(1l)).thenReturn(1);
 
         //execucao
         Loan loan = service.save(savingLoan);
@@ -68,6 +102,9 @@ public class LoanServiceTest {
         assertThat(loan.getBook().getId() ).isEqualTo(savedLoan.getBook().getId());
         assertThat(loan.getCustomer()).isEqualTo(savedLoan.getCustomer());
         assertThat(loan.getLoanDate() ).isEqualTo(savedLoan.getLoanDate());
+        assertThat(savingLoan.getActiveBookId()).isEqualTo(book.getId());
+        verify(bookRepository).reserveCopy(1l);
+        verify(repository, never()).existsByBookandNotReturned(book);
     }
 
     @Test
@@ -85,7 +122,8 @@ public class LoanServiceTest {
                 .build();
 
 
-        when(repository.existsByBookandNotReturned(book)).thenReturn(true);
+        when(repository.save(savingLoan)).thenReturn(savingLoan);
+        when(bookRepository.reserveCopy(1l)).thenReturn(0);
 
         //execucao
         Throwable exception = catchThrowable(() -> service.save(savingLoan));
@@ -94,7 +132,7 @@ public class LoanServiceTest {
         assertThat(exception)
                 .isInstanceOf(BusinessException.class)
                 .hasMessage("Book already loaned");
-        verify(repository,never()).save(savingLoan);
+        assertThat(stats.getTotalLoans()).isZero();
     }
 
 
@@ -132,13 +170,140 @@ public class LoanServiceTest {
         loan.setReturned(true);
 
         when(repository.save(loan)).thenReturn(loan);
+        when(repository.releaseCopyHold(1l)).thenReturn(1);
 
         Loan updatedLoan = service.update(loan);
 
 
 
         assertThat(updatedLoan.getReturned()).isTrue();
+        assertThat(updatedLoan.getActiveBookId()).isNull();
         verify(repository).save(loan);
+        verify(bookRepository).releaseCopy(1l);
+    }
+
+    @Test
+    @DisplayName("Deve definir o vencimento do empréstimo e acompanhá-lo até a devolução")
+    public void lateLoanTrackingTest(){
+        //cenario
+        Book book = Book.builder().id(1l).build();
+        Loan loan = Loan.builder().book(book).customer("Fulano").loanDate(LocalDate.now().minusDays(5)).build();
+        when(repository.save(loan)).thenAnswer(invocation -> {
+            loan.setId(1l);
+            return loan;
+        });
+        when(bookRepository.reserveCopy(1l)).thenReturn(1);
+        when(repository.releaseCopyHold(1l)).thenReturn(1);
+        when(repository.countByCustomer("Fulano")).thenReturn(1l);
+
+        //execucao
+        service.save(loan);
+        List<Long> late = overdueLoans.overdue();
+        loan.setReturned(true);
+        service.update(loan);
+
+        //verificacao
+        assertThat(loan.getDueDate()).isEqualTo(LocalDate.now().minusDays(2));
+        assertThat(late).containsExactly(1l);
+        assertThat(overdueLoans.size()).isZero();
+        assertThat(overdueLoans.overdue()).isEmpty();
+        assertThat(stats.getTotalLoans()).isEqualTo(1);
+        assertThat(stats.getOpenLoans()).isZero();
+        assertThat(stats.getLoansOfBook(1l)).isEqualTo(1);
+        assertThat(stats.getLoansOfCustomer("Fulano")).isEqualTo(1);
+        verify(repository).countByCustomer("Fulano");
+    }
+
+    @Test
+    @DisplayName("Deve devolver a cópia apenas uma vez quando a devolução se repetir")
+    public void repeatedReturnTest(){
+        //cenario
+        Loan loan = createLoan();
+        loan.setId(1l);
+        loan.setReturned(true);
+        when(repository.save(loan)).thenReturn(loan);
+        when(repository.releaseCopyHold(1l)).thenReturn(1, 0);
+
+        //execucao
+        boolean first = service.updateReturned(loan);
+        boolean repeated = service.updateReturned(loan);
+
+        //verificacao
+        assertThat(first).isTrue();
+        assertThat(repeated).isFalse();
+        verify(bookRepository, times(1)).releaseCopy(1l);
+    }
+
+    @Test
+    @DisplayName("Deve reservar uma cópia ao reabrir um empréstimo devolvido")
+    public void reopenLoanTest(){
+        //cenario
+        Loan loan = createLoan();
+        loan.setId(1l);
+        loan.setReturned(false);
+        when(repository.save(loan)).thenReturn(loan);
+        when(repository.takeCopyHold(1l, 1l)).thenReturn(1);
+        when(bookRepository.reserveCopy(1l)).thenReturn(0);
+
+        //execucao
+        Throwable exception = catchThrowable(() -> service.update(loan));
+
+        //verificacao
+        assertThat(exception)
+                .isInstanceOf(BusinessException.class)
+                .hasMessage("Book already loaned");
+    }
+
+    @Test
+    @DisplayName("Deve contar novamente como aberto o empréstimo reaberto")
+    public void reopenLoanStatsTest(){
+        //cenario
+        Loan loan = createLoan();
+        when(repository.save(loan)).thenAnswer(invocation -> {
+            loan.setId(1l);
+            return loan;
+        });
+        when(bookRepository.reserveCopy(1l)).thenReturn(1);
+        when(repository.releaseCopyHold(1l)).thenReturn(1);
+        when(repository.takeCopyHold(1l, 1l)).thenReturn(1);
+        service.save(loan);
+        loan.setReturned(true);
+        service.update(loan);
+
+        //execucao
+        loan.setReturned(false);
+        service.update(loan);
+
+        //verificacao
+        assertThat(stats.getOpenLoans()).isEqualTo(1);
+        assertThat(stats.getTotalLoans()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Deve reler da base as cópias na estante depois de emprestar e devolver")
+    public void availabilityMirrorTest(){
+        //cenario
+        Loan loan = createLoan();
+        when(bookRepository.findAvailableById(1l)).thenReturn(Optional.of(3), Optional.of(2), Optional.of(3));
+        when(repository.save(loan)).thenAnswer(invocation -> {
+            loan.setId(1l);
+            return loan;
+        });
+        when(bookRepository.reserveCopy(1l)).thenReturn(1);
+        when(repository.releaseCopyHold(1l)).thenReturn(1);
+
+        //execucao
+        assertThat(availability.get(1l)).contains(3);
+        service.save(loan);
+        Optional<Integer> afterLoan = availability.get(1l);
+        loan.setReturned(true);
+        service.update(loan);
+
+        //verificacao
+        assertThat(afterLoan).contains(2);
+        assertThat(availability.get(1l)).contains(3);
+        assertThat(availability.get(1l)).contains(3);
+        verify(bookRepository, times(3)).findAvailableById(1l);
     }
 
     public Loan createLoan(){
@@ -154,4 +319,230 @@ public class LoanServiceTest {
 
     }
 
+    @Test
+    @DisplayName("Deve filtrar empréstimos por isbn e cliente buscando só os ids da página")
+    public void findLoanByIsbnAndCustomerTest(){
+        //cenario
+        LoanFilterDTO filter = LoanFilterDTO.builder().isbn("123").customer("Fulano").build();
+        PageRequest pageRequest = PageRequest.of(0, 10);
+        Loan loan = Loan.builder().id(1l).customer("Fulano").book(Book.builder().id(1l).isbn("123").build()).build();
+
+        when(repository.findIdsByBookIsbnOrCustomer("123", "Fulano", pageRequest))
+                .thenReturn(new PageImpl<Number>(Arrays.asList(1l), pageRequest, 1));
+        when(repository.findAllWithBookByIdIn(Arrays.asList(1l))).thenReturn(Arrays.asList(loan));
+
+        //execucao
+        Page<Loan> result = service.find(filter, pageRequest);
+
+        //verificacao
+        assertThat(result.getTotalElements()).isEqualTo(1);
+        assertThat(result.getContent()).containsExactly(loan);
+        verify(repository, never()).findByCustomer(anyString(), any(Pageable.class));
+    }
+
+    @Test
+    @DisplayName("Deve filtrar empréstimos só por cliente ordenando por id")
+    public void findLoanByCustomerTest(){
+        //cenario
+        LoanFilterDTO filter = LoanFilterDTO.builder().isbn("").customer("Fulano").build();
+        Page<Loan> page = new PageImpl<>(Arrays.asList(Loan.builder().id(1l).build()));
+        when(repository.findByCustomer("Fulano", PageRequest.of(1, 10, Sort.by("id")))).thenReturn(page);
+
+        //execucao
+        Page<Loan> result = service.find(filter, PageRequest.of(1, 10));
+
+        //verificacao
+        assertThat(result).isSameAs(page);
+        verify(repository, never()).findIdsByBookIsbnOrCustomer(anyString(), anyString(), any(Pageable.class));
+    }
+
+    @Test
+    @DisplayName("Deve abrir vários empréstimos recusando livros já emprestados ou repetidos")
+    public void saveAllLoansTest(){
+        //cenario
+        Book available = Book.builder().id(1l).build();
+        Book loaned = Book.builder().id(2l).build();
+        Loan first = Loan.builder().book(available).customer("Fulano").build();
+        Loan repeated = Loan.builder().book(available).customer("Ciclano").build();
+        Loan unavailable = Loan.builder().book(loaned).customer("Beltrano").build();
+
+        when(bookRepository.findCopyCounts(anyCollection())).thenReturn(Arrays.asList(copyCount(1l, 1), copyCount(2l, 0)));
+        when(repository.saveAll(Arrays.asList(first))).thenReturn(Arrays.asList(Loan.builder().id(10l).book(available).build()));
+        when(bookRepository.reserveCopies(Arrays.asList(1l), 1)).thenReturn(1);
+
+        //execucao
+        List<BatchItemResultDTO> results = service.saveAll(Arrays.asList(first, repeated, unavailable));
+
+        //verificacao
+        assertThat(results).extracting(BatchItemResultDTO::getStatus).containsExactly(
+                BatchItemResultDTO.Status.SUCCESS, BatchItemResultDTO.Status.FAILURE, BatchItemResultDTO.Status.FAILURE);
+        assertThat(results.get(0).getId()).isEqualTo(10l);
+        assertThat(results.get(1).getError()).isEqualTo("Book already loaned");
+        assertThat(results.get(2).getError()).isEqualTo("Book already loaned");
+        assertThat(first.getActiveBookId()).isEqualTo(1l);
+        assertThat(stats.getLoansOfBook(1l)).isEqualTo(1);
+        verify(bookRepository, never()).reserveCopy(anyLong());
+    }
+
+    @Test
+    @DisplayName("Deve salvar um a um os empréstimos do lote quando um livro for emprestado durante o lote")
+    public void saveAllLoansFallbackTest(){
+        //cenario
+        Loan first = Loan.builder().book(Book.builder().id(1l).build()).customer("Fulano").build();
+        Loan second = Loan.builder().book(Book.builder().id(2l).build()).customer("Ciclano").build();
+
+        when(bookRepository.findCopyCounts(anyCollection())).thenReturn(Arrays.asList(copyCount(1l, 1), copyCount(2l, 1)));
+        when(repository.saveAll(anyList())).thenAnswer(invocation -> invocation.getArgument(0));
+        when(bookRepository.reserveCopies(anyCollection(), eq(1))).thenReturn(1);
+        when(repository.save(first)).thenReturn(Loan.builder().id(10l).book(first.getBook()).build());
+        when(repository.save(second)).thenReturn(Loan.builder().id(11l).book(second.getBook()).build());
+        when(bookRepository.reserveCopy(1l)).thenReturn(1);
+        when(bookRepository.reserveCopy(2l)).thenReturn(0);
+
+        //execucao
+        List<BatchItemResultDTO> results = service.saveAll(Arrays.asList(first, second));
+
+        //verificacao
+        assertThat(results).extracting(BatchItemResultDTO::getStatus).containsExactly(
+                BatchItemResultDTO.Status.SUCCESS, BatchItemResultDTO.Status.FAILURE);
+        assertThat(results.get(0).getId()).isEqualTo(10l);
+        assertThat(results.get(1).getError()).isEqualTo("Book already loaned");
+    }
+
+    @Test
+    @DisplayName("Deve devolver vários empréstimos liberando as cópias com uma única atualização")
+    public void returnAllLoansTest(){
+        //cenario
+        Loan open = Loan.builder().id(1l).book(Book.builder().id(1l).build()).activeBookId(1l).build();
+        Loan returned = Loan.builder().id(2l).book(Book.builder().id(2l).build()).returned(true).build();
+        when(repository.findAllWithBookByIdIn(Arrays.asList(1l, 2l, 3l))).thenReturn(Arrays.asList(open, returned));
+        when(repository.releaseCopyHolds(Arrays.asList(1l))).thenReturn(1);
+
+        //execucao
+        List<BatchItemResultDTO> results = service.returnAll(Arrays.asList(1l, 2l, 3l));
+
+        //verificacao
+        assertThat(results).extracting(BatchItemResultDTO::getStatus).containsExactly(
+                BatchItemResultDTO.Status.SUCCESS, BatchItemResultDTO.Status.UNCHANGED, BatchItemResultDTO.Status.FAILURE);
+        assertThat(results.get(2).getError()).isEqualTo("Loan not found");
+        assertThat(open.getReturned()).isTrue();
+        assertThat(open.getActiveBookId()).isNull();
+        verify(repository).saveAll(Arrays.asList(open));
+        verify(bookRepository).releaseCopies(Arrays.asList(1l), 1);
+        verify(repository, never()).save(any(Loan.class));
+    }
+
+    @Test
+    @DisplayName("Deve devolver uma única vez o empréstimo repetido no lote")
+    public void returnAllRepeatedIdsTest(){
+        //cenario
+        Loan open = Loan.builder().id(1l).book(Book.builder().id(1l).build()).activeBookId(1l).build();
+        when(repository.findAllWithBookByIdIn(Arrays.asList(1l))).thenReturn(Arrays.asList(open));
+        when(repository.releaseCopyHolds(Arrays.asList(1l))).thenReturn(1);
+
+        //execucao
+        List<BatchItemResultDTO> results = service.returnAll(Arrays.asList(1l, 1l));
+
+        //verificacao
+        assertThat(results).extracting(BatchItemResultDTO::getStatus).containsExactly(
+                BatchItemResultDTO.Status.SUCCESS, BatchItemResultDTO.Status.UNCHANGED);
+        assertThat(results).extracting(BatchItemResultDTO::getId).containsExactly(1l, 1l);
+        verify(bookRepository).releaseCopies(Arrays.asList(1l), 1);
+    }
+
+    private static BookRepository.CopyCount copyCount(Long id, Integer available) {
+        return new BookRepository.CopyCount() {
+            @Override
+            public Long getId() {
+                return id;
+            }
+
+            @Override
+            public Integer getCopies() {
+                return available;
+            }
+
+            @Override
+            public Integer getAvailable() {
+                return available;
+            }
+        };
+    }
+
+    @Test
+    @DisplayName("Deve entregar a cópia devolvida ao próximo da fila de reservas")
+    public void returnToHolderTest(){
+        //cenario
+        Loan loan = createLoan();
+        loan.setId(1l);
+        loan.setReturned(true);
+        when(repository.save(loan)).thenReturn(loan);
+        when(repository.releaseCopyHold(1l)).thenReturn(1);
+        when(holds.handOver(1l)).thenReturn(true);
+
+        //execucao
+        service.update(loan);
+
+        //verificacao
+        verify(holds).handOver(1l);
+        verify(bookRepository, never()).releaseCopy(anyLong());
+    }
+
+    @Test
+    @DisplayName("Deve emprestar ao cliente com reserva pronta a cópia separada para ele")
+    public void claimReadyHoldTest(){
+        //cenario
+        Loan loan = createLoan();
+        when(repository.save(loan)).thenReturn(loan);
+        when(holds.claim(1l, "Fulano")).thenReturn(true);
+
+        //execucao
+        service.save(loan);
+
+        //verificacao
+        verify(bookRepository, never()).reserveCopy(anyLong());
+    }
+
+    @Test
+    @DisplayName("Deve abrir no lote o empréstimo do cliente com reserva pronta sem cópia na estante")
+    public void saveAllClaimReadyHoldTest(){
+        //cenario
+        Book book = Book.builder().id(1l).build();
+        Loan holder = Loan.builder().book(book).customer("Fulano").build();
+        Loan other = Loan.builder().book(book).customer("Ciclano").build();
+
+        when(bookRepository.findCopyCounts(anyCollection())).thenReturn(Arrays.asList(copyCount(1l, 0)));
+        when(holds.readyCustomers(anyCollection())).thenReturn(
+                Collections.singletonMap(1l, new HashSet<>(Collections.singletonList("Fulano"))));
+        when(holds.claim(1l, "Fulano")).thenReturn(true);
+        when(repository.saveAll(Arrays.asList(holder))).thenReturn(Arrays.asList(Loan.builder().id(10l).book(book).build()));
+
+        //execucao
+        List<BatchItemResultDTO> results = service.saveAll(Arrays.asList(holder, other));
+
+        //verificacao
+        assertThat(results).extracting(BatchItemResultDTO::getStatus).containsExactly(
+                BatchItemResultDTO.Status.SUCCESS, BatchItemResultDTO.Status.FAILURE);
+        verify(holds).claim(1l, "Fulano");
+        verify(bookRepository, never()).reserveCopies(anyCollection(), anyInt());
+    }
+
+    @Test
+    @DisplayName("Deve entregar às reservas parte das cópias devolvidas em lote e guardar o resto")
+    public void returnAllToHoldersTest(){
+        //cenario
+        Book book = Book.builder().id(1l).build();
+        Loan first = Loan.builder().id(1l).book(book).activeBookId(1l).build();
+        Loan second = Loan.builder().id(2l).book(book).activeBookId(1l).build();
+        when(repository.findAllWithBookByIdIn(Arrays.asList(1l, 2l))).thenReturn(Arrays.asList(first, second));
+        when(repository.releaseCopyHolds(Arrays.asList(1l, 2l))).thenReturn(2);
+        when(holds.handOver(1l)).thenReturn(true, false);
+
+        //execucao
+        service.returnAll(Arrays.asList(1l, 2l));
+
+        //verificacao
+        verify(holds, times(2)).handOver(1l);
+        verify(bookRepository).releaseCopies(Arrays.asList(1l), 1);
+    }
 }
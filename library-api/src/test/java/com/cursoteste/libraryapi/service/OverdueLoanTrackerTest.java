@@ -0,0 +1,127 @@
+package com.cursoteste.libraryapi.service;
+
+import com.cursoteste.libraryapi.api.model.repository.LoanRepository;
+import com.cursoteste.libraryapi.api.model.repository.LoanRepository.LoanDueDate;
+import com.cursoteste.libraryapi.api.service.support.OverdueLoanTracker;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.data.domain.Pageable;
+import org.springframework.transaction.support.TransactionOperations;
+
+import java.time.Clock;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class OverdueLoanTrackerTest {
+
+    LoanRepository repository = Mockito.mock(LoanRepository.class);
+    Clock clock = Mockito.mock(Clock.class);
+    OverdueLoanTracker tracker;
+
+    @BeforeEach
+    public void setUp() {
+        when(clock.getZone()).thenReturn(ZoneOffset.UTC);
+        today(LocalDate.of(2020, 10, 10));
+        tracker = new OverdueLoanTracker(repository, TransactionOperations.withoutTransaction(), clock, 3);
+    }
+
+    private void today(LocalDate day) {
+        when(clock.instant()).thenReturn(day.atStartOfDay().toInstant(ZoneOffset.UTC));
+    }
+
+    private static LoanDueDate dueDate(Long id, LocalDate dueDate) {
+        return new LoanDueDate() {
+            @Override
+            public Long getId() {
+                return id;
+            }
+
+            @Override
+            public LocalDate getDueDate() {
+                return dueDate;
+            }
+        };
+    }
+
+    @Test
+    @DisplayName("Deve informar os empréstimos abertos vencidos até hoje")
+    public void overdueTest() {
+        //cenario
+        tracker.track(1l, LocalDate.of(2020, 10, 9));
+        tracker.track(2l, LocalDate.of(2020, 10, 11));
+        tracker.track(3l, LocalDate.of(2020, 10, 12));
+        tracker.track(4l, LocalDate.of(2020, 10, 15));
+
+        //execucao
+        List<Long> first = tracker.overdue();
+        tracker.untrack(2l);
+        today(LocalDate.of(2020, 10, 12));
+
+        //verificacao
+        assertThat(first).containsExactly(1l);
+        assertThat(tracker.overdue()).containsExactly(1l, 3l);
+    }
+
+    @Test
+    @DisplayName("Deve buscar na base os empréstimos que venceram desde o carregamento")
+    public void syncFromDatabaseTest() {
+        //cenario
+        tracker.load();
+        today(LocalDate.of(2020, 10, 12));
+        when(repository.findOpenDueDatesBetween(LocalDate.of(2020, 10, 10), LocalDate.of(2020, 10, 12)))
+                .thenReturn(Arrays.asList(dueDate(7l, LocalDate.of(2020, 10, 11))));
+
+        //execucao
+        tracker.sync();
+        tracker.sync();
+        today(LocalDate.of(2020, 10, 13));
+        tracker.sync();
+
+        //verificacao
+        verify(repository).findOpenDueDatesBetween(LocalDate.of(2020, 10, 10), LocalDate.of(2020, 10, 12));
+        verify(repository).findOpenDueDatesBetween(LocalDate.of(2020, 10, 12), LocalDate.of(2020, 10, 13));
+        assertThat(tracker.overdue()).containsExactly(7l);
+    }
+
+    @Test
+    @DisplayName("Deve mover o empréstimo quando o vencimento mudar")
+    public void retrackTest() {
+        //cenario
+        tracker.track(1l, LocalDate.of(2020, 10, 9));
+
+        //execucao
+        tracker.track(1l, LocalDate.of(2020, 10, 20));
+
+        //verificacao
+        assertThat(tracker.overdue()).isEmpty();
+        assertThat(tracker.size()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Deve carregar os empréstimos abertos em páginas após preencher os vencimentos")
+    public void loadTest() {
+        //cenario
+        when(repository.findOpenDueDates(eq(0l), any(Pageable.class))).thenReturn(Arrays.asList(
+                dueDate(1l, LocalDate.of(2020, 10, 1)), dueDate(5l, LocalDate.of(2020, 10, 20))));
+        when(repository.findLoanDatesWithoutDueDate()).thenReturn(Arrays.asList(LocalDate.of(2020, 9, 30)));
+
+        //execucao
+        tracker.load();
+
+        //verificacao
+        verify(repository).backfillDueDate(LocalDate.of(2020, 9, 30), LocalDate.of(2020, 10, 3));
+        assertThat(tracker.size()).isEqualTo(2);
+        assertThat(tracker.overdue()).containsExactly(1l);
+        assertThat(tracker.dueDateFor(LocalDate.of(2020, 10, 1))).isEqualTo(LocalDate.of(2020, 10, 4));
+    }
+}
@@ -0,0 +1,97 @@
+package com.cursoteste.libraryapi.service;
+
+import com.cursoteste.libraryapi.api.service.support.SingleFlight;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BooleanSupplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
+
+public class SingleFlightTest {
+
+    @Test
+    @DisplayName("Deve entregar aos que esperam uma cópia do resultado tirada antes do primeiro alterá-lo")
+    public void followersGetSnapshotTest() throws Exception {
+        //cenario
+        AtomicReference<Thread> leaderThread = new AtomicReference<>();
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch copy = new CountDownLatch(1);
+        SingleFlight<String, StringBuilder> flight = new SingleFlight<>("test", new SimpleMeterRegistry(), value -> {
+            if (Thread.currentThread() != leaderThread.get()) {
+                await(copy);
+            }
+            return new StringBuilder(value);
+        }, 5_000);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+
+        //execucao
+        Future<StringBuilder> leader = executor.submit(() -> flight.load("key", key -> {
+            leaderThread.set(Thread.currentThread());
+            await(release);
+            return new StringBuilder("original");
+        }));
+        waitFor(() -> leaderThread.get() != null);
+        Future<StringBuilder> follower = executor.submit(() -> flight.load("key", key -> new StringBuilder("own")));
+        waitFor(() -> flight.getCoalesced() == 1);
+        release.countDown();
+        leader.get(5, TimeUnit.SECONDS).append(" edited");
+        copy.countDown();
+
+        //verificacao
+        assertThat(follower.get(5, TimeUnit.SECONDS).toString()).isEqualTo("original");
+        executor.shutdown();
+    }
+
+    @Test
+    @DisplayName("Deve carregar por conta própria quando a carga em andamento demorar demais")
+    public void followerWaitTimeoutTest() throws Exception {
+        //cenario
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        SingleFlight<String, String> flight = new SingleFlight<>("test", new SimpleMeterRegistry(), value -> value, 50);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        Future<String> leader = executor.submit(() -> flight.load("key", key -> {
+            started.countDown();
+            await(release);
+            return "leader";
+        }));
+        started.await(5, TimeUnit.SECONDS);
+
+        //execucao
+        String loaded = flight.load("key", key -> "own");
+        release.countDown();
+
+        //verificacao
+        assertThat(loaded).isEqualTo("own");
+        assertThat(flight.getCoalesced()).isEqualTo(0);
+        assertThat(leader.get(5, TimeUnit.SECONDS)).isEqualTo("leader");
+        executor.shutdown();
+    }
+
+    private static void waitFor(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean()) {
+            if (System.nanoTime() > deadline) {
+                fail("Condition not reached within 5 seconds");
+            }
+            Thread.sleep(1);
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}